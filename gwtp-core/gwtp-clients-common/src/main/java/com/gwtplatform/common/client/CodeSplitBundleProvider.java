@@ -23,6 +23,9 @@ import com.google.inject.Provider;
 /**
  * Implements a {@link IndirectProvider} that uses code splitting for a specific
  * type. The object will be provided from a {@link ProviderBundle}.
+ * <p />
+ * Prefetching loads the {@link ProviderBundle} without instantiating the
+ * provided object.
  *
  * @param <T> The type of the provided object.
  * @param <B> The type of the {@link ProviderBundle} providing this object.
@@ -30,7 +33,7 @@ import com.google.inject.Provider;
  * @author Philippe Beaudoin
  */
 public final class CodeSplitBundleProvider<T, B extends ProviderBundle>
-    implements IndirectProvider<T> {
+    implements IndirectProvider<T>, Prefetchable {
 
   private final AsyncProvider<B> bundleProvider;
   private final int providerId;
@@ -64,4 +67,19 @@ public final class CodeSplitBundleProvider<T, B extends ProviderBundle>
     });
   }
 
-}
\ No newline at end of file
+  @Override
+  public void prefetch(final AsyncCallback<Void> callback) {
+    bundleProvider.get(new AsyncCallback<B>() {
+      @Override
+      public void onFailure(Throwable caught) {
+        callback.onFailure(caught);
+      }
+
+      @Override
+      public void onSuccess(B providerBundle) {
+        callback.onSuccess(null);
+      }
+    });
+  }
+
+}
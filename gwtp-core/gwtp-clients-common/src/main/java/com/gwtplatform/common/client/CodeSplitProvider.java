@@ -24,6 +24,12 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
  * invokes the callback once the code is loaded. This is essentially the same as
  * a standard {@link AsyncProvider}, but shares the interface of other
  * {@link IndirectProvider}.
+ * <p />
+ * This provider is not {@link Prefetchable}: the code of the object can only be
+ * reached from the split point of the {@link AsyncProvider}, which instantiates
+ * it. Referencing that code from a second split point would move it to the
+ * fragment shared by all split points. Use a {@link CodeSplitBundleProvider}
+ * if the code must be prefetched.
  *
  * @param <T> The type of the provided object.
  *
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.common.client;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * Implemented by objects whose code can be downloaded ahead of time, before
+ * they are first needed. Prefetching is only a hint: if the download fails,
+ * the code is simply requested again when it is actually needed.
+ */
+public interface Prefetchable {
+  /**
+   * Starts downloading the code, if it isn't already available.
+   *
+   * @param callback The {@link AsyncCallback} to invoke once the download is
+   *          over. Its {@link AsyncCallback#onFailure(Throwable)} is invoked
+   *          if the download failed, which can safely be ignored.
+   */
+  void prefetch(AsyncCallback<Void> callback);
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.gwtplatform.crawler.server.InProcessCrawlService;
+import com.gwtplatform.crawler.server.Snapshot;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+import com.gwtplatform.crawlerservice.server.service.CachedPageDao;
+import com.gwtplatform.crawlerservice.server.service.CachedPageHotTier;
+
+/**
+ * Fetches rendered pages from the cache, or renders them with the {@link PageRenderer} and caches
+ * them. Used by the {@link CrawlServiceServlet}, and directly by the
+ * {@link com.gwtplatform.crawler.server.CrawlFilter} when both run in the same server, see
+ * {@link com.gwtplatform.crawlerservice.server.guice.InProcessCrawlModule}.
+ */
+@Singleton
+public class PageFetcher implements InProcessCrawlService {
+
+  /**
+   * Answered when the page is being fetched by another request, the crawl filter tries again.
+   */
+  static final CachedPage FETCH_IN_PROGRESS = createAnswer("FETCH_IN_PROGRESS");
+
+  /**
+   * Answered when no {@link com.gargoylesoftware.htmlunit.WebClient} is available to render the
+   * page.
+   */
+  static final CachedPage SERVICE_BUSY = createAnswer("SERVICE_BUSY");
+
+  /**
+   * How long a request waits for the same page being fetched by another request, in
+   * milliseconds. This must stay below the read timeout of the crawl filter.
+   */
+  private static final long MAX_WAIT_MILLIS = 8000;
+
+  /**
+   * How long a page can be fetched before we consider something went wrong, in milliseconds.
+   */
+  private static final long FETCH_IN_PROGRESS_TIMEOUT_MILLIS = 60000;
+
+  private static final long MIN_POLL_MILLIS = 100;
+  private static final long MAX_POLL_MILLIS = 1000;
+
+  @Inject(optional = true)
+  @CachedPageTimeoutSec
+  private long cachedPageTimeoutSec = 15 * 60;
+
+  private final PageRenderer pageRenderer;
+
+  private final PrerenderQueue prerenderQueue;
+
+  private final CachedPageDao cachedPageDao;
+
+  private final ConcurrentMap<String, FutureTask<CachedPage>> pendingFetches =
+      new ConcurrentHashMap<String, FutureTask<CachedPage>>();
+
+  @Inject
+  PageFetcher(PageRenderer pageRenderer,
+      PrerenderQueue prerenderQueue,
+      CachedPageHotTier cachedPageDao) {
+    this.pageRenderer = pageRenderer;
+    this.prerenderQueue = prerenderQueue;
+    this.cachedPageDao = cachedPageDao;
+  }
+
+  @Override
+  public Snapshot fetchSnapshot(String url) throws IOException {
+    CachedPage page = fetchPage(url);
+    if (page == FETCH_IN_PROGRESS || page == SERVICE_BUSY) {
+      return null;
+    }
+    return new Snapshot(page.getContent(), page.getContentHash(), page.getFetchDate());
+  }
+
+  /**
+   * Fetches the page at {@code url}, see {@link #fetchCachedOrRenderedPage(String)}. Concurrent
+   * requests for the same {@code url} share a single fetch: they wait for at most
+   * {@link #MAX_WAIT_MILLIS} for the first one to complete.
+   *
+   * @param url The URL of the page to fetch.
+   * @return The page, or {@link #FETCH_IN_PROGRESS} or {@link #SERVICE_BUSY}.
+   * @throws IOException
+   */
+  CachedPage fetchPage(final String url) throws IOException {
+    prerenderQueue.recordHit(url);
+
+    return fetchOnce(url, new Callable<CachedPage>() {
+      @Override
+      public CachedPage call() throws IOException {
+        return fetchCachedOrRenderedPage(url);
+      }
+    });
+  }
+
+  /**
+   * Renders the page at {@code url} again if it was rendered more than {@code refreshMillis} ago,
+   * for the {@link PrerenderQueue}. Shares the single fetch of {@link #fetchPage(String)}, and
+   * the previous version of the page is served while it is rendered again.
+   *
+   * @param url The URL of the page to refresh.
+   * @param refreshMillis How long a rendered page is kept before it is rendered again.
+   * @return The page, which is still being fetched if {@link CachedPage#isFetchInProgress()}, or
+   *         {@link #FETCH_IN_PROGRESS} or {@link #SERVICE_BUSY}.
+   * @throws IOException
+   */
+  CachedPage refreshPage(final String url, final long refreshMillis) throws IOException {
+    return fetchOnce(url, new Callable<CachedPage>() {
+      @Override
+      public CachedPage call() throws IOException {
+        return refreshCachedPage(url, refreshMillis);
+      }
+    });
+  }
+
+  /**
+   * Runs {@code fetch} unless a fetch of the same {@code url} is in progress, in which case its
+   * result is waited for, for at most {@link #MAX_WAIT_MILLIS}.
+   */
+  private CachedPage fetchOnce(String url, Callable<CachedPage> fetch) throws IOException {
+    FutureTask<CachedPage> task = new FutureTask<CachedPage>(fetch);
+    FutureTask<CachedPage> pendingTask = pendingFetches.putIfAbsent(url, task);
+    try {
+      if (pendingTask == null) {
+        try {
+          task.run();
+          return task.get();
+        } finally {
+          pendingFetches.remove(url, task);
+        }
+      } else {
+        return pendingTask.get(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (TimeoutException e) {
+      return FETCH_IN_PROGRESS;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return FETCH_IN_PROGRESS;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Returns the cached page for {@code url} if it has not expired, or renders it and caches it. If
+   * another server is already rendering the page, waits for at most {@link #MAX_WAIT_MILLIS} for
+   * it to be done, unless the previous version of the page can be served meanwhile.
+   *
+   * @param url The URL of the page to fetch.
+   * @return The page, or {@link #FETCH_IN_PROGRESS} or {@link #SERVICE_BUSY}.
+   * @throws IOException
+   */
+  private CachedPage fetchCachedOrRenderedPage(String url) throws IOException {
+    Date currDate = new Date();
+
+    CachedPage matchingPage = cachedPageDao.find(url);
+    if (matchingPage != null && isExpired(matchingPage, currDate)) {
+      cachedPageDao.remove(matchingPage);
+      matchingPage = null;
+    }
+
+    if (matchingPage != null) {
+      if (!matchingPage.isFetchInProgress()) {
+        return matchingPage;
+      }
+      if (!isFetchTimedOut(matchingPage, currDate)) {
+        return matchingPage.getContent() != null ? matchingPage : waitForFetch(matchingPage);
+      }
+      cachedPageDao.remove(matchingPage);
+    }
+
+    return renderPage(url, currDate, null);
+  }
+
+  /**
+   * Renders the page for {@code url} again if the cached one is older than
+   * {@code refreshMillis}, see {@link #refreshPage(String, long)}.
+   */
+  private CachedPage refreshCachedPage(String url, long refreshMillis) throws IOException {
+    Date currDate = new Date();
+
+    CachedPage matchingPage = cachedPageDao.find(url);
+    if (matchingPage != null && isExpired(matchingPage, currDate)) {
+      cachedPageDao.remove(matchingPage);
+      matchingPage = null;
+    }
+
+    if (matchingPage != null) {
+      if (matchingPage.isFetchInProgress()) {
+        if (!isFetchTimedOut(matchingPage, currDate)) {
+          return matchingPage;
+        }
+        cachedPageDao.remove(matchingPage);
+        matchingPage = null;
+      } else if (currDate.getTime() < matchingPage.getFetchDate().getTime() + refreshMillis) {
+        return matchingPage;
+      }
+    }
+
+    return renderPage(url, currDate, matchingPage);
+  }
+
+  /**
+   * Renders a page and caches it. A placeholder is cached while the page is rendered, so that
+   * other servers wait for this render instead of rendering the page too.
+   *
+   * @param url The URL of the page to render.
+   * @param currDate The current date, to mark the page.
+   * @param previousPage The previous version of the page, served while the page is rendered
+   *          again and cached again if the render fails. May be {@code null}.
+   * @return The rendered page, or {@link #SERVICE_BUSY}.
+   * @throws IOException
+   */
+  private CachedPage renderPage(String url, Date currDate, CachedPage previousPage)
+      throws IOException {
+    CachedPage cachedPage = createPlaceholderPage(url, currDate, previousPage);
+    boolean stored = false;
+    try {
+      StringBuilder renderedHtml = pageRenderer.renderPage(url);
+      if (renderedHtml == null) {
+        return SERVICE_BUSY;
+      }
+      storeFetchedPage(cachedPage, renderedHtml);
+      stored = true;
+      return cachedPage;
+    } finally {
+      if (!stored) {
+        // Don't make other requests wait for a fetch that failed.
+        cachedPageDao.remove(cachedPage);
+        if (previousPage != null) {
+          cachedPageDao.store(previousPage);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for a page that another server is fetching, reading the placeholder again with an
+   * increasing delay, for at most {@link #MAX_WAIT_MILLIS}.
+   *
+   * @param placeholderPage The placeholder of the page being fetched.
+   * @return The page, or {@link #FETCH_IN_PROGRESS} if it was not fetched in time.
+   */
+  private CachedPage waitForFetch(CachedPage placeholderPage) {
+    long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+    long pollMillis = MIN_POLL_MILLIS;
+    while (System.currentTimeMillis() + pollMillis < deadline) {
+      try {
+        Thread.sleep(pollMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      CachedPage page = cachedPageDao.reload(placeholderPage);
+      if (page == null) {
+        // The other fetch failed, let the caller try again.
+        break;
+      }
+      if (!page.isFetchInProgress()) {
+        return page;
+      }
+      pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+    }
+    return FETCH_IN_PROGRESS;
+  }
+
+  private void storeFetchedPage(CachedPage cachedPage,
+      StringBuilder stringBuilder) {
+    cachedPage.setContent(stringBuilder.toString());
+    cachedPage.setFetchInProgress(false);
+    cachedPageDao.store(cachedPage);
+  }
+
+  /**
+   * Creates a placeholder page for the given {@code url} and stores it.
+   *
+   * @param url The URL of the page for which to create a placeholder.
+   * @param currDate The current date, to mark the page.
+   * @param previousPage The previous version of the page, whose content the placeholder keeps.
+   *          May be {@code null}.
+   * @return The newly created placeholder page.
+   */
+  private CachedPage createPlaceholderPage(String url, Date currDate, CachedPage previousPage) {
+    CachedPage result = new CachedPage();
+    result.setUrl(url);
+    result.setFetchDate(currDate);
+    result.setFetchInProgress(true);
+    if (previousPage != null) {
+      result.setContent(previousPage.getContent());
+    }
+    cachedPageDao.store(result);
+    return result;
+  }
+
+  private boolean isExpired(CachedPage page, Date currDate) {
+    return currDate.getTime() > page.getFetchDate().getTime() + cachedPageTimeoutSec * 1000;
+  }
+
+  /**
+   * If a page is being fetched since more than {@link #FETCH_IN_PROGRESS_TIMEOUT_MILLIS}, we
+   * consider something went wrong and fetch it again.
+   */
+  private boolean isFetchTimedOut(CachedPage page, Date currDate) {
+    return currDate.getTime() > page.getFetchDate().getTime() + FETCH_IN_PROGRESS_TIMEOUT_MILLIS;
+  }
+
+  private static CachedPage createAnswer(String content) {
+    CachedPage answer = new CachedPage();
+    answer.setContent(content);
+    return answer;
+  }
+}
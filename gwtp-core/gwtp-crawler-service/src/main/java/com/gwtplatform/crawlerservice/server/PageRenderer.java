@@ -0,0 +1,121 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import com.gargoylesoftware.htmlunit.ScriptResult;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Renders pages using HTMLUnit, with the {@link WebClient}s of the {@link WebClientPool}.
+ */
+@Singleton
+public class PageRenderer {
+
+  /**
+   * The javascript variable set by applications using
+   * {@code com.gwtplatform.mvp.client.proxy.RenderCompleteSignal} once they are done rendering.
+   */
+  private static final String RENDER_COMPLETE_FLAG = "window.gwtpRenderComplete";
+
+  /**
+   * How often to check whether the application is done rendering, in milliseconds.
+   */
+  private static final long RENDER_POLL_INTERVAL_MILLIS = 50;
+
+  @Inject(optional = true)
+  @HtmlUnitTimeoutMillis
+  private long timeoutMillis = 12000;
+
+  private final WebClientPool webClientPool;
+
+  @Inject
+  PageRenderer(WebClientPool webClientPool) {
+    this.webClientPool = webClientPool;
+  }
+
+  /**
+   * Prepares the {@link WebClientPool} for the first renders, see {@link WebClientPool#warmUp()}.
+   */
+  public void warmUp() {
+    webClientPool.warmUp();
+  }
+
+  /**
+   * Fetches the page at {@code url} and renders the page in a {@link StringBuilder}, using a
+   * {@link WebClient} of the {@link WebClientPool}. The javascript runs until the application
+   * signals that it is done rendering, or for at most {@link HtmlUnitTimeoutMillis}. The rendered
+   * page is prefixed with a message indicating this is a non-interactive version.
+   *
+   * @param url The URL of the page to render.
+   * @return The rendered page, in a {@link StringBuilder}, or {@code null} if no
+   *         {@link WebClient} became available in time.
+   * @throws IOException
+   * @throws MalformedURLException
+   */
+  public StringBuilder renderPage(String url) throws IOException,
+      MalformedURLException {
+    WebClient webClient = webClientPool.acquire();
+    if (webClient == null) {
+      return null;
+    }
+
+    boolean healthy = false;
+    try {
+      HtmlPage page = webClient.getPage(url);
+      waitForRenderComplete(webClient, page);
+
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("<hr />\n");
+      stringBuilder.append("<center><h3>You are viewing a non-interactive page that is intended for the crawler.  ");
+      stringBuilder.append("You probably want to see this page: <a href=\"" + url + "\">" + url + "</a></h3></center>\n");
+      stringBuilder.append("<hr />\n");
+
+      stringBuilder.append(page.asXml());
+      healthy = true;
+      return stringBuilder;
+    } finally {
+      webClientPool.release(webClient, healthy);
+    }
+  }
+
+  /**
+   * Runs the javascript of the page until {@code window.gwtpRenderComplete} is {@code true}, or
+   * for at most {@link HtmlUnitTimeoutMillis} if the application never sets it.
+   *
+   * @param webClient The {@link WebClient} rendering the page.
+   * @param page The page being rendered.
+   */
+  private void waitForRenderComplete(WebClient webClient, HtmlPage page) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remainingMillis = timeoutMillis;
+    while (remainingMillis > 0) {
+      webClient.getJavaScriptEngine().pumpEventLoop(
+          Math.min(remainingMillis, RENDER_POLL_INTERVAL_MILLIS));
+      ScriptResult result = page.executeJavaScript(RENDER_COMPLETE_FLAG);
+      if (Boolean.TRUE.equals(result.getJavaScriptResult())) {
+        return;
+      }
+      remainingMillis = deadline - System.currentTimeMillis();
+    }
+  }
+}
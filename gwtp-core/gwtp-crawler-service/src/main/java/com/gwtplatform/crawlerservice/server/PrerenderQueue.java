@@ -0,0 +1,361 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * Renders pages in the background before their cached version expires, so that crawlers always
+ * find them in the cache. Register the pages to keep rendered, for example from your
+ * {@link com.google.inject.servlet.GuiceServletContextListener}, and start the queue:
+ *
+ * <pre>
+ * PrerenderQueue prerenderQueue = injector.getInstance(PrerenderQueue.class);
+ * prerenderQueue.addSitemap("http://www.example.com/sitemap.xml");
+ * prerenderQueue.start();
+ * </pre>
+ *
+ * At most {@link PrerenderWorkers} pages are rendered at the same time, the pages most requested
+ * by the crawlers first. A page is rendered again once 80% of the {@link CachedPageTimeoutSec}
+ * elapsed. Pages are rendered by the {@link PageFetcher}, like for the crawler requests, so a page
+ * is never rendered twice at the same time and crawlers get its previous version meanwhile.
+ * <p />
+ * On App Engine, where threads can't outlive a request, don't call {@link #start()}. Call
+ * {@link #prerenderDuePages()} from a cron job instead.
+ */
+@Singleton
+public class PrerenderQueue {
+
+  /**
+   * A page to keep rendered.
+   */
+  private static class TrackedUrl {
+    private final String url;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private volatile long nextRenderMillis;
+
+    TrackedUrl(String url) {
+      this.url = url;
+    }
+  }
+
+  /**
+   * Renders a page, the pages with the most hits first.
+   */
+  private class PrerenderTask implements Runnable, Comparable<PrerenderTask> {
+    private final TrackedUrl trackedUrl;
+    private final long hits;
+
+    PrerenderTask(TrackedUrl trackedUrl) {
+      this.trackedUrl = trackedUrl;
+      // The priority must not change while the task is queued
+      this.hits = trackedUrl.hits.get();
+    }
+
+    @Override
+    public void run() {
+      prerender(trackedUrl);
+    }
+
+    @Override
+    public int compareTo(PrerenderTask other) {
+      return hits > other.hits ? -1 : (hits < other.hits ? 1 : 0);
+    }
+  }
+
+  private static final long SCAN_INTERVAL_MILLIS = 10000;
+
+  /**
+   * The fraction of the {@link CachedPageTimeoutSec} after which a page is rendered again.
+   */
+  private static final double REFRESH_RATIO = 0.8;
+
+  /**
+   * How long to wait before trying again to render a page that failed, in milliseconds.
+   */
+  private static final long RETRY_DELAY_MILLIS = 60000;
+
+  @Inject(optional = true)
+  @PrerenderWorkers
+  private int workers = 1;
+
+  @Inject(optional = true)
+  @CachedPageTimeoutSec
+  private long cachedPageTimeoutSec = 15 * 60;
+
+  private final Provider<PageFetcher> pageFetcherProvider;
+  private final Logger logger;
+
+  private final ConcurrentMap<String, TrackedUrl> trackedUrls =
+      new ConcurrentHashMap<String, TrackedUrl>();
+
+  private ScheduledExecutorService scheduler;
+  private ThreadPoolExecutor renderer;
+
+  private final AtomicLong renderCount = new AtomicLong();
+  private final AtomicLong busyCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+
+  @Inject
+  PrerenderQueue(Provider<PageFetcher> pageFetcherProvider,
+      Logger logger) {
+    // The page fetcher records the hits of this queue, it can't be injected directly
+    this.pageFetcherProvider = pageFetcherProvider;
+    this.logger = logger;
+  }
+
+  /**
+   * Keeps a page rendered.
+   *
+   * @param url The URL of the page, as requested to the {@link CrawlServiceServlet}.
+   */
+  public void addUrl(String url) {
+    trackedUrls.putIfAbsent(url, new TrackedUrl(url));
+  }
+
+  /**
+   * Keeps several pages rendered, see {@link #addUrl(String)}.
+   *
+   * @param urls The URLs of the pages.
+   */
+  public void addUrls(Collection<String> urls) {
+    for (String url : urls) {
+      addUrl(url);
+    }
+  }
+
+  /**
+   * Keeps all the pages listed in a sitemap rendered, see {@link #addUrl(String)}.
+   *
+   * @param sitemapUrl The URL of the sitemap.
+   * @throws IOException If the sitemap can't be read.
+   */
+  public void addSitemap(String sitemapUrl) throws IOException {
+    Document sitemap;
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      sitemap = factory.newDocumentBuilder().parse(sitemapUrl);
+    } catch (ParserConfigurationException e) {
+      throw new IOException("Could not read the sitemap " + sitemapUrl, e);
+    } catch (SAXException e) {
+      throw new IOException("Could not read the sitemap " + sitemapUrl, e);
+    }
+
+    NodeList locations = sitemap.getElementsByTagName("loc");
+    for (int i = 0; i < locations.getLength(); i++) {
+      addUrl(locations.item(i).getTextContent().trim());
+    }
+  }
+
+  /**
+   * Counts a request for a page, the pages with the most requests are rendered first. Requests
+   * for pages that are not kept rendered are ignored.
+   *
+   * @param url The URL of the page.
+   */
+  public void recordHit(String url) {
+    TrackedUrl trackedUrl = trackedUrls.get(url);
+    if (trackedUrl != null) {
+      trackedUrl.hits.incrementAndGet();
+    }
+  }
+
+  /**
+   * Starts rendering the pages in background threads. Does nothing if the queue is already
+   * started.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+
+    ThreadFactory threadFactory = createThreadFactory();
+    renderer = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), threadFactory);
+    scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        queueDuePages();
+      }
+    }, 0, SCAN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the background threads started by {@link #start()}. The renders in progress are
+   * interrupted.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      renderer.shutdownNow();
+      scheduler = null;
+      renderer = null;
+    }
+  }
+
+  /**
+   * Renders all the pages that are about to expire in the calling thread, the pages with the
+   * most hits first. Use this instead of {@link #start()} when background threads are not
+   * allowed.
+   */
+  public void prerenderDuePages() {
+    for (TrackedUrl trackedUrl : getDueUrls()) {
+      if (trackedUrl.queued.compareAndSet(false, true)) {
+        prerender(trackedUrl);
+      }
+    }
+  }
+
+  /**
+   * @return The number of pages rendered.
+   */
+  public long getRenderCount() {
+    return renderCount.get();
+  }
+
+  /**
+   * @return The number of renders postponed because the {@link WebClientPool} was busy.
+   */
+  public long getBusyCount() {
+    return busyCount.get();
+  }
+
+  /**
+   * @return The number of renders that failed.
+   */
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "PrerenderQueue[pages=" + trackedUrls.size() + ", workers=" + workers
+        + ", renders=" + getRenderCount() + ", busy=" + getBusyCount()
+        + ", failures=" + getFailureCount() + "]";
+  }
+
+  private synchronized void queueDuePages() {
+    if (renderer == null) {
+      return;
+    }
+    for (TrackedUrl trackedUrl : getDueUrls()) {
+      if (trackedUrl.queued.compareAndSet(false, true)) {
+        renderer.execute(new PrerenderTask(trackedUrl));
+      }
+    }
+  }
+
+  private List<TrackedUrl> getDueUrls() {
+    long now = System.currentTimeMillis();
+    List<PrerenderTask> dueTasks = new ArrayList<PrerenderTask>();
+    for (TrackedUrl trackedUrl : trackedUrls.values()) {
+      if (trackedUrl.nextRenderMillis <= now && !trackedUrl.queued.get()) {
+        dueTasks.add(new PrerenderTask(trackedUrl));
+      }
+    }
+    Collections.sort(dueTasks);
+
+    List<TrackedUrl> dueUrls = new ArrayList<TrackedUrl>(dueTasks.size());
+    for (PrerenderTask dueTask : dueTasks) {
+      dueUrls.add(dueTask.trackedUrl);
+    }
+    return dueUrls;
+  }
+
+  private void prerender(TrackedUrl trackedUrl) {
+    long now = System.currentTimeMillis();
+    try {
+      CachedPage page = pageFetcherProvider.get().refreshPage(trackedUrl.url, getRefreshMillis());
+      if (page == PageFetcher.SERVICE_BUSY) {
+        busyCount.incrementAndGet();
+        trackedUrl.nextRenderMillis = now + RETRY_DELAY_MILLIS;
+      } else if (page == PageFetcher.FETCH_IN_PROGRESS || page.isFetchInProgress()) {
+        // A crawler request or another server is rendering it, check again later
+        trackedUrl.nextRenderMillis = now + SCAN_INTERVAL_MILLIS;
+      } else {
+        long fetchMillis = page.getFetchDate().getTime();
+        if (fetchMillis >= now) {
+          renderCount.incrementAndGet();
+        }
+        // A crawler request may have been answered with a page that is already due
+        trackedUrl.nextRenderMillis = Math.max(fetchMillis + getRefreshMillis(),
+            now + SCAN_INTERVAL_MILLIS);
+      }
+    } catch (IOException e) {
+      failed(trackedUrl, now, e);
+    } catch (RuntimeException e) {
+      failed(trackedUrl, now, e);
+    } finally {
+      trackedUrl.queued.set(false);
+    }
+  }
+
+  private void failed(TrackedUrl trackedUrl, long now, Exception e) {
+    failureCount.incrementAndGet();
+    trackedUrl.nextRenderMillis = now + RETRY_DELAY_MILLIS;
+    logger.log(Level.WARNING, "Could not prerender " + trackedUrl.url, e);
+  }
+
+  private long getRefreshMillis() {
+    return (long) (cachedPageTimeoutSec * 1000 * REFRESH_RATIO);
+  }
+
+  private ThreadFactory createThreadFactory() {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "gwtp-prerender-" + threadCount.incrementAndGet());
+        // Don't keep the server from shutting down
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * A bounded pool of configured {@link WebClient}s. At most {@link WebClientPoolSize} pages are
+ * rendered at the same time, other requests wait in line for at most
+ * {@link WebClientPoolTimeoutMillis}. A {@link WebClient} is replaced after
+ * {@link WebClientMaxRenders} pages, or as soon as a render fails.
+ * <p />
+ * Call {@link #warmUp()} to create the {@link WebClient}s ahead of the first requests, and use
+ * the pool like this:
+ *
+ * <pre>
+ * WebClient webClient = pool.acquire();
+ * if (webClient != null) {
+ *   boolean healthy = false;
+ *   try {
+ *     // Render the page
+ *     healthy = true;
+ *   } finally {
+ *     pool.release(webClient, healthy);
+ *   }
+ * }
+ * </pre>
+ * The statistics of the pool are logged at most every {@link #LOG_INTERVAL_MILLIS}. They can also
+ * be exported through JMX by calling {@link #exportTo(MBeanServer)}, under
+ * {@link #JMX_NAME}. Nothing is exported by default, since JMX is not available on every platform
+ * (Google App Engine for instance).
+ */
+@Singleton
+public class WebClientPool implements WebClientPoolMBean {
+
+  /**
+   * A {@link WebClient} of the pool, with the number of pages it rendered.
+   */
+  private static class PooledWebClient {
+    private final WebClient webClient;
+    private int renders;
+    private long acquireTimeMillis;
+
+    PooledWebClient(WebClient webClient) {
+      this.webClient = webClient;
+    }
+  }
+
+  /**
+   * The {@link ObjectName} under which the pool is exported, see {@link #exportTo(MBeanServer)}.
+   */
+  public static final String JMX_NAME = "com.gwtplatform.crawlerservice:type=WebClientPool";
+
+  /**
+   * The minimum delay between two logs of the statistics, in milliseconds.
+   */
+  public static final long LOG_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+  private static final String WARM_UP_URL = "about:blank";
+
+  @Inject(optional = true)
+  @WebClientPoolSize
+  private int size = 2;
+
+  @Inject(optional = true)
+  @WebClientPoolTimeoutMillis
+  private long timeoutMillis = 30000;
+
+  @Inject(optional = true)
+  @WebClientMaxRenders
+  private int maxRenders = 50;
+
+  private final Provider<WebClient> webClientProvider;
+  private final Logger logger;
+
+  private final BlockingDeque<PooledWebClient> idleWebClients =
+      new LinkedBlockingDeque<PooledWebClient>();
+  private final Map<WebClient, PooledWebClient> acquiredWebClients =
+      new ConcurrentHashMap<WebClient, PooledWebClient>();
+  private Semaphore permits;
+
+  private final AtomicLong acquireCount = new AtomicLong();
+  private final AtomicLong timeoutCount = new AtomicLong();
+  private final AtomicLong totalWaitMillis = new AtomicLong();
+  private final AtomicLong maxWaitMillis = new AtomicLong();
+  private final AtomicLong renderCount = new AtomicLong();
+  private final AtomicLong totalRenderMillis = new AtomicLong();
+  private final AtomicLong maxRenderMillis = new AtomicLong();
+  private final AtomicLong recycleCount = new AtomicLong();
+  private final AtomicLong lastLogMillis = new AtomicLong(System.currentTimeMillis());
+
+  private MBeanServer mBeanServer;
+
+  @Inject
+  WebClientPool(Provider<WebClient> webClientProvider,
+      Logger logger) {
+    this.webClientProvider = webClientProvider;
+    this.logger = logger;
+  }
+
+  /**
+   * Creates all the {@link WebClient}s of the pool that don't exist yet, and loads a blank page in
+   * each of them so that the javascript engine is ready for the first requests.
+   */
+  public void warmUp() {
+    int missing = size - idleWebClients.size() - acquiredWebClients.size();
+    for (int i = 0; i < missing; i++) {
+      idleWebClients.offerLast(createWebClient());
+    }
+  }
+
+  /**
+   * Waits for a {@link WebClient} to be available. The {@link WebClient} must be given back
+   * with {@link #release(WebClient, boolean)}.
+   *
+   * @return The {@link WebClient}, or {@code null} if none became available before the
+   *         {@link WebClientPoolTimeoutMillis} elapsed.
+   */
+  public WebClient acquire() {
+    long startMillis = System.currentTimeMillis();
+    boolean acquired;
+    try {
+      acquired = getPermits().tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    }
+    long waitMillis = System.currentTimeMillis() - startMillis;
+    totalWaitMillis.addAndGet(waitMillis);
+    updateMax(maxWaitMillis, waitMillis);
+    if (!acquired) {
+      timeoutCount.incrementAndGet();
+      return null;
+    }
+    acquireCount.incrementAndGet();
+
+    PooledWebClient pooledWebClient = idleWebClients.pollFirst();
+    if (pooledWebClient == null) {
+      try {
+        pooledWebClient = createWebClient();
+      } catch (RuntimeException e) {
+        getPermits().release();
+        throw e;
+      }
+    }
+    pooledWebClient.acquireTimeMillis = System.currentTimeMillis();
+    acquiredWebClients.put(pooledWebClient.webClient, pooledWebClient);
+    return pooledWebClient.webClient;
+  }
+
+  /**
+   * Gives back a {@link WebClient} obtained from {@link #acquire()}. Its windows are closed, and it
+   * is replaced if it is not healthy or has rendered {@link WebClientMaxRenders} pages.
+   *
+   * @param webClient The {@link WebClient}.
+   * @param healthy {@code false} if the render failed, in which case the {@link WebClient} is not
+   *          reused.
+   */
+  public void release(WebClient webClient, boolean healthy) {
+    PooledWebClient pooledWebClient = acquiredWebClients.remove(webClient);
+    if (pooledWebClient == null) {
+      throw new IllegalArgumentException("The WebClient was not acquired from this pool.");
+    }
+    long renderMillis = System.currentTimeMillis() - pooledWebClient.acquireTimeMillis;
+    renderCount.incrementAndGet();
+    totalRenderMillis.addAndGet(renderMillis);
+    updateMax(maxRenderMillis, renderMillis);
+
+    pooledWebClient.renders++;
+    boolean reusable = healthy && pooledWebClient.renders < maxRenders;
+    try {
+      webClient.closeAllWindows();
+    } catch (RuntimeException e) {
+      reusable = false;
+    }
+    if (reusable) {
+      // Reuse the most recently used clients first, their caches are the warmest.
+      idleWebClients.offerFirst(pooledWebClient);
+    } else {
+      recycleCount.incrementAndGet();
+    }
+    getPermits().release();
+    logStatistics();
+  }
+
+  /**
+   * Registers the pool with a JMX {@link MBeanServer}, under {@link #JMX_NAME}.
+   *
+   * @param mBeanServer The {@link MBeanServer}.
+   */
+  public synchronized void exportTo(MBeanServer mBeanServer) {
+    unexport();
+    try {
+      ObjectName name = new ObjectName(JMX_NAME);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(this, name);
+        this.mBeanServer = mBeanServer;
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Unable to export the WebClientPool", e);
+    }
+  }
+
+  /**
+   * Unregisters the pool exported by {@link #exportTo(MBeanServer)}.
+   */
+  public synchronized void unexport() {
+    if (mBeanServer == null) {
+      return;
+    }
+
+    try {
+      mBeanServer.unregisterMBean(new ObjectName(JMX_NAME));
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Unable to unregister the WebClientPool", e);
+    }
+    mBeanServer = null;
+  }
+
+  /**
+   * @return The maximum number of pages rendered at the same time.
+   */
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return The number of {@link WebClient}s waiting to be acquired.
+   */
+  @Override
+  public int getIdleCount() {
+    return idleWebClients.size();
+  }
+
+  /**
+   * @return The number of {@link WebClient}s successfully acquired.
+   */
+  @Override
+  public long getAcquireCount() {
+    return acquireCount.get();
+  }
+
+  /**
+   * @return The number of requests that gave up waiting for a {@link WebClient}.
+   */
+  @Override
+  public long getTimeoutCount() {
+    return timeoutCount.get();
+  }
+
+  /**
+   * @return The total time spent waiting for a {@link WebClient}, in milliseconds.
+   */
+  @Override
+  public long getTotalWaitMillis() {
+    return totalWaitMillis.get();
+  }
+
+  /**
+   * @return The longest time spent waiting for a {@link WebClient}, in milliseconds.
+   */
+  @Override
+  public long getMaxWaitMillis() {
+    return maxWaitMillis.get();
+  }
+
+  /**
+   * @return The number of {@link WebClient}s released, that is the number of pages rendered.
+   */
+  @Override
+  public long getRenderCount() {
+    return renderCount.get();
+  }
+
+  /**
+   * @return The total time during which {@link WebClient}s were acquired, in milliseconds.
+   */
+  @Override
+  public long getTotalRenderMillis() {
+    return totalRenderMillis.get();
+  }
+
+  /**
+   * @return The longest time during which a {@link WebClient} was acquired, in milliseconds.
+   */
+  @Override
+  public long getMaxRenderMillis() {
+    return maxRenderMillis.get();
+  }
+
+  /**
+   * @return The number of {@link WebClient}s that were discarded and replaced.
+   */
+  @Override
+  public long getRecycleCount() {
+    return recycleCount.get();
+  }
+
+  @Override
+  public String toString() {
+    long acquires = Math.max(1, getAcquireCount() + getTimeoutCount());
+    long renders = Math.max(1, getRenderCount());
+    return "WebClientPool[size=" + size + ", idle=" + getIdleCount()
+        + ", acquired=" + getAcquireCount() + ", timeouts=" + getTimeoutCount()
+        + ", averageWaitMillis=" + getTotalWaitMillis() / acquires
+        + ", maxWaitMillis=" + getMaxWaitMillis()
+        + ", renders=" + getRenderCount()
+        + ", averageRenderMillis=" + getTotalRenderMillis() / renders
+        + ", maxRenderMillis=" + getMaxRenderMillis()
+        + ", recycled=" + getRecycleCount() + "]";
+  }
+
+  private void logStatistics() {
+    long now = System.currentTimeMillis();
+    long last = lastLogMillis.get();
+    if (now - last >= LOG_INTERVAL_MILLIS && lastLogMillis.compareAndSet(last, now)
+        && logger.isLoggable(Level.INFO)) {
+      logger.info(toString());
+    }
+  }
+
+  private synchronized Semaphore getPermits() {
+    // Created lazily, the size is only known once the optional fields are injected.
+    if (permits == null) {
+      permits = new Semaphore(size, true);
+    }
+    return permits;
+  }
+
+  private PooledWebClient createWebClient() {
+    WebClient webClient = webClientProvider.get();
+    webClient.setCssEnabled(false);
+    webClient.setJavaScriptTimeout(0);
+    webClient.setThrowExceptionOnScriptError(false);
+    webClient.setThrowExceptionOnFailingStatusCode(false);
+    webClient.setJavaScriptEnabled(true);
+    try {
+      webClient.getPage(WARM_UP_URL);
+    } catch (IOException e) {
+      // The client is still usable, it just isn't warm.
+    } finally {
+      webClient.closeAllWindows();
+    }
+    return new PooledWebClient(webClient);
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+}
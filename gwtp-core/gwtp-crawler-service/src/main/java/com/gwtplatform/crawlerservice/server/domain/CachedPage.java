@@ -18,8 +18,12 @@ package com.gwtplatform.crawlerservice.server.domain;
 
 import java.util.Date;
 
+import javax.persistence.Transient;
+
 /**
- * Stores a cached version of a page.
+ * Stores a cached version of a page. The content is stored compressed, the
+ * {@link com.gwtplatform.crawlerservice.server.service.CachedPageDao} compresses it and hashes it
+ * when the page is stored, and uncompresses it when the page is loaded.
  *
  * @author Philippe Beaudoin
  */
@@ -27,7 +31,10 @@ public class CachedPage extends DatastoreObject {
   private String url;
   private Date fetchDate;
   private boolean fetchInProgress;
+  @Transient
   private String content;
+  private byte[] compressedContent;
+  private String contentHash;
 
   public void setUrl(String url) {
     this.url = url;
@@ -60,4 +67,23 @@ public class CachedPage extends DatastoreObject {
   public String getContent() {
     return content;
   }
+
+  public void setCompressedContent(byte[] compressedContent) {
+    this.compressedContent = compressedContent;
+  }
+
+  public byte[] getCompressedContent() {
+    return compressedContent;
+  }
+
+  public void setContentHash(String contentHash) {
+    this.contentHash = contentHash;
+  }
+
+  /**
+   * @return A hash of the content, used as the {@code ETag} of the page.
+   */
+  public String getContentHash() {
+    return contentHash;
+  }
 }
@@ -16,8 +16,6 @@
 
 package com.gwtplatform.crawlerservice.server.guice;
 
-import javax.inject.Singleton;
-
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.google.inject.Provides;
@@ -34,7 +32,10 @@ public class CrawlServiceModule extends ServletModule {
     serve("*").with(CrawlServiceServlet.class);
   }
 
-  @Singleton
+  /**
+   * Provides a new {@link WebClient} every time. The
+   * {@link com.gwtplatform.crawlerservice.server.WebClientPool} configures and reuses them.
+   */
   @Provides
   WebClient getWebClient() {
     return new WebClient(BrowserVersion.FIREFOX_3_6);
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.guice;
+
+import com.gwtplatform.crawler.server.InProcessCrawlService;
+import com.gwtplatform.crawlerservice.server.PageFetcher;
+
+/**
+ * Renders the pages for the {@link com.gwtplatform.crawler.server.CrawlFilter} in the same server,
+ * instead of calling a crawl service over HTTP. The filter shares the cache and the
+ * {@link com.gwtplatform.crawlerservice.server.WebClientPool} of the crawl service. Install this
+ * module instead of {@link CrawlServiceModule}, and filter the requests as usual:
+ *
+ * <pre>
+ * install(new InProcessCrawlModule());
+ * filter("/*").through(CrawlFilter.class);
+ * </pre>
+ *
+ * The {@link com.gwtplatform.crawler.server.ServiceUrl} and the
+ * {@link com.gwtplatform.crawler.server.ServiceKey} of the filter are not needed. Bind
+ * {@link com.gwtplatform.crawler.server.ServiceMaxConnections} below the number of request
+ * threads of the server, so that crawlers can't starve regular users.
+ */
+public class InProcessCrawlModule extends CrawlServiceModule {
+
+  @Override
+  public void configureServlets() {
+    bind(InProcessCrawlService.class).to(PageFetcher.class);
+  }
+}
@@ -16,12 +16,55 @@
 
 package com.gwtplatform.crawlerservice.server.service;
 
+import com.google.inject.ImplementedBy;
 import com.gwtplatform.crawlerservice.server.domain.CachedPage;
 
 /**
- * The DAO for a {@link CachedPage}.
+ * Stores the {@link CachedPage}s, at most one per URL. Pages are stored in the App Engine
+ * datastore by default, bind this interface to another implementation such as
+ * {@link FileCachedPageDao} to store them elsewhere:
  *
- * @author Philippe Beaudoin
+ * <pre>
+ * bind(CachedPageDao.class).to(FileCachedPageDao.class);
+ * </pre>
+ *
+ * Implementations must store the content of the pages compressed, see
+ * {@link CachedPage#getCompressedContent()}.
+ *
+ * @see CachedPageHotTier
  */
-public class CachedPageDao extends ObjectifyDao<CachedPage> {
-}
\ No newline at end of file
+@ImplementedBy(ObjectifyCachedPageDao.class)
+public interface CachedPageDao {
+
+  /**
+   * Finds the page stored for a URL. If several pages were stored for this URL, the most recent
+   * one is returned and the others may be deleted.
+   *
+   * @param url The URL of the page.
+   * @return The page, or {@code null} if there is none.
+   */
+  CachedPage find(String url);
+
+  /**
+   * Reads a page again, to see if it was changed by another server.
+   *
+   * @param page The page, previously returned by {@link #find(String)} or passed to
+   *          {@link #store(CachedPage)}.
+   * @return The page as currently stored, or {@code null} if it was removed or replaced.
+   */
+  CachedPage reload(CachedPage page);
+
+  /**
+   * Stores a page, replacing any page stored for the same URL.
+   *
+   * @param page The page.
+   */
+  void store(CachedPage page);
+
+  /**
+   * Removes a page. Nothing happens if it was already replaced by another page.
+   *
+   * @param page The page.
+   */
+  void remove(CachedPage page);
+}
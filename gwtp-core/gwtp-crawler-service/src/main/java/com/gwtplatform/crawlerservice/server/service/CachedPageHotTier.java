@@ -0,0 +1,166 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.gwtplatform.crawlerservice.server.CachedPageHotTierSize;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * Keeps the most recently used rendered pages in memory, in front of the {@link CachedPageDao}
+ * that stores them. Repeated requests for a page are served without reading the storage. At
+ * most {@link CachedPageHotTierSize} pages are kept, the least recently used ones are evicted
+ * first.
+ * <p />
+ * Only rendered pages are kept in memory, placeholders for pages being rendered are always read
+ * from the storage so that a render by another server is noticed. A page that another server
+ * rendered again can be served from memory until it expires, like any cached page.
+ * <p />
+ * The pages are kept uncompressed, without their compressed content, so that each page is held in
+ * memory only once and hits don't pay for uncompressing it.
+ */
+@Singleton
+public class CachedPageHotTier implements CachedPageDao {
+
+  @Inject(optional = true)
+  @CachedPageHotTierSize
+  private int maxPages = 100;
+
+  private final CachedPageDao storage;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private final Map<String, CachedPage> pages = new LinkedHashMap<String, CachedPage>(16, 0.75f,
+      true) {
+    private static final long serialVersionUID = 8236511324987561130L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+      if (size() > maxPages) {
+        evictionCount.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  @Inject
+  CachedPageHotTier(CachedPageDao storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public CachedPage find(String url) {
+    CachedPage page;
+    synchronized (pages) {
+      page = pages.get(url);
+    }
+    if (page != null) {
+      hitCount.incrementAndGet();
+      return page;
+    }
+
+    missCount.incrementAndGet();
+    page = storage.find(url);
+    if (page != null && !page.isFetchInProgress()) {
+      synchronized (pages) {
+        pages.put(url, toHotPage(page));
+      }
+    }
+    return page;
+  }
+
+  @Override
+  public CachedPage reload(CachedPage page) {
+    return storage.reload(page);
+  }
+
+  @Override
+  public void store(CachedPage page) {
+    storage.store(page);
+    synchronized (pages) {
+      if (page.isFetchInProgress()) {
+        pages.remove(page.getUrl());
+      } else {
+        pages.put(page.getUrl(), toHotPage(page));
+      }
+    }
+  }
+
+  @Override
+  public void remove(CachedPage page) {
+    synchronized (pages) {
+      CachedPage hotPage = pages.get(page.getUrl());
+      if (hotPage != null && hotPage.getId().equals(page.getId())) {
+        pages.remove(page.getUrl());
+      }
+    }
+    storage.remove(page);
+  }
+
+  /**
+   * @return The number of pages found in memory.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return The number of pages looked up in the storage.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return The number of pages evicted from memory to make room for others.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Copies a page without its compressed content, the only form kept in memory.
+   */
+  private CachedPage toHotPage(CachedPage page) {
+    CachedPage hotPage = new CachedPage();
+    hotPage.setId(page.getId());
+    hotPage.setUrl(page.getUrl());
+    hotPage.setFetchDate(page.getFetchDate());
+    hotPage.setContent(page.getContent());
+    hotPage.setContentHash(page.getContentHash());
+    return hotPage;
+  }
+
+  @Override
+  public String toString() {
+    int size;
+    synchronized (pages) {
+      size = pages.size();
+    }
+    return "CachedPageHotTier[maxPages=" + maxPages + ", pages=" + size
+        + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+        + ", evictions=" + getEvictionCount() + "]";
+  }
+}
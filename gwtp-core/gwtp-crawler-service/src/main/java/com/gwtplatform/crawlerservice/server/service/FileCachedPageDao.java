@@ -0,0 +1,209 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.gwtplatform.crawlerservice.server.CachedPageDirectory;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * The {@link CachedPageDao} storing the pages in the local file system, for deployments outside
+ * of App Engine. Each page is stored, compressed, in its own file of the
+ * {@link CachedPageDirectory}. Files are replaced atomically, so pages can be read without
+ * locking.
+ */
+@Singleton
+public class FileCachedPageDao implements CachedPageDao {
+
+  private static final String CHAR_ENCODING = "UTF-8";
+
+  private static final String FILE_SUFFIX = ".page";
+
+  /**
+   * Written at the start of each file, so that files written by another version are ignored.
+   */
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int NO_CONTENT = -1;
+
+  @Inject(optional = true)
+  @CachedPageDirectory
+  private String directoryName = new File(System.getProperty("java.io.tmpdir"),
+      "gwtp-crawler").getPath();
+
+  private final AtomicLong lastId = new AtomicLong(System.currentTimeMillis());
+
+  private File directory;
+
+  @Override
+  public CachedPage find(String url) {
+    CachedPage page = read(getFile(url));
+    if (page == null || !url.equals(page.getUrl())) {
+      return null;
+    }
+    PageCompression.uncompress(page);
+    return page;
+  }
+
+  @Override
+  public CachedPage reload(CachedPage page) {
+    CachedPage storedPage = find(page.getUrl());
+    if (storedPage == null || !storedPage.getId().equals(page.getId())) {
+      return null;
+    }
+    return storedPage;
+  }
+
+  @Override
+  public synchronized void store(CachedPage page) {
+    if (page.getId() == null) {
+      page.setId(lastId.incrementAndGet());
+    }
+    PageCompression.compress(page);
+
+    File file = getFile(page.getUrl());
+    try {
+      File tempFile = File.createTempFile("page", ".tmp", getDirectory());
+      write(page, tempFile);
+      if (!tempFile.renameTo(file)) {
+        // Some platforms don't rename over an existing file
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+          tempFile.delete();
+          throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not store the page for " + page.getUrl(), e);
+    }
+  }
+
+  @Override
+  public synchronized void remove(CachedPage page) {
+    if (reload(page) != null) {
+      getFile(page.getUrl()).delete();
+    }
+  }
+
+  private CachedPage read(File file) {
+    DataInputStream in;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+
+    try {
+      if (in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      CachedPage page = new CachedPage();
+      page.setId(in.readLong());
+      page.setUrl(in.readUTF());
+      page.setFetchDate(new Date(in.readLong()));
+      page.setFetchInProgress(in.readBoolean());
+      int length = in.readInt();
+      if (length != NO_CONTENT) {
+        byte[] compressedContent = new byte[length];
+        in.readFully(compressedContent);
+        page.setCompressedContent(compressedContent);
+        page.setContentHash(in.readUTF());
+      }
+      return page;
+    } catch (IOException e) {
+      // The file is corrupted, treat it like a missing page
+      return null;
+    } finally {
+      close(in);
+    }
+  }
+
+  private void write(CachedPage page, File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file)));
+    try {
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(page.getId());
+      out.writeUTF(page.getUrl());
+      out.writeLong(page.getFetchDate().getTime());
+      out.writeBoolean(page.isFetchInProgress());
+      byte[] compressedContent = page.getCompressedContent();
+      if (compressedContent == null) {
+        out.writeInt(NO_CONTENT);
+      } else {
+        out.writeInt(compressedContent.length);
+        out.write(compressedContent);
+        out.writeUTF(page.getContentHash());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private void close(DataInputStream in) {
+    try {
+      in.close();
+    } catch (IOException e) {
+      // Nothing was written, nothing is lost
+    }
+  }
+
+  /**
+   * The file of a page is named after a hash of its URL, URLs can be too long or contain
+   * characters that are not allowed in file names.
+   */
+  private File getFile(String url) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-1").digest(url.getBytes(CHAR_ENCODING));
+      return new File(getDirectory(), PageCompression.toHex(hash) + FILE_SUFFIX);
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM supports SHA-1
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      // Every JVM supports UTF-8
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private synchronized File getDirectory() {
+    // Created lazily, the name is only known once the optional fields are injected.
+    if (directory == null) {
+      File newDirectory = new File(directoryName);
+      if (!newDirectory.isDirectory() && !newDirectory.mkdirs()) {
+        throw new IllegalStateException("Could not create the directory " + newDirectory);
+      }
+      directory = newDirectory;
+    }
+    return directory;
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.googlecode.objectify.Key;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * The {@link CachedPageDao} storing the pages in the App Engine datastore.
+ */
+public class ObjectifyCachedPageDao extends ObjectifyDao<CachedPage> implements CachedPageDao {
+
+  @Override
+  public CachedPage find(String url) {
+    List<Key<CachedPage>> keys = listKeysByProperty("url", url);
+    if (keys.isEmpty()) {
+      return null;
+    }
+
+    Map<Key<CachedPage>, CachedPage> pages = get(keys);
+    CachedPage mostRecentPage = null;
+    for (CachedPage page : pages.values()) {
+      if (mostRecentPage == null || page.getFetchDate().after(mostRecentPage.getFetchDate())) {
+        mostRecentPage = page;
+      }
+    }
+    if (mostRecentPage != null && !mostRecentPage.isFetchInProgress()
+        && mostRecentPage.getCompressedContent() == null) {
+      // Stored before the content was compressed, render it again
+      mostRecentPage = null;
+    } else if (mostRecentPage != null) {
+      pages.remove(key(mostRecentPage));
+    }
+    if (!pages.isEmpty()) {
+      deleteKeys(pages.keySet());
+    }
+    return uncompress(mostRecentPage);
+  }
+
+  @Override
+  public CachedPage reload(CachedPage page) {
+    try {
+      return uncompress(get(key(page)));
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void store(CachedPage page) {
+    PageCompression.compress(page);
+    put(page);
+  }
+
+  @Override
+  public void remove(CachedPage page) {
+    delete(page);
+  }
+
+  private CachedPage uncompress(CachedPage page) {
+    if (page != null) {
+      PageCompression.uncompress(page);
+    }
+    return page;
+  }
+}
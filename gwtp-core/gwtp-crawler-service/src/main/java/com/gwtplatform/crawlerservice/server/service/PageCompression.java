@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * Compresses the content of the {@link CachedPage}s with gzip. Rendered pages are repetitive
+ * markup and typically shrink to a fifth of their size.
+ */
+final class PageCompression {
+
+  private static final String CHAR_ENCODING = "UTF-8";
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private PageCompression() {
+  }
+
+  /**
+   * Sets the compressed content and the content hash of a page from its content.
+   *
+   * @param page The page.
+   */
+  static void compress(CachedPage page) {
+    String content = page.getContent();
+    page.setCompressedContent(content == null ? null : compress(content));
+    page.setContentHash(content == null ? null : hash(content));
+  }
+
+  /**
+   * Sets the content of a page from its compressed content.
+   *
+   * @param page The page.
+   */
+  static void uncompress(CachedPage page) {
+    byte[] compressedContent = page.getCompressedContent();
+    page.setContent(compressedContent == null ? null : uncompress(compressedContent));
+  }
+
+  static byte[] compress(String content) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length() / 4);
+      OutputStream out = new GZIPOutputStream(bytes, BUFFER_SIZE);
+      out.write(content.getBytes(CHAR_ENCODING));
+      out.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Can't happen when writing to memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String hash(String content) {
+    try {
+      return toHex(MessageDigest.getInstance("MD5").digest(content.getBytes(CHAR_ENCODING)));
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM supports MD5
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      // Every JVM supports UTF-8
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+    }
+    return hex.toString();
+  }
+
+  static String uncompress(byte[] compressedContent) {
+    try {
+      InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressedContent),
+          BUFFER_SIZE);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressedContent.length * 4);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, count);
+      }
+      in.close();
+      return bytes.toString(CHAR_ENCODING);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("The content of the page is corrupted.", e);
+    }
+  }
+}
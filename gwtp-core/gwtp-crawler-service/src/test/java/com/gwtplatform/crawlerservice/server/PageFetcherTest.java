@@ -0,0 +1,211 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+import com.gwtplatform.crawlerservice.server.service.CachedPageDao;
+import com.gwtplatform.crawlerservice.server.service.InMemoryCachedPageDao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link PageFetcher}.
+ */
+public class PageFetcherTest {
+
+  private static final String URL = "http://example.com/?#!place";
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private PageRenderer pageRenderer;
+  private PrerenderQueue prerenderQueue;
+  private InMemoryCachedPageDao storage;
+  private PageFetcher pageFetcher;
+
+  @Before
+  public void setUp() {
+    pageRenderer = mock(PageRenderer.class);
+    prerenderQueue = mock(PrerenderQueue.class);
+    storage = new InMemoryCachedPageDao();
+    pageFetcher = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(PageRenderer.class).toInstance(pageRenderer);
+        bind(PrerenderQueue.class).toInstance(prerenderQueue);
+        bind(CachedPageDao.class).toInstance(storage);
+      }
+    }).getInstance(PageFetcher.class);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentFetchesOfAPageShareOneRender() throws Exception {
+    // Given
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch renderDone = new CountDownLatch(1);
+    when(pageRenderer.renderPage(URL)).thenAnswer(new Answer<StringBuilder>() {
+      @Override
+      public StringBuilder answer(InvocationOnMock invocation) throws InterruptedException {
+        rendering.countDown();
+        renderDone.await();
+        return new StringBuilder("rendered");
+      }
+    });
+    final CountDownLatch secondFetch = new CountDownLatch(2);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        secondFetch.countDown();
+        return null;
+      }
+    }).when(prerenderQueue).recordHit(URL);
+
+    // When
+    Future<CachedPage> first = executor.submit(fetch());
+    assertTrue(rendering.await(5, TimeUnit.SECONDS));
+    Future<CachedPage> second = executor.submit(fetch());
+    assertTrue(secondFetch.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    renderDone.countDown();
+
+    // Then
+    CachedPage page = first.get(5, TimeUnit.SECONDS);
+    assertEquals("rendered", page.getContent());
+    assertSame(page, second.get(5, TimeUnit.SECONDS));
+    verify(pageRenderer, times(1)).renderPage(URL);
+  }
+
+  @Test
+  public void failedFetchIsForgotten() throws Exception {
+    // Given
+    when(pageRenderer.renderPage(URL)).thenThrow(new IOException("Render failed"))
+        .thenReturn(new StringBuilder("rendered"));
+    try {
+      pageFetcher.fetchPage(URL);
+      fail("The render failure should be thrown");
+    } catch (IOException e) {
+      // Expected
+    }
+    assertNull(storage.find(URL));
+
+    // When
+    CachedPage page = pageFetcher.fetchPage(URL);
+
+    // Then
+    assertEquals("rendered", page.getContent());
+    verify(pageRenderer, times(2)).renderPage(URL);
+  }
+
+  @Test
+  public void busyRendererAnswersServiceBusy() throws Exception {
+    // Given
+    when(pageRenderer.renderPage(URL)).thenReturn(null);
+
+    // When
+    CachedPage page = pageFetcher.fetchPage(URL);
+
+    // Then
+    assertSame(PageFetcher.SERVICE_BUSY, page);
+    assertNull(storage.find(URL));
+    assertNull(pageFetcher.fetchSnapshot(URL));
+  }
+
+  @Test
+  public void cachedPageIsNotRenderedAgain() throws Exception {
+    // Given
+    when(pageRenderer.renderPage(URL)).thenReturn(new StringBuilder("rendered"));
+    CachedPage page = pageFetcher.fetchPage(URL);
+
+    // When
+    CachedPage cachedPage = pageFetcher.fetchPage(URL);
+
+    // Then
+    assertEquals(page.getId(), cachedPage.getId());
+    assertEquals("rendered", cachedPage.getContent());
+    verify(pageRenderer, times(1)).renderPage(URL);
+  }
+
+  @Test
+  public void pageRenderedByAnotherServerIsWaitedFor() throws Exception {
+    // Given
+    final CachedPage placeholder = new CachedPage();
+    placeholder.setUrl(URL);
+    placeholder.setFetchDate(new Date());
+    placeholder.setFetchInProgress(true);
+    storage.store(placeholder);
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        Thread.sleep(150);
+        CachedPage page = new CachedPage();
+        page.setId(placeholder.getId());
+        page.setUrl(URL);
+        page.setFetchDate(placeholder.getFetchDate());
+        page.setContent("rendered elsewhere");
+        storage.store(page);
+        return null;
+      }
+    });
+
+    // When
+    CachedPage page = pageFetcher.fetchPage(URL);
+
+    // Then
+    assertEquals("rendered elsewhere", page.getContent());
+    verify(pageRenderer, never()).renderPage(URL);
+  }
+
+  private Callable<CachedPage> fetch() {
+    return new Callable<CachedPage>() {
+      @Override
+      public CachedPage call() throws IOException {
+        return pageFetcher.fetchPage(URL);
+      }
+    };
+  }
+}
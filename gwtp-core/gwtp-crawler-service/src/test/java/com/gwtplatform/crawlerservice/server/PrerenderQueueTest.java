@@ -0,0 +1,231 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+import com.gwtplatform.crawlerservice.server.service.CachedPageDao;
+import com.gwtplatform.crawlerservice.server.service.InMemoryCachedPageDao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link PrerenderQueue}.
+ */
+public class PrerenderQueueTest {
+
+  private static final String URL = "http://example.com/?#!place";
+
+  /**
+   * Pages are rendered again after 80 seconds.
+   */
+  private static final long TIMEOUT_SEC = 100;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private PageRenderer pageRenderer;
+  private InMemoryCachedPageDao storage;
+  private PageFetcher pageFetcher;
+  private PrerenderQueue prerenderQueue;
+
+  @Before
+  public void setUp() {
+    pageRenderer = mock(PageRenderer.class);
+    storage = new InMemoryCachedPageDao();
+    Injector injector = createInjector();
+    pageFetcher = injector.getInstance(PageFetcher.class);
+    prerenderQueue = injector.getInstance(PrerenderQueue.class);
+    prerenderQueue.addUrl(URL);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void duePageIsRenderedAgainWhileThePreviousOneIsServed() throws Exception {
+    // Given
+    storePage("previous", 90);
+    final PageFetcher otherServer = createInjector().getInstance(PageFetcher.class);
+    final String[] contentDuringRender = new String[2];
+    when(pageRenderer.renderPage(URL)).thenAnswer(new Answer<StringBuilder>() {
+      @Override
+      public StringBuilder answer(InvocationOnMock invocation) throws IOException {
+        CachedPage placeholder = storage.find(URL);
+        assertTrue(placeholder.isFetchInProgress());
+        contentDuringRender[0] = placeholder.getContent();
+        contentDuringRender[1] = otherServer.fetchPage(URL).getContent();
+        return new StringBuilder("rendered");
+      }
+    });
+
+    // When
+    prerenderQueue.prerenderDuePages();
+
+    // Then
+    assertEquals("previous", contentDuringRender[0]);
+    assertEquals("previous", contentDuringRender[1]);
+    verify(pageRenderer, times(1)).renderPage(URL);
+    assertEquals("rendered", storage.find(URL).getContent());
+    assertFalse(storage.find(URL).isFetchInProgress());
+    assertEquals(1, prerenderQueue.getRenderCount());
+  }
+
+  @Test
+  public void crawlerRequestDuringPrerenderSharesTheRender() throws Exception {
+    // Given
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch renderDone = new CountDownLatch(1);
+    when(pageRenderer.renderPage(URL)).thenAnswer(new Answer<StringBuilder>() {
+      @Override
+      public StringBuilder answer(InvocationOnMock invocation) throws InterruptedException {
+        rendering.countDown();
+        renderDone.await();
+        return new StringBuilder("rendered");
+      }
+    });
+
+    // When
+    Future<?> prerender = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        prerenderQueue.prerenderDuePages();
+      }
+    });
+    assertTrue(rendering.await(5, TimeUnit.SECONDS));
+    Future<CachedPage> fetch = executor.submit(new Callable<CachedPage>() {
+      @Override
+      public CachedPage call() throws IOException {
+        return pageFetcher.fetchPage(URL);
+      }
+    });
+    Thread.sleep(100);
+    renderDone.countDown();
+    prerender.get(5, TimeUnit.SECONDS);
+
+    // Then
+    assertEquals("rendered", fetch.get(5, TimeUnit.SECONDS).getContent());
+    verify(pageRenderer, times(1)).renderPage(URL);
+    assertEquals(1, prerenderQueue.getRenderCount());
+  }
+
+  @Test
+  public void freshPageIsNotRenderedAgain() throws Exception {
+    // Given
+    storePage("fresh", 10);
+
+    // When
+    prerenderQueue.prerenderDuePages();
+
+    // Then
+    verify(pageRenderer, never()).renderPage(URL);
+    assertEquals(0, prerenderQueue.getRenderCount());
+  }
+
+  @Test
+  public void pageRenderedByAnotherServerIsNotRenderedAgain() throws Exception {
+    // Given
+    CachedPage placeholder = storePage(null, 10);
+    placeholder.setFetchInProgress(true);
+
+    // When
+    prerenderQueue.prerenderDuePages();
+
+    // Then
+    verify(pageRenderer, never()).renderPage(URL);
+    assertEquals(0, prerenderQueue.getRenderCount());
+  }
+
+  @Test
+  public void failedRenderKeepsThePreviousPage() throws Exception {
+    // Given
+    storePage("previous", 90);
+    when(pageRenderer.renderPage(URL)).thenThrow(new IOException("Render failed"));
+
+    // When
+    prerenderQueue.prerenderDuePages();
+
+    // Then
+    assertEquals("previous", storage.find(URL).getContent());
+    assertFalse(storage.find(URL).isFetchInProgress());
+    assertEquals(1, prerenderQueue.getFailureCount());
+    assertEquals("previous", pageFetcher.fetchPage(URL).getContent());
+  }
+
+  @Test
+  public void busyRendererKeepsThePreviousPage() throws Exception {
+    // Given
+    storePage("previous", 90);
+    when(pageRenderer.renderPage(URL)).thenReturn(null);
+
+    // When
+    prerenderQueue.prerenderDuePages();
+
+    // Then
+    assertEquals("previous", storage.find(URL).getContent());
+    assertEquals(1, prerenderQueue.getBusyCount());
+    assertEquals(0, prerenderQueue.getRenderCount());
+  }
+
+  /**
+   * Each injector stands for a server, they share the storage of the pages.
+   */
+  private Injector createInjector() {
+    return Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bindConstant().annotatedWith(CachedPageTimeoutSec.class).to(TIMEOUT_SEC);
+        bind(PageRenderer.class).toInstance(pageRenderer);
+        bind(CachedPageDao.class).toInstance(storage);
+      }
+    });
+  }
+
+  private CachedPage storePage(String content, long ageSec) {
+    CachedPage page = new CachedPage();
+    page.setUrl(URL);
+    page.setFetchDate(new Date(System.currentTimeMillis() - ageSec * 1000));
+    page.setContent(content);
+    storage.store(page);
+    return page;
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WebClientPool}.
+ */
+public class WebClientPoolTest {
+
+  /**
+   * Provides mock {@link WebClient}s, remembering them.
+   */
+  private static class MockWebClientProvider implements Provider<WebClient> {
+    private final List<WebClient> created = new ArrayList<WebClient>();
+
+    @Override
+    public synchronized WebClient get() {
+      WebClient webClient = mock(WebClient.class);
+      created.add(webClient);
+      return webClient;
+    }
+  }
+
+  private final MockWebClientProvider webClientProvider = new MockWebClientProvider();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void acquireGivesUpWhenAllWebClientsAreBusy() {
+    // Given
+    WebClientPool pool = createPool(1, 50, 10);
+    WebClient webClient = pool.acquire();
+
+    // When
+    WebClient other = pool.acquire();
+
+    // Then
+    assertNotNull(webClient);
+    assertNull(other);
+    assertEquals(1, pool.getAcquireCount());
+    assertEquals(1, pool.getTimeoutCount());
+  }
+
+  @Test
+  public void acquireWaitsForAWebClientToBeReleased() throws Exception {
+    // Given
+    final WebClientPool pool = createPool(1, 10000, 10);
+    WebClient webClient = pool.acquire();
+    Future<WebClient> waiting = executor.submit(new Callable<WebClient>() {
+      @Override
+      public WebClient call() {
+        return pool.acquire();
+      }
+    });
+    Thread.sleep(50);
+    assertFalse(waiting.isDone());
+
+    // When
+    pool.release(webClient, true);
+
+    // Then
+    assertSame(webClient, waiting.get(5, TimeUnit.SECONDS));
+    assertEquals(0, pool.getTimeoutCount());
+  }
+
+  @Test
+  public void mostRecentlyReleasedWebClientIsReusedFirst() {
+    // Given
+    WebClientPool pool = createPool(2, 50, 10);
+    WebClient first = pool.acquire();
+    WebClient second = pool.acquire();
+
+    // When
+    pool.release(first, true);
+    pool.release(second, true);
+
+    // Then
+    assertEquals(2, pool.getIdleCount());
+    assertSame(second, pool.acquire());
+    assertSame(first, pool.acquire());
+    assertEquals(2, webClientProvider.created.size());
+  }
+
+  @Test
+  public void webClientIsReplacedAfterMaxRenders() {
+    // Given
+    WebClientPool pool = createPool(1, 50, 2);
+    WebClient webClient = pool.acquire();
+    pool.release(webClient, true);
+    assertSame(webClient, pool.acquire());
+
+    // When
+    pool.release(webClient, true);
+
+    // Then
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(1, pool.getRecycleCount());
+    WebClient replacement = pool.acquire();
+    assertNotSame(webClient, replacement);
+    assertEquals(2, webClientProvider.created.size());
+    // Once after the warm up page, then after each render
+    verify(webClient, times(3)).closeAllWindows();
+  }
+
+  @Test
+  public void unhealthyWebClientIsReplaced() {
+    // Given
+    WebClientPool pool = createPool(1, 50, 10);
+    WebClient webClient = pool.acquire();
+
+    // When
+    pool.release(webClient, false);
+
+    // Then
+    assertEquals(1, pool.getRecycleCount());
+    assertNotSame(webClient, pool.acquire());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void releasingAnUnknownWebClientFails() {
+    createPool(1, 50, 10).release(mock(WebClient.class), true);
+  }
+
+  @Test
+  public void warmUpCreatesTheMissingWebClients() {
+    // Given
+    WebClientPool pool = createPool(3, 50, 10);
+    pool.acquire();
+
+    // When
+    pool.warmUp();
+
+    // Then
+    assertEquals(2, pool.getIdleCount());
+    assertEquals(3, webClientProvider.created.size());
+  }
+
+  @Test
+  public void statisticsCanBeExportedThroughJmx() throws Exception {
+    // Given
+    WebClientPool pool = createPool(1, 50, 10);
+    pool.release(pool.acquire(), true);
+    MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+    ObjectName name = new ObjectName(WebClientPool.JMX_NAME);
+
+    // When
+    pool.exportTo(mBeanServer);
+
+    // Then
+    assertEquals(1L, mBeanServer.getAttribute(name, "RenderCount"));
+    assertEquals(1, mBeanServer.getAttribute(name, "Size"));
+    pool.unexport();
+    assertFalse(mBeanServer.isRegistered(name));
+    assertTrue(pool.toString().contains("renders=1"));
+  }
+
+  private WebClientPool createPool(final int size, final long timeoutMillis,
+      final int maxRenders) {
+    return Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bindConstant().annotatedWith(WebClientPoolSize.class).to(size);
+        bindConstant().annotatedWith(WebClientPoolTimeoutMillis.class).to(timeoutMillis);
+        bindConstant().annotatedWith(WebClientMaxRenders.class).to(maxRenders);
+        bind(WebClient.class).toProvider(webClientProvider);
+      }
+    }).getInstance(WebClientPool.class);
+  }
+}
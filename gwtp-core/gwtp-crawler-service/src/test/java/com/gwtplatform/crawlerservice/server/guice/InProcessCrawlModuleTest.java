@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.guice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.gwtplatform.crawler.server.CrawlFilter;
+import com.gwtplatform.crawlerservice.server.PageRenderer;
+import com.gwtplatform.crawlerservice.server.service.CachedPageDao;
+import com.gwtplatform.crawlerservice.server.service.InMemoryCachedPageDao;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link InProcessCrawlModule}, rendering pages for the {@link CrawlFilter} in
+ * the same server.
+ */
+public class InProcessCrawlModuleTest {
+
+  private static final String PAGE_NAME = "http://localhost:8080/index.html#!place";
+
+  private PageRenderer pageRenderer;
+  private CrawlFilter crawlFilter;
+
+  @Before
+  public void setUp() throws Exception {
+    pageRenderer = mock(PageRenderer.class);
+    when(pageRenderer.renderPage(PAGE_NAME)).thenReturn(new StringBuilder("rendered"));
+    Injector injector = Guice.createInjector(new InProcessCrawlModule(), new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(PageRenderer.class).toInstance(pageRenderer);
+        bind(CachedPageDao.class).to(InMemoryCachedPageDao.class);
+      }
+    });
+    crawlFilter = injector.getInstance(CrawlFilter.class);
+    crawlFilter.init(null);
+  }
+
+  @Test
+  public void pageIsRenderedInProcessAndCached() throws Exception {
+    // Given
+    ByteArrayOutputStream firstBody = new ByteArrayOutputStream();
+    crawlFilter.doFilter(createRequest(), createResponse(firstBody), mock(FilterChain.class));
+    ByteArrayOutputStream secondBody = new ByteArrayOutputStream();
+
+    // When
+    crawlFilter.doFilter(createRequest(), createResponse(secondBody), mock(FilterChain.class));
+
+    // Then
+    assertEquals("rendered", firstBody.toString("UTF-8"));
+    assertEquals("rendered", secondBody.toString("UTF-8"));
+    verify(pageRenderer, times(1)).renderPage(PAGE_NAME);
+  }
+
+  @Test
+  public void crawlerWithTheCurrentPageGetsNotModified() throws Exception {
+    // Given
+    HttpServletResponse firstResponse = createResponse(new ByteArrayOutputStream());
+    crawlFilter.doFilter(createRequest(), firstResponse, mock(FilterChain.class));
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    verify(firstResponse).setHeader(eq("ETag"), etag.capture());
+    HttpServletRequest request = createRequest();
+    when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    HttpServletResponse response = createResponse(body);
+
+    // When
+    crawlFilter.doFilter(request, response, mock(FilterChain.class));
+
+    // Then
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals(0, body.size());
+  }
+
+  @Test
+  public void busyRendererAnswersServiceUnavailable() throws Exception {
+    // Given
+    when(pageRenderer.renderPage(PAGE_NAME)).thenReturn(null);
+    HttpServletResponse response = createResponse(new ByteArrayOutputStream());
+
+    // When
+    crawlFilter.doFilter(createRequest(), response, mock(FilterChain.class));
+
+    // Then
+    verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    verify(response).setHeader("Retry-After", "30");
+    verify(pageRenderer, times(1)).renderPage(PAGE_NAME);
+  }
+
+  private HttpServletRequest createRequest() {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getQueryString()).thenReturn("_escaped_fragment_=place");
+    when(request.getScheme()).thenReturn("http");
+    when(request.getServerName()).thenReturn("localhost");
+    when(request.getServerPort()).thenReturn(8080);
+    when(request.getRequestURI()).thenReturn("/index.html");
+    return request;
+  }
+
+  private HttpServletResponse createResponse(final ByteArrayOutputStream body)
+      throws IOException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        body.write(b);
+      }
+    });
+    return response;
+  }
+}
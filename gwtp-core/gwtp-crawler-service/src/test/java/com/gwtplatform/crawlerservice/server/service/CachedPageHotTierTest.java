@@ -0,0 +1,162 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.Date;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.gwtplatform.crawlerservice.server.CachedPageHotTierSize;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedPageHotTier}.
+ */
+public class CachedPageHotTierTest {
+
+  private CachedPageDao storage;
+  private CachedPageHotTier hotTier;
+
+  @Before
+  public void setUp() {
+    storage = spy(new InMemoryCachedPageDao());
+    hotTier = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bindConstant().annotatedWith(CachedPageHotTierSize.class).to(2);
+        bind(CachedPageDao.class).toInstance(storage);
+      }
+    }).getInstance(CachedPageHotTier.class);
+  }
+
+  @Test
+  public void storedPageIsFoundInMemory() {
+    // Given
+    hotTier.store(createPage("a", false));
+
+    // When
+    CachedPage page = hotTier.find("a");
+
+    // Then
+    assertEquals("content of a", page.getContent());
+    verify(storage, times(0)).find("a");
+    assertEquals(1, hotTier.getHitCount());
+    assertEquals(0, hotTier.getMissCount());
+  }
+
+  @Test
+  public void pagesAreKeptUncompressedOnly() {
+    // Given
+    CachedPage storedPage = createPage("a", false);
+    storedPage.setCompressedContent(PageCompression.compress(storedPage.getContent()));
+    hotTier.store(storedPage);
+
+    // When
+    CachedPage page = hotTier.find("a");
+
+    // Then
+    assertNotSame(storedPage, page);
+    assertEquals("content of a", page.getContent());
+    assertNull(page.getCompressedContent());
+  }
+
+  @Test
+  public void leastRecentlyUsedPageIsEvicted() {
+    // Given
+    hotTier.store(createPage("a", false));
+    hotTier.store(createPage("b", false));
+    hotTier.find("a");
+
+    // When
+    hotTier.store(createPage("c", false));
+
+    // Then
+    assertEquals(1, hotTier.getEvictionCount());
+    hotTier.find("a");
+    hotTier.find("c");
+    verify(storage, times(0)).find("a");
+    verify(storage, times(0)).find("c");
+    assertEquals("content of b", hotTier.find("b").getContent());
+    verify(storage).find("b");
+    assertEquals(1, hotTier.getMissCount());
+  }
+
+  @Test
+  public void pageFoundInStorageIsKeptInMemory() {
+    // Given
+    storage.store(createPage("a", false));
+    hotTier.find("a");
+
+    // When
+    hotTier.find("a");
+
+    // Then
+    verify(storage, times(1)).find("a");
+    assertEquals(1, hotTier.getHitCount());
+    assertEquals(1, hotTier.getMissCount());
+  }
+
+  @Test
+  public void placeholderIsAlwaysReadFromStorage() {
+    // Given
+    hotTier.store(createPage("a", false));
+    hotTier.store(createPage("a", true));
+
+    // When
+    hotTier.find("a");
+    hotTier.find("a");
+
+    // Then
+    verify(storage, times(2)).find("a");
+    assertEquals(0, hotTier.getHitCount());
+  }
+
+  @Test
+  public void removedPageIsForgotten() {
+    // Given
+    hotTier.store(createPage("a", false));
+    CachedPage page = hotTier.find("a");
+
+    // When
+    hotTier.remove(page);
+
+    // Then
+    assertNull(hotTier.find("a"));
+    assertNull(storage.find("a"));
+  }
+
+  private CachedPage createPage(String url, boolean fetchInProgress) {
+    CachedPage page = new CachedPage();
+    page.setUrl(url);
+    page.setFetchDate(new Date());
+    page.setFetchInProgress(fetchInProgress);
+    if (!fetchInProgress) {
+      page.setContent("content of " + url);
+    }
+    return page;
+  }
+}
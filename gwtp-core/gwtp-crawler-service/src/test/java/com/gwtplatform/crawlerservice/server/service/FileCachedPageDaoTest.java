@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.gwtplatform.crawlerservice.server.CachedPageDirectory;
+import com.gwtplatform.crawlerservice.server.CachedPageTimeoutSec;
+import com.gwtplatform.crawlerservice.server.PageFetcher;
+import com.gwtplatform.crawlerservice.server.PageRenderer;
+import com.gwtplatform.crawlerservice.server.PrerenderQueue;
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FileCachedPageDao}.
+ */
+public class FileCachedPageDaoTest {
+
+  private static final String URL = "http://example.com/?#!place";
+
+  private static final long TIMEOUT_SEC = 60;
+
+  private File directory;
+  private PageRenderer pageRenderer;
+  private Injector injector;
+  private CachedPageDao dao;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("pages", "");
+    directory.delete();
+    pageRenderer = mock(PageRenderer.class);
+    injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bindConstant().annotatedWith(CachedPageDirectory.class).to(directory.getPath());
+        bindConstant().annotatedWith(CachedPageTimeoutSec.class).to(TIMEOUT_SEC);
+        bind(CachedPageDao.class).to(FileCachedPageDao.class);
+        bind(PageRenderer.class).toInstance(pageRenderer);
+        bind(PrerenderQueue.class).toInstance(mock(PrerenderQueue.class));
+      }
+    });
+    dao = injector.getInstance(CachedPageDao.class);
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void storedPageIsFound() {
+    // Given
+    CachedPage storedPage = createPage("rendered", new Date());
+    dao.store(storedPage);
+
+    // When
+    CachedPage page = dao.find(URL);
+
+    // Then
+    assertNotNull(page.getId());
+    assertEquals(storedPage.getId(), page.getId());
+    assertEquals("rendered", page.getContent());
+    assertEquals(storedPage.getContentHash(), page.getContentHash());
+    assertEquals(storedPage.getFetchDate(), page.getFetchDate());
+    assertFalse(page.isFetchInProgress());
+    assertNull(dao.find("http://example.com/?#!other"));
+  }
+
+  @Test
+  public void replacedPageIsNotReloadedNorRemoved() {
+    // Given
+    CachedPage oldPage = createPage("old", new Date());
+    dao.store(oldPage);
+    dao.store(createPage("new", new Date()));
+
+    // When
+    dao.remove(oldPage);
+
+    // Then
+    assertNull(dao.reload(oldPage));
+    assertEquals("new", dao.find(URL).getContent());
+  }
+
+  @Test
+  public void corruptedFileIsIgnored() throws IOException {
+    // Given
+    dao.store(createPage("rendered", new Date()));
+    File[] files = directory.listFiles();
+    assertEquals(1, files.length);
+    FileOutputStream out = new FileOutputStream(files[0]);
+    out.write(new byte[] { 0, 0, 0, 2, 1 });
+    out.close();
+
+    // When
+    CachedPage page = dao.find(URL);
+
+    // Then
+    assertNull(page);
+  }
+
+  @Test
+  public void freshPageIsServedFromTheFiles() throws IOException {
+    // Given
+    dao.store(createPage("cached", new Date()));
+
+    // When
+    String content = fetchContent();
+
+    // Then
+    assertEquals("cached", content);
+    verify(pageRenderer, never()).renderPage(URL);
+  }
+
+  @Test
+  public void expiredPageIsRenderedAgain() throws IOException {
+    // Given
+    long expiredMillis = System.currentTimeMillis() - (TIMEOUT_SEC + 1) * 1000;
+    dao.store(createPage("expired", new Date(expiredMillis)));
+    when(pageRenderer.renderPage(URL)).thenReturn(new StringBuilder("rendered"));
+
+    // When
+    String content = fetchContent();
+
+    // Then
+    assertEquals("rendered", content);
+    verify(pageRenderer).renderPage(URL);
+    assertEquals("rendered", dao.find(URL).getContent());
+  }
+
+  private String fetchContent() throws IOException {
+    return injector.getInstance(PageFetcher.class).fetchSnapshot(URL).getContent();
+  }
+
+  private CachedPage createPage(String content, Date fetchDate) {
+    CachedPage page = new CachedPage();
+    page.setUrl(URL);
+    page.setFetchDate(fetchDate);
+    page.setContent(content);
+    return page;
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+/**
+ * A {@link CachedPageDao} keeping the pages in memory, standing for the storage in tests. Pages
+ * are compressed and hashed when stored, like in the other storages.
+ */
+public class InMemoryCachedPageDao implements CachedPageDao {
+
+  private final ConcurrentMap<String, CachedPage> pages =
+      new ConcurrentHashMap<String, CachedPage>();
+
+  private final AtomicLong lastId = new AtomicLong();
+
+  @Override
+  public CachedPage find(String url) {
+    return pages.get(url);
+  }
+
+  @Override
+  public CachedPage reload(CachedPage page) {
+    CachedPage storedPage = pages.get(page.getUrl());
+    if (storedPage == null || !storedPage.getId().equals(page.getId())) {
+      return null;
+    }
+    return storedPage;
+  }
+
+  @Override
+  public void store(CachedPage page) {
+    if (page.getId() == null) {
+      page.setId(lastId.incrementAndGet());
+    }
+    PageCompression.compress(page);
+    pages.put(page.getUrl(), page);
+  }
+
+  @Override
+  public void remove(CachedPage page) {
+    CachedPage storedPage = reload(page);
+    if (storedPage != null) {
+      pages.remove(page.getUrl(), storedPage);
+    }
+  }
+}
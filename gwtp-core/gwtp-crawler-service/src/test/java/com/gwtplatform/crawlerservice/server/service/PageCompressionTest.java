@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawlerservice.server.service;
+
+import com.gwtplatform.crawlerservice.server.domain.CachedPage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PageCompression}.
+ */
+public class PageCompressionTest {
+
+  @Test
+  public void contentSurvivesCompression() {
+    // Given
+    StringBuilder content = new StringBuilder("<html><body>\u00e9t\u00e9 \u20ac ");
+    for (int i = 0; i < 1000; i++) {
+      content.append("<div class=\"item\">Item ").append(i).append("</div>");
+    }
+    content.append("</body></html>");
+
+    // When
+    byte[] compressedContent = PageCompression.compress(content.toString());
+
+    // Then
+    assertTrue(compressedContent.length < content.length() / 4);
+    assertEquals(content.toString(), PageCompression.uncompress(compressedContent));
+  }
+
+  @Test
+  public void pageSurvivesCompression() {
+    // Given
+    CachedPage page = new CachedPage();
+    page.setContent("<html>rendered</html>");
+    PageCompression.compress(page);
+
+    // When
+    CachedPage loadedPage = new CachedPage();
+    loadedPage.setCompressedContent(page.getCompressedContent());
+    PageCompression.uncompress(loadedPage);
+
+    // Then
+    assertEquals("<html>rendered</html>", loadedPage.getContent());
+    assertEquals(PageCompression.hash("<html>rendered</html>"), page.getContentHash());
+  }
+
+  @Test
+  public void placeholderHasNoContent() {
+    // Given
+    CachedPage page = new CachedPage();
+    PageCompression.compress(page);
+
+    // When
+    PageCompression.uncompress(page);
+
+    // Then
+    assertNull(page.getCompressedContent());
+    assertNull(page.getContentHash());
+    assertNull(page.getContent());
+  }
+
+  @Test
+  public void hashIsHexEncodedMd5() {
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", PageCompression.hash(""));
+    assertEquals("00ff7f80", PageCompression.toHex(new byte[] { 0, -1, 127, -128 }));
+    assertArrayEquals(PageCompression.compress("same"), PageCompression.compress("same"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void corruptedContentIsRejected() {
+    PageCompression.uncompress(new byte[] { 1, 2, 3 });
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Checks the conditional headers of the crawler requests, for the {@link CrawlFilter} and the
+ * crawl service. A crawler that already has the current version of a page is answered with
+ * {@code 304 Not Modified} instead of the page.
+ */
+public final class ConditionalGet {
+
+  /**
+   * The formats of the HTTP dates, see RFC 2616 section 3.3.1: RFC 1123, RFC 850 and the format
+   * of ANSI C's asctime(). Only the first one should be sent, but all must be understood.
+   */
+  private static final String[] HTTP_DATE_FORMATS = {
+      "EEE, dd MMM yyyy HH:mm:ss zzz",
+      "EEEE, dd-MMM-yy HH:mm:ss zzz",
+      "EEE MMM d HH:mm:ss yyyy" };
+
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+  private ConditionalGet() {
+  }
+
+  /**
+   * Checks the conditional headers of a request. {@code If-None-Match} takes precedence over
+   * {@code If-Modified-Since}, like in HTTP/1.1.
+   *
+   * @param ifNoneMatch The {@code If-None-Match} header of the request, or {@code null}.
+   * @param ifModifiedSince The {@code If-Modified-Since} header of the request, or {@code null}.
+   * @param etag The quoted {@code ETag} of the page, or {@code null} if it has none.
+   * @param lastModified When the page was last modified, in milliseconds, or 0 if unknown.
+   * @return {@code true} if the crawler already has this version of the page.
+   */
+  public static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag,
+      long lastModified) {
+    if (ifNoneMatch != null) {
+      return etag != null && matches(ifNoneMatch, etag);
+    }
+
+    if (ifModifiedSince == null || lastModified <= 0) {
+      return false;
+    }
+    long ifModifiedSinceMillis = parseHttpDate(ifModifiedSince);
+    // HTTP dates have a precision of one second, malformed dates are ignored
+    return ifModifiedSinceMillis != -1 && lastModified / 1000 <= ifModifiedSinceMillis / 1000;
+  }
+
+  /**
+   * Parses a date sent in an HTTP header, in any of the formats allowed by HTTP/1.1.
+   *
+   * @param value The value of the header.
+   * @return The date in milliseconds, or -1 if the value is not a valid date.
+   */
+  public static long parseHttpDate(String value) {
+    // The day of the month of asctime() dates is padded with a space
+    String date = value.trim().replaceAll(" +", " ");
+    for (String format : HTTP_DATE_FORMATS) {
+      SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+      dateFormat.setTimeZone(GMT);
+      dateFormat.setLenient(false);
+      ParsePosition position = new ParsePosition(0);
+      Date parsedDate = dateFormat.parse(date, position);
+      if (parsedDate != null && position.getIndex() == date.length()) {
+        return parsedDate.getTime();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Checks if an entity tag is listed in an {@code If-None-Match} header. Weak tags match too,
+   * the pages are only compared for caching.
+   */
+  private static boolean matches(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -16,17 +16,28 @@
 
 package com.gwtplatform.crawler.server;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -46,6 +57,60 @@ import com.google.inject.Singleton;
 @Singleton
 public final class CrawlFilter implements Filter {
 
+  /**
+   * A request to the crawl service, with the conditional headers sent by the crawler.
+   */
+  private static final class ServiceRequest {
+    private final String pageName;
+    private final String url;
+    private final String ifNoneMatch;
+    private final String ifModifiedSince;
+
+    /**
+     * @param pageName The URL of the page to render.
+     * @param url The URL of the crawl service request, or {@code null} to use the
+     *          {@link InProcessCrawlService}.
+     */
+    ServiceRequest(String pageName, String url, String ifNoneMatch, String ifModifiedSince) {
+      this.pageName = pageName;
+      this.url = url;
+      this.ifNoneMatch = ifNoneMatch;
+      this.ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * Requests can only share a call to the crawl service if they have the same conditional
+     * headers.
+     */
+    String getKey() {
+      return pageName + '\n' + ifNoneMatch + '\n' + ifModifiedSince;
+    }
+  }
+
+  /**
+   * A page rendered by the crawl service, as the raw bytes of the response. The body is held in
+   * full rather than streamed to the crawler: it can only be written once the filter knows that
+   * the service did not answer {@code FETCH_IN_PROGRESS} and that no retry is needed, and the
+   * same page is written to all the concurrent requests sharing the call. Rendered pages are
+   * small HTML snapshots, so buffering them is cheap.
+   */
+  private static final class RenderedPage {
+    private final byte[] body;
+    private final boolean gzipped;
+    private final boolean notModified;
+    private final String etag;
+    private final long lastModified;
+
+    RenderedPage(byte[] body, boolean gzipped, boolean notModified, String etag,
+        long lastModified) {
+      this.body = body;
+      this.gzipped = gzipped;
+      this.notModified = notModified;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+  }
+
   private static final String CHAR_ENCODING = "UTF-8";
 
   /**
@@ -100,17 +165,70 @@ public final class CrawlFilter implements Filter {
     return queryString;
   }
 
-  private final String serviceUrl;
-  private final String key;
+  private static final String GZIP = "gzip";
+
+  private static final byte[] FETCH_IN_PROGRESS = toBytes("FETCH_IN_PROGRESS");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long INITIAL_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 4000;
+
+  /**
+   * Sent to the crawler when the page could not be rendered, in seconds.
+   */
+  private static final int RETRY_AFTER_SECONDS = 30;
+
+  /**
+   * The calls to the crawl service in progress, by service request. Concurrent requests for the
+   * same page share a single call.
+   */
+  private final ConcurrentMap<String, FutureTask<RenderedPage>> pendingRequests =
+      new ConcurrentHashMap<String, FutureTask<RenderedPage>>();
+
+  @Inject(optional = true)
+  @ServiceTimeoutMillis
+  private int timeoutMillis = 10000;
+
+  @Inject(optional = true)
+  @ServiceMaxConnections
+  private int maxConnections = 4;
+
+  @Inject(optional = true)
+  private InProcessCrawlService inProcessCrawlService;
+
+  @Inject(optional = true)
+  @ServiceUrl
+  private String serviceUrl;
+
+  @Inject(optional = true)
+  @ServiceKey
+  private String key;
+
+  private Semaphore connectionPermits;
+
   private final Logger log;
 
+  /**
+   * Creates a filter calling the crawl service bound to {@link ServiceUrl} with the
+   * {@link ServiceKey}, or rendering the pages with the {@link InProcessCrawlService} if one is
+   * bound. The service URL and key are not needed in that case.
+   */
   @Inject
-  public CrawlFilter(@ServiceUrl String serviceUrl,
-      @ServiceKey String key,
+  public CrawlFilter(Logger log) {
+    this.log = log;
+  }
+
+  /**
+   * Creates a filter calling the crawl service at {@code serviceUrl}.
+   */
+  public CrawlFilter(String serviceUrl,
+      String key,
       Logger log) {
+    this(log);
     this.serviceUrl = serviceUrl;
     this.key = key;
-    this.log = log;
   }
 
   /**
@@ -139,7 +257,6 @@ public final class CrawlFilter implements Filter {
         && (queryString.contains(ESCAPED_FRAGMENT_FORMAT1))) {
       res.setHeader("Content-Type", "text/html; charset=" + CHAR_ENCODING);
 
-      PrintWriter writer = res.getWriter();
       try {
         StringBuilder pageNameSb = new StringBuilder(req.getScheme() + "://");
         pageNameSb.append(req.getServerName());
@@ -154,45 +271,38 @@ public final class CrawlFilter implements Filter {
 
         log.info("Crawl filter encountered escaped fragment, will open: " + pageName);
 
-        String serviceRequest = serviceUrl + "?key=" + URLEncoder.encode(key, CHAR_ENCODING)
-            + "&url=" + URLEncoder.encode(pageName, CHAR_ENCODING);
-
-        log.info("Full service request: " + serviceRequest);
-
-        // Retry until we're cut off
-        while (true) {
-          BufferedReader reader = null;
-          try {
-            URL url = new URL(serviceRequest);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-            reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            String line;
-            line = reader.readLine();
-            if (!"FETCH_IN_PROGRESS".equals(line)) {
-              writer.println(line);
-              while ((line = reader.readLine()) != null) {
-                writer.println(line);
-              }
-              break;
-            }
-          } catch (IOException exception) {
-            if (!exception.getMessage().contains("Timeout")) {
-              throw exception;
-            }
-          } finally {
-            if (reader != null) {
-              reader.close();
-            }
-          }
+        String serviceRequest = null;
+        if (inProcessCrawlService == null) {
+          serviceRequest = serviceUrl + "?key=" + URLEncoder.encode(key, CHAR_ENCODING)
+              + "&url=" + URLEncoder.encode(pageName, CHAR_ENCODING);
+
+          log.info("Full service request: " + serviceRequest);
+        }
+
+        RenderedPage page = null;
+        boolean failed = false;
+        try {
+          page = fetchPage(new ServiceRequest(pageName, serviceRequest,
+              req.getHeader("If-None-Match"), req.getHeader("If-Modified-Since")));
+        } catch (ConnectException e) {
+          // The crawl service is down or restarting, the crawler can come back later
+          log.log(Level.WARNING, "Crawl service refused the connection for " + pageName, e);
+        } catch (IOException e) {
+          log.log(Level.WARNING, "Crawl service failed to render " + pageName, e);
+          failed = true;
+        }
+
+        if (failed) {
+          res.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+        } else if (page == null) {
+          log.warning("Crawl service did not render " + pageName + ", asking to retry later.");
+          res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+          res.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        } else {
+          writePage(req, res, page);
         }
-      } catch (MalformedURLException e) {
-        e.printStackTrace();
       } catch (IOException e) {
-        e.printStackTrace();
-      } finally {
-        writer.close();
+        log.log(Level.WARNING, "Crawl filter could not answer the crawler", e);
       }
 
       log.info("Crawl filter exiting, no chaining.");
@@ -201,8 +311,305 @@ public final class CrawlFilter implements Filter {
     }
   }
 
+  /**
+   * Fetches the page from the crawl service, sharing the call with the concurrent requests for
+   * the same page.
+   *
+   * @param serviceRequest The crawl service request.
+   * @return The rendered page, or {@code null} if the service did not render it.
+   * @throws IOException
+   */
+  private RenderedPage fetchPage(final ServiceRequest serviceRequest) throws IOException {
+    FutureTask<RenderedPage> request = new FutureTask<RenderedPage>(new Callable<RenderedPage>() {
+      @Override
+      public RenderedPage call() throws IOException {
+        return requestPage(serviceRequest);
+      }
+    });
+    String requestKey = serviceRequest.getKey();
+    FutureTask<RenderedPage> pendingRequest = pendingRequests.putIfAbsent(requestKey, request);
+    try {
+      if (pendingRequest == null) {
+        try {
+          request.run();
+          return request.get();
+        } finally {
+          pendingRequests.remove(requestKey, request);
+        }
+      } else {
+        return pendingRequest.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Calls the crawl service at most {@link #MAX_ATTEMPTS} times, with an increasing delay between
+   * attempts, until it answers with the rendered page. The {@link InProcessCrawlService} is only
+   * called once instead, if it is bound: it runs in the request thread, which must not be held
+   * while waiting for it.
+   *
+   * @param serviceRequest The crawl service request.
+   * @return The rendered page, or {@code null} if the service did not render it.
+   * @throws IOException
+   */
+  private RenderedPage requestPage(ServiceRequest serviceRequest) throws IOException {
+    if (inProcessCrawlService != null) {
+      return requestSnapshot(serviceRequest);
+    }
+
+    long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      try {
+        RenderedPage page = requestPageOnce(serviceRequest);
+        if (page != null) {
+          return page;
+        }
+      } catch (SocketTimeoutException e) {
+        log.info("Crawl service timed out on attempt " + attempt + ".");
+      }
+      if (attempt < MAX_ATTEMPTS) {
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Calls the crawl service once, using at most {@link ServiceMaxConnections} connections at the
+   * same time. The response is buffered in full rather than streamed to the crawler, see
+   * {@link RenderedPage}. Reading it entirely also lets the connection be kept alive and reused
+   * for the next call.
+   *
+   * @param serviceRequest The crawl service request.
+   * @return The rendered page, or {@code null} if the service is busy or if the page is still
+   *         being rendered.
+   * @throws IOException If the service can't be reached or answers with an error.
+   */
+  private RenderedPage requestPageOnce(ServiceRequest serviceRequest) throws IOException {
+    Semaphore permits = getConnectionPermits();
+    try {
+      if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        return null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    try {
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL(serviceRequest.url).openConnection();
+      connection.setConnectTimeout(timeoutMillis);
+      connection.setReadTimeout(timeoutMillis);
+      connection.setRequestProperty("Accept-Encoding", GZIP);
+      if (serviceRequest.ifNoneMatch != null) {
+        connection.setRequestProperty("If-None-Match", serviceRequest.ifNoneMatch);
+      }
+      if (serviceRequest.ifModifiedSince != null) {
+        connection.setRequestProperty("If-Modified-Since", serviceRequest.ifModifiedSince);
+      }
+
+      int status = connection.getResponseCode();
+      String etag = connection.getHeaderField("ETag");
+      long lastModified = connection.getLastModified();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        readFully(connection.getInputStream());
+        return new RenderedPage(new byte[0], false, true, etag, lastModified);
+      }
+      if (status != HttpURLConnection.HTTP_OK) {
+        // Read the error too, or the connection can't be reused
+        readFully(connection.getErrorStream());
+        if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+          return null;
+        }
+        throw new IOException("Crawl service answered with status " + status);
+      }
+
+      RenderedPage page = new RenderedPage(readFully(connection.getInputStream()),
+          GZIP.equalsIgnoreCase(connection.getContentEncoding()), false, etag, lastModified);
+      if (isFetchInProgress(page)) {
+        return null;
+      }
+      return page;
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Fetches the page from the {@link InProcessCrawlService}, and checks the conditional headers
+   * like the crawl service does. At most {@link ServiceMaxConnections} pages are rendered at the
+   * same time. When they all are in use, the page is not waited for: the crawler is asked to come
+   * back later, so that crawlers can't take the request threads needed by regular users.
+   *
+   * @param serviceRequest The crawl service request.
+   * @return The rendered page, or {@code null} if the service is busy or if the page is not
+   *         rendered yet.
+   * @throws IOException
+   */
+  private RenderedPage requestSnapshot(ServiceRequest serviceRequest) throws IOException {
+    Semaphore permits = getConnectionPermits();
+    if (!permits.tryAcquire()) {
+      return null;
+    }
+
+    Snapshot snapshot;
+    try {
+      snapshot = inProcessCrawlService.fetchSnapshot(serviceRequest.pageName);
+    } finally {
+      permits.release();
+    }
+    if (snapshot == null) {
+      return null;
+    }
+
+    String etag = snapshot.getContentHash() == null ? null
+        : "\"" + snapshot.getContentHash() + "\"";
+    long lastModified = snapshot.getFetchDate() == null ? 0
+        : snapshot.getFetchDate().getTime();
+    if (ConditionalGet.isNotModified(serviceRequest.ifNoneMatch, serviceRequest.ifModifiedSince,
+        etag, lastModified)) {
+      return new RenderedPage(new byte[0], false, true, etag, lastModified);
+    }
+    return new RenderedPage(toBytes(snapshot.getContent()), false, false, etag, lastModified);
+  }
+
+  /**
+   * Writes the page as the response. The compressed page is passed through if the client accepts
+   * it, it is uncompressed otherwise. Nothing is written if the crawl service found that the
+   * crawler already has the page.
+   */
+  private void writePage(HttpServletRequest req, HttpServletResponse res, RenderedPage page)
+      throws IOException {
+    if (page.etag != null) {
+      res.setHeader("ETag", page.etag);
+    }
+    if (page.lastModified > 0) {
+      res.setDateHeader("Last-Modified", page.lastModified);
+    }
+    if (page.notModified) {
+      res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    res.setHeader("Vary", "Accept-Encoding");
+    OutputStream out = res.getOutputStream();
+    try {
+      if (!page.gzipped) {
+        res.setContentLength(page.body.length);
+        out.write(page.body);
+      } else if (acceptsGzip(req)) {
+        res.setHeader("Content-Encoding", GZIP);
+        res.setContentLength(page.body.length);
+        out.write(page.body);
+      } else {
+        copy(uncompress(page), out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private boolean acceptsGzip(HttpServletRequest req) {
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+  }
+
+  /**
+   * Checks if the page starts with {@code FETCH_IN_PROGRESS}, without uncompressing all of it.
+   */
+  private boolean isFetchInProgress(RenderedPage page) throws IOException {
+    InputStream in = uncompress(page);
+    try {
+      byte[] start = new byte[FETCH_IN_PROGRESS.length + 1];
+      int length = 0;
+      int count;
+      while (length < start.length
+          && (count = in.read(start, length, start.length - length)) != -1) {
+        length += count;
+      }
+      if (length < FETCH_IN_PROGRESS.length) {
+        return false;
+      }
+      for (int i = 0; i < FETCH_IN_PROGRESS.length; i++) {
+        if (start[i] != FETCH_IN_PROGRESS[i]) {
+          return false;
+        }
+      }
+      return length == FETCH_IN_PROGRESS.length || start[length - 1] == '\r'
+          || start[length - 1] == '\n';
+    } finally {
+      in.close();
+    }
+  }
+
+  private InputStream uncompress(RenderedPage page) throws IOException {
+    InputStream in = new ByteArrayInputStream(page.body);
+    return page.gzipped ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+  }
+
+  private byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+    if (in != null) {
+      try {
+        copy(in, out);
+      } finally {
+        in.close();
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+  }
+
+  private synchronized Semaphore getConnectionPermits() {
+    // Created lazily, the size is only known once the optional fields are injected.
+    if (connectionPermits == null) {
+      connectionPermits = new Semaphore(maxConnections, true);
+    }
+    return connectionPermits;
+  }
+
+  private static byte[] toBytes(String string) {
+    try {
+      return string.getBytes(CHAR_ENCODING);
+    } catch (UnsupportedEncodingException e) {
+      // Every JVM supports UTF-8
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
+    if (inProcessCrawlService == null && (serviceUrl == null || key == null)) {
+      throw new ServletException("Bind the ServiceUrl and the ServiceKey of the crawl service, "
+          + "or an InProcessCrawlService.");
+    }
   }
 
 }
\ No newline at end of file
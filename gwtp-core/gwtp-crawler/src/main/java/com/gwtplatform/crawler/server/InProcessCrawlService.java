@@ -0,0 +1,39 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.IOException;
+
+/**
+ * Renders pages in the same JVM as the {@link CrawlFilter}. When this interface is bound, the
+ * {@link CrawlFilter} calls it directly instead of calling the crawl service at the
+ * {@link ServiceUrl}. The calls are still limited to {@link ServiceMaxConnections} at the same
+ * time, so that crawlers can't take all the resources of the server. Crawlers are asked to come
+ * back later when the limit is reached.
+ */
+public interface InProcessCrawlService {
+
+  /**
+   * Fetches the rendered page, from the cache or by rendering it.
+   *
+   * @param url The URL of the page, with its hash fragment.
+   * @return The rendered page, or {@code null} if it could not be rendered yet, in which case the
+   *         {@link CrawlFilter} asks the crawler to try again later.
+   * @throws IOException
+   */
+  Snapshot fetchSnapshot(String url) throws IOException;
+}
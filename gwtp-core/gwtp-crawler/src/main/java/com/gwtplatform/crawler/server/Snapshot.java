@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.util.Date;
+
+/**
+ * A page rendered for the crawlers by an {@link InProcessCrawlService}.
+ */
+public class Snapshot {
+  private final String content;
+  private final String contentHash;
+  private final Date fetchDate;
+
+  /**
+   * @param content The rendered page.
+   * @param contentHash A hash of the content, used as the {@code ETag} of the page, or
+   *          {@code null}.
+   * @param fetchDate When the page was rendered, used as the {@code Last-Modified} date of the
+   *          page.
+   */
+  public Snapshot(String content, String contentHash, Date fetchDate) {
+    this.content = content;
+    this.contentHash = contentHash;
+    this.fetchDate = fetchDate;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public Date getFetchDate() {
+    return fetchDate;
+  }
+}
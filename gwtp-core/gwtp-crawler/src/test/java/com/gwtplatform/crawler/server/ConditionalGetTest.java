@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConditionalGet}.
+ */
+public class ConditionalGetTest {
+
+  private static final String ETAG = "\"0123abcd\"";
+
+  /**
+   * Sun, 06 Nov 1994 08:49:37 GMT, the example of RFC 2616.
+   */
+  private static final long LAST_MODIFIED = 784111777000L;
+
+  @Test
+  public void matchingEtagIsNotModified() {
+    assertTrue(ConditionalGet.isNotModified(ETAG, null, ETAG, LAST_MODIFIED));
+    assertTrue(ConditionalGet.isNotModified("\"other\", W/" + ETAG, null, ETAG, LAST_MODIFIED));
+  }
+
+  @Test
+  public void otherEtagIsModified() {
+    assertFalse(ConditionalGet.isNotModified("\"other\"", null, ETAG, LAST_MODIFIED));
+    assertFalse(ConditionalGet.isNotModified(ETAG, null, null, LAST_MODIFIED));
+  }
+
+  @Test
+  public void wildcardMatchesAnyEtag() {
+    assertTrue(ConditionalGet.isNotModified("*", null, ETAG, LAST_MODIFIED));
+  }
+
+  @Test
+  public void ifNoneMatchTakesPrecedenceOverIfModifiedSince() {
+    assertFalse(ConditionalGet.isNotModified("\"other\"", "Sun, 06 Nov 1994 08:49:37 GMT",
+        ETAG, LAST_MODIFIED));
+  }
+
+  @Test
+  public void pageNotModifiedSinceIsNotModified() {
+    assertTrue(ConditionalGet.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT", ETAG,
+        LAST_MODIFIED));
+    assertTrue(ConditionalGet.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT", ETAG,
+        LAST_MODIFIED + 999));
+  }
+
+  @Test
+  public void pageModifiedSinceIsModified() {
+    assertFalse(ConditionalGet.isNotModified(null, "Sun, 06 Nov 1994 08:49:36 GMT", ETAG,
+        LAST_MODIFIED));
+    assertFalse(ConditionalGet.isNotModified(null, null, ETAG, LAST_MODIFIED));
+    assertFalse(ConditionalGet.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT", ETAG, 0));
+  }
+
+  @Test
+  public void malformedDateIsIgnored() {
+    assertFalse(ConditionalGet.isNotModified(null, "yesterday", ETAG, LAST_MODIFIED));
+    assertFalse(ConditionalGet.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT garbage",
+        ETAG, LAST_MODIFIED));
+    assertEquals(-1, ConditionalGet.parseHttpDate("Sun, 32 Nov 1994 08:49:37 GMT"));
+  }
+
+  @Test
+  public void allHttpDateFormatsAreParsed() {
+    assertEquals(LAST_MODIFIED, ConditionalGet.parseHttpDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+    assertEquals(LAST_MODIFIED, ConditionalGet.parseHttpDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+    assertEquals(LAST_MODIFIED, ConditionalGet.parseHttpDate("Sun Nov  6 08:49:37 1994"));
+    assertTrue(ConditionalGet.isNotModified(null, "Sunday, 06-Nov-94 08:49:37 GMT", ETAG,
+        LAST_MODIFIED));
+    assertTrue(ConditionalGet.isNotModified(null, "Sun Nov  6 08:49:37 1994", ETAG,
+        LAST_MODIFIED));
+  }
+}
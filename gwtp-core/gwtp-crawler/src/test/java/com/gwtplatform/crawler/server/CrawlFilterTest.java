@@ -0,0 +1,389 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.crawler.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link CrawlFilter}, rendering the pages with an {@link InProcessCrawlService},
+ * and for its handling of crawl service failures.
+ */
+public class CrawlFilterTest {
+
+  private static final String PAGE_NAME = "http://localhost:8080/index.html#!place";
+
+  /**
+   * A response writing its body in memory.
+   */
+  private static class TestResponse {
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    TestResponse() throws IOException {
+      when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+          body.write(b);
+        }
+      });
+    }
+
+    String getBody() throws IOException {
+      return body.toString("UTF-8");
+    }
+  }
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private InProcessCrawlService crawlService;
+  private CrawlFilter crawlFilter;
+
+  @Before
+  public void setUp() {
+    crawlService = mock(InProcessCrawlService.class);
+    crawlFilter = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(InProcessCrawlService.class).toInstance(crawlService);
+      }
+    }).getInstance(CrawlFilter.class);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void inProcessFilterNeedsNoServiceUrl() throws Exception {
+    crawlFilter.init(null);
+  }
+
+  @Test(expected = ServletException.class)
+  public void filterNeedsAServiceUrlOrAnInProcessService() throws Exception {
+    // Given
+    CrawlFilter filterWithoutService = Guice.createInjector().getInstance(CrawlFilter.class);
+
+    // When
+    filterWithoutService.init(null);
+  }
+
+  @Test
+  public void filterWithServiceUrlIsAccepted() throws Exception {
+    // Given
+    CrawlFilter filterWithService = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bindConstant().annotatedWith(ServiceUrl.class).to("http://crawlservice.example.com/");
+        bindConstant().annotatedWith(ServiceKey.class).to("key");
+      }
+    }).getInstance(CrawlFilter.class);
+
+    // When
+    filterWithService.init(null);
+  }
+
+  @Test
+  public void inProcessPageIsWrittenWithItsValidators() throws Exception {
+    // Given
+    Date fetchDate = new Date(784111777000L);
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenReturn(
+        new Snapshot("rendered", "hash", fetchDate));
+    TestResponse response = new TestResponse();
+
+    // When
+    crawlFilter.doFilter(createRequest(), response.response, mock(FilterChain.class));
+
+    // Then
+    assertEquals("rendered", response.getBody());
+    verify(response.response).setHeader("ETag", "\"hash\"");
+    verify(response.response).setDateHeader("Last-Modified", fetchDate.getTime());
+  }
+
+  @Test
+  public void inProcessPageWithMatchingEtagIsNotModified() throws Exception {
+    // Given
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenReturn(
+        new Snapshot("rendered", "hash", new Date()));
+    HttpServletRequest request = createRequest();
+    when(request.getHeader("If-None-Match")).thenReturn("\"hash\"");
+    TestResponse response = new TestResponse();
+
+    // When
+    crawlFilter.doFilter(request, response.response, mock(FilterChain.class));
+
+    // Then
+    verify(response.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals("", response.getBody());
+  }
+
+  @Test
+  public void inProcessPageNotModifiedSinceIsNotModified() throws Exception {
+    // Given
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenReturn(
+        new Snapshot("rendered", "hash", new Date(784111777000L)));
+    HttpServletRequest request = createRequest();
+    when(request.getHeader("If-Modified-Since")).thenReturn("Sun Nov  6 08:49:37 1994");
+    TestResponse response = new TestResponse();
+
+    // When
+    crawlFilter.doFilter(request, response.response, mock(FilterChain.class));
+
+    // Then
+    verify(response.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals("", response.getBody());
+  }
+
+  @Test
+  public void requestsWithoutEscapedFragmentAreChained() throws Exception {
+    // Given
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getQueryString()).thenReturn("a=b");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    FilterChain chain = mock(FilterChain.class);
+
+    // When
+    crawlFilter.doFilter(request, response, chain);
+
+    // Then
+    verify(chain).doFilter(request, response);
+    verify(crawlService, never()).fetchSnapshot(anyString());
+  }
+
+  @Test
+  public void concurrentRequestsForAPageShareOneRender() throws Exception {
+    // Given
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch renderDone = new CountDownLatch(1);
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenAnswer(new Answer<Snapshot>() {
+      @Override
+      public Snapshot answer(InvocationOnMock invocation) throws InterruptedException {
+        rendering.countDown();
+        renderDone.await();
+        return new Snapshot("rendered", "hash", new Date());
+      }
+    });
+    final CountDownLatch secondRequest = new CountDownLatch(1);
+    HttpServletRequest request = createRequest();
+    HttpServletRequest otherRequest = createRequest();
+    when(otherRequest.getHeader("If-Modified-Since")).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        secondRequest.countDown();
+        return null;
+      }
+    });
+    TestResponse response = new TestResponse();
+    TestResponse otherResponse = new TestResponse();
+
+    // When
+    Future<?> first = executor.submit(filter(request, response));
+    assertTrue(rendering.await(5, TimeUnit.SECONDS));
+    Future<?> second = executor.submit(filter(otherRequest, otherResponse));
+    assertTrue(secondRequest.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    renderDone.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    second.get(5, TimeUnit.SECONDS);
+
+    // Then
+    verify(crawlService, times(1)).fetchSnapshot(PAGE_NAME);
+    assertEquals("rendered", response.getBody());
+    assertEquals("rendered", otherResponse.getBody());
+    verify(otherResponse.response).setHeader("ETag", "\"hash\"");
+  }
+
+  @Test
+  public void failedRenderIsForgotten() throws Exception {
+    // Given
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenThrow(new IOException("Render failed"))
+        .thenReturn(new Snapshot("rendered", "hash", new Date()));
+    TestResponse failedResponse = new TestResponse();
+    crawlFilter.doFilter(createRequest(), failedResponse.response, mock(FilterChain.class));
+    assertEquals("", failedResponse.getBody());
+    verify(failedResponse.response).setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+
+    // When
+    TestResponse response = new TestResponse();
+    crawlFilter.doFilter(createRequest(), response.response, mock(FilterChain.class));
+
+    // Then
+    verify(crawlService, times(2)).fetchSnapshot(PAGE_NAME);
+    assertEquals("rendered", response.getBody());
+  }
+
+  @Test
+  public void unrenderedInProcessPageIsNotWaitedFor() throws Exception {
+    // Given
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenReturn(null);
+    TestResponse response = new TestResponse();
+
+    // When
+    crawlFilter.doFilter(createRequest(), response.response, mock(FilterChain.class));
+
+    // Then
+    verify(crawlService, times(1)).fetchSnapshot(PAGE_NAME);
+    verify(response.response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    verify(response.response).setHeader("Retry-After", "30");
+  }
+
+  @Test
+  public void busyInProcessServiceAsksToRetryLater() throws Exception {
+    // Given
+    crawlFilter = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(InProcessCrawlService.class).toInstance(crawlService);
+        bindConstant().annotatedWith(ServiceMaxConnections.class).to(1);
+      }
+    }).getInstance(CrawlFilter.class);
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch renderDone = new CountDownLatch(1);
+    when(crawlService.fetchSnapshot(PAGE_NAME)).thenAnswer(new Answer<Snapshot>() {
+      @Override
+      public Snapshot answer(InvocationOnMock invocation) throws InterruptedException {
+        rendering.countDown();
+        renderDone.await();
+        return new Snapshot("rendered", "hash", new Date());
+      }
+    });
+    HttpServletRequest otherRequest = createRequest();
+    when(otherRequest.getQueryString()).thenReturn("_escaped_fragment_=other");
+    TestResponse response = new TestResponse();
+    TestResponse otherResponse = new TestResponse();
+    Future<?> first = executor.submit(filter(createRequest(), response));
+    assertTrue(rendering.await(5, TimeUnit.SECONDS));
+
+    // When
+    long start = System.currentTimeMillis();
+    crawlFilter.doFilter(otherRequest, otherResponse.response, mock(FilterChain.class));
+    long elapsed = System.currentTimeMillis() - start;
+
+    // Then
+    assertTrue("Waited " + elapsed + " ms", elapsed < 1000);
+    verify(otherResponse.response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    verify(otherResponse.response).setHeader("Retry-After", "30");
+    renderDone.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    assertEquals("rendered", response.getBody());
+  }
+
+  @Test
+  public void serviceErrorAnswersBadGateway() throws Exception {
+    // Given
+    HttpServer service = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    service.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+        exchange.close();
+      }
+    });
+    service.start();
+    CrawlFilter filter = new CrawlFilter("http://localhost:" + service.getAddress().getPort()
+        + "/", "key", Logger.getAnonymousLogger());
+    TestResponse response = new TestResponse();
+
+    // When
+    try {
+      filter.doFilter(createRequest(), response.response, mock(FilterChain.class));
+    } finally {
+      service.stop(0);
+    }
+
+    // Then
+    verify(response.response).setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+    assertEquals("", response.getBody());
+  }
+
+  @Test
+  public void refusedConnectionAsksToRetryLater() throws Exception {
+    // Given
+    ServerSocket socket = new ServerSocket(0);
+    int port = socket.getLocalPort();
+    socket.close();
+    CrawlFilter filter = new CrawlFilter("http://localhost:" + port + "/", "key",
+        Logger.getAnonymousLogger());
+    TestResponse response = new TestResponse();
+
+    // When
+    filter.doFilter(createRequest(), response.response, mock(FilterChain.class));
+
+    // Then
+    verify(response.response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    verify(response.response).setHeader("Retry-After", "30");
+  }
+
+  private HttpServletRequest createRequest() {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getQueryString()).thenReturn("_escaped_fragment_=place");
+    when(request.getScheme()).thenReturn("http");
+    when(request.getServerName()).thenReturn("localhost");
+    when(request.getServerPort()).thenReturn(8080);
+    when(request.getRequestURI()).thenReturn("/index.html");
+    return request;
+  }
+
+  private Callable<Void> filter(final HttpServletRequest request, final TestResponse response) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        crawlFilter.doFilter(request, response.response, mock(FilterChain.class));
+        return null;
+      }
+    };
+  }
+}
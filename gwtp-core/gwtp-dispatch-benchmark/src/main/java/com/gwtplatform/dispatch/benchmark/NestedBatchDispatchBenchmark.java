@@ -0,0 +1,175 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.BatchActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.AbstractEagerActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.EagerActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.actionvalidator.AbstractDefaultActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.BatchAction;
+import com.gwtplatform.dispatch.shared.BatchResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Measures the per-dispatch overhead of {@link AbstractDispatchImpl}, that is
+ * everything but the work done by the handlers themselves. The handlers used
+ * here return immediately, so the scores are dominated by the registry lookups,
+ * the validation and the {@link ExecutionContext} bookkeeping.
+ * <p />
+ * Run with {@code java -jar target/benchmarks.jar NestedBatchDispatchBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedBatchDispatchBenchmark {
+
+  /**
+   * An action whose handler does no work.
+   */
+  public static class NoOpAction extends UnsecuredActionImpl<NoOpResult> {
+  }
+
+  /**
+   * The result of a {@link NoOpAction}.
+   */
+  public static class NoOpResult implements Result {
+  }
+
+  /**
+   * A concrete {@link BatchAction}, since the shared one is abstract.
+   */
+  public static class NestedBatchAction extends BatchAction {
+    public NestedBatchAction(Action<?>... actions) {
+      super(OnException.ROLLBACK, actions);
+    }
+
+    @Override
+    public String getServiceName() {
+      return DEFAULT_SERVICE_NAME;
+    }
+
+    @Override
+    public boolean isSecured() {
+      return false;
+    }
+  }
+
+  /**
+   * Handles {@link NoOpAction} by returning a shared result.
+   */
+  public static class NoOpActionHandler extends AbstractActionHandler<NoOpAction, NoOpResult> {
+    private final NoOpResult result = new NoOpResult();
+
+    public NoOpActionHandler() {
+      super(NoOpAction.class);
+    }
+
+    @Override
+    public NoOpResult execute(NoOpAction action, ExecutionContext context) throws ActionException {
+      return result;
+    }
+
+    @Override
+    public void undo(NoOpAction action, NoOpResult result, ExecutionContext context) throws ActionException {
+    }
+  }
+
+  private static class BenchmarkDispatch extends AbstractDispatchImpl {
+    BenchmarkDispatch(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
+      super(actionHandlerValidatorRegistry);
+    }
+  }
+
+  private static class BenchmarkRegistry extends AbstractEagerActionHandlerValidatorRegistryImpl {
+  }
+
+  /**
+   * Number of sub-actions in each batch.
+   */
+  @Param({"1", "10", "30"})
+  public int batchSize;
+
+  /**
+   * Number of nested batch levels wrapping the leaf actions.
+   */
+  @Param({"1", "3"})
+  public int depth;
+
+  private Dispatch dispatch;
+  private NoOpAction singleAction;
+  private NestedBatchAction nestedBatchAction;
+
+  @Setup
+  public void setUp() {
+    AbstractDefaultActionValidator validator = new AbstractDefaultActionValidator();
+
+    EagerActionHandlerValidatorRegistry registry = new BenchmarkRegistry();
+    registry.addActionHandlerValidator(NoOpAction.class,
+        new ActionHandlerValidatorInstance(validator, new NoOpActionHandler()));
+    registry.addActionHandlerValidator(NestedBatchAction.class,
+        new ActionHandlerValidatorInstance(validator, new BatchActionHandler()));
+
+    dispatch = new BenchmarkDispatch(registry);
+    singleAction = new NoOpAction();
+    nestedBatchAction = buildBatch(depth);
+  }
+
+  @Benchmark
+  public NoOpResult singleAction() throws ActionException, ServiceException {
+    return dispatch.execute(singleAction);
+  }
+
+  @Benchmark
+  public BatchResult nestedBatch() throws ActionException, ServiceException {
+    return dispatch.execute(nestedBatchAction);
+  }
+
+  private NestedBatchAction buildBatch(int level) {
+    Action<?>[] actions = new Action<?>[batchSize];
+    for (int i = 0; i < batchSize; i++) {
+      actions[i] = level > 1 ? buildBatch(level - 1) : new NoOpAction();
+    }
+    return new NestedBatchAction(actions);
+  }
+}
@@ -0,0 +1,4 @@
+package com.gwtplatform.dispatch.benchmark.generated;
+public class NestedBatchDispatchBenchmark_jmhType extends NestedBatchDispatchBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.ServiceDefTarget;
+import com.google.inject.Inject;
+
+import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandlerRegistry;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+import com.gwtplatform.dispatch.shared.DispatchService;
+import com.gwtplatform.dispatch.shared.DispatchServiceAsync;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
+
+/**
+ * A {@link DefaultDispatchAsync} that coalesces the actions executed during the
+ * same event loop into a single server call. Actions are queued until the
+ * browser event completes (see {@link Scheduler#scheduleFinally}), then the
+ * actions sharing a service name are sent together through
+ * {@link DispatchService#executeMultiplexed}. A lone action is sent the usual
+ * way.
+ * <p />
+ * Each action still succeeds or fails on its own, and each returned
+ * {@link DispatchRequest} can be cancelled independently: a queued action is
+ * simply not sent, and the server call is only cancelled once every action it
+ * carries is cancelled. Undo requests are never batched.
+ * <p />
+ * Enable it with {@link com.gwtplatform.dispatch.client.gin.DispatchAsyncModule.Builder#batching(boolean)}.
+ */
+public class BatchingDispatchAsync extends DefaultDispatchAsync {
+
+  /**
+   * The actions sent in one server call.
+   */
+  private static class Batch {
+    private final List<QueuedRequest<?, ?>> requests;
+    private Request request;
+
+    Batch(List<QueuedRequest<?, ?>> requests) {
+      this.requests = requests;
+    }
+
+    void onCancel() {
+      for (QueuedRequest<?, ?> queuedRequest : requests) {
+        if (queuedRequest.isPending()) {
+          return;
+        }
+      }
+      if (request != null) {
+        request.cancel();
+      }
+    }
+  }
+
+  /**
+   * The {@link DispatchRequest} of an action waiting for its batch to be sent,
+   * or for the result of that batch.
+   */
+  private class QueuedRequest<A extends Action<R>, R extends Result> implements DispatchRequest {
+    private final String securityCookie;
+    private final A action;
+    private final AsyncCallback<R> callback;
+    private boolean cancelled;
+    private boolean completed;
+    private Batch batch;
+    private DispatchRequest delegate;
+
+    QueuedRequest(String securityCookie, A action, AsyncCallback<R> callback) {
+      this.securityCookie = securityCookie;
+      this.action = action;
+      this.callback = callback;
+    }
+
+    @Override
+    public void cancel() {
+      if (!isPending()) {
+        return;
+      }
+
+      cancelled = true;
+      if (delegate != null) {
+        delegate.cancel();
+      } else if (batch != null) {
+        batch.onCancel();
+      }
+    }
+
+    @Override
+    public boolean isPending() {
+      if (delegate != null) {
+        return delegate.isPending();
+      }
+      return !cancelled && !completed;
+    }
+
+    void sendAlone() {
+      delegate = BatchingDispatchAsync.super.serviceExecute(securityCookie, action, callback);
+    }
+
+    @SuppressWarnings("unchecked")
+    void onSuccess(MultiplexedResult multiplexedResult, int index) {
+      if (!isPending()) {
+        return;
+      }
+
+      completed = true;
+      Throwable failure = multiplexedResult.getFailure(index);
+      if (failure != null) {
+        onExecuteFailure(action, failure, callback);
+      } else {
+        onExecuteSuccess(action, (R) multiplexedResult.getResult(index), callback);
+      }
+    }
+
+    void onFailure(Throwable caught) {
+      if (!isPending()) {
+        return;
+      }
+
+      completed = true;
+      onExecuteFailure(action, caught, callback);
+    }
+  }
+
+  private final DispatchServiceAsync batchService;
+  private final String baseUrl;
+  private final Scheduler scheduler;
+  private final Map<String, List<QueuedRequest<?, ?>>> queues = new LinkedHashMap<String, List<QueuedRequest<?, ?>>>();
+  private boolean flushScheduled;
+
+  @Inject
+  public BatchingDispatchAsync(ExceptionHandler exceptionHandler,
+      SecurityCookieAccessor securityCookieAccessor,
+      ClientActionHandlerRegistry registry) {
+    this(exceptionHandler, securityCookieAccessor, registry, Scheduler.get());
+  }
+
+  public BatchingDispatchAsync(ExceptionHandler exceptionHandler,
+      SecurityCookieAccessor securityCookieAccessor,
+      ClientActionHandlerRegistry registry, Scheduler scheduler) {
+    this(exceptionHandler, securityCookieAccessor, registry, scheduler,
+        GWT.<DispatchServiceAsync>create(DispatchService.class));
+  }
+
+  /**
+   * Creates a dispatcher sending the actions through the specified service,
+   * which must also implement {@link ServiceDefTarget}.
+   *
+   * @param scheduler The {@link Scheduler} used to send the queued actions.
+   * @param batchService The {@link DispatchServiceAsync}.
+   */
+  protected BatchingDispatchAsync(ExceptionHandler exceptionHandler,
+      SecurityCookieAccessor securityCookieAccessor,
+      ClientActionHandlerRegistry registry, Scheduler scheduler,
+      DispatchServiceAsync batchService) {
+    super(exceptionHandler, securityCookieAccessor, registry, batchService);
+    this.scheduler = scheduler;
+    this.batchService = batchService;
+    String entryPointUrl = ((ServiceDefTarget) batchService).getServiceEntryPoint();
+    if (entryPointUrl == null) {
+      this.baseUrl = "";
+    } else {
+      this.baseUrl = entryPointUrl;
+    }
+  }
+
+  @Override
+  protected <A extends Action<R>, R extends Result> DispatchRequest serviceExecute(
+      String securityCookie, A action, AsyncCallback<R> callback) {
+    QueuedRequest<A, R> queuedRequest = new QueuedRequest<A, R>(securityCookie, action, callback);
+
+    List<QueuedRequest<?, ?>> queue = queues.get(action.getServiceName());
+    if (queue == null) {
+      queue = new ArrayList<QueuedRequest<?, ?>>();
+      queues.put(action.getServiceName(), queue);
+    }
+    queue.add(queuedRequest);
+
+    if (!flushScheduled) {
+      flushScheduled = true;
+      scheduler.scheduleFinally(new ScheduledCommand() {
+        @Override
+        public void execute() {
+          flush();
+        }
+      });
+    }
+
+    return queuedRequest;
+  }
+
+  /**
+   * Sends every queued action.
+   */
+  private void flush() {
+    flushScheduled = false;
+    List<Map.Entry<String, List<QueuedRequest<?, ?>>>> entries =
+        new ArrayList<Map.Entry<String, List<QueuedRequest<?, ?>>>>(queues.entrySet());
+    queues.clear();
+
+    for (Map.Entry<String, List<QueuedRequest<?, ?>>> entry : entries) {
+      List<QueuedRequest<?, ?>> requests = new ArrayList<QueuedRequest<?, ?>>();
+      for (QueuedRequest<?, ?> queuedRequest : entry.getValue()) {
+        if (queuedRequest.isPending()) {
+          requests.add(queuedRequest);
+        }
+      }
+
+      if (requests.size() == 1) {
+        requests.get(0).sendAlone();
+      } else if (!requests.isEmpty()) {
+        send(entry.getKey(), requests);
+      }
+    }
+  }
+
+  private void send(String serviceName, List<QueuedRequest<?, ?>> requests) {
+    final Batch batch = new Batch(requests);
+    ArrayList<Action<?>> actions = new ArrayList<Action<?>>(requests.size());
+    for (QueuedRequest<?, ?> queuedRequest : requests) {
+      queuedRequest.batch = batch;
+      actions.add(queuedRequest.action);
+    }
+
+    ((ServiceDefTarget) batchService).setServiceEntryPoint(baseUrl + serviceName);
+    batch.request = batchService.executeMultiplexed(requests.get(0).securityCookie, actions,
+        new AsyncCallback<MultiplexedResult>() {
+          @Override
+          public void onSuccess(MultiplexedResult multiplexedResult) {
+            for (int i = 0; i < batch.requests.size(); i++) {
+              batch.requests.get(i).onSuccess(multiplexedResult, i);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable caught) {
+            for (QueuedRequest<?, ?> queuedRequest : batch.requests) {
+              queuedRequest.onFailure(caught);
+            }
+          }
+        });
+  }
+}
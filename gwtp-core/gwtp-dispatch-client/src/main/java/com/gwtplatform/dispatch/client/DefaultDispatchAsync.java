@@ -16,9 +16,14 @@
 
 package com.gwtplatform.dispatch.client;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.rpc.ServiceDefTarget;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import com.gwtplatform.common.client.IndirectProvider;
 import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandler;
@@ -38,24 +43,50 @@ import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
  * This class is the default implementation of {@link DispatchAsync}, which is
  * essentially the client-side access to the
  * {@link com.gwtplatform.dispatch.server.Dispatch} class on the server-side.
+ * <p />
+ * When deduplication is on, see {@link #setDeduplicating(boolean)}, an action
+ * that is {@link Object#equals(Object) equal} to an action still in flight is
+ * not sent again: the caller waits for the result of the first call instead.
  *
  * @author David Peterson
  * @author Christian Goudreau
  * @author Brendan Doherty
  */
 public class DefaultDispatchAsync implements DispatchAsync {
-  private static final DispatchServiceAsync realService = GWT.create(DispatchService.class);
+  /**
+   * The name of the boolean constant enabling deduplication when bound in gin.
+   */
+  public static final String DEDUPLICATING = "gwtp.dispatch.deduplicating";
+
+  private final DispatchServiceAsync realService;
+  private final Map<Object, InFlightRequest<?>> inFlightRequests = new HashMap<Object, InFlightRequest<?>>();
+  private boolean deduplicating;
   private final String baseUrl;
   private final ExceptionHandler exceptionHandler;
   private final SecurityCookieAccessor securityCookieAccessor;
   private final ClientActionHandlerRegistry registry;
 
+  @Inject
   public DefaultDispatchAsync(ExceptionHandler exceptionHandler,
       SecurityCookieAccessor securityCookieAccessor,
       ClientActionHandlerRegistry registry) {
+    this(exceptionHandler, securityCookieAccessor, registry,
+        GWT.<DispatchServiceAsync>create(DispatchService.class));
+  }
+
+  /**
+   * Creates a dispatcher sending the actions through the specified service,
+   * which must also implement {@link ServiceDefTarget}.
+   *
+   * @param realService The {@link DispatchServiceAsync}.
+   */
+  protected DefaultDispatchAsync(ExceptionHandler exceptionHandler,
+      SecurityCookieAccessor securityCookieAccessor,
+      ClientActionHandlerRegistry registry, DispatchServiceAsync realService) {
     this.exceptionHandler = exceptionHandler;
     this.securityCookieAccessor = securityCookieAccessor;
     this.registry = registry;
+    this.realService = realService;
     String entryPointUrl = ((ServiceDefTarget) realService).getServiceEntryPoint();
     if (entryPointUrl == null) {
       this.baseUrl = "";
@@ -64,12 +95,28 @@ public class DefaultDispatchAsync implements DispatchAsync {
     }
   }
 
+  /**
+   * Turns deduplication of in-flight actions on or off. It is off by default.
+   * <p />
+   * <b>Important!</b> Only turn it on if executing two equal actions at the
+   * same time is the same as executing one. You can exclude some actions by
+   * overriding {@link #canDeduplicate(Action)}.
+   *
+   * @param deduplicating {@code true} to join equal in-flight actions,
+   *          {@code false} otherwise.
+   */
+  @Inject(optional = true)
+  public void setDeduplicating(@Named(DEDUPLICATING) boolean deduplicating) {
+    this.deduplicating = deduplicating;
+  }
+
+  public boolean isDeduplicating() {
+    return deduplicating;
+  }
+
   @SuppressWarnings("unchecked")
   public <A extends Action<R>, R extends Result> DispatchRequest execute(
       final A action, final AsyncCallback<R> callback) {
-    ((ServiceDefTarget) realService).setServiceEntryPoint(baseUrl
-        + action.getServiceName());
-
     final String securityCookie = securityCookieAccessor.getCookieContent();
 
     final IndirectProvider<ClientActionHandler<?, ?>> clientActionHandlerProvider = registry.find(action.getClass());
@@ -96,7 +143,7 @@ public class DefaultDispatchAsync implements DispatchAsync {
                   public DispatchRequest execute(A action,
                       AsyncCallback<R> resultCallback) {
                     if (dispatchRequest.isPending()) {
-                      return serviceExecute(securityCookie, action,
+                      return deduplicateExecute(securityCookie, action,
                           resultCallback);
                     } else {
                       return null;
@@ -116,12 +163,60 @@ public class DefaultDispatchAsync implements DispatchAsync {
 
     } else {
 
+      return deduplicateExecute(securityCookie, action, callback);
+    }
+  }
+
+  /**
+   * Joins the action to an equal action in flight if deduplication allows it,
+   * otherwise sends it with {@link #serviceExecute}.
+   */
+  @SuppressWarnings("unchecked")
+  private <A extends Action<R>, R extends Result> DispatchRequest deduplicateExecute(
+      String securityCookie, A action, AsyncCallback<R> callback) {
+    if (!deduplicating || !canDeduplicate(action)) {
       return serviceExecute(securityCookie, action, callback);
     }
+
+    InFlightRequest<R> inFlightRequest = (InFlightRequest<R>) inFlightRequests.get(action);
+    if (inFlightRequest != null) {
+      return inFlightRequest.join(callback);
+    }
+
+    inFlightRequest = new InFlightRequest<R>(inFlightRequests, action);
+    DispatchRequest dispatchRequest = inFlightRequest.join(callback);
+    inFlightRequest.setRequest(serviceExecute(securityCookie, action, inFlightRequest));
+    return dispatchRequest;
   }
 
-  private <A extends Action<R>, R extends Result> DispatchRequest serviceExecute(
+  /**
+   * Override this method to exclude some actions from deduplication, for
+   * example actions that modify data on the server. All actions can be
+   * deduplicated by default.
+   *
+   * @param action The {@link Action} about to be sent.
+   * @return {@code true} if the action can join an equal action in flight,
+   *         {@code false} if it must always be sent.
+   */
+  protected boolean canDeduplicate(Action<?> action) {
+    return true;
+  }
+
+  /**
+   * Sends an action to the server, once the client action handlers are done
+   * with it. Override this to change how actions are sent, see
+   * {@link BatchingDispatchAsync}.
+   *
+   * @param securityCookie The content of the security cookie.
+   * @param action The {@link Action} to send.
+   * @param callback The callback receiving the {@link Result}.
+   * @return The {@link DispatchRequest} for the server call.
+   */
+  protected <A extends Action<R>, R extends Result> DispatchRequest serviceExecute(
       String securityCookie, final A action, final AsyncCallback<R> callback) {
+    ((ServiceDefTarget) realService).setServiceEntryPoint(baseUrl
+        + action.getServiceName());
+
     return new GwtHttpDispatchRequest(realService.execute(securityCookie,
         action, new AsyncCallback<Result>() {
           public void onFailure(Throwable caught) {
@@ -144,9 +239,6 @@ public class DefaultDispatchAsync implements DispatchAsync {
   @Override
   public <A extends Action<R>, R extends Result> DispatchRequest undo(
       final A action, final R result, final AsyncCallback<Void> callback) {
-    ((ServiceDefTarget) realService).setServiceEntryPoint(baseUrl
-        + action.getServiceName());
-
     final String securityCookie = securityCookieAccessor.getCookieContent();
 
     final IndirectProvider<ClientActionHandler<?, ?>> clientActionHandlerProvider = registry.find(action.getClass());
@@ -200,6 +292,8 @@ public class DefaultDispatchAsync implements DispatchAsync {
   private <A extends Action<R>, R extends Result> DispatchRequest serviceUndo(
       String securityCookie, final A action, final R result,
       final AsyncCallback<Void> callback) {
+    ((ServiceDefTarget) realService).setServiceEntryPoint(baseUrl
+        + action.getServiceName());
 
     return new GwtHttpDispatchRequest(realService.undo(securityCookie, action,
         result, new AsyncCallback<Void>() {
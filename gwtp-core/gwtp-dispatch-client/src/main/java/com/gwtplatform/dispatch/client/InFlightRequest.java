@@ -0,0 +1,145 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+
+/**
+ * A server call shared by every caller that executed an equal action while it was in flight, see
+ * {@link DefaultDispatchAsync#setDeduplicating(boolean)}. Each caller gets its own {@link DispatchRequest}, and the
+ * server call is only cancelled once every caller cancelled.
+ *
+ * @param <R> The type of the result.
+ */
+class InFlightRequest<R> implements AsyncCallback<R> {
+
+  private class JoinedRequest implements DispatchRequest {
+    private final AsyncCallback<R> callback;
+    private boolean cancelled;
+    private boolean completed;
+
+    JoinedRequest(AsyncCallback<R> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void cancel() {
+      if (isPending()) {
+        cancelled = true;
+        onCancel();
+      }
+    }
+
+    @Override
+    public boolean isPending() {
+      return !cancelled && !completed;
+    }
+  }
+
+  private final Map<Object, InFlightRequest<?>> inFlightRequests;
+  private final Object action;
+  private final List<JoinedRequest> joinedRequests = new ArrayList<JoinedRequest>();
+  private DispatchRequest request;
+  private boolean done;
+
+  /**
+   * Creates the in-flight request of an action and registers it.
+   *
+   * @param inFlightRequests The in-flight requests, by action.
+   * @param action The action being executed.
+   */
+  InFlightRequest(Map<Object, InFlightRequest<?>> inFlightRequests, Object action) {
+    this.inFlightRequests = inFlightRequests;
+    this.action = action;
+    inFlightRequests.put(action, this);
+  }
+
+  /**
+   * @param callback The callback of a caller.
+   * @return The {@link DispatchRequest} of that caller.
+   */
+  DispatchRequest join(AsyncCallback<R> callback) {
+    JoinedRequest joinedRequest = new JoinedRequest(callback);
+    joinedRequests.add(joinedRequest);
+    return joinedRequest;
+  }
+
+  /**
+   * @param request The {@link DispatchRequest} of the server call.
+   */
+  void setRequest(DispatchRequest request) {
+    this.request = request;
+  }
+
+  @Override
+  public void onSuccess(R result) {
+    for (JoinedRequest joinedRequest : finish()) {
+      joinedRequest.completed = true;
+      joinedRequest.callback.onSuccess(result);
+    }
+  }
+
+  @Override
+  public void onFailure(Throwable caught) {
+    for (JoinedRequest joinedRequest : finish()) {
+      joinedRequest.completed = true;
+      joinedRequest.callback.onFailure(caught);
+    }
+  }
+
+  private void onCancel() {
+    for (JoinedRequest joinedRequest : joinedRequests) {
+      if (joinedRequest.isPending()) {
+        return;
+      }
+    }
+
+    finish();
+    if (request != null) {
+      request.cancel();
+    }
+  }
+
+  /**
+   * Unregisters this request, so that equal actions executed from now on are sent again.
+   *
+   * @return The callers still waiting for the result.
+   */
+  private List<JoinedRequest> finish() {
+    List<JoinedRequest> pendingRequests = new ArrayList<JoinedRequest>();
+    if (done) {
+      return pendingRequests;
+    }
+
+    done = true;
+    if (inFlightRequests.get(action) == this) {
+      inFlightRequests.remove(action);
+    }
+    for (JoinedRequest joinedRequest : joinedRequests) {
+      if (joinedRequest.isPending()) {
+        pendingRequests.add(joinedRequest);
+      }
+    }
+    return pendingRequests;
+  }
+}
@@ -48,6 +48,16 @@ import java.util.HashMap;
  * <p>
  * 3. Flexibility of cache implementation to support custom caching
  * </p>
+ * <p>
+ * 4. Stale-while-revalidate: when {@link #isStale} says a prefetched result is
+ * stale, it is still returned immediately but the action is also executed in
+ * the background to refresh the cache. The fresh result is then passed to
+ * {@link #onRevalidated} and to the callback if it is a
+ * {@link RevalidatingCallback}. The returned {@link DispatchRequest} stays
+ * pending until then: cancelling it stops the callback from being notified,
+ * and the background call is cancelled once every caller waiting for it
+ * cancelled.
+ * </p>
  *
  * @param <A> The type of the action extending {@link Action}.
  * @param <R> The type of the result extending {@link Result}.
@@ -59,12 +69,91 @@ import java.util.HashMap;
 public abstract class AbstractCachingClientActionHandler<A extends Action<R>, R extends Result>
     extends AbstractClientActionHandler<A, R> {
 
+  /**
+   * The background refresh of a stale result, shared by every caller that was
+   * served that result while it was in flight.
+   */
+  private class Revalidation {
+    private final A action;
+    private final ArrayList<RevalidationRequest> revalidationRequests = new ArrayList<RevalidationRequest>();
+    private DispatchRequest request;
+
+    Revalidation(A action) {
+      this.action = action;
+    }
+
+    void onCancel() {
+      for (RevalidationRequest revalidationRequest : revalidationRequests) {
+        if (revalidationRequest.isPending()) {
+          return;
+        }
+      }
+
+      finish();
+      if (request != null) {
+        request.cancel();
+      }
+    }
+
+    /**
+     * Unregisters this refresh, so that the next stale result is refreshed
+     * again.
+     */
+    void finish() {
+      if (revalidationMap.get(action) == this) {
+        revalidationMap.remove(action);
+      }
+    }
+  }
+
+  /**
+   * The {@link DispatchRequest} returned to a caller that was served a stale
+   * result.
+   */
+  private class RevalidationRequest implements DispatchRequest {
+    private final Revalidation revalidation;
+    private final AsyncCallback<R> callback;
+    private boolean pending = true;
+
+    RevalidationRequest(Revalidation revalidation, AsyncCallback<R> callback) {
+      this.revalidation = revalidation;
+      this.callback = callback;
+    }
+
+    @Override
+    public void cancel() {
+      if (pending) {
+        pending = false;
+        revalidation.onCancel();
+      }
+    }
+
+    @Override
+    public boolean isPending() {
+      return pending;
+    }
+
+    @SuppressWarnings("unchecked")
+    void onRevalidated(R result) {
+      if (pending) {
+        pending = false;
+        if (callback instanceof RevalidatingCallback) {
+          ((RevalidatingCallback<R>) callback).onRevalidated(result);
+        }
+      }
+    }
+  }
+
   private final Cache cache;
 
   // Holds callbacks, so that for multiple requests before the first returns (is
   // served), we save round trips as well
   private HashMap<A, ArrayList<CallbackDispatchRequest<R>>> pendingRequestCallbackMap = new HashMap<A, ArrayList<CallbackDispatchRequest<R>>>();
 
+  // Holds the background refresh of each stale result, so that a single
+  // refresh is issued per action
+  private HashMap<A, Revalidation> revalidationMap = new HashMap<A, Revalidation>();
+
   public AbstractCachingClientActionHandler(Class<A> actionType, Cache cache) {
     super(actionType);
     this.cache = cache;
@@ -90,6 +179,11 @@ public abstract class AbstractCachingClientActionHandler<A extends Action<R>, R
       // Return the cached result
       resultCallback.onSuccess(prefetchResult);
 
+      // Refresh it in the background if it is stale
+      if (isStale(action, prefetchResult)) {
+        return revalidate(action, resultCallback, executeCommand);
+      }
+
       return new CompletedDispatchRequest();
     } else {
       // Execute
@@ -138,6 +232,45 @@ public abstract class AbstractCachingClientActionHandler<A extends Action<R>, R
     }
   };
 
+  private DispatchRequest revalidate(final A action, AsyncCallback<R> resultCallback,
+      ExecuteCommand<A, R> executeCommand) {
+    Revalidation revalidation = revalidationMap.get(action);
+    if (revalidation != null) {
+      // Already refreshing
+      RevalidationRequest revalidationRequest = new RevalidationRequest(revalidation, resultCallback);
+      revalidation.revalidationRequests.add(revalidationRequest);
+      return revalidationRequest;
+    }
+
+    final Revalidation newRevalidation = new Revalidation(action);
+    RevalidationRequest revalidationRequest = new RevalidationRequest(newRevalidation, resultCallback);
+    newRevalidation.revalidationRequests.add(revalidationRequest);
+    revalidationMap.put(action, newRevalidation);
+
+    newRevalidation.request = executeCommand.execute(action, new AsyncCallback<R>() {
+      @Override
+      public void onFailure(Throwable caught) {
+        // Keep serving the stale result, the next call will try again
+        newRevalidation.finish();
+        for (RevalidationRequest revalidationRequest : newRevalidation.revalidationRequests) {
+          revalidationRequest.pending = false;
+        }
+      }
+
+      @Override
+      public void onSuccess(R result) {
+        newRevalidation.finish();
+        postfetch(action, result);
+        onRevalidated(action, result);
+
+        for (RevalidationRequest revalidationRequest : newRevalidation.revalidationRequests) {
+          revalidationRequest.onRevalidated(result);
+        }
+      }
+    });
+    return revalidationRequest;
+  }
+
   @Override
   public DispatchRequest undo(A action, R result, AsyncCallback<Void> callback,
       UndoCommand<A, R> undoCommand) {
@@ -175,6 +308,32 @@ public abstract class AbstractCachingClientActionHandler<A extends Action<R>, R
    */
   protected abstract void postfetch(A action, R result);
 
+  /**
+   * Override this method to enable stale-while-revalidate. It is called when
+   * {@link #prefetch} returned a result: if the result is stale, it is still
+   * returned right away, but the action is also executed on the server to
+   * refresh the cache. By default, prefetched results are never stale.
+   *
+   * @param action The action that was prefetched.
+   * @param prefetchResult The result returned by {@link #prefetch}.
+   * @return {@code true} if the result should be refreshed in the background,
+   *         {@code false} otherwise.
+   */
+  protected boolean isStale(A action, R prefetchResult) {
+    return false;
+  }
+
+  /**
+   * Override this method to be notified when a stale result has been
+   * refreshed in the background, for example to fire an event. It is called
+   * after {@link #postfetch}.
+   *
+   * @param action The action that was revalidated.
+   * @param result The fresh result.
+   */
+  protected void onRevalidated(A action, R result) {
+  }
+
   /**
    * @return the cache
    */
@@ -22,6 +22,11 @@ import com.gwtplatform.dispatch.shared.Result;
 /**
  * Default implementation of {@link AbstractCachingClientActionHandler}. It supports {@link Action} caching
  * </p>
+ * <p>
+ * When created with a {@code staleTimeInMs}, cached results older than that are still returned immediately, but are
+ * refreshed in the background, see {@link AbstractCachingClientActionHandler#isStale}. The expiry time of the
+ * {@link Cache} remains the hard limit after which results are fetched from the server before returning.
+ * </p>
  * TODO Add support for timeout based auto-expiry of cached results?
  *
  * @param <A> The type of the action extending {@link Action}.
@@ -32,8 +37,21 @@ import com.gwtplatform.dispatch.shared.Result;
 public class ActionCachingHandler<A extends Action<R>, R extends Result> extends
     AbstractCachingClientActionHandler<A, R> {
 
+  private final long staleTimeInMs;
+
   public ActionCachingHandler(Class<A> actionType, Cache cache) {
+    this(actionType, cache, -1);
+  }
+
+  /**
+   * @param actionType The type of {@link Action} handled.
+   * @param cache The {@link Cache} holding the results.
+   * @param staleTimeInMs Time in milliseconds after which a cached result is revalidated in the background, or -1 to
+   *          never revalidate.
+   */
+  public ActionCachingHandler(Class<A> actionType, Cache cache, long staleTimeInMs) {
     super(actionType, cache);
+    this.staleTimeInMs = staleTimeInMs;
   }
 
   @Override
@@ -47,6 +65,16 @@ public class ActionCachingHandler<A extends Action<R>, R extends Result> extends
     }
   }
 
+  @Override
+  protected boolean isStale(A action, R prefetchResult) {
+    if (staleTimeInMs < 0) {
+      return false;
+    }
+
+    long lastUpdateTime = getCache().getLastUpateTime(action);
+    return lastUpdateTime >= 0 && lastUpdateTime + staleTimeInMs < System.currentTimeMillis();
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   protected R prefetch(A action) {
@@ -71,4 +71,27 @@ public interface Cache {
    * @return The last update time as long value, if the value is cached, otherwise -1
    */
   long getLastUpateTime(Object key);
+
+  /**
+   * Returns the number of calls to {@link #get(Object)} that found a value.
+   *
+   * @return The hit count.
+   */
+  long getHitCount();
+
+  /**
+   * Returns the number of calls to {@link #get(Object)} that did not find a value, either because it was never cached
+   * or because it expired or was evicted.
+   *
+   * @return The miss count.
+   */
+  long getMissCount();
+
+  /**
+   * Returns the number of entries removed by the cache itself, because they expired or to make room for other entries.
+   * Calls to {@link #remove(Object)} and {@link #clear()} are not counted.
+   *
+   * @return The eviction count.
+   */
+  long getEvictionCount();
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Turns cache keys and values into strings so that {@link StorageCacheImpl} can persist them. Entries whose key or
+ * value can't be serialized are only kept in memory.
+ * <p />
+ * GWT-RPC can't be used here: its client-side streams write the client-to-server format but only read the
+ * server-to-client one. A compact format such as JSON, for example through AutoBeans, is a good fit.
+ * <p />
+ * {@link DefaultCacheSerializer}, used unless another implementation is bound, persists the entries of the action types
+ * registered with it. Bind another implementation with
+ * {@link com.gwtplatform.dispatch.client.gin.DispatchAsyncModule.Builder#persistentCache(Class)}.
+ */
+@ImplementedBy(DefaultCacheSerializer.class)
+public interface CacheSerializer {
+
+  /**
+   * Returns the version of the serialized format. Entries persisted with another version are discarded, so change it
+   * whenever the serialized form of a key or value changes.
+   *
+   * @return The version, must not contain {@code '.'}.
+   */
+  String getVersion();
+
+  /**
+   * @param key The cache key, usually an {@link com.gwtplatform.dispatch.shared.Action Action}.
+   * @return A string uniquely identifying the key, or {@code null} if the entry should not be persisted.
+   */
+  String serializeKey(Object key);
+
+  /**
+   * @param value The cached value, usually a {@link com.gwtplatform.dispatch.shared.Result Result}.
+   * @return The serialized value, or {@code null} if the entry should not be persisted.
+   */
+  String serializeValue(Object value);
+
+  /**
+   * @param serializedValue A value returned by {@link #serializeValue(Object)}, possibly in a previous session.
+   * @return The value, or {@code null} if it can't be read anymore.
+   */
+  Object deserializeValue(String serializedValue);
+}
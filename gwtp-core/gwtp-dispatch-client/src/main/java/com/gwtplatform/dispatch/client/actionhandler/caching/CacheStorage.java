@@ -0,0 +1,55 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+/**
+ * A string key-value store that outlives the page, used by {@link StorageCacheImpl}. Its methods mirror those of
+ * {@link com.google.gwt.storage.client.Storage}, see {@link LocalCacheStorage}.
+ */
+public interface CacheStorage {
+
+  /**
+   * @return The number of items in the storage.
+   */
+  int getLength();
+
+  /**
+   * @param index The index of the key.
+   * @return The key at that index, or {@code null}.
+   */
+  String key(int index);
+
+  /**
+   * @param key The key of the item.
+   * @return The item, or {@code null} if there is none.
+   */
+  String getItem(String key);
+
+  /**
+   * Stores an item.
+   *
+   * @param key The key of the item.
+   * @param data The item.
+   * @throws RuntimeException If the storage is full.
+   */
+  void setItem(String key, String data);
+
+  /**
+   * @param key The key of the item to remove.
+   */
+  void removeItem(String key);
+}
@@ -47,6 +47,9 @@ public class DefaultCacheImpl implements Cache {
 
   private HashMap<Object, CacheValue> map;
   private long autoExpireTimeInMs;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
 
   /**
    * Initializes the cache with auto expiration OFF.
@@ -83,6 +86,7 @@ public class DefaultCacheImpl implements Cache {
     CacheValue cacheValue = map.get(key);
     // Check for null
     if (cacheValue == null) {
+      missCount++;
       return null;
     }
     // Check if to be autoexpired, autoExpireTimeInMs = 0 means expire immediately / no caching
@@ -93,10 +97,13 @@ public class DefaultCacheImpl implements Cache {
       if (cacheValue.getLastUpateTime() + this.autoExpireTimeInMs < now) {
         // Expired, remove
         remove(key);
+        evictionCount++;
+        missCount++;
         return null;
       }
     }
     // Not expired, return the value
+    hitCount++;
     return cacheValue.getValue();
   }
 
@@ -148,4 +155,18 @@ public class DefaultCacheImpl implements Cache {
     this.autoExpireTimeInMs = autoExpireTimeInMs;
   }
 
+  @Override
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount;
+  }
 }
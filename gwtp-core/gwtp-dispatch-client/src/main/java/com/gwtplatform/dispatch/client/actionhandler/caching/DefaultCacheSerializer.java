@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.inject.Singleton;
+
+/**
+ * The default {@link CacheSerializer}, which persists the entries whose key and value types were registered with
+ * {@link #register}. Other entries are only kept in memory by {@link StorageCacheImpl}.
+ * <p />
+ * Inject this singleton and register an {@link EntrySerializer} for each action you want to persist, before
+ * executing it. For example:
+ *
+ * <pre>
+ * serializer.register("countries", GetCountriesAction.class, GetCountriesResult.class,
+ *     new EntrySerializer&lt;GetCountriesAction, GetCountriesResult&gt;() { ... });
+ * </pre>
+ * Each entry is tagged with the name it was registered with. Entries whose name is no longer registered are discarded
+ * when read, so put a version in the name, say {@code "countries.2"}, and change it whenever the serialized form of
+ * the key or value changes.
+ */
+@Singleton
+public class DefaultCacheSerializer implements CacheSerializer {
+
+  /**
+   * Turns the keys and values of one type of entry into strings and back.
+   *
+   * @param <K> The type of the keys, usually an {@link com.gwtplatform.dispatch.shared.Action Action}.
+   * @param <V> The type of the values, usually a {@link com.gwtplatform.dispatch.shared.Result Result}.
+   */
+  public interface EntrySerializer<K, V> {
+    /**
+     * @param key The cache key.
+     * @return A string uniquely identifying the key among the keys of this type, or {@code null} if the entry should
+     *         not be persisted.
+     */
+    String serializeKey(K key);
+
+    /**
+     * @param value The cached value.
+     * @return The serialized value, or {@code null} if the entry should not be persisted.
+     */
+    String serializeValue(V value);
+
+    /**
+     * @param serializedValue A value returned by {@link #serializeValue}, possibly in a previous session.
+     * @return The value, or {@code null} if it can't be read anymore.
+     */
+    V deserializeValue(String serializedValue);
+  }
+
+  private static final String VERSION = "1";
+  private static final char SEPARATOR = ':';
+
+  private final Map<Class<?>, String> keyTypeNames = new HashMap<Class<?>, String>();
+  private final Map<Class<?>, String> valueTypeNames = new HashMap<Class<?>, String>();
+  private final Map<String, EntrySerializer<?, ?>> serializers = new HashMap<String, EntrySerializer<?, ?>>();
+
+  /**
+   * Registers how to persist the entries whose key is of type {@code keyType} and whose value is of type
+   * {@code valueType}. Only the exact types are matched, not their subclasses.
+   *
+   * @param name The unique name of this type of entry, must not contain {@code ':'}.
+   * @param keyType The class of the keys.
+   * @param valueType The class of the values.
+   * @param serializer The {@link EntrySerializer}.
+   */
+  public <K, V> void register(String name, Class<K> keyType, Class<V> valueType, EntrySerializer<K, V> serializer) {
+    if (name.indexOf(SEPARATOR) >= 0) {
+      throw new IllegalArgumentException("name must not contain '" + SEPARATOR + "': " + name);
+    }
+
+    keyTypeNames.put(keyType, name);
+    valueTypeNames.put(valueType, name);
+    serializers.put(name, serializer);
+  }
+
+  @Override
+  public String getVersion() {
+    return VERSION;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public String serializeKey(Object key) {
+    String name = keyTypeNames.get(key.getClass());
+    if (name == null) {
+      return null;
+    }
+
+    String serializedKey = ((EntrySerializer<Object, ?>) serializers.get(name)).serializeKey(key);
+    return serializedKey == null ? null : name + SEPARATOR + serializedKey;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public String serializeValue(Object value) {
+    String name = valueTypeNames.get(value.getClass());
+    if (name == null) {
+      return null;
+    }
+
+    String serializedValue = ((EntrySerializer<?, Object>) serializers.get(name)).serializeValue(value);
+    return serializedValue == null ? null : name + SEPARATOR + serializedValue;
+  }
+
+  @Override
+  public Object deserializeValue(String serializedValue) {
+    int separatorIndex = serializedValue.indexOf(SEPARATOR);
+    if (separatorIndex < 0) {
+      return null;
+    }
+
+    EntrySerializer<?, ?> serializer = serializers.get(serializedValue.substring(0, separatorIndex));
+    return serializer == null ? null : serializer.deserializeValue(serializedValue.substring(separatorIndex + 1));
+  }
+}
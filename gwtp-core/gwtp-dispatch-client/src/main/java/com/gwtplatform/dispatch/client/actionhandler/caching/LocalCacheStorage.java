@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import com.google.gwt.storage.client.Storage;
+
+/**
+ * A {@link CacheStorage} backed by the HTML5 local storage of the browser.
+ */
+public class LocalCacheStorage implements CacheStorage {
+
+  /**
+   * @return A {@link LocalCacheStorage}, or {@code null} if the browser does not support local storage or it is
+   *         disabled.
+   */
+  public static LocalCacheStorage getIfSupported() {
+    Storage storage = Storage.getLocalStorageIfSupported();
+    return storage == null ? null : new LocalCacheStorage(storage);
+  }
+
+  private final Storage storage;
+
+  private LocalCacheStorage(Storage storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public int getLength() {
+    return storage.getLength();
+  }
+
+  @Override
+  public String key(int index) {
+    return storage.key(index);
+  }
+
+  @Override
+  public String getItem(String key) {
+    return storage.getItem(key);
+  }
+
+  @Override
+  public void setItem(String key, String data) {
+    storage.setItem(key, data);
+  }
+
+  @Override
+  public void removeItem(String key) {
+    storage.removeItem(key);
+  }
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+/**
+ * A bounded implementation of {@link Cache}, evicting the least recently used entries once it holds more than a
+ * maximum number of entries or, optionally, once the estimated size of its entries exceeds a maximum size.
+ * <p />
+ * When automatic expiration is on, expired entries are also removed by a sweep that runs periodically through the
+ * {@link Scheduler} for as long as the cache is not empty, so they don't linger in memory until someone reads them.
+ *
+ * @see DefaultCacheImpl
+ */
+public class LruCacheImpl implements Cache {
+
+  /**
+   * Estimates the memory used by a cache entry, in whatever unit the maximum size of the cache is expressed.
+   */
+  public interface SizeEstimator {
+    /**
+     * @param key The key of the entry.
+     * @param value The value of the entry.
+     * @return The estimated size of the entry, must not be negative.
+     */
+    int estimateSize(Object key, Object value);
+  }
+
+  /**
+   * The default interval between two expiry sweeps, in milliseconds.
+   */
+  public static final int DEFAULT_SWEEP_INTERVAL_MS = 60000;
+
+  private class CacheValue {
+    private final Object value;
+    private final long lastUpdateTime;
+    private final int size;
+
+    public CacheValue(Object value, int size) {
+      this.value = value;
+      this.lastUpdateTime = System.currentTimeMillis();
+      this.size = size;
+    }
+  }
+
+  private final LinkedHashMap<Object, CacheValue> map = new LinkedHashMap<Object, CacheValue>(16, 0.75f, true);
+  private final int maxEntries;
+  private final long maxSize;
+  private final SizeEstimator sizeEstimator;
+  private final Scheduler scheduler;
+  private final int sweepIntervalMs;
+
+  private long autoExpireTimeInMs;
+  private long size;
+  private boolean sweepScheduled;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Initializes the cache with auto expiration OFF.
+   *
+   * @param maxEntries The maximum number of entries.
+   */
+  public LruCacheImpl(int maxEntries) {
+    this(maxEntries, -1);
+  }
+
+  /**
+   * Initializes the cache with auto expiration ON.
+   *
+   * @param maxEntries The maximum number of entries.
+   * @param autoExpireTimeInMs Time in milliseconds after which entries in cache expire, or -1 for no expiration.
+   */
+  public LruCacheImpl(int maxEntries, long autoExpireTimeInMs) {
+    this(maxEntries, -1, null, autoExpireTimeInMs, Scheduler.get(), DEFAULT_SWEEP_INTERVAL_MS);
+  }
+
+  /**
+   * Initializes the cache with a bound on both the number of entries and their estimated size.
+   *
+   * @param maxEntries The maximum number of entries.
+   * @param maxSize The maximum total size of the entries as computed by {@code sizeEstimator}, or -1 for no bound.
+   * @param sizeEstimator The {@link SizeEstimator}, can be {@code null} if {@code maxSize} is -1.
+   * @param autoExpireTimeInMs Time in milliseconds after which entries in cache expire, or -1 for no expiration.
+   * @param scheduler The {@link Scheduler} used to run the expiry sweep.
+   * @param sweepIntervalMs The interval between two expiry sweeps, in milliseconds.
+   */
+  public LruCacheImpl(int maxEntries, long maxSize, SizeEstimator sizeEstimator, long autoExpireTimeInMs,
+      Scheduler scheduler, int sweepIntervalMs) {
+    if (maxSize >= 0 && sizeEstimator == null) {
+      throw new IllegalArgumentException("A size estimator is required to bound the size of the cache");
+    }
+
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+    this.sizeEstimator = sizeEstimator;
+    this.autoExpireTimeInMs = autoExpireTimeInMs;
+    this.scheduler = scheduler;
+    this.sweepIntervalMs = sweepIntervalMs;
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    // No point caching if autoExpireTimeInMs = 0
+    if (autoExpireTimeInMs == 0) {
+      return;
+    }
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+    if (value == null) {
+      throw new NullPointerException("value is null");
+    }
+
+    remove(key);
+
+    int entrySize = sizeEstimator == null ? 0 : sizeEstimator.estimateSize(key, value);
+    if (maxSize >= 0 && entrySize > maxSize) {
+      // Would evict everything else and still not fit
+      return;
+    }
+
+    map.put(key, new CacheValue(value, entrySize));
+    size += entrySize;
+    evictLeastRecentlyUsed();
+    scheduleSweep();
+  }
+
+  @Override
+  public Object get(Object key) {
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+
+    CacheValue cacheValue = map.get(key);
+    if (cacheValue == null) {
+      missCount++;
+      return null;
+    }
+    if (isExpired(cacheValue, System.currentTimeMillis())) {
+      remove(key);
+      evictionCount++;
+      missCount++;
+      return null;
+    }
+
+    hitCount++;
+    return cacheValue.value;
+  }
+
+  @Override
+  public void clear() {
+    map.clear();
+    size = 0;
+  }
+
+  @Override
+  public void remove(Object key) {
+    CacheValue cacheValue = map.remove(key);
+    if (cacheValue != null) {
+      size -= cacheValue.size;
+    }
+  }
+
+  @Override
+  public long getLastUpateTime(Object key) {
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+
+    CacheValue cacheValue = map.get(key);
+    if (cacheValue != null) {
+      return cacheValue.lastUpdateTime;
+    } else {
+      return -1;
+    }
+  }
+
+  @Override
+  public long getAutoExpireTimeInMs() {
+    return autoExpireTimeInMs;
+  }
+
+  @Override
+  public void setAutoExpireTimeInMs(long autoExpireTimeInMs) {
+    this.autoExpireTimeInMs = autoExpireTimeInMs;
+    scheduleSweep();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return The number of entries in the cache, including the expired entries not swept yet.
+   */
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * @return The total estimated size of the entries in the cache, 0 if there is no {@link SizeEstimator}.
+   */
+  public long getEstimatedSize() {
+    return size;
+  }
+
+  /**
+   * Removes every expired entry. This is called periodically while the cache is not empty, but can also be called
+   * directly.
+   */
+  public void sweep() {
+    if (autoExpireTimeInMs < 0) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<Object, CacheValue>> iterator = map.entrySet().iterator();
+    while (iterator.hasNext()) {
+      CacheValue cacheValue = iterator.next().getValue();
+      if (isExpired(cacheValue, now)) {
+        iterator.remove();
+        size -= cacheValue.size;
+        evictionCount++;
+      }
+    }
+  }
+
+  private boolean isExpired(CacheValue cacheValue, long now) {
+    return autoExpireTimeInMs >= 0 && cacheValue.lastUpdateTime + autoExpireTimeInMs < now;
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<CacheValue> iterator = map.values().iterator();
+    while ((map.size() > maxEntries || (maxSize >= 0 && size > maxSize)) && iterator.hasNext()) {
+      CacheValue cacheValue = iterator.next();
+      iterator.remove();
+      size -= cacheValue.size;
+      evictionCount++;
+    }
+  }
+
+  private void scheduleSweep() {
+    if (sweepScheduled || autoExpireTimeInMs <= 0 || map.isEmpty()) {
+      return;
+    }
+
+    sweepScheduled = true;
+    scheduler.scheduleFixedDelay(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        sweep();
+        // Stop sweeping an empty cache, the next put will start over
+        sweepScheduled = autoExpireTimeInMs > 0 && !map.isEmpty();
+        return sweepScheduled;
+      }
+    }, sweepIntervalMs);
+  }
+}
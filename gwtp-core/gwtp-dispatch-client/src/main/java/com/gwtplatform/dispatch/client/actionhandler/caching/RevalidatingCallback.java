@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * An {@link AsyncCallback} that also wants the fresh result when a stale cached result was served, see
+ * {@link AbstractCachingClientActionHandler#isStale}. {@link #onSuccess} is called first with the stale result, then
+ * {@link #onRevalidated} once the server answered. Failures of the background refresh are not passed to this callback,
+ * but like any other failed call they still go through the
+ * {@link com.gwtplatform.dispatch.client.ExceptionHandler ExceptionHandler} of the dispatcher. Cancel the
+ * {@link com.gwtplatform.dispatch.shared.DispatchRequest DispatchRequest} returned with the stale result to stop
+ * waiting for the fresh one.
+ *
+ * @param <R> The type of the result.
+ */
+public interface RevalidatingCallback<R> extends AsyncCallback<R> {
+
+  /**
+   * Called with the fresh result once a stale result has been revalidated on the server.
+   *
+   * @param result The fresh result.
+   */
+  void onRevalidated(R result);
+}
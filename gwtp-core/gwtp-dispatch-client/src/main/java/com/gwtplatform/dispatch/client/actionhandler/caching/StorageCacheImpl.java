@@ -0,0 +1,387 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.inject.Inject;
+
+/**
+ * An implementation of {@link Cache} that persists its entries in the browser storage, so that they survive page
+ * reloads. Keys and values are turned into strings by a {@link CacheSerializer}, {@link DefaultCacheSerializer} unless
+ * another one is bound.
+ * <p />
+ * Persisted entries are namespaced with the version of the {@link CacheSerializer}, and the entries of other versions
+ * are discarded when the cache is created. The persisted entries are bounded by a number of bytes, the least recently
+ * used ones being evicted first.
+ * <p />
+ * Entries that can't be serialized, or that don't fit, are kept in an in-memory {@link DefaultCacheImpl}. The same
+ * fallback is used for every entry when the browser storage is not available.
+ */
+public class StorageCacheImpl implements Cache {
+
+  /**
+   * The default maximum number of bytes persisted, a fraction of the quota of most browsers.
+   */
+  public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  private static final String KEY_PREFIX = "gwtp.cache.";
+  private static final char SEPARATOR = ':';
+
+  private class CacheValue {
+    private final Object value;
+    private final long lastUpdateTime;
+
+    public CacheValue(Object value, long lastUpdateTime) {
+      this.value = value;
+      this.lastUpdateTime = lastUpdateTime;
+    }
+  }
+
+  private final CacheStorage storage;
+  private final CacheSerializer serializer;
+  private final Cache fallback;
+  private final String versionPrefix;
+  private final int maxBytes;
+
+  // Persisted entries already deserialized during this session
+  private final Map<String, CacheValue> values = new HashMap<String, CacheValue>();
+  // Size in bytes of every persisted entry, least recently used first
+  private final LinkedHashMap<String, Integer> sizes = new LinkedHashMap<String, Integer>(16, 0.75f, true);
+
+  private long autoExpireTimeInMs;
+  private long bytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Initializes the cache with auto expiration OFF, in the local storage of the browser.
+   *
+   * @param serializer The {@link CacheSerializer}.
+   */
+  @Inject
+  public StorageCacheImpl(CacheSerializer serializer) {
+    this(serializer, LocalCacheStorage.getIfSupported(), DEFAULT_MAX_BYTES, -1);
+  }
+
+  /**
+   * @param serializer The {@link CacheSerializer}.
+   * @param storage The {@link CacheStorage}, or {@code null} to only cache in memory.
+   * @param maxBytes The maximum number of bytes persisted.
+   * @param autoExpireTimeInMs Time in milliseconds after which entries in cache expire, or -1 for no expiration.
+   */
+  public StorageCacheImpl(CacheSerializer serializer, CacheStorage storage, int maxBytes, long autoExpireTimeInMs) {
+    this.serializer = serializer;
+    this.storage = storage;
+    this.maxBytes = maxBytes;
+    this.autoExpireTimeInMs = autoExpireTimeInMs;
+    this.fallback = new DefaultCacheImpl(autoExpireTimeInMs);
+    this.versionPrefix = KEY_PREFIX + serializer.getVersion() + ".";
+
+    if (storage != null) {
+      loadPersistedEntries();
+    }
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    // No point caching if autoExpireTimeInMs = 0
+    if (autoExpireTimeInMs == 0) {
+      return;
+    }
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+    if (value == null) {
+      throw new NullPointerException("value is null");
+    }
+
+    String storageKey = getStorageKey(key);
+    if (storageKey != null) {
+      removePersisted(storageKey);
+      if (persist(storageKey, value)) {
+        fallback.remove(key);
+        return;
+      }
+    }
+
+    fallback.put(key, value);
+  }
+
+  @Override
+  public Object get(Object key) {
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+
+    String storageKey = getStorageKey(key);
+    if (storageKey == null || !sizes.containsKey(storageKey)) {
+      return fallback.get(key);
+    }
+
+    CacheValue cacheValue = readPersisted(storageKey);
+    if (cacheValue == null) {
+      missCount++;
+      return null;
+    }
+    if (autoExpireTimeInMs >= 0 && cacheValue.lastUpdateTime + autoExpireTimeInMs < System.currentTimeMillis()) {
+      removePersisted(storageKey);
+      evictionCount++;
+      missCount++;
+      return null;
+    }
+
+    hitCount++;
+    return cacheValue.value;
+  }
+
+  @Override
+  public void clear() {
+    for (String storageKey : new ArrayList<String>(sizes.keySet())) {
+      removePersisted(storageKey);
+    }
+    fallback.clear();
+  }
+
+  @Override
+  public void remove(Object key) {
+    String storageKey = getStorageKey(key);
+    if (storageKey != null) {
+      removePersisted(storageKey);
+    }
+    fallback.remove(key);
+  }
+
+  @Override
+  public long getLastUpateTime(Object key) {
+    // Check for null as Cache should not store null values / keys
+    if (key == null) {
+      throw new NullPointerException("key is null");
+    }
+
+    String storageKey = getStorageKey(key);
+    if (storageKey == null || !sizes.containsKey(storageKey)) {
+      return fallback.getLastUpateTime(key);
+    }
+
+    CacheValue cacheValue = readPersisted(storageKey);
+    return cacheValue == null ? -1 : cacheValue.lastUpdateTime;
+  }
+
+  @Override
+  public long getAutoExpireTimeInMs() {
+    return autoExpireTimeInMs;
+  }
+
+  @Override
+  public void setAutoExpireTimeInMs(long autoExpireTimeInMs) {
+    this.autoExpireTimeInMs = autoExpireTimeInMs;
+    fallback.setAutoExpireTimeInMs(autoExpireTimeInMs);
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount + fallback.getHitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount + fallback.getMissCount();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount + fallback.getEvictionCount();
+  }
+
+  /**
+   * @return The number of bytes currently persisted by this cache.
+   */
+  public long getPersistedBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return {@code true} if entries are persisted, {@code false} if the browser storage is not available.
+   */
+  public boolean isPersistent() {
+    return storage != null;
+  }
+
+  private String getStorageKey(Object key) {
+    if (storage == null) {
+      return null;
+    }
+
+    String serializedKey = serializer.serializeKey(key);
+    return serializedKey == null ? null : versionPrefix + serializedKey;
+  }
+
+  /**
+   * Indexes the entries persisted with the current version, least recently updated first, and discards the others.
+   */
+  private void loadPersistedEntries() {
+    final Map<String, Long> updateTimes = new HashMap<String, Long>();
+    Map<String, Integer> loadedSizes = new HashMap<String, Integer>();
+    List<String> obsoleteKeys = new ArrayList<String>();
+    for (int i = 0; i < storage.getLength(); i++) {
+      String storageKey = storage.key(i);
+      if (storageKey == null || !storageKey.startsWith(KEY_PREFIX)) {
+        continue;
+      }
+
+      String item = storage.getItem(storageKey);
+      long lastUpdateTime = item == null ? -1 : parseUpdateTime(item);
+      if (!storageKey.startsWith(versionPrefix) || lastUpdateTime < 0) {
+        obsoleteKeys.add(storageKey);
+      } else {
+        updateTimes.put(storageKey, lastUpdateTime);
+        loadedSizes.put(storageKey, sizeOf(storageKey, item));
+      }
+    }
+
+    for (String storageKey : obsoleteKeys) {
+      storage.removeItem(storageKey);
+    }
+
+    List<String> storageKeys = new ArrayList<String>(loadedSizes.keySet());
+    Collections.sort(storageKeys, new Comparator<String>() {
+      @Override
+      public int compare(String key1, String key2) {
+        return updateTimes.get(key1).compareTo(updateTimes.get(key2));
+      }
+    });
+
+    for (String storageKey : storageKeys) {
+      int size = loadedSizes.get(storageKey);
+      sizes.put(storageKey, size);
+      bytes += size;
+    }
+    evictLeastRecentlyUsed(0);
+  }
+
+  private CacheValue readPersisted(String storageKey) {
+    // Marks the entry as recently used
+    sizes.get(storageKey);
+
+    CacheValue cacheValue = values.get(storageKey);
+    if (cacheValue != null) {
+      return cacheValue;
+    }
+
+    String item = storage.getItem(storageKey);
+    Object value = null;
+    if (item != null) {
+      try {
+        value = serializer.deserializeValue(item.substring(item.indexOf(SEPARATOR) + 1));
+      } catch (RuntimeException e) {
+        value = null;
+      }
+    }
+
+    if (value == null) {
+      // Removed behind our back or unreadable
+      removePersisted(storageKey);
+      return null;
+    }
+
+    cacheValue = new CacheValue(value, parseUpdateTime(item));
+    values.put(storageKey, cacheValue);
+    return cacheValue;
+  }
+
+  private boolean persist(String storageKey, Object value) {
+    String serializedValue = serializer.serializeValue(value);
+    if (serializedValue == null) {
+      return false;
+    }
+
+    long now = System.currentTimeMillis();
+    String item = String.valueOf(now) + SEPARATOR + serializedValue;
+    int size = sizeOf(storageKey, item);
+    if (size > maxBytes) {
+      return false;
+    }
+
+    evictLeastRecentlyUsed(size);
+    try {
+      storage.setItem(storageKey, item);
+    } catch (RuntimeException e) {
+      // The browser quota is exceeded, probably by someone else
+      return false;
+    }
+
+    sizes.put(storageKey, size);
+    bytes += size;
+    values.put(storageKey, new CacheValue(value, now));
+    return true;
+  }
+
+  private void removePersisted(String storageKey) {
+    Integer size = sizes.remove(storageKey);
+    if (size != null) {
+      bytes -= size;
+    }
+    values.remove(storageKey);
+    storage.removeItem(storageKey);
+  }
+
+  /**
+   * Evicts the least recently used entries until {@code extraBytes} more bytes can be persisted.
+   */
+  private void evictLeastRecentlyUsed(int extraBytes) {
+    Iterator<Map.Entry<String, Integer>> iterator = sizes.entrySet().iterator();
+    while (bytes + extraBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Integer> entry = iterator.next();
+      iterator.remove();
+      bytes -= entry.getValue();
+      values.remove(entry.getKey());
+      storage.removeItem(entry.getKey());
+      evictionCount++;
+    }
+  }
+
+  private long parseUpdateTime(String item) {
+    int separatorIndex = item.indexOf(SEPARATOR);
+    if (separatorIndex <= 0) {
+      return -1;
+    }
+
+    try {
+      return Long.parseLong(item.substring(0, separatorIndex));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Browsers store strings in UTF-16, count two bytes per character.
+   */
+  private int sizeOf(String storageKey, String item) {
+    return 2 * (storageKey.length() + item.length());
+  }
+}
@@ -17,14 +17,22 @@
 package com.gwtplatform.dispatch.client.gin;
 
 import com.google.gwt.inject.client.AbstractGinModule;
+import com.google.inject.Inject;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import com.gwtplatform.dispatch.client.BatchingDispatchAsync;
 import com.gwtplatform.dispatch.client.DefaultDispatchAsync;
 import com.gwtplatform.dispatch.client.DefaultExceptionHandler;
 import com.gwtplatform.dispatch.client.DefaultSecurityCookieAccessor;
 import com.gwtplatform.dispatch.client.ExceptionHandler;
 import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandlerRegistry;
 import com.gwtplatform.dispatch.client.actionhandler.DefaultClientActionHandlerRegistry;
+import com.gwtplatform.dispatch.client.actionhandler.caching.Cache;
+import com.gwtplatform.dispatch.client.actionhandler.caching.CacheSerializer;
+import com.gwtplatform.dispatch.client.actionhandler.caching.DefaultCacheSerializer;
+import com.gwtplatform.dispatch.client.actionhandler.caching.StorageCacheImpl;
 import com.gwtplatform.dispatch.shared.DispatchAsync;
 import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
 
@@ -64,9 +72,20 @@ import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
  * @author Brendan Doherty
  */
 public class DispatchAsyncModule extends AbstractGinModule {
+  private static final String BATCHING = "gwtp.dispatch.batching";
+
   protected final Class<? extends ExceptionHandler> exceptionHandlerType;
   protected final Class<? extends SecurityCookieAccessor> sessionAccessorType;
   protected final Class<? extends ClientActionHandlerRegistry> clientActionHandlerRegistryType;
+  protected final boolean batching;
+  protected final boolean deduplication;
+  protected final Class<? extends Cache> cacheType;
+  protected final Class<? extends CacheSerializer> cacheSerializerType;
+
+  // Gin calls provider methods on a new instance of the module, so the builder
+  // settings reach provideDispatchAsync through static injection.
+  private static boolean batchingSetting;
+  private static boolean deduplicationSetting;
 
   /**
    * A {@link DispatchAsyncModule} builder.
@@ -82,6 +101,10 @@ public class DispatchAsyncModule extends AbstractGinModule {
     protected Class<? extends ExceptionHandler> exceptionHandlerType = DefaultExceptionHandler.class;
     protected Class<? extends SecurityCookieAccessor> sessionAccessorType = DefaultSecurityCookieAccessor.class;
     protected Class<? extends ClientActionHandlerRegistry> clientActionHandlerRegistryType = DefaultClientActionHandlerRegistry.class;
+    protected boolean batching;
+    protected boolean deduplication;
+    protected Class<? extends Cache> cacheType;
+    protected Class<? extends CacheSerializer> cacheSerializerType;
 
     /**
      * Constructs {@link DispatchAsyncModule} builder.
@@ -125,6 +148,70 @@ public class DispatchAsyncModule extends AbstractGinModule {
       return this;
     }
 
+    /**
+     * Specify whether the actions executed during the same event loop should be
+     * sent to the server in a single call, see {@link BatchingDispatchAsync}.
+     * Disabled by default.
+     *
+     * @param batching {@code true} to batch actions, {@code false} otherwise.
+     * @return a {@link Builder} object.
+     */
+    public Builder batching(boolean batching) {
+      this.batching = batching;
+      return this;
+    }
+
+    /**
+     * Specify whether an action equal to an action still in flight should
+     * wait for the result of the latter instead of being sent again, see
+     * {@link DefaultDispatchAsync#setDeduplicating(boolean)}. Disabled by
+     * default.
+     *
+     * @param deduplication {@code true} to deduplicate actions, {@code false}
+     *          otherwise.
+     * @return a {@link Builder} object.
+     */
+    public Builder deduplication(boolean deduplication) {
+      this.deduplication = deduplication;
+      return this;
+    }
+
+    /**
+     * Specify the {@link Cache} implementation to bind as a singleton, for use
+     * by caching client action handlers. {@link Cache} is not bound by default.
+     *
+     * @param cacheType The {@link Cache} class.
+     * @return a {@link Builder} object.
+     */
+    public Builder cache(Class<? extends Cache> cacheType) {
+      this.cacheType = cacheType;
+      return this;
+    }
+
+    /**
+     * Bind {@link Cache} to a {@link StorageCacheImpl}, which persists cached
+     * results in the browser storage using {@link DefaultCacheSerializer}.
+     * Register the entries to persist with that serializer.
+     *
+     * @return a {@link Builder} object.
+     */
+    public Builder persistentCache() {
+      return persistentCache(DefaultCacheSerializer.class);
+    }
+
+    /**
+     * Bind {@link Cache} to a {@link StorageCacheImpl}, which persists cached
+     * results in the browser storage using the specified serializer.
+     *
+     * @param cacheSerializerType The {@link CacheSerializer} class.
+     * @return a {@link Builder} object.
+     */
+    public Builder persistentCache(Class<? extends CacheSerializer> cacheSerializerType) {
+      this.cacheType = StorageCacheImpl.class;
+      this.cacheSerializerType = cacheSerializerType;
+      return this;
+    }
+
     /**
      * Build the {@link DispatchAsyncModule}.
      * @return The built {@link DispatchAsyncModule}.
@@ -138,6 +225,10 @@ public class DispatchAsyncModule extends AbstractGinModule {
     this.exceptionHandlerType = builder.exceptionHandlerType;
     this.sessionAccessorType = builder.sessionAccessorType;
     this.clientActionHandlerRegistryType = builder.clientActionHandlerRegistryType;
+    this.batching = builder.batching;
+    this.deduplication = builder.deduplication;
+    this.cacheType = builder.cacheType;
+    this.cacheSerializerType = builder.cacheSerializerType;
   }
 
   public DispatchAsyncModule() {
@@ -179,15 +270,51 @@ public class DispatchAsyncModule extends AbstractGinModule {
     bind(ExceptionHandler.class).to(exceptionHandlerType);
     bind(SecurityCookieAccessor.class).to(sessionAccessorType);
     bind(ClientActionHandlerRegistry.class).to(clientActionHandlerRegistryType).asEagerSingleton();
+
+    bindConstant().annotatedWith(Names.named(BATCHING)).to(batching);
+    bindConstant().annotatedWith(Names.named(DefaultDispatchAsync.DEDUPLICATING)).to(deduplication);
+    requestStaticInjection(DispatchAsyncModule.class);
+
+    if (cacheType != null) {
+      bind(Cache.class).to(cacheType).in(Singleton.class);
+    }
+    if (cacheSerializerType != null) {
+      bind(CacheSerializer.class).to(cacheSerializerType);
+    }
   }
 
+  @Inject
+  static void setSettings(@Named(BATCHING) boolean batching,
+      @Named(DefaultDispatchAsync.DEDUPLICATING) boolean deduplication) {
+    batchingSetting = batching;
+    deduplicationSetting = deduplication;
+  }
+
+  /**
+   * Provides the {@link DispatchAsync} singleton, batching and deduplicating
+   * actions as specified with the {@link Builder}. Override this to use your
+   * own {@link DispatchAsync} implementation.
+   *
+   * @param exceptionHandler The {@link ExceptionHandler}.
+   * @param secureSessionAccessor The {@link SecurityCookieAccessor}.
+   * @param registry The {@link ClientActionHandlerRegistry}.
+   * @return The {@link DispatchAsync}.
+   */
   @Provides
   @Singleton
   protected DispatchAsync provideDispatchAsync(
       ExceptionHandler exceptionHandler,
       SecurityCookieAccessor secureSessionAccessor,
       ClientActionHandlerRegistry registry) {
-    return new DefaultDispatchAsync(exceptionHandler, secureSessionAccessor,
-        registry);
+    DefaultDispatchAsync dispatchAsync;
+    if (batchingSetting) {
+      dispatchAsync = new BatchingDispatchAsync(exceptionHandler,
+          secureSessionAccessor, registry);
+    } else {
+      dispatchAsync = new DefaultDispatchAsync(exceptionHandler,
+          secureSessionAccessor, registry);
+    }
+    dispatchAsync.setDeduplicating(deduplicationSetting);
+    return dispatchAsync;
   }
 }
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.client.RecordingDispatchService.EchoAction;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.EchoResult;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.ManualScheduler;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.MultiplexedCall;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.RecordingCallback;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
+
+/**
+ * Tests for {@link BatchingDispatchAsync}.
+ */
+public class BatchingDispatchAsyncTest {
+
+  private RecordingDispatchService service;
+  private ManualScheduler scheduler;
+  private BatchingDispatchAsync dispatcher;
+
+  @Before
+  public void setUp() {
+    service = new RecordingDispatchService();
+    scheduler = new ManualScheduler();
+    dispatcher = new BatchingDispatchAsync(null, RecordingDispatchService.NO_SECURITY_COOKIE,
+        RecordingDispatchService.NO_CLIENT_ACTION_HANDLERS, scheduler, service);
+  }
+
+  @Test
+  public void actionsAreSentTogetherOnceTheEventLoopEnds() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(2), new RecordingCallback<EchoResult>());
+
+    assertEquals(1, scheduler.finallyCommands.size());
+    assertTrue(service.multiplexedCalls.isEmpty());
+
+    scheduler.endEventLoop();
+
+    assertEquals(1, service.multiplexedCalls.size());
+    assertEquals(Arrays.asList(new EchoAction(1), new EchoAction(2)), service.multiplexedCalls.get(0).actions);
+    assertTrue(service.calls.isEmpty());
+  }
+
+  @Test
+  public void loneActionIsSentAlone() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+
+    scheduler.endEventLoop();
+
+    assertEquals(1, service.calls.size());
+    assertTrue(service.multiplexedCalls.isEmpty());
+  }
+
+  @Test
+  public void actionsOfDifferentServicesAreSentSeparately() {
+    dispatcher.execute(new EchoAction(1, "a"), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(2, "b"), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(3, "a"), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(4, "b"), new RecordingCallback<EchoResult>());
+
+    scheduler.endEventLoop();
+
+    assertEquals(2, service.multiplexedCalls.size());
+    assertEquals("a", service.multiplexedCalls.get(0).serviceEntryPoint);
+    assertEquals(Arrays.asList(new EchoAction(1), new EchoAction(3)), service.multiplexedCalls.get(0).actions);
+    assertEquals("b", service.multiplexedCalls.get(1).serviceEntryPoint);
+    assertEquals(Arrays.asList(new EchoAction(2), new EchoAction(4)), service.multiplexedCalls.get(1).actions);
+  }
+
+  @Test
+  public void eachCallbackReceivesItsOwnResult() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), first);
+    dispatcher.execute(new EchoAction(2), second);
+    scheduler.endEventLoop();
+
+    MultiplexedResult result = new MultiplexedResult(2);
+    result.setResult(0, new EchoResult(1));
+    result.setResult(1, new EchoResult(2));
+    service.multiplexedCalls.get(0).succeed(result);
+
+    assertEquals(1, first.results.size());
+    assertEquals(1, first.results.get(0).value);
+    assertEquals(1, second.results.size());
+    assertEquals(2, second.results.get(0).value);
+  }
+
+  @Test
+  public void failedActionDoesNotFailTheOthers() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), first);
+    dispatcher.execute(new EchoAction(2), second);
+    scheduler.endEventLoop();
+
+    MultiplexedResult result = new MultiplexedResult(2);
+    result.setResult(0, new EchoResult(1));
+    ActionException failure = new ActionException("Failed 2");
+    result.setActionException(1, failure);
+    service.multiplexedCalls.get(0).succeed(result);
+
+    assertEquals(1, first.results.size());
+    assertTrue(first.failures.isEmpty());
+    assertTrue(second.results.isEmpty());
+    assertSame(failure, second.failures.get(0));
+  }
+
+  @Test
+  public void failedServerCallFailsEveryAction() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), first);
+    dispatcher.execute(new EchoAction(2), second);
+    scheduler.endEventLoop();
+
+    RuntimeException failure = new RuntimeException();
+    service.multiplexedCalls.get(0).fail(failure);
+
+    assertSame(failure, first.failures.get(0));
+    assertSame(failure, second.failures.get(0));
+  }
+
+  @Test
+  public void cancelledQueuedActionIsNotSent() {
+    RecordingCallback<EchoResult> cancelled = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    DispatchRequest request = dispatcher.execute(new EchoAction(2), cancelled);
+    dispatcher.execute(new EchoAction(3), new RecordingCallback<EchoResult>());
+
+    request.cancel();
+    assertFalse(request.isPending());
+    scheduler.endEventLoop();
+
+    assertEquals(Arrays.asList(new EchoAction(1), new EchoAction(3)), service.multiplexedCalls.get(0).actions);
+    assertEquals(0, cancelled.calls());
+  }
+
+  @Test
+  public void cancellingOneSentActionKeepsTheOthers() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    DispatchRequest firstRequest = dispatcher.execute(new EchoAction(1), first);
+    DispatchRequest secondRequest = dispatcher.execute(new EchoAction(2), second);
+    scheduler.endEventLoop();
+    MultiplexedCall call = service.multiplexedCalls.get(0);
+
+    firstRequest.cancel();
+
+    assertFalse(firstRequest.isPending());
+    assertTrue(secondRequest.isPending());
+    assertFalse(call.request.isCancelled());
+
+    MultiplexedResult result = new MultiplexedResult(2);
+    result.setResult(0, new EchoResult(1));
+    result.setResult(1, new EchoResult(2));
+    call.succeed(result);
+
+    assertEquals(0, first.calls());
+    assertEquals(2, second.results.get(0).value);
+    assertFalse(secondRequest.isPending());
+  }
+
+  @Test
+  public void serverCallIsCancelledOnceEveryActionIsCancelled() {
+    DispatchRequest firstRequest = dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    DispatchRequest secondRequest = dispatcher.execute(new EchoAction(2), new RecordingCallback<EchoResult>());
+    scheduler.endEventLoop();
+    MultiplexedCall call = service.multiplexedCalls.get(0);
+
+    firstRequest.cancel();
+    secondRequest.cancel();
+
+    assertTrue(call.request.isCancelled());
+  }
+
+  @Test
+  public void actionsOfTheNextEventLoopGoInANewBatch() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(2), new RecordingCallback<EchoResult>());
+    scheduler.endEventLoop();
+    dispatcher.execute(new EchoAction(3), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(4), new RecordingCallback<EchoResult>());
+    scheduler.endEventLoop();
+
+    assertEquals(2, service.multiplexedCalls.size());
+    assertEquals(Arrays.asList(new EchoAction(3), new EchoAction(4)), service.multiplexedCalls.get(1).actions);
+  }
+}
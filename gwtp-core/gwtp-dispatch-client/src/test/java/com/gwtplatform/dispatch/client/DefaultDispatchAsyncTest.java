@@ -0,0 +1,179 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.client.RecordingDispatchService.Call;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.EchoAction;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.EchoResult;
+import com.gwtplatform.dispatch.client.RecordingDispatchService.RecordingCallback;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+
+/**
+ * Tests for the deduplication of in-flight actions in
+ * {@link DefaultDispatchAsync}.
+ */
+public class DefaultDispatchAsyncTest {
+
+  /**
+   * Never deduplicates the action with value 2.
+   */
+  static class SelectiveDispatchAsync extends DefaultDispatchAsync {
+    SelectiveDispatchAsync(RecordingDispatchService service) {
+      super(null, RecordingDispatchService.NO_SECURITY_COOKIE, RecordingDispatchService.NO_CLIENT_ACTION_HANDLERS,
+          service);
+    }
+
+    @Override
+    protected boolean canDeduplicate(Action<?> action) {
+      return ((EchoAction) action).value != 2;
+    }
+  }
+
+  private RecordingDispatchService service;
+  private DefaultDispatchAsync dispatcher;
+
+  @Before
+  public void setUp() {
+    service = new RecordingDispatchService();
+    dispatcher = new SelectiveDispatchAsync(service);
+    dispatcher.setDeduplicating(true);
+  }
+
+  @Test
+  public void equalActionJoinsTheActionInFlight() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), first);
+    dispatcher.execute(new EchoAction(1), second);
+
+    assertEquals(1, service.calls.size());
+
+    EchoResult result = new EchoResult(1);
+    service.calls.get(0).succeed(result);
+
+    assertSame(result, first.results.get(0));
+    assertSame(result, second.results.get(0));
+  }
+
+  @Test
+  public void differentActionsAreSentSeparately() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(3), new RecordingCallback<EchoResult>());
+
+    assertEquals(2, service.calls.size());
+  }
+
+  @Test
+  public void actionsAreNotDeduplicatedWhenTurnedOff() {
+    dispatcher.setDeduplicating(false);
+
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+
+    assertEquals(2, service.calls.size());
+  }
+
+  @Test
+  public void excludedActionIsAlwaysSent() {
+    dispatcher.execute(new EchoAction(2), new RecordingCallback<EchoResult>());
+    dispatcher.execute(new EchoAction(2), new RecordingCallback<EchoResult>());
+
+    assertEquals(2, service.calls.size());
+  }
+
+  @Test
+  public void failureReachesEveryJoinedCaller() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    dispatcher.execute(new EchoAction(1), first);
+    dispatcher.execute(new EchoAction(1), second);
+
+    ActionException failure = new ActionException("Failed 1");
+    service.calls.get(0).fail(failure);
+
+    assertSame(failure, first.failures.get(0));
+    assertSame(failure, second.failures.get(0));
+    assertTrue(first.results.isEmpty());
+    assertTrue(second.results.isEmpty());
+  }
+
+  @Test
+  public void cancellingOneCallerKeepsTheOthers() {
+    RecordingCallback<EchoResult> first = new RecordingCallback<EchoResult>();
+    RecordingCallback<EchoResult> second = new RecordingCallback<EchoResult>();
+    DispatchRequest firstRequest = dispatcher.execute(new EchoAction(1), first);
+    DispatchRequest secondRequest = dispatcher.execute(new EchoAction(1), second);
+    Call call = service.calls.get(0);
+
+    firstRequest.cancel();
+
+    assertFalse(firstRequest.isPending());
+    assertTrue(secondRequest.isPending());
+    assertFalse(call.request.isCancelled());
+
+    call.succeed(new EchoResult(1));
+
+    assertEquals(0, first.calls());
+    assertEquals(1, second.results.size());
+    assertFalse(secondRequest.isPending());
+  }
+
+  @Test
+  public void serverCallIsCancelledOnceEveryCallerCancelled() {
+    DispatchRequest firstRequest = dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    DispatchRequest secondRequest = dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+
+    firstRequest.cancel();
+    secondRequest.cancel();
+
+    assertTrue(service.calls.get(0).request.isCancelled());
+
+    // Nothing is left in flight to join.
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    assertEquals(2, service.calls.size());
+  }
+
+  @Test
+  public void completedActionIsSentAgain() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    service.calls.get(0).succeed(new EchoResult(1));
+
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+
+    assertEquals(2, service.calls.size());
+  }
+
+  @Test
+  public void failedActionIsSentAgain() {
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+    service.calls.get(0).fail(new ActionException("Failed 1"));
+
+    dispatcher.execute(new EchoAction(1), new RecordingCallback<EchoResult>());
+
+    assertEquals(2, service.calls.size());
+  }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import com.google.gwt.user.client.rpc.ServiceDefTarget;
+
+import com.gwtplatform.common.client.IndirectProvider;
+import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandler;
+import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandlerRegistry;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.DispatchServiceAsync;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * A {@link DispatchServiceAsync} that records the server calls and keeps them
+ * pending until the test completes them, along with the other collaborators
+ * needed to test the client dispatchers outside of a browser.
+ */
+class RecordingDispatchService implements DispatchServiceAsync, ServiceDefTarget {
+
+  static class EchoResult implements Result {
+    final int value;
+
+    EchoResult(int value) {
+      this.value = value;
+    }
+  }
+
+  static class EchoAction extends UnsecuredActionImpl<EchoResult> {
+    final int value;
+    private final String serviceName;
+
+    EchoAction(int value) {
+      this(value, DEFAULT_SERVICE_NAME);
+    }
+
+    EchoAction(int value, String serviceName) {
+      this.value = value;
+      this.serviceName = serviceName;
+    }
+
+    @Override
+    public String getServiceName() {
+      return serviceName;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof EchoAction && ((EchoAction) obj).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+      return value;
+    }
+  }
+
+  static class RecordingCallback<R> implements AsyncCallback<R> {
+    final List<R> results = new ArrayList<R>();
+    final List<Throwable> failures = new ArrayList<Throwable>();
+
+    @Override
+    public void onSuccess(R result) {
+      results.add(result);
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      failures.add(caught);
+    }
+
+    int calls() {
+      return results.size() + failures.size();
+    }
+  }
+
+  /**
+   * Runs the finally commands when the test says the event loop is over.
+   */
+  static class ManualScheduler extends Scheduler {
+    final List<ScheduledCommand> finallyCommands = new ArrayList<ScheduledCommand>();
+
+    void endEventLoop() {
+      List<ScheduledCommand> commands = new ArrayList<ScheduledCommand>(finallyCommands);
+      finallyCommands.clear();
+      for (ScheduledCommand command : commands) {
+        command.execute();
+      }
+    }
+
+    @Override
+    public void scheduleFinally(ScheduledCommand cmd) {
+      finallyCommands.add(cmd);
+    }
+
+    @Override
+    public void scheduleDeferred(ScheduledCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleEntry(RepeatingCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleEntry(ScheduledCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFinally(RepeatingCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFixedDelay(RepeatingCommand cmd, int delayMs) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleFixedPeriod(RepeatingCommand cmd, int delayMs) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleIncremental(RepeatingCommand cmd) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  static class PendingRequest extends Request {
+    private boolean cancelled;
+    private boolean completed;
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    @Override
+    public boolean isPending() {
+      return !cancelled && !completed;
+    }
+
+    boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+  /**
+   * A server call made with {@link DispatchServiceAsync#execute}.
+   */
+  static class Call {
+    final Action<?> action;
+    final AsyncCallback<Result> callback;
+    final PendingRequest request = new PendingRequest();
+
+    Call(Action<?> action, AsyncCallback<Result> callback) {
+      this.action = action;
+      this.callback = callback;
+    }
+
+    void succeed(Result result) {
+      request.completed = true;
+      callback.onSuccess(result);
+    }
+
+    void fail(Throwable caught) {
+      request.completed = true;
+      callback.onFailure(caught);
+    }
+  }
+
+  /**
+   * A server call made with {@link DispatchServiceAsync#executeMultiplexed}.
+   */
+  static class MultiplexedCall {
+    final String serviceEntryPoint;
+    final List<Action<?>> actions;
+    final AsyncCallback<MultiplexedResult> callback;
+    final PendingRequest request = new PendingRequest();
+
+    MultiplexedCall(String serviceEntryPoint, List<Action<?>> actions,
+        AsyncCallback<MultiplexedResult> callback) {
+      this.serviceEntryPoint = serviceEntryPoint;
+      this.actions = actions;
+      this.callback = callback;
+    }
+
+    void succeed(MultiplexedResult result) {
+      request.completed = true;
+      callback.onSuccess(result);
+    }
+
+    void fail(Throwable caught) {
+      request.completed = true;
+      callback.onFailure(caught);
+    }
+  }
+
+  static final ClientActionHandlerRegistry NO_CLIENT_ACTION_HANDLERS = new ClientActionHandlerRegistry() {
+    @Override
+    public <A extends Action<R>, R extends Result> IndirectProvider<ClientActionHandler<?, ?>> find(
+        Class<A> actionClass) {
+      return null;
+    }
+  };
+
+  static final SecurityCookieAccessor NO_SECURITY_COOKIE = new SecurityCookieAccessor() {
+    @Override
+    public String getCookieContent() {
+      return null;
+    }
+  };
+
+  final List<Call> calls = new ArrayList<Call>();
+  final List<MultiplexedCall> multiplexedCalls = new ArrayList<MultiplexedCall>();
+  private String serviceEntryPoint;
+
+  @Override
+  public Request execute(String cookieSentByRPC, Action<?> action, AsyncCallback<Result> callback) {
+    Call call = new Call(action, callback);
+    calls.add(call);
+    return call.request;
+  }
+
+  @Override
+  public Request executeMultiplexed(String cookieSentByRPC, ArrayList<Action<?>> actions,
+      AsyncCallback<MultiplexedResult> callback) {
+    MultiplexedCall call = new MultiplexedCall(serviceEntryPoint, actions, callback);
+    multiplexedCalls.add(call);
+    return call.request;
+  }
+
+  @Override
+  public Request undo(String cookieSentByRPC, Action<?> action, Result result, AsyncCallback<Void> callback) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String getSerializationPolicyName() {
+    return null;
+  }
+
+  @Override
+  public String getServiceEntryPoint() {
+    return serviceEntryPoint;
+  }
+
+  @Override
+  public void setRpcRequestBuilder(RpcRequestBuilder builder) {
+  }
+
+  @Override
+  public void setServiceEntryPoint(String address) {
+    serviceEntryPoint = address;
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import com.gwtplatform.dispatch.client.actionhandler.ExecuteCommand;
+import com.gwtplatform.dispatch.shared.DispatchRequest;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Tests for the stale-while-revalidate mode of {@link ActionCachingHandler}.
+ */
+public class ActionCachingHandlerTest {
+
+  static class ListResult implements Result {
+  }
+
+  static class ListAction extends UnsecuredActionImpl<ListResult> {
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof ListAction;
+    }
+
+    @Override
+    public int hashCode() {
+      return 1;
+    }
+  }
+
+  static class PendingRequest implements DispatchRequest {
+    private boolean cancelled;
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    @Override
+    public boolean isPending() {
+      return !cancelled;
+    }
+  }
+
+  /**
+   * Keeps the server calls pending until the test completes them.
+   */
+  static class PendingExecuteCommand implements ExecuteCommand<ListAction, ListResult> {
+    private final List<AsyncCallback<ListResult>> callbacks = new ArrayList<AsyncCallback<ListResult>>();
+    private final List<PendingRequest> requests = new ArrayList<PendingRequest>();
+
+    @Override
+    public DispatchRequest execute(ListAction action, AsyncCallback<ListResult> resultCallback) {
+      callbacks.add(resultCallback);
+      PendingRequest request = new PendingRequest();
+      requests.add(request);
+      return request;
+    }
+  }
+
+  static class RecordingCallback implements RevalidatingCallback<ListResult> {
+    private final List<ListResult> results = new ArrayList<ListResult>();
+    private ListResult revalidated;
+    private Throwable failure;
+
+    @Override
+    public void onSuccess(ListResult result) {
+      results.add(result);
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      failure = caught;
+    }
+
+    @Override
+    public void onRevalidated(ListResult result) {
+      revalidated = result;
+    }
+  }
+
+  @Test
+  public void staleResultIsServedThenRevalidatedOnce() throws Exception {
+    Cache cache = new DefaultCacheImpl();
+    ActionCachingHandler<ListAction, ListResult> handler = new ActionCachingHandler<ListAction, ListResult>(
+        ListAction.class, cache, 0);
+    PendingExecuteCommand executeCommand = new PendingExecuteCommand();
+    ListResult stale = new ListResult();
+    cache.put(new ListAction(), stale);
+    Thread.sleep(5);
+
+    RecordingCallback first = new RecordingCallback();
+    RecordingCallback second = new RecordingCallback();
+    handler.execute(new ListAction(), first, executeCommand);
+    handler.execute(new ListAction(), second, executeCommand);
+
+    assertSame(stale, first.results.get(0));
+    assertSame(stale, second.results.get(0));
+    assertEquals(1, executeCommand.callbacks.size());
+
+    ListResult fresh = new ListResult();
+    executeCommand.callbacks.get(0).onSuccess(fresh);
+
+    assertSame(fresh, first.revalidated);
+    assertSame(fresh, second.revalidated);
+    assertSame(fresh, cache.get(new ListAction()));
+    assertEquals(1, first.results.size());
+  }
+
+  @Test
+  public void freshResultIsNotRevalidated() {
+    Cache cache = new DefaultCacheImpl();
+    ActionCachingHandler<ListAction, ListResult> handler = new ActionCachingHandler<ListAction, ListResult>(
+        ListAction.class, cache, 60000);
+    PendingExecuteCommand executeCommand = new PendingExecuteCommand();
+    cache.put(new ListAction(), new ListResult());
+
+    handler.execute(new ListAction(), new RecordingCallback(), executeCommand);
+
+    assertEquals(0, executeCommand.callbacks.size());
+  }
+
+  @Test
+  public void cancellingOneCallerKeepsRevalidatingForTheOthers() throws Exception {
+    PendingExecuteCommand executeCommand = new PendingExecuteCommand();
+    ActionCachingHandler<ListAction, ListResult> handler = staleHandler();
+    RecordingCallback first = new RecordingCallback();
+    RecordingCallback second = new RecordingCallback();
+    DispatchRequest firstRequest = handler.execute(new ListAction(), first, executeCommand);
+    DispatchRequest secondRequest = handler.execute(new ListAction(), second, executeCommand);
+
+    assertTrue(firstRequest.isPending());
+    firstRequest.cancel();
+
+    assertFalse(executeCommand.requests.get(0).cancelled);
+
+    ListResult fresh = new ListResult();
+    executeCommand.callbacks.get(0).onSuccess(fresh);
+
+    assertNull(first.revalidated);
+    assertSame(fresh, second.revalidated);
+    assertFalse(secondRequest.isPending());
+  }
+
+  @Test
+  public void revalidationIsCancelledOnceEveryCallerCancelled() throws Exception {
+    PendingExecuteCommand executeCommand = new PendingExecuteCommand();
+    ActionCachingHandler<ListAction, ListResult> handler = staleHandler();
+    DispatchRequest firstRequest = handler.execute(new ListAction(), new RecordingCallback(), executeCommand);
+    DispatchRequest secondRequest = handler.execute(new ListAction(), new RecordingCallback(), executeCommand);
+
+    firstRequest.cancel();
+    secondRequest.cancel();
+
+    assertTrue(executeCommand.requests.get(0).cancelled);
+
+    // The next stale result is revalidated again.
+    handler.execute(new ListAction(), new RecordingCallback(), executeCommand);
+    assertEquals(2, executeCommand.callbacks.size());
+  }
+
+  @Test
+  public void failedRevalidationIsNotPassedToTheCallback() throws Exception {
+    PendingExecuteCommand executeCommand = new PendingExecuteCommand();
+    ActionCachingHandler<ListAction, ListResult> handler = staleHandler();
+    RecordingCallback callback = new RecordingCallback();
+    DispatchRequest request = handler.execute(new ListAction(), callback, executeCommand);
+
+    executeCommand.callbacks.get(0).onFailure(new RuntimeException());
+
+    assertNull(callback.failure);
+    assertNull(callback.revalidated);
+    assertEquals(1, callback.results.size());
+    assertFalse(request.isPending());
+
+    // The next stale result is revalidated again.
+    handler.execute(new ListAction(), new RecordingCallback(), executeCommand);
+    assertEquals(2, executeCommand.callbacks.size());
+  }
+
+  private ActionCachingHandler<ListAction, ListResult> staleHandler() throws InterruptedException {
+    Cache cache = new DefaultCacheImpl();
+    cache.put(new ListAction(), new ListResult());
+    Thread.sleep(5);
+    return new ActionCachingHandler<ListAction, ListResult>(ListAction.class, cache, 0);
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.client.actionhandler.caching.DefaultCacheSerializer.EntrySerializer;
+import com.gwtplatform.dispatch.client.actionhandler.caching.StorageCacheImplTest.MapCacheStorage;
+
+/**
+ * Tests for {@link DefaultCacheSerializer}.
+ */
+public class DefaultCacheSerializerTest {
+
+  static class GetCountry {
+    private final String code;
+
+    GetCountry(String code) {
+      this.code = code;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof GetCountry && ((GetCountry) obj).code.equals(code);
+    }
+
+    @Override
+    public int hashCode() {
+      return code.hashCode();
+    }
+  }
+
+  static class Country {
+    private final String name;
+
+    Country(String name) {
+      this.name = name;
+    }
+  }
+
+  static class CountrySerializer implements EntrySerializer<GetCountry, Country> {
+    @Override
+    public String serializeKey(GetCountry key) {
+      return key.code;
+    }
+
+    @Override
+    public String serializeValue(Country value) {
+      return value.name;
+    }
+
+    @Override
+    public Country deserializeValue(String serializedValue) {
+      return new Country(serializedValue);
+    }
+  }
+
+  private final MapCacheStorage storage = new MapCacheStorage();
+
+  @Test
+  public void registeredEntriesSurviveANewCache() {
+    new StorageCacheImpl(countrySerializer("country.1"), storage, 1000, -1).put(new GetCountry("CA"),
+        new Country("Canada"));
+
+    StorageCacheImpl cache = new StorageCacheImpl(countrySerializer("country.1"), storage, 1000, -1);
+
+    assertEquals("Canada", ((Country) cache.get(new GetCountry("CA"))).name);
+    assertNull(cache.get(new GetCountry("FR")));
+  }
+
+  @Test
+  public void unregisteredEntriesStayInMemory() {
+    StorageCacheImpl cache = new StorageCacheImpl(new DefaultCacheSerializer(), storage, 1000, -1);
+
+    cache.put(new GetCountry("CA"), new Country("Canada"));
+
+    assertEquals("Canada", ((Country) cache.get(new GetCountry("CA"))).name);
+    assertEquals(0, storage.getLength());
+  }
+
+  @Test
+  public void entriesOfAnotherNameAreDiscarded() {
+    new StorageCacheImpl(countrySerializer("country.1"), storage, 1000, -1).put(new GetCountry("CA"),
+        new Country("Canada"));
+
+    DefaultCacheSerializer serializer = countrySerializer("country.2");
+    StorageCacheImpl cache = new StorageCacheImpl(serializer, storage, 1000, -1);
+
+    assertNull(serializer.deserializeValue(storage.getItem(storage.key(0)).replaceFirst("^[0-9]+:", "")));
+    assertNull(cache.get(new GetCountry("CA")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nameCantContainTheSeparator() {
+    new DefaultCacheSerializer().register("country:1", GetCountry.class, Country.class, new CountrySerializer());
+  }
+
+  private DefaultCacheSerializer countrySerializer(String name) {
+    DefaultCacheSerializer serializer = new DefaultCacheSerializer();
+    serializer.register(name, GetCountry.class, Country.class, new CountrySerializer());
+    return serializer;
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.google.gwt.core.client.Scheduler;
+
+/**
+ * Tests for {@link LruCacheImpl}.
+ */
+public class LruCacheImplTest {
+
+  /**
+   * Keeps the last repeating command instead of running it.
+   */
+  static class ManualScheduler extends Scheduler {
+    private RepeatingCommand repeatingCommand;
+    private int scheduledCount;
+
+    @Override
+    public void scheduleDeferred(ScheduledCommand cmd) {
+    }
+
+    @Override
+    public void scheduleEntry(RepeatingCommand cmd) {
+    }
+
+    @Override
+    public void scheduleEntry(ScheduledCommand cmd) {
+    }
+
+    @Override
+    public void scheduleFinally(RepeatingCommand cmd) {
+    }
+
+    @Override
+    public void scheduleFinally(ScheduledCommand cmd) {
+    }
+
+    @Override
+    public void scheduleFixedDelay(RepeatingCommand cmd, int delayMs) {
+      repeatingCommand = cmd;
+      scheduledCount++;
+    }
+
+    @Override
+    public void scheduleFixedPeriod(RepeatingCommand cmd, int delayMs) {
+    }
+
+    @Override
+    public void scheduleIncremental(RepeatingCommand cmd) {
+    }
+  }
+
+  private final ManualScheduler scheduler = new ManualScheduler();
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted() {
+    LruCacheImpl cache = new LruCacheImpl(2, -1, null, -1, scheduler, 1000);
+
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.get("a");
+    cache.put("c", 3);
+
+    assertEquals(1, cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(3, cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(3, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void estimatedSizeIsBounded() {
+    LruCacheImpl cache = new LruCacheImpl(100, 10, new LruCacheImpl.SizeEstimator() {
+      @Override
+      public int estimateSize(Object key, Object value) {
+        return ((String) value).length();
+      }
+    }, -1, scheduler, 1000);
+
+    cache.put("a", "12345");
+    cache.put("b", "1234");
+    cache.put("c", "123");
+    cache.put("d", "12345678901");
+
+    assertNull(cache.get("a"));
+    assertEquals("1234", cache.get("b"));
+    assertNull(cache.get("d"));
+    assertEquals(7, cache.getEstimatedSize());
+  }
+
+  @Test
+  public void sweepRemovesExpiredEntriesAndStopsWhenEmpty() throws Exception {
+    LruCacheImpl cache = new LruCacheImpl(10, -1, null, 1, scheduler, 1000);
+
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertEquals(1, scheduler.scheduledCount);
+
+    Thread.sleep(10);
+    assertFalse(scheduler.repeatingCommand.execute());
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getEvictionCount());
+
+    cache.put("c", 3);
+    assertEquals(2, scheduler.scheduledCount);
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.actionhandler.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link StorageCacheImpl}.
+ */
+public class StorageCacheImplTest {
+
+  static class MapCacheStorage implements CacheStorage {
+    private final Map<String, String> items = new LinkedHashMap<String, String>();
+
+    @Override
+    public int getLength() {
+      return items.size();
+    }
+
+    @Override
+    public String key(int index) {
+      return new ArrayList<String>(items.keySet()).get(index);
+    }
+
+    @Override
+    public String getItem(String key) {
+      return items.get(key);
+    }
+
+    @Override
+    public void setItem(String key, String data) {
+      items.put(key, data);
+    }
+
+    @Override
+    public void removeItem(String key) {
+      items.remove(key);
+    }
+  }
+
+  /**
+   * Persists string keys and values as is, other keys stay in memory.
+   */
+  static class StringSerializer implements CacheSerializer {
+    private final String version;
+
+    StringSerializer(String version) {
+      this.version = version;
+    }
+
+    @Override
+    public String getVersion() {
+      return version;
+    }
+
+    @Override
+    public String serializeKey(Object key) {
+      return key instanceof String ? (String) key : null;
+    }
+
+    @Override
+    public String serializeValue(Object value) {
+      return (String) value;
+    }
+
+    @Override
+    public Object deserializeValue(String serializedValue) {
+      return serializedValue;
+    }
+  }
+
+  private final MapCacheStorage storage = new MapCacheStorage();
+
+  @Test
+  public void entriesSurviveANewCache() {
+    new StorageCacheImpl(new StringSerializer("1"), storage, 1000, -1).put("countries", "CA,FR");
+
+    StorageCacheImpl cache = new StorageCacheImpl(new StringSerializer("1"), storage, 1000, -1);
+
+    assertEquals("CA,FR", cache.get("countries"));
+    assertTrue(cache.getLastUpateTime("countries") > 0);
+  }
+
+  @Test
+  public void entriesOfAnotherVersionAreDiscarded() {
+    new StorageCacheImpl(new StringSerializer("1"), storage, 1000, -1).put("countries", "CA,FR");
+    storage.setItem("someone.else", "kept");
+
+    StorageCacheImpl cache = new StorageCacheImpl(new StringSerializer("2"), storage, 1000, -1);
+
+    assertNull(cache.get("countries"));
+    assertEquals(1, storage.getLength());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvictedBeyondMaxBytes() {
+    // Each entry takes 2 * (key + timestamp + value) bytes, about 90 here
+    StorageCacheImpl cache = new StorageCacheImpl(new StringSerializer("1"), storage, 200, -1);
+
+    cache.put("a", "aaaaaaaaaa");
+    cache.put("b", "bbbbbbbbbb");
+    cache.get("a");
+    cache.put("c", "cccccccccc");
+
+    assertEquals("aaaaaaaaaa", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("cccccccccc", cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+    assertTrue(cache.getPersistedBytes() <= 200);
+  }
+
+  @Test
+  public void entriesThatCantBePersistedStayInMemory() {
+    StorageCacheImpl cache = new StorageCacheImpl(new StringSerializer("1"), storage, 1000, -1);
+
+    cache.put(42, "answer");
+
+    assertEquals("answer", cache.get(42));
+    assertEquals(0, storage.getLength());
+  }
+
+  @Test
+  public void withoutStorageEverythingStaysInMemory() {
+    StorageCacheImpl cache = new StorageCacheImpl(new StringSerializer("1"), null, 1000, -1);
+
+    cache.put("countries", "CA,FR");
+
+    assertFalse(cache.isPersistent());
+    assertEquals("CA,FR", cache.get("countries"));
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.client.gin;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.google.inject.Provides;
+import com.gwtplatform.dispatch.client.ExceptionHandler;
+import com.gwtplatform.dispatch.client.actionhandler.ClientActionHandlerRegistry;
+import com.gwtplatform.dispatch.shared.DispatchAsync;
+import com.gwtplatform.dispatch.shared.SecurityCookieAccessor;
+
+/**
+ * Tests for {@link DispatchAsyncModule}.
+ */
+public class DispatchAsyncModuleTest {
+
+  /**
+   * A module providing its own {@link DispatchAsync}, like the applications
+   * written before batching was added.
+   */
+  static class CustomDispatchAsyncModule extends DispatchAsyncModule {
+    @Override
+    protected DispatchAsync provideDispatchAsync(ExceptionHandler exceptionHandler,
+        SecurityCookieAccessor secureSessionAccessor, ClientActionHandlerRegistry registry) {
+      return null;
+    }
+  }
+
+  @Test
+  public void onlyOneProviderOfDispatchAsync() {
+    // When
+    List<Method> providers = getDispatchAsyncProviders(DispatchAsyncModule.class);
+
+    // Then
+    assertEquals(1, providers.size());
+    assertEquals(Arrays.<Class<?>>asList(ExceptionHandler.class, SecurityCookieAccessor.class,
+        ClientActionHandlerRegistry.class),
+        Arrays.asList(providers.get(0).getParameterTypes()));
+  }
+
+  @Test
+  public void overridingTheProviderKeepsASingleProvider() {
+    // When
+    List<Method> providers = getDispatchAsyncProviders(CustomDispatchAsyncModule.class);
+
+    // Then
+    assertEquals(1, providers.size());
+    assertEquals(CustomDispatchAsyncModule.class, providers.get(0).getDeclaringClass());
+  }
+
+  /**
+   * Lists the provider methods of a module like gin does, overridden methods
+   * once.
+   */
+  private List<Method> getDispatchAsyncProviders(Class<?> moduleType) {
+    List<Method> providers = new ArrayList<Method>();
+    for (Class<?> type = moduleType; type != Object.class; type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        if (method.getReturnType() == DispatchAsync.class && !isOverridden(method, providers)
+            && (method.isAnnotationPresent(Provides.class) || overridesProvider(method))) {
+          providers.add(method);
+        }
+      }
+    }
+    return providers;
+  }
+
+  private boolean isOverridden(Method method, List<Method> providers) {
+    for (Method provider : providers) {
+      if (provider.getName().equals(method.getName())
+          && Arrays.equals(provider.getParameterTypes(), method.getParameterTypes())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean overridesProvider(Method method) {
+    try {
+      return DispatchAsyncModule.class.getDeclaredMethod(method.getName(),
+          method.getParameterTypes()).isAnnotationPresent(Provides.class);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import com.gwtplatform.dispatch.server.AbstractAsyncDispatchServiceImpl;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.RequestProvider;
+import com.gwtplatform.dispatch.shared.SecurityCookie;
+
+import java.util.logging.Logger;
+
+/**
+ * The Servlet 3 asynchronous version of {@link DispatchServiceImpl}. Serve it instead of {@link DispatchServiceImpl}
+ * and declare the {@code GuiceFilter} with {@code <async-supported>true</async-supported>} in your
+ * {@code web.xml}. See {@link AbstractAsyncDispatchServiceImpl} for details.
+ */
+@Singleton
+public class AsyncDispatchServiceImpl extends AbstractAsyncDispatchServiceImpl {
+
+  private static final long serialVersionUID = -1862427961421455367L;
+
+  @Inject(optional = true)
+  @SecurityCookie
+  protected String securityCookieName;
+
+  @Inject
+  public AsyncDispatchServiceImpl(final Logger logger, final Dispatch dispatch, RequestProvider requestProvider) {
+    super(logger, dispatch, requestProvider);
+  }
+
+  @Override
+  public String getSecurityCookieName() {
+    return securityCookieName;
+  }
+}
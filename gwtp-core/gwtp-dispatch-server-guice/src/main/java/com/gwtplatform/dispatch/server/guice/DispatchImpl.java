@@ -19,7 +19,9 @@ package com.gwtplatform.dispatch.server.guice;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
+import com.gwtplatform.dispatch.server.DispatchListener;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.cache.ResultCache;
 
 /**
  * @author Philippe Beaudoin
@@ -31,4 +33,24 @@ public class DispatchImpl extends AbstractDispatchImpl {
   public DispatchImpl(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
     super(actionHandlerValidatorRegistry);
   }
+
+  /**
+   * Results are only cached when a {@link ResultCache} is bound, for example with
+   * {@code bind(ResultCache.class).toInstance(new ResultCache(1000));}.
+   */
+  @Inject(optional = true)
+  @Override
+  public void setResultCache(ResultCache resultCache) {
+    super.setResultCache(resultCache);
+  }
+
+  /**
+   * Actions are only reported when a {@link DispatchListener} is bound, for example with
+   * {@code bind(DispatchListener.class).to(DispatchMetrics.class).in(Singleton.class);}.
+   */
+  @Inject(optional = true)
+  @Override
+  public void setDispatchListener(DispatchListener dispatchListener) {
+    super.setDispatchListener(dispatchListener);
+  }
 }
\ No newline at end of file
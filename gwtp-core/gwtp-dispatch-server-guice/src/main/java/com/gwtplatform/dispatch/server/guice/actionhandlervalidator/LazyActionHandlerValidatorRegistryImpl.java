@@ -27,14 +27,19 @@ import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.Result;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is a lazy-loading implementation of the registry. It will only create
  * action handlers and validators when they are first used. All
  * {@link ActionHandler} and {@link ActionValidator} implementations <b>must</b>
  * have a public, default constructor.
+ * <p />
+ * The registry is safe to use from concurrent servlet threads. Lookups of
+ * already created instances never lock, while the creation of a missing
+ * instance is serialized so that every handler and validator is only
+ * instantiated once.
  *
  * @author Christian Goudreau
  */
@@ -49,9 +54,9 @@ public class LazyActionHandlerValidatorRegistryImpl implements
   @Inject
   LazyActionHandlerValidatorRegistryImpl(Injector injector) {
     this.injector = injector;
-    actionHandlerValidatorClasses = new HashMap<Class<? extends Action<?>>, ActionHandlerValidatorClass<? extends Action<?>, ? extends Result>>();
-    actionHandlerValidatorInstances = new HashMap<Class<? extends Action<?>>, ActionHandlerValidatorInstance>();
-    validators = new HashMap<Class<? extends ActionValidator>, ActionValidator>();
+    actionHandlerValidatorClasses = new ConcurrentHashMap<Class<? extends Action<?>>, ActionHandlerValidatorClass<? extends Action<?>, ? extends Result>>();
+    actionHandlerValidatorInstances = new ConcurrentHashMap<Class<? extends Action<?>>, ActionHandlerValidatorInstance>();
+    validators = new ConcurrentHashMap<Class<? extends ActionValidator>, ActionValidator>();
   }
 
   @Override
@@ -62,12 +67,11 @@ public class LazyActionHandlerValidatorRegistryImpl implements
   }
 
   @Override
-  public void clearActionHandlerValidators() {
+  public synchronized void clearActionHandlerValidators() {
     actionHandlerValidatorInstances.clear();
     validators.clear();
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findActionHandlerValidator(
       A action) {
@@ -75,18 +79,10 @@ public class LazyActionHandlerValidatorRegistryImpl implements
     ActionHandlerValidatorInstance actionHandlerValidatorInstance = actionHandlerValidatorInstances.get(action.getClass());
 
     if (actionHandlerValidatorInstance == null) {
-      ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass = actionHandlerValidatorClasses.get(action.getClass());
-      if (actionHandlerValidatorClass != null) {
-        actionHandlerValidatorInstance = createInstance(actionHandlerValidatorClass);
-        if (actionHandlerValidatorInstance != null) {
-          actionHandlerValidatorInstances.put(
-              (Class<? extends Action<?>>) action.getClass(),
-              actionHandlerValidatorInstance);
-        }
-      }
+      actionHandlerValidatorInstance = findOrCreateInstance(action.getClass());
     }
 
-    return (ActionHandlerValidatorInstance) actionHandlerValidatorInstance;
+    return actionHandlerValidatorInstance;
   }
 
   @Override
@@ -96,7 +92,7 @@ public class LazyActionHandlerValidatorRegistryImpl implements
   }
 
   @Override
-  public <A extends Action<R>, R extends Result> void removeActionHandlerValidatorClass(
+  public synchronized <A extends Action<R>, R extends Result> void removeActionHandlerValidatorClass(
       Class<A> actionClass,
       ActionHandlerValidatorClass<A, R> actionHandlerValidatorClass) {
 
@@ -106,7 +102,7 @@ public class LazyActionHandlerValidatorRegistryImpl implements
       actionHandlerValidatorClasses.remove(actionClass);
       ActionHandlerValidatorInstance instance = actionHandlerValidatorInstances.remove(actionClass);
 
-      if (!containValidator(instance.getActionValidator())) {
+      if (instance != null && !containValidator(instance.getActionValidator())) {
         validators.remove(instance.getActionValidator().getClass());
       }
     }
@@ -123,6 +119,31 @@ public class LazyActionHandlerValidatorRegistryImpl implements
     return false;
   }
 
+  /**
+   * Creates and registers the instance for the specified action class, unless
+   * another thread did it while we were waiting for the lock.
+   */
+  @SuppressWarnings("unchecked")
+  private synchronized ActionHandlerValidatorInstance findOrCreateInstance(
+      Class<?> actionClass) {
+
+    ActionHandlerValidatorInstance actionHandlerValidatorInstance = actionHandlerValidatorInstances.get(actionClass);
+
+    if (actionHandlerValidatorInstance == null) {
+      ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass = actionHandlerValidatorClasses.get(actionClass);
+      if (actionHandlerValidatorClass != null) {
+        actionHandlerValidatorInstance = createInstance(actionHandlerValidatorClass);
+        if (actionHandlerValidatorInstance != null) {
+          actionHandlerValidatorInstances.put(
+              (Class<? extends Action<?>>) actionClass,
+              actionHandlerValidatorInstance);
+        }
+      }
+    }
+
+    return actionHandlerValidatorInstance;
+  }
+
   private ActionHandlerValidatorInstance createInstance(
       ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass) {
 
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.guice.actionhandlervalidator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Providers;
+
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.guice.HandlerModule;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+
+/**
+ * Hammers {@link LazyActionHandlerValidatorRegistryImpl} from many threads on a
+ * cold registry and checks that every handler is created exactly once.
+ */
+public class LazyActionHandlerValidatorRegistryImplTest {
+
+  /**
+   * An unscoped handler that counts how many times it was instantiated.
+   */
+  public static class CountingActionHandler extends TestActionHandler {
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public CountingActionHandler() {
+      INSTANCES.incrementAndGet();
+    }
+  }
+
+  private static final int THREADS = 64;
+  private static final int LOOKUPS_PER_THREAD = 1000;
+
+  private ActionHandlerValidatorRegistry registry;
+
+  @Before
+  public void setUp() {
+    CountingActionHandler.INSTANCES.set(0);
+    Injector injector = Guice.createInjector(new HandlerModule() {
+      @Override
+      protected void configureHandlers() {
+        bind(HttpServletRequest.class).toProvider(Providers.<HttpServletRequest>of(null));
+        bindHandler(TestAction.class, CountingActionHandler.class);
+      }
+    });
+    registry = injector.getInstance(ActionHandlerValidatorRegistry.class);
+  }
+
+  @Test
+  public void concurrentLookupsCreateHandlerOnce() throws Exception {
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final TestAction action = new TestAction(TestActionHandler.MESSAGE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<ActionHandlerValidatorInstance>> futures = new ArrayList<Future<ActionHandlerValidatorInstance>>();
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(new Callable<ActionHandlerValidatorInstance>() {
+          @Override
+          public ActionHandlerValidatorInstance call() throws Exception {
+            startGate.await();
+            ActionHandlerValidatorInstance first = registry.findActionHandlerValidator(action);
+            for (int j = 1; j < LOOKUPS_PER_THREAD; j++) {
+              assertSame(first, registry.findActionHandlerValidator(action));
+            }
+            return first;
+          }
+        }));
+      }
+      startGate.countDown();
+
+      ActionHandlerValidatorInstance expected = futures.get(0).get();
+      assertNotNull(expected);
+      for (Future<ActionHandlerValidatorInstance> future : futures) {
+        assertSame(expected, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, CountingActionHandler.INSTANCES.get());
+  }
+}
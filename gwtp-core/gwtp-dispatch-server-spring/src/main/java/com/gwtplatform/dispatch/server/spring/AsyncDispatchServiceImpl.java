@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.spring;
+
+import com.gwtplatform.dispatch.server.AbstractAsyncDispatchServiceImpl;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.RequestProvider;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.ServletContextAware;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * The Servlet 3 asynchronous version of {@link DispatchServiceImpl}. Declare it as the {@code dispatch} bean instead
+ * of {@link DispatchServiceImpl}, and declare the Spring {@code DispatcherServlet} with
+ * {@code <async-supported>true</async-supported>} in your {@code web.xml}. See
+ * {@link AbstractAsyncDispatchServiceImpl} for details.
+ */
+public class AsyncDispatchServiceImpl extends AbstractAsyncDispatchServiceImpl implements HttpRequestHandler,
+    ServletContextAware {
+
+  private static final long serialVersionUID = 4718911380431402371L;
+
+  private ServletContext servletContext;
+
+  @Autowired(required = false)
+  protected String securityCookieName;
+
+  @Autowired
+  public AsyncDispatchServiceImpl(final Logger logger, final Dispatch dispatch,
+      RequestProvider requestProvider) {
+    super(logger, dispatch, requestProvider);
+  }
+
+  @Override
+  public String getSecurityCookieName() {
+    return securityCookieName;
+  }
+
+  public void setSecurityCookieName(String securityCookieName) {
+    this.securityCookieName = securityCookieName;
+  }
+
+  @Override
+  public void handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    processPostAsync(request, response);
+  }
+
+  @Override
+  public void setServletContext(ServletContext servletContext) {
+    this.servletContext = servletContext;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    return servletContext;
+  }
+}
@@ -16,13 +16,18 @@
 
 package com.gwtplatform.dispatch.server.spring;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 
+import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
 import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.DispatchListener;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.LazyActionHandlerValidatorRegistry;
+import com.gwtplatform.dispatch.server.cache.ResultCache;
 import com.gwtplatform.dispatch.server.spring.actionhandlervalidator.ActionHandlerValidatorLinker;
 import com.gwtplatform.dispatch.server.spring.actionhandlervalidator.LazyActionHandlerValidatorRegistryImpl;
 import com.gwtplatform.dispatch.server.spring.utils.SpringUtils;
@@ -71,6 +76,23 @@ public class DispatchModule {
   @Bean
   public Dispatch getDispatch() {
     Dispatch instance = SpringUtils.getOrCreate(context, dispatchClass);
+
+    if (instance instanceof AbstractDispatchImpl) {
+      AbstractDispatchImpl dispatch = (AbstractDispatchImpl) instance;
+
+      // Results are only cached when a ResultCache bean is declared.
+      Map<String, ResultCache> resultCaches = context.getBeansOfType(ResultCache.class);
+      if (!resultCaches.isEmpty()) {
+        dispatch.setResultCache(resultCaches.values().iterator().next());
+      }
+
+      // Actions are only reported when a DispatchListener bean is declared.
+      Map<String, DispatchListener> listeners = context.getBeansOfType(DispatchListener.class);
+      if (!listeners.isEmpty()) {
+        dispatch.setDispatchListener(listeners.values().iterator().next());
+      }
+    }
+
     return instance;
   }
 }
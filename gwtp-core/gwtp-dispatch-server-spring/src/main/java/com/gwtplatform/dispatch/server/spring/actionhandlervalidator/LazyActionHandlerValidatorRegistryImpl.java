@@ -16,8 +16,8 @@
 
 package com.gwtplatform.dispatch.server.spring.actionhandlervalidator;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -33,6 +33,14 @@ import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.Result;
 
 /**
+ * This is a lazy-loading implementation of the registry. It will only create
+ * action handlers and validators when they are first used.
+ * <p />
+ * The registry is safe to use from concurrent servlet threads. Lookups of
+ * already created instances never lock, while the creation of a missing
+ * instance is serialized so that every handler and validator is only
+ * instantiated once.
+ *
  * @author Peter Simun
  */
 public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandlerValidatorRegistry, ApplicationContextAware {
@@ -44,9 +52,9 @@ public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandler
   private final Map<Class<? extends ActionValidator>, ActionValidator> validators;
 
   public LazyActionHandlerValidatorRegistryImpl() {
-    actionHandlerValidatorClasses = new HashMap<Class<? extends Action<?>>, ActionHandlerValidatorClass<? extends Action<?>, ? extends Result>>();
-    actionHandlerValidatorInstances = new HashMap<Class<? extends Action<?>>, ActionHandlerValidatorInstance>();
-    validators = new HashMap<Class<? extends ActionValidator>, ActionValidator>();
+    actionHandlerValidatorClasses = new ConcurrentHashMap<Class<? extends Action<?>>, ActionHandlerValidatorClass<? extends Action<?>, ? extends Result>>();
+    actionHandlerValidatorInstances = new ConcurrentHashMap<Class<? extends Action<?>>, ActionHandlerValidatorInstance>();
+    validators = new ConcurrentHashMap<Class<? extends ActionValidator>, ActionValidator>();
   }
 
   @Override
@@ -56,26 +64,18 @@ public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandler
   }
 
   @Override
-  public void clearActionHandlerValidators() {
+  public synchronized void clearActionHandlerValidators() {
     actionHandlerValidatorInstances.clear();
     validators.clear();
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findActionHandlerValidator(A action) {
 
     ActionHandlerValidatorInstance actionHandlerValidatorInstance = actionHandlerValidatorInstances.get(action.getClass());
 
     if (actionHandlerValidatorInstance == null) {
-      ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass = actionHandlerValidatorClasses.get(action
-          .getClass());
-      if (actionHandlerValidatorClass != null) {
-        actionHandlerValidatorInstance = createInstance(actionHandlerValidatorClass);
-        if (actionHandlerValidatorInstance != null) {
-          actionHandlerValidatorInstances.put((Class<? extends Action<?>>) action.getClass(), actionHandlerValidatorInstance);
-        }
-      }
+      actionHandlerValidatorInstance = findOrCreateInstance(action.getClass());
     }
 
     return actionHandlerValidatorInstance;
@@ -87,7 +87,7 @@ public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandler
   }
 
   @Override
-  public <A extends Action<R>, R extends Result> void removeActionHandlerValidatorClass(Class<A> actionClass,
+  public synchronized <A extends Action<R>, R extends Result> void removeActionHandlerValidatorClass(Class<A> actionClass,
       ActionHandlerValidatorClass<A, R> actionHandlerValidatorClass) {
 
     ActionHandlerValidatorClass<?, ?> oldActionHandlerValidatorClass = actionHandlerValidatorClasses.get(actionClass);
@@ -96,7 +96,7 @@ public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandler
       actionHandlerValidatorClasses.remove(actionClass);
       ActionHandlerValidatorInstance instance = actionHandlerValidatorInstances.remove(actionClass);
 
-      if (!containValidator(instance.getActionValidator())) {
+      if (instance != null && !containValidator(instance.getActionValidator())) {
         validators.remove(instance.getActionValidator().getClass());
       }
     }
@@ -112,6 +112,28 @@ public class LazyActionHandlerValidatorRegistryImpl implements LazyActionHandler
     return false;
   }
 
+  /**
+   * Creates and registers the instance for the specified action class, unless
+   * another thread did it while we were waiting for the lock.
+   */
+  @SuppressWarnings("unchecked")
+  private synchronized ActionHandlerValidatorInstance findOrCreateInstance(Class<?> actionClass) {
+
+    ActionHandlerValidatorInstance actionHandlerValidatorInstance = actionHandlerValidatorInstances.get(actionClass);
+
+    if (actionHandlerValidatorInstance == null) {
+      ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass = actionHandlerValidatorClasses.get(actionClass);
+      if (actionHandlerValidatorClass != null) {
+        actionHandlerValidatorInstance = createInstance(actionHandlerValidatorClass);
+        if (actionHandlerValidatorInstance != null) {
+          actionHandlerValidatorInstances.put((Class<? extends Action<?>>) actionClass, actionHandlerValidatorInstance);
+        }
+      }
+    }
+
+    return actionHandlerValidatorInstance;
+  }
+
   private ActionHandlerValidatorInstance createInstance(ActionHandlerValidatorClass<? extends Action<?>, ? extends Result> actionHandlerValidatorClass) {
 
     ActionHandlerValidatorInstance actionHandlerValidatorInstance = null;
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.spring.actionhandlervalidator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import com.gwtplatform.dispatch.server.actionhandler.TestActionHandler;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorClass;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.spring.actionvalidator.DefaultActionValidator;
+import com.gwtplatform.dispatch.shared.action.TestAction;
+import com.gwtplatform.dispatch.shared.action.TestResult;
+
+/**
+ * Hammers {@link LazyActionHandlerValidatorRegistryImpl} from many threads on a
+ * cold registry and checks that every handler is created exactly once.
+ */
+public class LazyActionHandlerValidatorRegistryImplTest {
+
+  /**
+   * A prototype handler that counts how many times it was instantiated.
+   */
+  public static class CountingActionHandler extends TestActionHandler {
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public CountingActionHandler() throws InterruptedException {
+      INSTANCES.incrementAndGet();
+      // Widen the window in which an unsynchronized registry would create a second handler.
+      Thread.sleep(50);
+    }
+  }
+
+  private static final int THREADS = 64;
+  private static final int LOOKUPS_PER_THREAD = 1000;
+
+  private GenericApplicationContext applicationContext;
+  private LazyActionHandlerValidatorRegistryImpl registry;
+
+  @Before
+  public void setUp() {
+    CountingActionHandler.INSTANCES.set(0);
+    applicationContext = new GenericApplicationContext();
+    RootBeanDefinition handlerDefinition = new RootBeanDefinition(CountingActionHandler.class);
+    handlerDefinition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    applicationContext.registerBeanDefinition("countingActionHandler", handlerDefinition);
+    applicationContext.registerBeanDefinition("defaultActionValidator",
+        new RootBeanDefinition(DefaultActionValidator.class));
+    applicationContext.refresh();
+
+    registry = new LazyActionHandlerValidatorRegistryImpl();
+    registry.setApplicationContext(applicationContext);
+    registry.addActionHandlerValidatorClass(TestAction.class,
+        new ActionHandlerValidatorClass<TestAction, TestResult>(CountingActionHandler.class,
+            DefaultActionValidator.class));
+  }
+
+  @After
+  public void tearDown() {
+    applicationContext.close();
+  }
+
+  @Test
+  public void concurrentLookupsCreateHandlerOnce() throws Exception {
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final TestAction action = new TestAction(TestActionHandler.MESSAGE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<ActionHandlerValidatorInstance>> futures = new ArrayList<Future<ActionHandlerValidatorInstance>>();
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(new Callable<ActionHandlerValidatorInstance>() {
+          @Override
+          public ActionHandlerValidatorInstance call() throws Exception {
+            startGate.await();
+            ActionHandlerValidatorInstance first = registry.findActionHandlerValidator(action);
+            for (int j = 1; j < LOOKUPS_PER_THREAD; j++) {
+              assertSame(first, registry.findActionHandlerValidator(action));
+            }
+            return first;
+          }
+        }));
+      }
+      startGate.countDown();
+
+      ActionHandlerValidatorInstance expected = futures.get(0).get();
+      assertNotNull(expected);
+      for (Future<ActionHandlerValidatorInstance> future : futures) {
+        assertSame(expected, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, CountingActionHandler.INSTANCES.get());
+  }
+}
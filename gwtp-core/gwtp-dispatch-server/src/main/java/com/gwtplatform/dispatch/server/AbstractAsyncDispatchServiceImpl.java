@@ -0,0 +1,269 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gwt.user.client.rpc.IncompatibleRemoteServiceException;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.RPCRequest;
+import com.google.gwt.user.server.rpc.RPCServletUtils;
+import com.gwtplatform.dispatch.server.actionhandler.ActionCallback;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * A {@link AbstractDispatchServiceImpl} that uses Servlet 3 asynchronous processing, so that no container thread is
+ * held while an {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler} completes
+ * its action. Actions handled by regular handlers are still executed on the container thread, and their requests are
+ * not put in asynchronous mode.
+ * <p />
+ * This requires a Servlet 3 container, the servlet (and any filter in front of it, including the
+ * {@code GuiceFilter}) must be declared with {@code <async-supported>true</async-supported>}, and the bound
+ * {@link Dispatch} must be an {@link AsyncDispatch}, which is the case of the default ones. When any of these
+ * conditions is not met, the request is processed synchronously like in {@link AbstractDispatchServiceImpl}.
+ * <p />
+ * Note that request-scoped objects, including the {@link RequestProvider}, can't be used once an async handler leaves
+ * the container thread.
+ */
+public abstract class AbstractAsyncDispatchServiceImpl extends AbstractDispatchServiceImpl {
+
+  private static final long serialVersionUID = 6357815311349937218L;
+
+  private static final String executeMethodName = "execute";
+
+  protected AbstractAsyncDispatchServiceImpl(final Logger logger, final Dispatch dispatch,
+      RequestProvider requestProvider) {
+    super(logger, dispatch, requestProvider);
+  }
+
+  /**
+   * The number of milliseconds an asynchronous request may take before it fails with a {@link ServiceException}. Zero
+   * or less means that requests never time out. Override to change, the default is 30 seconds.
+   *
+   * @return The timeout, in milliseconds.
+   */
+  protected long getAsyncTimeout() {
+    return 30000;
+  }
+
+  @Override
+  protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+      IOException {
+    if ("POST".equals(request.getMethod())) {
+      processPostAsync(request, response);
+    } else {
+      super.service(request, response);
+    }
+  }
+
+  /**
+   * Processes a GWT-RPC POST request, suspending it while an asynchronous action is in progress. This mirrors
+   * {@link com.google.gwt.user.server.rpc.RemoteServiceServlet#processPost}, which is final.
+   *
+   * @param request The {@link HttpServletRequest}.
+   * @param response The {@link HttpServletResponse}.
+   * @throws ServletException
+   * @throws IOException
+   */
+  protected void processPostAsync(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+      IOException {
+    if (!request.isAsyncSupported() || !(dispatch instanceof AsyncDispatch)) {
+      doPost(request, response);
+      return;
+    }
+
+    synchronized (this) {
+      if (perThreadRequest == null) {
+        perThreadRequest = new ThreadLocal<HttpServletRequest>();
+      }
+      if (perThreadResponse == null) {
+        perThreadResponse = new ThreadLocal<HttpServletResponse>();
+      }
+    }
+
+    perThreadRequest.set(request);
+    perThreadResponse.set(response);
+    try {
+      checkPermutationStrongName();
+
+      String requestPayload = readContent(request);
+      onBeforeRequestDeserialized(requestPayload);
+
+      RPCRequest rpcRequest;
+      try {
+        rpcRequest = RPC.decodeRequest(requestPayload, getClass(), this);
+      } catch (IncompatibleRemoteServiceException e) {
+        log("An IncompatibleRemoteServiceException was thrown while processing this call.", e);
+        writeResponse(request, response, RPC.encodeResponseForFailure(null, e));
+        return;
+      }
+      onAfterRequestDeserialized(rpcRequest);
+
+      // Only suspend the request for async handlers, the others complete on this thread anyway.
+      Object[] parameters = rpcRequest.getParameters();
+      if (executeMethodName.equals(rpcRequest.getMethod().getName())
+          && ((AsyncDispatch) dispatch).isAsync((Action<?>) parameters[1])) {
+        executeAsync(request, rpcRequest, (String) parameters[0], (Action<?>) parameters[1]);
+      } else {
+        writeResponse(request, response, RPC.invokeAndEncodeResponse(this, rpcRequest.getMethod(),
+            rpcRequest.getParameters(), rpcRequest.getSerializationPolicy(), rpcRequest.getFlags()));
+      }
+    } catch (Throwable e) {
+      doUnexpectedFailure(e);
+    } finally {
+      perThreadRequest.set(null);
+      perThreadResponse.set(null);
+    }
+  }
+
+  private <R extends Result> void executeAsync(HttpServletRequest request, final RPCRequest rpcRequest,
+      String cookieSentByRPC, final Action<R> action) throws SerializationException, IOException {
+    try {
+      checkSecurityCookie(cookieSentByRPC, action, "executing");
+    } catch (ServiceException e) {
+      writeResponse(request, getThreadLocalResponse(), RPC.encodeResponseForFailure(rpcRequest.getMethod(), e,
+          rpcRequest.getSerializationPolicy(), rpcRequest.getFlags()));
+      return;
+    }
+
+    final AsyncContext asyncContext = request.startAsync();
+    final AtomicBoolean responded = new AtomicBoolean();
+    asyncContext.setTimeout(Math.max(0, getAsyncTimeout()));
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        fail(new ServiceException("Timed out while executing " + action.getClass().getName()));
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+
+      private void fail(ServiceException e) {
+        logFailure(action, e);
+        respond(asyncContext, responded, rpcRequest, encodeFailure(rpcRequest, e));
+      }
+    });
+
+    ((AsyncDispatch) dispatch).execute(action, new ActionCallback<R>() {
+      @Override
+      public void onSuccess(R result) {
+        try {
+          respond(asyncContext, responded, rpcRequest, RPC.encodeResponseForSuccess(rpcRequest.getMethod(), result,
+              rpcRequest.getSerializationPolicy(), rpcRequest.getFlags()));
+        } catch (SerializationException e) {
+          onFailure(e);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable caught) {
+        logFailure(action, caught);
+        Throwable failure = caught;
+        if (!(failure instanceof ActionException) && !(failure instanceof ServiceException)) {
+          failure = new ServiceException(caught);
+        }
+        respond(asyncContext, responded, rpcRequest, encodeFailure(rpcRequest, failure));
+      }
+    });
+  }
+
+  /**
+   * Writes the response and completes the request, unless it was already done, for example following a timeout.
+   */
+  private void respond(AsyncContext asyncContext, AtomicBoolean responded, RPCRequest rpcRequest,
+      String responsePayload) {
+    if (!responded.compareAndSet(false, true)) {
+      return;
+    }
+
+    HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+    HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+    try {
+      if (responsePayload == null) {
+        RPCServletUtils.writeResponseForUnexpectedFailure(getServletContext(), response,
+            new ServiceException("Unable to encode the response"));
+      } else {
+        writeResponse(request, response, responsePayload);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to write the response to " + rpcRequest.getMethod().getName(), e);
+    } finally {
+      asyncContext.complete();
+    }
+  }
+
+  /**
+   * @return The encoded failure, or {@code null} if it can't be encoded.
+   */
+  private String encodeFailure(RPCRequest rpcRequest, Throwable failure) {
+    try {
+      return RPC.encodeResponseForFailure(rpcRequest.getMethod(), failure, rpcRequest.getSerializationPolicy(),
+          rpcRequest.getFlags());
+    } catch (SerializationException e) {
+      logger.log(Level.WARNING, "Unable to encode " + failure, e);
+      return null;
+    }
+  }
+
+  private void logFailure(Action<?> action, Throwable caught) {
+    if (logger.isLoggable(Level.WARNING)) {
+      String kind = "Unexpected";
+      if (caught instanceof ActionException) {
+        kind = "Action";
+      } else if (caught instanceof ServiceException) {
+        kind = "Service";
+      }
+      logger.log(Level.WARNING, kind + " exception while executing " + action.getClass().getName() + ": "
+          + caught.getMessage(), caught);
+    }
+  }
+
+  /**
+   * Mirrors the private {@code writeResponse} of {@link com.google.gwt.user.server.rpc.RemoteServiceServlet}.
+   */
+  private void writeResponse(HttpServletRequest request, HttpServletResponse response, String responsePayload)
+      throws IOException {
+    onAfterResponseSerialized(responsePayload);
+    boolean gzipEncode = RPCServletUtils.acceptsGzipEncoding(request)
+        && shouldCompressResponse(request, response, responsePayload);
+
+    RPCServletUtils.writeResponse(getServletContext(), response, responsePayload, gzipEncode);
+  }
+}
@@ -18,11 +18,14 @@ package com.gwtplatform.dispatch.server;
 
 import java.util.List;
 
+import com.gwtplatform.dispatch.server.actionhandler.ActionCallback;
 import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
 import com.gwtplatform.dispatch.server.actionhandler.ActionResult;
+import com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
 import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorRegistry;
 import com.gwtplatform.dispatch.server.actionvalidator.ActionValidator;
+import com.gwtplatform.dispatch.server.cache.ResultCache;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.Result;
@@ -47,7 +50,7 @@ import com.gwtplatform.dispatch.shared.UnsupportedActionException;
  * @author Christian Goudreau
  * @author David Peterson
  */
-public abstract class AbstractDispatchImpl implements Dispatch {
+public abstract class AbstractDispatchImpl implements AsyncDispatch {
 
   private static class DefaultExecutionContext implements ExecutionContext {
 
@@ -56,7 +59,8 @@ public abstract class AbstractDispatchImpl implements Dispatch {
 
     private DefaultExecutionContext(AbstractDispatchImpl dispatch) {
       this.dispatch = dispatch;
-      this.actionResults = new java.util.ArrayList<ActionResult<?, ?>>();
+      // Parallel batches execute sub-actions from several threads in the same context.
+      this.actionResults = java.util.Collections.synchronizedList(new java.util.ArrayList<ActionResult<?, ?>>());
     }
 
     @Override
@@ -96,38 +100,135 @@ public abstract class AbstractDispatchImpl implements Dispatch {
     }
   }
 
-  private static final String actionValidatorMessage = " couldn't allow access to action : ";;
+  private static final String actionValidatorMessage = " couldn't allow access to action : ";
 
   private final ActionHandlerValidatorRegistry actionHandlerValidatorRegistry;
 
+  private ResultCache resultCache;
+
+  private DispatchListener dispatchListener;
+
   protected AbstractDispatchImpl(ActionHandlerValidatorRegistry actionHandlerValidatorRegistry) {
     this.actionHandlerValidatorRegistry = actionHandlerValidatorRegistry;
   }
 
+  /**
+   * Sets the {@link ResultCache} used for the actions marked with
+   * {@link com.gwtplatform.dispatch.server.cache.CacheResult CacheResult}. No result is cached when this is
+   * {@code null}, which is the default.
+   *
+   * @param resultCache The {@link ResultCache}, or {@code null}.
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * @return The {@link ResultCache}, or {@code null} if results are not cached.
+   */
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Sets the {@link DispatchListener} notified of every action executed by this dispatch. No listener is set by
+   * default.
+   *
+   * @param dispatchListener The {@link DispatchListener}, or {@code null}.
+   */
+  public void setDispatchListener(DispatchListener dispatchListener) {
+    this.dispatchListener = dispatchListener;
+  }
+
+  /**
+   * @return The {@link DispatchListener}, or {@code null} if there is none.
+   */
+  public DispatchListener getDispatchListener() {
+    return dispatchListener;
+  }
+
   @Override
   public <A extends Action<R>, R extends Result> R execute(A action) throws ActionException, ServiceException {
     DefaultExecutionContext ctx = new DefaultExecutionContext(this);
     try {
       return doExecute(action, ctx);
     } catch (ActionException e) {
-      ctx.rollback();
+      rollback(action, ctx);
       throw e;
     } catch (ServiceException e) {
-      ctx.rollback();
+      rollback(action, ctx);
       throw e;
     }
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public <A extends Action<R>, R extends Result> void execute(final A action, final ActionCallback<R> callback) {
+    ActionHandlerValidatorInstance handlerValidator;
+    try {
+      handlerValidator = findHandlerValidator(action);
+    } catch (UnsupportedActionException e) {
+      callback.onFailure(e);
+      return;
+    }
+
+    ActionHandler<A, R> handler = getHandler(handlerValidator);
+    if (!(handler instanceof AsyncActionHandler)) {
+      R result;
+      try {
+        result = execute(action);
+      } catch (ActionException e) {
+        callback.onFailure(e);
+        return;
+      } catch (ServiceException e) {
+        callback.onFailure(e);
+        return;
+      }
+      callback.onSuccess(result);
+      return;
+    }
+
+    final DefaultExecutionContext ctx = new DefaultExecutionContext(this);
+    ActionCallback<R> rollbackCallback = new ActionCallback<R>() {
+      @Override
+      public void onSuccess(R result) {
+        callback.onSuccess(result);
+      }
+
+      @Override
+      public void onFailure(Throwable caught) {
+        Throwable failure = caught;
+        try {
+          rollback(action, ctx);
+        } catch (ActionException e) {
+          failure = e;
+        } catch (ServiceException e) {
+          failure = e;
+        }
+        callback.onFailure(failure);
+      }
+    };
+
+    doExecuteAsync(action, (AsyncActionHandler<A, R>) handler, handlerValidator.getActionValidator(), ctx,
+        rollbackCallback);
+  }
+
+  @Override
+  public boolean isAsync(Action<?> action) {
+    ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
+    return handlerValidator != null && handlerValidator.getActionHandler() instanceof AsyncActionHandler;
+  }
+
   @Override
   public <A extends Action<R>, R extends Result> void undo(A action, R result) throws ActionException, ServiceException {
     DefaultExecutionContext ctx = new DefaultExecutionContext(this);
     try {
       doUndo(action, result, ctx);
     } catch (ActionException e) {
-      ctx.rollback();
+      rollback(action, ctx);
       throw e;
     } catch (ServiceException e) {
-      ctx.rollback();
+      rollback(action, ctx);
       throw e;
     }
   }
@@ -144,13 +245,36 @@ public abstract class AbstractDispatchImpl implements Dispatch {
    * @throws ServiceException
    */
   private <A extends Action<R>, R extends Result> R doExecute(A action, ExecutionContext ctx) throws ActionException, ServiceException {
-    ActionHandler<A, R> handler = findHandler(action);
+    ActionHandlerValidatorInstance handlerValidator = findHandlerValidator(action);
 
-    ActionValidator actionValidator = findActionValidator(action);
+    DispatchListener listener = dispatchListener;
+    if (listener == null) {
+      return doExecute(action, handlerValidator, ctx);
+    }
+
+    listener.onStart(action);
+    long start = System.nanoTime();
+    try {
+      R result = doExecute(action, handlerValidator, ctx);
+      listener.onSuccess(action, result, System.nanoTime() - start);
+      return result;
+    } catch (ActionException e) {
+      listener.onFailure(action, e, System.nanoTime() - start);
+      throw e;
+    } catch (ServiceException e) {
+      listener.onFailure(action, e, System.nanoTime() - start);
+      throw e;
+    }
+  }
+
+  private <A extends Action<R>, R extends Result> R doExecute(A action, ActionHandlerValidatorInstance handlerValidator,
+      ExecutionContext ctx) throws ActionException, ServiceException {
+    ActionHandler<A, R> handler = getHandler(handlerValidator);
+    ActionValidator actionValidator = handlerValidator.getActionValidator();
 
     try {
       if (actionValidator.isValid(action)) {
-        return handler.execute(action, ctx);
+        return executeHandler(action, handler, ctx);
       } else {
         throw new ServiceException(actionValidator.getClass().getName() + actionValidatorMessage + action.getClass().getName());
       }
@@ -164,14 +288,122 @@ public abstract class AbstractDispatchImpl implements Dispatch {
     }
   }
 
-  private <A extends Action<R>, R extends Result> void doUndo(A action, R result, ExecutionContext ctx) throws ActionException, ServiceException {
+  /**
+   * Executes the handler, going through the {@link ResultCache} if there is one.
+   */
+  private <A extends Action<R>, R extends Result> R executeHandler(final A action, final ActionHandler<A, R> handler,
+      final ExecutionContext ctx) throws ActionException, ServiceException {
+    if (resultCache == null) {
+      return handler.execute(action, ctx);
+    }
+
+    R result = resultCache.get(action, handler, new ResultCache.Loader<R>() {
+      @Override
+      public R load() throws ActionException {
+        return handler.execute(action, ctx);
+      }
+    });
+    resultCache.evictInvalidatedBy(action, handler);
+    return result;
+  }
+
+  private void evictInvalidatedBy(Action<?> action, ActionHandler<?, ?> handler) {
+    if (resultCache != null) {
+      resultCache.evictInvalidatedBy(action, handler);
+    }
+  }
+
+  /**
+   * Same as {@link #doExecute(Action, ExecutionContext)}, but lets an {@link AsyncActionHandler} complete the action
+   * whenever it is ready. Every failure, thrown or reported, is passed to the callback.
+   */
+  private <A extends Action<R>, R extends Result> void doExecuteAsync(final A action,
+      final AsyncActionHandler<A, R> handler, ActionValidator actionValidator, ExecutionContext ctx,
+      final ActionCallback<R> callback) {
+    final DispatchListener listener = dispatchListener;
+    final long start;
+    if (listener == null) {
+      start = 0;
+    } else {
+      listener.onStart(action);
+      start = System.nanoTime();
+    }
+
+    ActionCallback<R> handlerCallback = new ActionCallback<R>() {
+      @Override
+      public void onSuccess(R result) {
+        evictInvalidatedBy(action, handler);
+        if (listener != null) {
+          listener.onSuccess(action, result, System.nanoTime() - start);
+        }
+        callback.onSuccess(result);
+      }
+
+      @Override
+      public void onFailure(Throwable caught) {
+        Throwable failure = wrapFailure(action, caught);
+        if (listener != null) {
+          listener.onFailure(action, failure, System.nanoTime() - start);
+        }
+        callback.onFailure(failure);
+      }
+    };
+
+    try {
+      if (actionValidator.isValid(action)) {
+        handler.execute(action, ctx, handlerCallback);
+      } else {
+        handlerCallback.onFailure(new ServiceException(actionValidator.getClass().getName() + actionValidatorMessage
+            + action.getClass().getName()));
+      }
+    } catch (Exception e) {
+      handlerCallback.onFailure(e);
+    }
+  }
 
-    ActionValidator actionValidator = findActionValidator(action);
+  /**
+   * Rolls back the sub-actions executed on behalf of a failed top-level action, notifying the
+   * {@link DispatchListener} if there was anything to roll back.
+   */
+  private void rollback(Action<?> action, DefaultExecutionContext ctx) throws ActionException, ServiceException {
+    DispatchListener listener = dispatchListener;
+    if (listener == null || ctx.actionResults.isEmpty()) {
+      ctx.rollback();
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      ctx.rollback();
+    } finally {
+      listener.onRollback(action, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Wraps unexpected failures of an asynchronous handler the same way {@link #doExecute(Action, ExecutionContext)}
+   * does for synchronous handlers.
+   */
+  private Throwable wrapFailure(Action<?> action, Throwable caught) {
+    if (caught instanceof ActionException || caught instanceof ServiceException) {
+      return caught;
+    }
+
+    String newMessage = "Service exception executing action \"" + action.getClass().getSimpleName() + "\", " + caught.toString();
+    ServiceException rethrown = new ServiceException(newMessage);
+    rethrown.initCause(caught);
+    return rethrown;
+  }
+
+  private <A extends Action<R>, R extends Result> void doUndo(A action, R result, ExecutionContext ctx) throws ActionException, ServiceException {
+    ActionHandlerValidatorInstance handlerValidator = findHandlerValidator(action);
+    ActionHandler<A, R> handler = getHandler(handlerValidator);
+    ActionValidator actionValidator = handlerValidator.getActionValidator();
 
-    ActionHandler<A, R> handler = findHandler(action);
     try {
       if (actionValidator.isValid(action)) {
         handler.undo(action, result, ctx);
+        evictInvalidatedBy(action, handler);
       } else {
         throw new ServiceException(actionValidator.getClass().getName() + actionValidatorMessage + action.getClass().getName());
       }
@@ -182,23 +414,26 @@ public abstract class AbstractDispatchImpl implements Dispatch {
     }
   }
 
-  private <A extends Action<R>, R extends Result> ActionValidator findActionValidator(A action) throws UnsupportedActionException {
+  /**
+   * Looks up the handler and the validator of an action with a single probe of the registry.
+   *
+   * @param action The {@link Action} to look up.
+   * @return The {@link ActionHandlerValidatorInstance} associated with the action, never {@code null}.
+   * @throws UnsupportedActionException If no handler is registered for the action.
+   */
+  private <A extends Action<R>, R extends Result> ActionHandlerValidatorInstance findHandlerValidator(A action)
+      throws UnsupportedActionException {
     ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
+
     if (handlerValidator == null) {
       throw new UnsupportedActionException(action);
     }
 
-    return handlerValidator.getActionValidator();
+    return handlerValidator;
   }
 
   @SuppressWarnings("unchecked")
-  private <A extends Action<R>, R extends Result> ActionHandler<A, R> findHandler(A action) throws UnsupportedActionException {
-    ActionHandlerValidatorInstance handlerValidator = actionHandlerValidatorRegistry.findActionHandlerValidator(action);
-
-    if (handlerValidator == null) {
-      throw new UnsupportedActionException(action);
-    }
-
+  private <A extends Action<R>, R extends Result> ActionHandler<A, R> getHandler(ActionHandlerValidatorInstance handlerValidator) {
     return (ActionHandler<A, R>) handlerValidator.getActionHandler();
   }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 
 package com.gwtplatform.dispatch.server;
 
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +27,7 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.DispatchService;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
 import com.gwtplatform.dispatch.shared.Result;
 import com.gwtplatform.dispatch.shared.ServiceException;
 
@@ -70,12 +72,7 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
   @Override
   public Result execute(String cookieSentByRPC, Action<?> action) throws ActionException, ServiceException {
 
-    if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
-      String message = xsrfAttackMessage + " While executing action: " + action.getClass().getName();
-
-      logger.severe(message);
-      throw new ServiceException(message);
-    }
+    checkSecurityCookie(cookieSentByRPC, action, "executing");
 
     try {
       return dispatch.execute(action);
@@ -98,14 +95,25 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
   }
 
   @Override
-  public void undo(String cookieSentByRPC, Action<Result> action, Result result) throws ActionException, ServiceException {
+  public MultiplexedResult executeMultiplexed(String cookieSentByRPC, ArrayList<Action<?>> actions)
+      throws ServiceException {
+    MultiplexedResult multiplexedResult = new MultiplexedResult(actions.size());
+    for (int i = 0; i < actions.size(); i++) {
+      try {
+        multiplexedResult.setResult(i, execute(cookieSentByRPC, actions.get(i)));
+      } catch (ActionException e) {
+        multiplexedResult.setActionException(i, e);
+      } catch (ServiceException e) {
+        multiplexedResult.setServiceException(i, e);
+      }
+    }
+    return multiplexedResult;
+  }
 
-    if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
-      String message = xsrfAttackMessage + " While undoing action: " + action.getClass().getName();
+  @Override
+  public void undo(String cookieSentByRPC, Action<Result> action, Result result) throws ActionException, ServiceException {
 
-      logger.severe(message);
-      throw new ServiceException(message);
-    }
+    checkSecurityCookie(cookieSentByRPC, action, "undoing");
 
     try {
       dispatch.undo(action, result);
@@ -121,6 +129,23 @@ public abstract class AbstractDispatchServiceImpl extends RemoteServiceServlet i
     }
   }
 
+  /**
+   * Makes sure that secured actions are sent with the security cookie of the request.
+   *
+   * @param cookieSentByRPC The content of the security cookie sent by RPC.
+   * @param action The {@link Action} about to be dispatched.
+   * @param operation What is about to be done with the action, for logging purposes.
+   * @throws ServiceException If the action is secured and the cookies don't match.
+   */
+  protected void checkSecurityCookie(String cookieSentByRPC, Action<?> action, String operation) throws ServiceException {
+    if (action.isSecured() && !cookieMatch(cookieSentByRPC)) {
+      String message = xsrfAttackMessage + " While " + operation + " action: " + action.getClass().getName();
+
+      logger.severe(message);
+      throw new ServiceException(message);
+    }
+  }
+
   /**
    * Checks that the cookie in the RPC matches the one in the http request header.
    *
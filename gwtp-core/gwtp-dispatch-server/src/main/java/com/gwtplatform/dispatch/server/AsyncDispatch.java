@@ -0,0 +1,60 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionCallback;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * A {@link Dispatch} that can also execute actions without blocking the caller
+ * when they are handled by an
+ * {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler}.
+ * {@link AbstractDispatchImpl} implements this interface.
+ */
+public interface AsyncDispatch extends Dispatch {
+
+  /**
+   * Executes the specified action and passes the result to the callback.
+   * Actions handled by an
+   * {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler}
+   * return immediately and complete on whichever thread the handler uses,
+   * other actions are executed on the calling thread. If the action fails, it
+   * is rolled back before the callback is called.
+   *
+   * @param <A> The {@link Action} type.
+   * @param <R> The {@link Result} type.
+   * @param action The {@link Action}.
+   * @param callback The {@link ActionCallback} receiving the result, or an
+   *          {@link com.gwtplatform.dispatch.shared.ActionException ActionException} or
+   *          {@link com.gwtplatform.dispatch.shared.ServiceException ServiceException}.
+   */
+  <A extends Action<R>, R extends Result> void execute(A action, ActionCallback<R> callback);
+
+  /**
+   * Checks whether an action is handled by an
+   * {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler},
+   * that is whether {@link #execute(Action, ActionCallback)} may return before
+   * the action completes.
+   *
+   * @param action The {@link Action}.
+   * @return {@code true} if the action is handled by an
+   *         {@link com.gwtplatform.dispatch.server.actionhandler.AsyncActionHandler AsyncActionHandler},
+   *         {@code false} otherwise, including when no handler is registered for it.
+   */
+  boolean isAsync(Action<?> action);
+}
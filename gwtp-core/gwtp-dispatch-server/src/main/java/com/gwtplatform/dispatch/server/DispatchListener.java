@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Receives a callback for every {@link Action} executed by an {@link AbstractDispatchImpl}, including the sub-actions
+ * executed through an {@link ExecutionContext}. Use it to collect metrics or traces, see
+ * {@link com.gwtplatform.dispatch.server.metrics.DispatchMetrics DispatchMetrics}.
+ * <p />
+ * <b>Important!</b> Listeners are called on the dispatching threads, so they must be thread safe, fast, and must not
+ * throw. When no listener is set, the dispatch does not even read the clock.
+ */
+public interface DispatchListener {
+
+  /**
+   * Called before an action is validated and handed to its handler.
+   *
+   * @param action The {@link Action} about to be executed.
+   */
+  void onStart(Action<?> action);
+
+  /**
+   * Called when an action completed successfully.
+   *
+   * @param action The executed {@link Action}.
+   * @param result The {@link Result} of the action.
+   * @param durationNanos The time elapsed since {@link #onStart(Action)}, in nanoseconds.
+   */
+  void onSuccess(Action<?> action, Result result, long durationNanos);
+
+  /**
+   * Called when an action failed.
+   *
+   * @param action The failed {@link Action}.
+   * @param caught The failure, an {@link com.gwtplatform.dispatch.shared.ActionException ActionException} or a
+   *          {@link com.gwtplatform.dispatch.shared.ServiceException ServiceException}.
+   * @param durationNanos The time elapsed since {@link #onStart(Action)}, in nanoseconds.
+   */
+  void onFailure(Action<?> action, Throwable caught, long durationNanos);
+
+  /**
+   * Called once the sub-actions executed on behalf of a failed top-level action have been rolled back.
+   *
+   * @param action The top-level {@link Action} that failed.
+   * @param durationNanos The time spent rolling back, in nanoseconds.
+   */
+  void onRollback(Action<?> action, long durationNanos);
+}
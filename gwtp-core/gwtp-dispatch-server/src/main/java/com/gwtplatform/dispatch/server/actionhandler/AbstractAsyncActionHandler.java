@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Simple abstract super-class for {@link AsyncActionHandler} implementations.
+ * It implements the synchronous {@link #execute(Action, ExecutionContext)} by
+ * waiting for the asynchronous one to complete.
+ *
+ * @param <A> The {@link Action} type.
+ * @param <R> The {@link Result} type.
+ */
+public abstract class AbstractAsyncActionHandler<A extends Action<R>, R extends Result>
+    extends AbstractActionHandler<A, R> implements AsyncActionHandler<A, R> {
+
+  /**
+   * A callback that lets the calling thread wait for the outcome.
+   */
+  private static class BlockingCallback<R extends Result> implements ActionCallback<R> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private R result;
+    private Throwable caught;
+
+    @Override
+    public void onSuccess(R result) {
+      this.result = result;
+      done.countDown();
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      this.caught = caught;
+      done.countDown();
+    }
+
+    R get() throws ActionException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ActionException(e);
+      }
+
+      if (caught == null) {
+        return result;
+      }
+      if (caught instanceof ActionException) {
+        throw (ActionException) caught;
+      }
+      if (caught instanceof RuntimeException) {
+        throw (RuntimeException) caught;
+      }
+      throw new ActionException(caught);
+    }
+  }
+
+  public AbstractAsyncActionHandler(Class<A> actionType) {
+    super(actionType);
+  }
+
+  @Override
+  public R execute(A action, ExecutionContext context) throws ActionException {
+    BlockingCallback<R> callback = new BlockingCallback<R>();
+    execute(action, context, callback);
+    return callback.get();
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * The callback through which an {@link AsyncActionHandler} completes an action.
+ * Exactly one of its methods must be called, exactly once, from any thread.
+ *
+ * @param <R> The type of the result extending {@link Result}.
+ */
+public interface ActionCallback<R extends Result> {
+
+  /**
+   * Called when the action completed successfully.
+   *
+   * @param result The {@link Result}.
+   */
+  void onSuccess(R result);
+
+  /**
+   * Called when the action failed.
+   *
+   * @param caught The failure, usually an
+   *          {@link com.gwtplatform.dispatch.shared.ActionException ActionException}.
+   */
+  void onFailure(Throwable caught);
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * An {@link ActionHandler} that can complete its action asynchronously, for
+ * example when it waits on slow I/O. When dispatched through
+ * {@link com.gwtplatform.dispatch.server.AsyncDispatch AsyncDispatch}, as done
+ * by {@link com.gwtplatform.dispatch.server.AbstractAsyncDispatchServiceImpl
+ * AbstractAsyncDispatchServiceImpl}, no thread is held while the action is in
+ * progress. When executed as a sub-action through
+ * {@link ExecutionContext#execute(Action)}, the synchronous
+ * {@link #execute(Action, ExecutionContext)} is used instead.
+ * <p />
+ * Async action handlers are registered exactly like any other handler. Most
+ * implementations should extend {@link AbstractAsyncActionHandler}.
+ *
+ * @param <A> The type of the action extending {@link Action}.
+ * @param <R> The type of the result extending {@link Result}.
+ */
+public interface AsyncActionHandler<A extends Action<R>, R extends Result> extends ActionHandler<A, R> {
+
+  /**
+   * Starts handling the specified action and returns without waiting for it
+   * to complete. The result, or the failure, must be passed to the callback.
+   * The {@link ExecutionContext} stays usable until the callback is called.
+   *
+   * @param action The action.
+   * @param context The {@link ExecutionContext}.
+   * @param callback The {@link ActionCallback} to call once the action completes.
+   * @throws ActionException if the action cannot be started.
+   */
+  void execute(A action, ExecutionContext context, ActionCallback<R> callback)
+      throws ActionException;
+}
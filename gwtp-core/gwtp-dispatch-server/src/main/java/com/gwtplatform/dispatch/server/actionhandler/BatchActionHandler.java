@@ -25,23 +25,127 @@ import com.gwtplatform.dispatch.shared.BatchResult;
 import com.gwtplatform.dispatch.shared.Result;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This handles {@link BatchAction} requests, which are a set of multiple
  * actions that need to all be executed successfully in sequence for the whole
  * action to succeed.
+ * <p />
+ * When constructed with an {@link Executor}, the sub-actions of a
+ * {@link BatchAction#isParallel() parallel} batch are fanned out to that
+ * executor. Bound the executor to limit how many threads a single batch can
+ * use. The request thread also executes any sub-action that no worker picked
+ * up yet, so nested parallel batches can never deadlock a saturated executor.
+ * To use it, bind a subclass that passes your executor to
+ * {@link #BatchActionHandler(Executor)}. Without an executor, parallel batches
+ * are executed in sequence.
+ * <p />
+ * The executor threads run outside of the servlet request, so request-scoped
+ * bindings such as the current {@code HttpServletRequest} or
+ * {@code HttpSession} are not available to the sub-actions they pick up.
+ * Override {@link #inRequestScope(Runnable)} to carry the request scope over,
+ * for example with Guice's {@code ServletScopes.continueRequest}. Batches
+ * whose handlers need the request scope and that can't do so must not be
+ * marked {@link BatchAction#isParallel() parallel}.
  *
  * @author David Peterson
  */
 public class BatchActionHandler extends
     AbstractActionHandler<BatchAction, BatchResult> {
 
+  /**
+   * A sub-action of a parallel batch. It is executed exactly once, either by
+   * a worker of the executor or by the request thread, whichever claims it
+   * first.
+   */
+  private static class SubAction implements Runnable {
+    private final Action<?> action;
+    private final ExecutionContext context;
+    private final OnException onException;
+    private final AtomicBoolean aborted;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private Result result;
+    private Throwable failure;
+
+    SubAction(Action<?> action, ExecutionContext context,
+        OnException onException, AtomicBoolean aborted) {
+      this.action = action;
+      this.context = context;
+      this.onException = onException;
+      this.aborted = aborted;
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        // Don't start new work once a sibling failed a ROLLBACK batch.
+        if (!aborted.get()) {
+          result = context.execute(action);
+        }
+      } catch (Throwable t) {
+        // Errors are kept too, the batch rethrows them like a sequential batch would.
+        failure = t;
+        if (onException == OnException.ROLLBACK || t instanceof Error) {
+          aborted.set(true);
+        }
+      } finally {
+        done.countDown();
+      }
+    }
+
+    /**
+     * Runs the sub-action on the current thread if nobody claimed it yet, then
+     * waits until it is complete.
+     */
+    void runOrAwait() {
+      run();
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          // Keep waiting, rolling back while the sub-action runs would be unsafe.
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private final Executor executor;
+
   public BatchActionHandler() {
+    this(null);
+  }
+
+  /**
+   * @param executor The {@link Executor} used to execute the sub-actions of
+   *          parallel batches, or <code>null</code> to always execute them in
+   *          sequence.
+   */
+  public BatchActionHandler(Executor executor) {
     super(BatchAction.class);
+    this.executor = executor;
   }
 
   public BatchResult execute(BatchAction action, ExecutionContext context)
       throws ActionException {
+    if (action.isParallel() && executor != null) {
+      return executeInParallel(action, context);
+    }
+
     OnException onException = action.getOnException();
     List<Result> results = new java.util.ArrayList<Result>();
     for (Action<?> a : action.getActions()) {
@@ -50,14 +154,7 @@ public class BatchActionHandler extends
         result = context.execute(a);
       } catch (Exception e) {
         if (onException == OnException.ROLLBACK) {
-          if (e instanceof ActionException) {
-            throw (ActionException) e;
-          }
-          if (e instanceof RuntimeException) {
-            throw (RuntimeException) e;
-          } else {
-            throw new ActionException(e);
-          }
+          rethrow(e);
         }
       }
       results.add(result);
@@ -71,4 +168,73 @@ public class BatchActionHandler extends
     // No action necessary - the sub actions should automatically rollback
   }
 
+  /**
+   * Wraps a sub-action before it is handed to the executor. This is called on
+   * the request thread, so it can capture whatever request-scoped state the
+   * sub-action needs and restore it on the worker thread. The default
+   * implementation returns the sub-action unchanged.
+   * <p />
+   * Sub-actions that no worker picked up yet are executed by the request
+   * thread itself, without going through the returned {@link Runnable}.
+   *
+   * @param subAction The sub-action to execute on a worker thread.
+   * @return The {@link Runnable} to submit to the executor. It must run
+   *         {@code subAction} on the worker thread.
+   */
+  protected Runnable inRequestScope(Runnable subAction) {
+    return subAction;
+  }
+
+  /**
+   * Executes all the sub-actions concurrently. This only returns, or throws,
+   * once every sub-action that was started is complete, so that the
+   * surrounding {@link ExecutionContext} can safely roll them back.
+   */
+  private BatchResult executeInParallel(BatchAction action,
+      ExecutionContext context) throws ActionException {
+    OnException onException = action.getOnException();
+    AtomicBoolean aborted = new AtomicBoolean();
+    Action<?>[] actions = action.getActions();
+    SubAction[] subActions = new SubAction[actions.length];
+
+    for (int i = 0; i < actions.length; i++) {
+      subActions[i] = new SubAction(actions[i], context, onException, aborted);
+      try {
+        executor.execute(inRequestScope(subActions[i]));
+      } catch (RejectedExecutionException e) {
+        // The request thread will execute it below.
+      }
+    }
+
+    List<Result> results = new java.util.ArrayList<Result>(actions.length);
+    Throwable failure = null;
+    for (SubAction subAction : subActions) {
+      subAction.runOrAwait();
+      if (failure == null && subAction.failure != null
+          && (onException == OnException.ROLLBACK || subAction.failure instanceof Error)) {
+        failure = subAction.failure;
+      }
+      results.add(subAction.result);
+    }
+
+    if (failure != null) {
+      rethrow(failure);
+    }
+
+    return new BatchResult(results);
+  }
+
+  private void rethrow(Throwable e) throws ActionException {
+    if (e instanceof ActionException) {
+      throw (ActionException) e;
+    }
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    } else {
+      throw new ActionException(e);
+    }
+  }
+
 }
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks an {@link com.gwtplatform.dispatch.shared.Action Action} or its
+ * {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler} as idempotent, so that its
+ * results can be shared through the {@link ResultCache}. Two actions hit the same entry when they are
+ * {@link Object#equals(Object) equal}, which is the case for actions generated with {@code @GenDispatch}.
+ * <p />
+ * <b>Important!</b> Cached results are shared between all users. Only annotate actions whose result does not depend
+ * on the caller, and never modify a result once it has been returned.
+ * <p />
+ * When both the handler and the action are annotated, the handler wins.
+ *
+ * @see InvalidatesCache
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheResult {
+
+  /**
+   * @return How long a result stays in the cache, in {@link #unit()}.
+   */
+  long timeToLive() default 60;
+
+  /**
+   * @return The unit of {@link #timeToLive()}.
+   */
+  TimeUnit unit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.gwtplatform.dispatch.shared.Action;
+
+/**
+ * Declares that an {@link Action}, or the
+ * {@link com.gwtplatform.dispatch.server.actionhandler.ActionHandler ActionHandler} executing it, modifies the data
+ * returned by other actions. Every result cached for the listed action types is evicted from the {@link ResultCache}
+ * once the annotated action has been executed or undone.
+ * <p />
+ * Annotations on the handler and on the action are combined.
+ *
+ * @see CacheResult
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface InvalidatesCache {
+
+  /**
+   * @return The action types whose cached results become stale.
+   */
+  Class<? extends Action<?>>[] value();
+}
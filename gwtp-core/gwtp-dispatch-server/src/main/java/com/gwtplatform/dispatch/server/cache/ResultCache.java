@@ -0,0 +1,356 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import com.gwtplatform.dispatch.server.actionhandler.ActionHandler;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+
+/**
+ * A bounded cache for the results of the actions marked with {@link CacheResult}, shared by all the users of a
+ * {@link com.gwtplatform.dispatch.server.Dispatch Dispatch}. Results are keyed by action equality, expire after their
+ * time to live, and the least recently used entries are evicted once the total weight of the cache exceeds its
+ * capacity. Results are evicted as soon as an action marked with {@link InvalidatesCache} completes.
+ * <p />
+ * Concurrent misses on equal actions are coalesced: a single thread executes the handler, the others wait for its
+ * outcome. The hit count includes the requests served that way, so the miss count is the number of times a handler
+ * actually ran because of a miss.
+ * <p />
+ * This class is thread safe.
+ */
+public class ResultCache {
+
+  /**
+   * Executes the action when its result is not in the cache.
+   *
+   * @param <R> The type of the {@link Result}.
+   */
+  public interface Loader<R extends Result> {
+    R load() throws ActionException;
+  }
+
+  private static class Policy {
+    private static final Policy NONE = new Policy(0, Collections.<Class<?>>emptyList());
+
+    private final long timeToLiveMillis;
+    private final List<Class<?>> invalidatedTypes;
+
+    Policy(long timeToLiveMillis, List<Class<?>> invalidatedTypes) {
+      this.timeToLiveMillis = timeToLiveMillis;
+      this.invalidatedTypes = invalidatedTypes;
+    }
+  }
+
+  private static class Entry {
+    private final Result result;
+    private final long expiresAt;
+    private final int weight;
+
+    Entry(Result result, long expiresAt, int weight) {
+      this.result = result;
+      this.expiresAt = expiresAt;
+      this.weight = weight;
+    }
+  }
+
+  private static class Pending {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Result result;
+    private Throwable failure;
+    private boolean stale;
+
+    void complete(Result result, Throwable failure) {
+      this.result = result;
+      this.failure = failure;
+      done.countDown();
+    }
+
+    Result await() throws ActionException, ServiceException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceException(e);
+      }
+
+      if (failure instanceof ActionException) {
+        throw (ActionException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      return result;
+    }
+  }
+
+  private final long capacity;
+  private final ResultWeigher weigher;
+  private final ConcurrentMap<Class<?>, Policy> policies = new ConcurrentHashMap<Class<?>, Policy>();
+
+  // All the fields below are guarded by this.
+  private final Map<Action<?>, Entry> entries = new LinkedHashMap<Action<?>, Entry>(16, 0.75f, true);
+  private final Map<Action<?>, Pending> pendings = new HashMap<Action<?>, Pending>();
+  private long weight;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Creates a cache holding at most {@code capacity} results.
+   *
+   * @param capacity The maximum number of entries.
+   */
+  public ResultCache(long capacity) {
+    this(capacity, ResultWeigher.SINGLETON);
+  }
+
+  /**
+   * @param capacity The maximum total weight of the entries.
+   * @param weigher The {@link ResultWeigher} used to compute the weight of each entry.
+   */
+  public ResultCache(long capacity, ResultWeigher weigher) {
+    this.capacity = capacity;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Returns the cached result of an action, or loads it if the action is cacheable. Actions that are not marked with
+   * {@link CacheResult} are always loaded.
+   *
+   * @param action The {@link Action} to execute.
+   * @param handler The {@link ActionHandler} of the action.
+   * @param loader The {@link Loader} executing the action on a miss.
+   * @return The {@link Result} of the action.
+   * @throws ActionException If the loader failed.
+   * @throws ServiceException If the thread was interrupted while waiting for a concurrent load.
+   */
+  @SuppressWarnings("unchecked")
+  public <A extends Action<R>, R extends Result> R get(A action, ActionHandler<A, R> handler, Loader<R> loader)
+      throws ActionException, ServiceException {
+    Policy policy = getPolicy(action, handler);
+    if (policy.timeToLiveMillis <= 0) {
+      return loader.load();
+    }
+
+    Pending pending;
+    boolean leader = false;
+    synchronized (this) {
+      Entry entry = entries.get(action);
+      if (entry != null) {
+        if (entry.expiresAt > System.currentTimeMillis()) {
+          hitCount++;
+          return (R) entry.result;
+        }
+        removeEntry(action);
+      }
+
+      pending = pendings.get(action);
+      if (pending != null) {
+        hitCount++;
+      } else {
+        missCount++;
+        pending = new Pending();
+        pendings.put(action, pending);
+        leader = true;
+      }
+    }
+
+    if (!leader) {
+      return (R) pending.await();
+    }
+
+    return load(action, pending, policy, loader);
+  }
+
+  /**
+   * Evicts the results made stale by an action that completed, as declared by {@link InvalidatesCache}.
+   *
+   * @param action The {@link Action} that was executed or undone.
+   * @param handler The {@link ActionHandler} of the action.
+   */
+  public void evictInvalidatedBy(Action<?> action, ActionHandler<?, ?> handler) {
+    for (Class<?> type : getPolicy(action, handler).invalidatedTypes) {
+      invalidate(type);
+    }
+  }
+
+  /**
+   * Evicts every result cached for an action type. Loads in progress for that type complete normally but their
+   * results are not kept.
+   *
+   * @param actionType The type of {@link Action} to evict.
+   */
+  public synchronized void invalidate(Class<?> actionType) {
+    for (Iterator<Map.Entry<Action<?>, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<Action<?>, Entry> entry = it.next();
+      if (entry.getKey().getClass() == actionType) {
+        weight -= entry.getValue().weight;
+        it.remove();
+      }
+    }
+
+    for (Iterator<Map.Entry<Action<?>, Pending>> it = pendings.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<Action<?>, Pending> entry = it.next();
+      if (entry.getKey().getClass() == actionType) {
+        entry.getValue().stale = true;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Evicts every cached result.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    weight = 0;
+    for (Pending pending : pendings.values()) {
+      pending.stale = true;
+    }
+    pendings.clear();
+  }
+
+  private <A extends Action<R>, R extends Result> R load(A action, Pending pending, Policy policy, Loader<R> loader)
+      throws ActionException {
+    R result = null;
+    Throwable failure = null;
+    try {
+      result = loader.load();
+      return result;
+    } catch (ActionException e) {
+      failure = e;
+      throw e;
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } catch (Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      synchronized (this) {
+        if (!pending.stale) {
+          pendings.remove(action);
+          if (failure == null) {
+            putEntry(action, new Entry(result, System.currentTimeMillis() + policy.timeToLiveMillis,
+                weigher.weigh(action, result)));
+          }
+        }
+      }
+      pending.complete(result, failure);
+    }
+  }
+
+  // Must be called while holding the lock.
+  private void putEntry(Action<?> action, Entry entry) {
+    if (entry.weight > capacity) {
+      return;
+    }
+
+    removeEntry(action);
+    entries.put(action, entry);
+    weight += entry.weight;
+
+    Iterator<Entry> it = entries.values().iterator();
+    while (weight > capacity && it.hasNext()) {
+      weight -= it.next().weight;
+      it.remove();
+    }
+  }
+
+  // Must be called while holding the lock.
+  private void removeEntry(Action<?> action) {
+    Entry entry = entries.remove(action);
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  private Policy getPolicy(Action<?> action, ActionHandler<?, ?> handler) {
+    Class<?> actionClass = action.getClass();
+    Policy policy = policies.get(actionClass);
+    if (policy == null) {
+      policy = createPolicy(actionClass, handler.getClass());
+      policies.put(actionClass, policy);
+    }
+    return policy;
+  }
+
+  private Policy createPolicy(Class<?> actionClass, Class<?> handlerClass) {
+    CacheResult cacheResult = handlerClass.getAnnotation(CacheResult.class);
+    if (cacheResult == null) {
+      cacheResult = actionClass.getAnnotation(CacheResult.class);
+    }
+
+    List<Class<?>> invalidatedTypes = new ArrayList<Class<?>>();
+    addInvalidatedTypes(handlerClass.getAnnotation(InvalidatesCache.class), invalidatedTypes);
+    addInvalidatedTypes(actionClass.getAnnotation(InvalidatesCache.class), invalidatedTypes);
+
+    if (cacheResult == null && invalidatedTypes.isEmpty()) {
+      return Policy.NONE;
+    }
+
+    long timeToLiveMillis = cacheResult == null ? 0 : cacheResult.unit().toMillis(cacheResult.timeToLive());
+    return new Policy(timeToLiveMillis, invalidatedTypes);
+  }
+
+  private void addInvalidatedTypes(InvalidatesCache invalidatesCache, List<Class<?>> invalidatedTypes) {
+    if (invalidatesCache != null) {
+      Collections.addAll(invalidatedTypes, invalidatesCache.value());
+    }
+  }
+
+  /**
+   * @return The number of requests served without executing a handler.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of requests that executed a handler because their result was not cached.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return The number of cached results, including the expired ones not evicted yet.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The total weight of the cached results.
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.cache;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * Computes how much of the capacity of a {@link ResultCache} an entry uses.
+ */
+public interface ResultWeigher {
+
+  /**
+   * Gives the same weight to every entry, so that the capacity of the cache is a number of entries.
+   */
+  ResultWeigher SINGLETON = new ResultWeigher() {
+    @Override
+    public int weigh(Action<?> action, Result result) {
+      return 1;
+    }
+  };
+
+  /**
+   * @param action The cached {@link Action}.
+   * @param result The {@link Result} of the action.
+   * @return The weight of the entry, must be positive.
+   */
+  int weigh(Action<?> action, Result result);
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters, in-flight gauge and latency histogram of a single action type, as collected by {@link DispatchMetrics}.
+ * <p />
+ * Latencies are recorded in a histogram of power-of-two nanosecond buckets, so percentiles are upper bounds that are
+ * at most twice the exact value. This keeps recording lock-free and the memory use constant.
+ */
+public class ActionMetrics implements ActionMetricsMBean {
+
+  private static final int BUCKET_COUNT = 64;
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final String actionType;
+  private final AtomicLong executionCount = new AtomicLong();
+  private final AtomicLong successCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong rollbackCount = new AtomicLong();
+  private final AtomicLong inFlightCount = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+  public ActionMetrics(String actionType) {
+    this.actionType = actionType;
+  }
+
+  void start() {
+    executionCount.incrementAndGet();
+    inFlightCount.incrementAndGet();
+  }
+
+  void end(boolean success, long durationNanos) {
+    inFlightCount.decrementAndGet();
+    if (success) {
+      successCount.incrementAndGet();
+    } else {
+      failureCount.incrementAndGet();
+    }
+
+    long nanos = Math.max(0, durationNanos);
+    totalNanos.addAndGet(nanos);
+    // Bucket i holds the durations in [2^i, 2^(i+1)), zero goes in the first bucket.
+    histogram.incrementAndGet(Math.max(0, BUCKET_COUNT - 1 - Long.numberOfLeadingZeros(nanos)));
+
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  void rollback() {
+    rollbackCount.incrementAndGet();
+  }
+
+  @Override
+  public String getActionType() {
+    return actionType;
+  }
+
+  @Override
+  public long getExecutionCount() {
+    return executionCount.get();
+  }
+
+  @Override
+  public long getSuccessCount() {
+    return successCount.get();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  @Override
+  public long getRollbackCount() {
+    return rollbackCount.get();
+  }
+
+  @Override
+  public long getInFlightCount() {
+    return inFlightCount.get();
+  }
+
+  @Override
+  public double getMeanLatencyMillis() {
+    long count = successCount.get() + failureCount.get();
+    return count == 0 ? 0 : totalNanos.get() / NANOS_PER_MILLI / count;
+  }
+
+  @Override
+  public double getMaxLatencyMillis() {
+    return maxNanos.get() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMedianLatencyMillis() {
+    return getPercentileLatencyMillis(0.5);
+  }
+
+  @Override
+  public double get95thPercentileLatencyMillis() {
+    return getPercentileLatencyMillis(0.95);
+  }
+
+  @Override
+  public double get99thPercentileLatencyMillis() {
+    return getPercentileLatencyMillis(0.99);
+  }
+
+  /**
+   * @param percentile The requested percentile, between 0 and 1.
+   * @return The upper bound of the histogram bucket holding that percentile, in milliseconds.
+   */
+  public double getPercentileLatencyMillis(double percentile) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = histogram.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long threshold = (long) Math.ceil(percentile * total);
+    long cumulated = 0;
+    for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+      cumulated += counts[i];
+      if (cumulated >= threshold) {
+        return Math.min((1L << (i + 1)) - 1, maxNanos.get()) / NANOS_PER_MILLI;
+      }
+    }
+    return getMaxLatencyMillis();
+  }
+
+  @Override
+  public void reset() {
+    executionCount.set(0);
+    successCount.set(0);
+    failureCount.set(0);
+    rollbackCount.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      histogram.set(i, 0);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+/**
+ * The JMX management interface of {@link ActionMetrics}.
+ */
+public interface ActionMetricsMBean {
+
+  String getActionType();
+
+  long getExecutionCount();
+
+  long getSuccessCount();
+
+  long getFailureCount();
+
+  long getRollbackCount();
+
+  long getInFlightCount();
+
+  double getMeanLatencyMillis();
+
+  double getMaxLatencyMillis();
+
+  double getMedianLatencyMillis();
+
+  double get95thPercentileLatencyMillis();
+
+  double get99thPercentileLatencyMillis();
+
+  void reset();
+}
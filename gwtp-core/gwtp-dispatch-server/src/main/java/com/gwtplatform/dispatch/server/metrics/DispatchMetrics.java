@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.gwtplatform.dispatch.server.DispatchListener;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.Result;
+
+/**
+ * A {@link DispatchListener} keeping in-memory {@link ActionMetrics} for every action type.
+ * <p />
+ * The metrics can be exported through JMX by calling {@link #exportTo(MBeanServer)}, for example with
+ * {@code java.lang.management.ManagementFactory.getPlatformMBeanServer()}. Each action type is then registered under
+ * {@code com.gwtplatform.dispatch:type=ActionMetrics,name=<action class name>}. Nothing is exported by default, since
+ * JMX is not available on every platform (Google App Engine for instance).
+ */
+public class DispatchMetrics implements DispatchListener {
+
+  /**
+   * The domain of the {@link ObjectName}s under which the metrics are exported.
+   */
+  public static final String JMX_DOMAIN = "com.gwtplatform.dispatch";
+
+  private static final Logger logger = Logger.getLogger(DispatchMetrics.class.getName());
+
+  private final ConcurrentMap<Class<?>, ActionMetrics> metrics = new ConcurrentHashMap<Class<?>, ActionMetrics>();
+  private final List<ObjectName> exportedNames = new ArrayList<ObjectName>();
+
+  private MBeanServer mBeanServer;
+
+  @Override
+  public void onStart(Action<?> action) {
+    getMetrics(action.getClass()).start();
+  }
+
+  @Override
+  public void onSuccess(Action<?> action, Result result, long durationNanos) {
+    getMetrics(action.getClass()).end(true, durationNanos);
+  }
+
+  @Override
+  public void onFailure(Action<?> action, Throwable caught, long durationNanos) {
+    getMetrics(action.getClass()).end(false, durationNanos);
+  }
+
+  @Override
+  public void onRollback(Action<?> action, long durationNanos) {
+    getMetrics(action.getClass()).rollback();
+  }
+
+  /**
+   * @param actionType The type of {@link Action}.
+   * @return The {@link ActionMetrics} of that action type, never {@code null}.
+   */
+  public ActionMetrics getMetrics(Class<?> actionType) {
+    ActionMetrics actionMetrics = metrics.get(actionType);
+    if (actionMetrics == null) {
+      actionMetrics = new ActionMetrics(actionType.getName());
+      ActionMetrics existing = metrics.putIfAbsent(actionType, actionMetrics);
+      if (existing != null) {
+        return existing;
+      }
+      export(actionMetrics);
+    }
+    return actionMetrics;
+  }
+
+  /**
+   * @return The {@link ActionMetrics} of every action type executed so far.
+   */
+  public Collection<ActionMetrics> getAllMetrics() {
+    return metrics.values();
+  }
+
+  /**
+   * Registers the metrics of every action type, current and future, with a JMX {@link MBeanServer}.
+   *
+   * @param mBeanServer The {@link MBeanServer}.
+   */
+  public synchronized void exportTo(MBeanServer mBeanServer) {
+    unexport();
+    this.mBeanServer = mBeanServer;
+    for (ActionMetrics actionMetrics : metrics.values()) {
+      export(actionMetrics);
+    }
+  }
+
+  /**
+   * Unregisters all the metrics exported by {@link #exportTo(MBeanServer)}.
+   */
+  public synchronized void unexport() {
+    if (mBeanServer == null) {
+      return;
+    }
+
+    for (ObjectName name : exportedNames) {
+      try {
+        mBeanServer.unregisterMBean(name);
+      } catch (JMException e) {
+        logger.log(Level.WARNING, "Unable to unregister " + name, e);
+      }
+    }
+    exportedNames.clear();
+    mBeanServer = null;
+  }
+
+  private synchronized void export(ActionMetrics actionMetrics) {
+    if (mBeanServer == null) {
+      return;
+    }
+
+    try {
+      ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ActionMetrics,name="
+          + ObjectName.quote(actionMetrics.getActionType()));
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(actionMetrics, name);
+        exportedNames.add(name);
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Unable to export the metrics of " + actionMetrics.getActionType(), e);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractAsyncActionHandler;
+import com.gwtplatform.dispatch.server.actionhandler.ActionCallback;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.AbstractEagerActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionvalidator.AbstractDefaultActionValidator;
+import com.gwtplatform.dispatch.server.metrics.ActionMetrics;
+import com.gwtplatform.dispatch.server.metrics.DispatchMetrics;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+import com.gwtplatform.dispatch.shared.UnsupportedActionException;
+
+/**
+ * Tests for the asynchronous execution of {@link AbstractDispatchImpl}.
+ */
+public class AbstractDispatchImplTest {
+
+  static class CountResult implements Result {
+    private final int count;
+
+    CountResult(int count) {
+      this.count = count;
+    }
+  }
+
+  static class IncrementAction extends UnsecuredActionImpl<CountResult> {
+  }
+
+  /**
+   * Fails after executing an {@link IncrementAction} in its context, from another thread.
+   */
+  static class FailingAction extends UnsecuredActionImpl<CountResult> {
+  }
+
+  static class UnknownAction extends UnsecuredActionImpl<CountResult> {
+  }
+
+  static class IncrementActionHandler extends AbstractActionHandler<IncrementAction, CountResult> {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    IncrementActionHandler() {
+      super(IncrementAction.class);
+    }
+
+    @Override
+    public CountResult execute(IncrementAction action, ExecutionContext context) throws ActionException {
+      return new CountResult(counter.incrementAndGet());
+    }
+
+    @Override
+    public void undo(IncrementAction action, CountResult result, ExecutionContext context) throws ActionException {
+      counter.decrementAndGet();
+    }
+  }
+
+  class FailingActionHandler extends AbstractAsyncActionHandler<FailingAction, CountResult> {
+    FailingActionHandler() {
+      super(FailingAction.class);
+    }
+
+    @Override
+    public void execute(FailingAction action, final ExecutionContext context,
+        final ActionCallback<CountResult> callback) throws ActionException {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            context.execute(new IncrementAction());
+            callback.onFailure(new IllegalStateException("Boom"));
+          } catch (Exception e) {
+            callback.onFailure(e);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void undo(FailingAction action, CountResult result, ExecutionContext context) throws ActionException {
+    }
+  }
+
+  static class RecordingCallback implements ActionCallback<CountResult> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private CountResult result;
+    private Throwable caught;
+
+    @Override
+    public void onSuccess(CountResult result) {
+      this.result = result;
+      done.countDown();
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      this.caught = caught;
+      done.countDown();
+    }
+
+    void await() throws InterruptedException {
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  static class TestDispatch extends AbstractDispatchImpl {
+    TestDispatch(AbstractEagerActionHandlerValidatorRegistryImpl registry) {
+      super(registry);
+    }
+  }
+
+  private ExecutorService executor;
+  private IncrementActionHandler incrementActionHandler;
+  private TestDispatch dispatch;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+    incrementActionHandler = new IncrementActionHandler();
+
+    AbstractDefaultActionValidator validator = new AbstractDefaultActionValidator();
+    AbstractEagerActionHandlerValidatorRegistryImpl registry = new AbstractEagerActionHandlerValidatorRegistryImpl() { };
+    registry.addActionHandlerValidator(IncrementAction.class,
+        new ActionHandlerValidatorInstance(validator, incrementActionHandler));
+    registry.addActionHandlerValidator(FailingAction.class,
+        new ActionHandlerValidatorInstance(validator, new FailingActionHandler()));
+    dispatch = new TestDispatch(registry);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void synchronousHandlerCompletesCallback() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+
+    dispatch.execute(new IncrementAction(), callback);
+
+    callback.await();
+    assertEquals(1, callback.result.count);
+    assertNull(callback.caught);
+  }
+
+  @Test
+  public void onlyActionsOfAsyncHandlersAreAsync() throws Exception {
+    assertFalse(dispatch.isAsync(new IncrementAction()));
+    assertTrue(dispatch.isAsync(new FailingAction()));
+    assertFalse(dispatch.isAsync(new UnknownAction()));
+  }
+
+  @Test
+  public void unknownActionFailsCallback() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+
+    dispatch.execute(new UnknownAction(), callback);
+
+    callback.await();
+    assertTrue(callback.caught instanceof UnsupportedActionException);
+  }
+
+  @Test
+  public void asyncFailureRollsBackBeforeCallback() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+
+    dispatch.execute(new FailingAction(), callback);
+
+    callback.await();
+    assertTrue(callback.caught.getCause() instanceof IllegalStateException);
+    assertEquals(0, incrementActionHandler.counter.get());
+  }
+
+  @Test
+  public void listenerSeesEveryActionAndRollback() throws Exception {
+    DispatchMetrics metrics = new DispatchMetrics();
+    dispatch.setDispatchListener(metrics);
+    RecordingCallback callback = new RecordingCallback();
+
+    dispatch.execute(new IncrementAction());
+    dispatch.execute(new FailingAction(), callback);
+    callback.await();
+
+    ActionMetrics increments = metrics.getMetrics(IncrementAction.class);
+    assertEquals(2, increments.getExecutionCount());
+    assertEquals(2, increments.getSuccessCount());
+    assertEquals(0, increments.getInFlightCount());
+
+    ActionMetrics failures = metrics.getMetrics(FailingAction.class);
+    assertEquals(1, failures.getFailureCount());
+    assertEquals(1, failures.getRollbackCount());
+    assertEquals(0, failures.getInFlightCount());
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.ServiceException;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Tests for {@link AbstractDispatchServiceImpl}.
+ */
+public class AbstractDispatchServiceImplTest {
+
+  static class EchoResult implements Result {
+  }
+
+  static class EchoAction extends UnsecuredActionImpl<EchoResult> {
+    private final boolean fail;
+
+    EchoAction(boolean fail) {
+      this.fail = fail;
+    }
+  }
+
+  static final EchoResult RESULT = new EchoResult();
+
+  static class EchoDispatch implements Dispatch {
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Action<R>, R extends Result> R execute(A action) throws ActionException, ServiceException {
+      if (((EchoAction) action).fail) {
+        throw new ActionException("Failed");
+      }
+      return (R) RESULT;
+    }
+
+    @Override
+    public <A extends Action<R>, R extends Result> void undo(A action, R result) throws ActionException,
+        ServiceException {
+    }
+  }
+
+  static class TestDispatchService extends AbstractDispatchServiceImpl {
+    private static final long serialVersionUID = 1L;
+
+    TestDispatchService() {
+      super(Logger.getLogger(TestDispatchService.class.getName()), new EchoDispatch(), null);
+    }
+  }
+
+  @Test
+  public void multiplexedActionsSucceedOrFailOnTheirOwn() throws Exception {
+    ArrayList<Action<?>> actions = new ArrayList<Action<?>>();
+    actions.add(new EchoAction(false));
+    actions.add(new EchoAction(true));
+    actions.add(new EchoAction(false));
+
+    MultiplexedResult multiplexedResult = new TestDispatchService().executeMultiplexed(null, actions);
+
+    assertEquals(3, multiplexedResult.size());
+    assertSame(RESULT, multiplexedResult.getResult(0));
+    assertNull(multiplexedResult.getFailure(0));
+    assertNull(multiplexedResult.getResult(1));
+    assertTrue(multiplexedResult.getFailure(1) instanceof ActionException);
+    assertSame(RESULT, multiplexedResult.getResult(2));
+  }
+}
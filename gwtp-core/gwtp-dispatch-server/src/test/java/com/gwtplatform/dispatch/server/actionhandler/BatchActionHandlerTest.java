@@ -0,0 +1,297 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.actionhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.AbstractDispatchImpl;
+import com.gwtplatform.dispatch.server.Dispatch;
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.AbstractEagerActionHandlerValidatorRegistryImpl;
+import com.gwtplatform.dispatch.server.actionhandlervalidator.ActionHandlerValidatorInstance;
+import com.gwtplatform.dispatch.server.actionvalidator.AbstractDefaultActionValidator;
+import com.gwtplatform.dispatch.shared.Action;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.BatchAction;
+import com.gwtplatform.dispatch.shared.BatchResult;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Tests for {@link BatchActionHandler}, in particular its parallel mode.
+ */
+public class BatchActionHandlerTest {
+
+  static class EchoResult implements Result {
+    private final int value;
+
+    EchoResult(int value) {
+      this.value = value;
+    }
+  }
+
+  static final int ERROR_VALUE = 1000;
+
+  /**
+   * Echoes its value back, fails if the value is negative, or throws an {@link Error} if the
+   * value is {@link #ERROR_VALUE}.
+   */
+  static class EchoAction extends UnsecuredActionImpl<EchoResult> {
+    private final int value;
+
+    EchoAction(int value) {
+      this.value = value;
+    }
+  }
+
+  static class TestBatchAction extends BatchAction {
+    TestBatchAction(OnException onException, boolean parallel, Action<?>... actions) {
+      super(onException, parallel, actions);
+    }
+
+    @Override
+    public String getServiceName() {
+      return DEFAULT_SERVICE_NAME;
+    }
+
+    @Override
+    public boolean isSecured() {
+      return false;
+    }
+  }
+
+  static class EchoActionHandler extends AbstractActionHandler<EchoAction, EchoResult> {
+    private final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> undone = Collections.synchronizedList(new ArrayList<Integer>());
+
+    EchoActionHandler() {
+      super(EchoAction.class);
+    }
+
+    @Override
+    public EchoResult execute(EchoAction action, ExecutionContext context) throws ActionException {
+      try {
+        Thread.sleep(Math.abs(action.value) % 5);
+      } catch (InterruptedException e) {
+        throw new ActionException(e);
+      }
+      if (action.value < 0) {
+        throw new ActionException("Failed " + action.value);
+      }
+      if (action.value == ERROR_VALUE) {
+        throw new InternalError("Error " + action.value);
+      }
+      executed.add(action.value);
+      return new EchoResult(action.value);
+    }
+
+    @Override
+    public void undo(EchoAction action, EchoResult result, ExecutionContext context) throws ActionException {
+      undone.add(action.value);
+    }
+  }
+
+  /**
+   * Stands in for a request-scoped binding, which worker threads don't see.
+   */
+  static final ThreadLocal<String> REQUEST = new ThreadLocal<String>();
+
+  /**
+   * Records the request each sub-action was executed in.
+   */
+  static class RequestScopedActionHandler extends AbstractActionHandler<EchoAction, EchoResult> {
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    RequestScopedActionHandler() {
+      super(EchoAction.class);
+    }
+
+    @Override
+    public EchoResult execute(EchoAction action, ExecutionContext context) throws ActionException {
+      requests.add(REQUEST.get());
+      return new EchoResult(action.value);
+    }
+
+    @Override
+    public void undo(EchoAction action, EchoResult result, ExecutionContext context) throws ActionException {
+    }
+  }
+
+  /**
+   * Carries {@link #REQUEST} over to the worker threads.
+   */
+  static class RequestScopedBatchActionHandler extends BatchActionHandler {
+    RequestScopedBatchActionHandler(ExecutorService executor) {
+      super(executor);
+    }
+
+    @Override
+    protected Runnable inRequestScope(final Runnable subAction) {
+      final String request = REQUEST.get();
+      return new Runnable() {
+        @Override
+        public void run() {
+          String previous = REQUEST.get();
+          REQUEST.set(request);
+          try {
+            subAction.run();
+          } finally {
+            REQUEST.set(previous);
+          }
+        }
+      };
+    }
+  }
+
+  static class TestDispatch extends AbstractDispatchImpl {
+    TestDispatch(AbstractEagerActionHandlerValidatorRegistryImpl registry) {
+      super(registry);
+    }
+  }
+
+  private ExecutorService executor;
+  private EchoActionHandler echoActionHandler;
+  private Dispatch dispatch;
+
+  @Before
+  public void setUp() {
+    // Fewer threads than sub-actions, so that some of them run on the request thread.
+    executor = Executors.newFixedThreadPool(2);
+    echoActionHandler = new EchoActionHandler();
+
+    AbstractDefaultActionValidator validator = new AbstractDefaultActionValidator();
+    AbstractEagerActionHandlerValidatorRegistryImpl registry = new AbstractEagerActionHandlerValidatorRegistryImpl() { };
+    registry.addActionHandlerValidator(EchoAction.class,
+        new ActionHandlerValidatorInstance(validator, echoActionHandler));
+    registry.addActionHandlerValidator(TestBatchAction.class,
+        new ActionHandlerValidatorInstance(validator, new BatchActionHandler(executor)));
+    dispatch = new TestDispatch(registry);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void parallelBatchKeepsResultsInOrder() throws Exception {
+    BatchResult result = dispatch.execute(new TestBatchAction(BatchAction.OnException.ROLLBACK, true, echoes(0, 20)));
+
+    assertEquals(20, result.getResults().size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(i, ((EchoResult) result.getResults().get(i)).value);
+    }
+  }
+
+  @Test
+  public void parallelBatchContinuesWithNullResult() throws Exception {
+    BatchResult result = dispatch.execute(new TestBatchAction(BatchAction.OnException.CONTINUE, true,
+        new EchoAction(1), new EchoAction(-2), new EchoAction(3)));
+
+    assertEquals(1, ((EchoResult) result.getResults().get(0)).value);
+    assertNull(result.getResults().get(1));
+    assertEquals(3, ((EchoResult) result.getResults().get(2)).value);
+    assertTrue(echoActionHandler.undone.isEmpty());
+  }
+
+  @Test
+  public void parallelBatchRollsBackEveryExecutedAction() throws Exception {
+    Action<?>[] actions = echoes(1, 20);
+    actions[7] = new EchoAction(-7);
+
+    try {
+      dispatch.execute(new TestBatchAction(BatchAction.OnException.ROLLBACK, true, actions));
+      fail("Expected an ActionException");
+    } catch (ActionException e) {
+      assertEquals("Failed -7", e.getMessage());
+    }
+
+    // Sub-actions may have been skipped, but each one that ran must have been undone exactly once.
+    List<Integer> executed = new ArrayList<Integer>(echoActionHandler.executed);
+    List<Integer> undone = new ArrayList<Integer>(echoActionHandler.undone);
+    Collections.sort(executed);
+    Collections.sort(undone);
+    assertEquals(executed, undone);
+  }
+
+  @Test
+  public void parallelBatchRethrowsErrors() throws Exception {
+    Action<?>[] actions = echoes(1, 20);
+    actions[7] = new EchoAction(ERROR_VALUE);
+
+    try {
+      dispatch.execute(new TestBatchAction(BatchAction.OnException.CONTINUE, true, actions));
+      fail("Expected an InternalError");
+    } catch (InternalError e) {
+      assertEquals("Error " + ERROR_VALUE, e.getMessage());
+    }
+  }
+
+  @Test
+  public void nestedParallelBatchesDoNotDeadlock() throws Exception {
+    Action<?>[] batches = new Action<?>[10];
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = new TestBatchAction(BatchAction.OnException.ROLLBACK, true, echoes(0, 10));
+    }
+
+    BatchResult result = dispatch.execute(new TestBatchAction(BatchAction.OnException.ROLLBACK, true, batches));
+
+    assertEquals(10, result.getResults().size());
+    assertEquals(9, ((EchoResult) ((BatchResult) result.getResults().get(9)).getResults().get(9)).value);
+  }
+
+  @Test
+  public void parallelBatchCanCarryTheRequestScopeOver() throws Exception {
+    RequestScopedActionHandler handler = new RequestScopedActionHandler();
+    AbstractDefaultActionValidator validator = new AbstractDefaultActionValidator();
+    AbstractEagerActionHandlerValidatorRegistryImpl registry = new AbstractEagerActionHandlerValidatorRegistryImpl() { };
+    registry.addActionHandlerValidator(EchoAction.class, new ActionHandlerValidatorInstance(validator, handler));
+    registry.addActionHandlerValidator(TestBatchAction.class,
+        new ActionHandlerValidatorInstance(validator, new RequestScopedBatchActionHandler(executor)));
+
+    REQUEST.set("request");
+    try {
+      new TestDispatch(registry).execute(new TestBatchAction(BatchAction.OnException.ROLLBACK, true, echoes(0, 20)));
+    } finally {
+      REQUEST.remove();
+    }
+
+    assertEquals(20, handler.requests.size());
+    assertEquals(Collections.nCopies(20, "request"), handler.requests);
+  }
+
+  private Action<?>[] echoes(int first, int count) {
+    Action<?>[] actions = new Action<?>[count];
+    for (int i = 0; i < count; i++) {
+      actions[i] = new EchoAction(first + i);
+    }
+    return actions;
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.server.ExecutionContext;
+import com.gwtplatform.dispatch.server.actionhandler.AbstractActionHandler;
+import com.gwtplatform.dispatch.shared.ActionException;
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Tests for {@link ResultCache}.
+ */
+public class ResultCacheTest {
+
+  static class NameResult implements Result {
+  }
+
+  @CacheResult
+  static class GetNameAction extends UnsecuredActionImpl<NameResult> {
+    private final int id;
+
+    GetNameAction(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof GetNameAction && ((GetNameAction) obj).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+  }
+
+  @InvalidatesCache(GetNameAction.class)
+  static class SetNameAction extends UnsecuredActionImpl<NameResult> {
+  }
+
+  static class NameActionHandler<A extends UnsecuredActionImpl<NameResult>> extends AbstractActionHandler<A, NameResult> {
+    NameActionHandler(Class<A> actionType) {
+      super(actionType);
+    }
+
+    @Override
+    public NameResult execute(A action, ExecutionContext context) throws ActionException {
+      return new NameResult();
+    }
+
+    @Override
+    public void undo(A action, NameResult result, ExecutionContext context) throws ActionException {
+    }
+  }
+
+  static class CountingLoader implements ResultCache.Loader<NameResult> {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public NameResult load() throws ActionException {
+      count.incrementAndGet();
+      return new NameResult();
+    }
+  }
+
+  private final NameActionHandler<GetNameAction> getHandler = new NameActionHandler<GetNameAction>(GetNameAction.class);
+  private final NameActionHandler<SetNameAction> setHandler = new NameActionHandler<SetNameAction>(SetNameAction.class);
+
+  @Test
+  public void equalActionsShareTheirResult() throws Exception {
+    ResultCache cache = new ResultCache(10);
+    CountingLoader loader = new CountingLoader();
+
+    NameResult first = cache.get(new GetNameAction(1), getHandler, loader);
+    NameResult second = cache.get(new GetNameAction(1), getHandler, loader);
+    cache.get(new GetNameAction(2), getHandler, loader);
+
+    assertSame(first, second);
+    assertEquals(2, loader.count.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void actionsWithoutAnnotationAreNotCached() throws Exception {
+    ResultCache cache = new ResultCache(10);
+    CountingLoader loader = new CountingLoader();
+
+    cache.get(new SetNameAction(), setHandler, loader);
+    cache.get(new SetNameAction(), setHandler, loader);
+
+    assertEquals(2, loader.count.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvictedBeyondCapacity() throws Exception {
+    ResultCache cache = new ResultCache(2);
+    CountingLoader loader = new CountingLoader();
+
+    cache.get(new GetNameAction(1), getHandler, loader);
+    cache.get(new GetNameAction(2), getHandler, loader);
+    cache.get(new GetNameAction(1), getHandler, loader);
+    cache.get(new GetNameAction(3), getHandler, loader);
+    cache.get(new GetNameAction(1), getHandler, loader);
+
+    assertEquals(2, cache.size());
+    assertEquals(3, loader.count.get());
+  }
+
+  @Test
+  public void invalidatingActionEvictsResults() throws Exception {
+    ResultCache cache = new ResultCache(10);
+    CountingLoader loader = new CountingLoader();
+
+    cache.get(new GetNameAction(1), getHandler, loader);
+    cache.evictInvalidatedBy(new SetNameAction(), setHandler);
+    cache.get(new GetNameAction(1), getHandler, loader);
+
+    assertEquals(2, loader.count.get());
+  }
+
+  @Test
+  public void concurrentMissesLoadOnce() throws Exception {
+    final ResultCache cache = new ResultCache(10);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+    final ResultCache.Loader<NameResult> loader = new ResultCache.Loader<NameResult>() {
+      @Override
+      public NameResult load() throws ActionException {
+        count.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new ActionException(e);
+        }
+        return new NameResult();
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Future<?>[] futures = new Future<?>[8];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = executor.submit(new Callable<NameResult>() {
+          @Override
+          public NameResult call() throws Exception {
+            return cache.get(new GetNameAction(1), getHandler, loader);
+          }
+        });
+      }
+      while (cache.getHitCount() + cache.getMissCount() < futures.length) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      Object result = futures[0].get(5, TimeUnit.SECONDS);
+      for (Future<?> future : futures) {
+        assertSame(result, future.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, count.get());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(7, cache.getHitCount());
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.server.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.gwtplatform.dispatch.shared.Result;
+import com.gwtplatform.dispatch.shared.UnsecuredActionImpl;
+
+/**
+ * Tests for {@link DispatchMetrics} and {@link ActionMetrics}.
+ */
+public class DispatchMetricsTest {
+
+  static class NoResult implements Result {
+  }
+
+  static class SomeAction extends UnsecuredActionImpl<NoResult> {
+  }
+
+  @Test
+  public void percentilesAreBucketUpperBounds() {
+    ActionMetrics metrics = new ActionMetrics("test");
+    for (int i = 0; i < 99; i++) {
+      metrics.start();
+      metrics.end(true, 1000000);
+    }
+    metrics.start();
+    metrics.end(false, 100000000);
+
+    assertEquals(1.048575, metrics.getMedianLatencyMillis(), 1e-9);
+    assertEquals(1.048575, metrics.get99thPercentileLatencyMillis(), 1e-9);
+    assertEquals(100.0, metrics.getMaxLatencyMillis(), 1e-9);
+    assertEquals(100.0, metrics.getPercentileLatencyMillis(1.0), 1e-9);
+    assertEquals(1.99, metrics.getMeanLatencyMillis(), 1e-9);
+  }
+
+  @Test
+  public void metricsAreExportedThroughJmx() throws Exception {
+    MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+    DispatchMetrics metrics = new DispatchMetrics();
+    metrics.onStart(new SomeAction());
+    metrics.exportTo(mBeanServer);
+
+    ObjectName name = new ObjectName(DispatchMetrics.JMX_DOMAIN + ":type=ActionMetrics,name="
+        + ObjectName.quote(SomeAction.class.getName()));
+    assertEquals(1L, mBeanServer.getAttribute(name, "InFlightCount"));
+
+    metrics.onSuccess(new SomeAction(), new NoResult(), 10);
+    assertEquals(1L, mBeanServer.getAttribute(name, "SuccessCount"));
+
+    metrics.unexport();
+    assertFalse(mBeanServer.isRegistered(name));
+    assertEquals(1, metrics.getAllMetrics().size());
+  }
+}
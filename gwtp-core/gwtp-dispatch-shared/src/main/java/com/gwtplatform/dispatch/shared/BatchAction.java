@@ -20,6 +20,10 @@ package com.gwtplatform.dispatch.shared;
  * This provides a simple way to send multiple actions to be executed in
  * sequence. If any fail, the rules for the {@link OnException} value provided
  * in the constructor determine the outcome.
+ * <p />
+ * Independent actions can also be executed in parallel on the server, see
+ * {@link #BatchAction(OnException, boolean, Action...)}. The results are still
+ * returned in the order of the actions.
  *
  * @author David Peterson
  */
@@ -46,6 +50,8 @@ public abstract class BatchAction implements Action<BatchResult> {
 
   private OnException onException;
 
+  private boolean parallel;
+
   /**
    * Constructs a new batch action, which will attempt to execute the provided
    * list of actions in order. If there is a failure, it will follow the rules
@@ -55,7 +61,24 @@ public abstract class BatchAction implements Action<BatchResult> {
    * @param actions The list of actions to execute.
    */
   public BatchAction(OnException onException, Action<?>... actions) {
+    this(onException, false, actions);
+  }
+
+  /**
+   * Constructs a new batch action, which will attempt to execute the provided
+   * list of actions. If <code>parallel</code> is <code>true</code> the actions
+   * must be independent from one another, since the server may execute them
+   * concurrently and in any order. If there is a failure, it will follow the
+   * rules specified by <code>onException</code>.
+   *
+   * @param onException If there is an exception, specify the behaviour.
+   * @param parallel <code>true</code> to let the server execute the actions
+   *          concurrently, <code>false</code> to execute them in sequence.
+   * @param actions The list of actions to execute.
+   */
+  public BatchAction(OnException onException, boolean parallel, Action<?>... actions) {
     this.onException = onException;
+    this.parallel = parallel;
     this.actions = actions;
   }
 
@@ -82,4 +105,15 @@ public abstract class BatchAction implements Action<BatchResult> {
   public OnException getOnException() {
     return onException;
   }
+
+  /**
+   * Whether the sub-actions can be executed concurrently.
+   *
+   * @return <code>true</code> if the sub-actions are independent and can be
+   *         executed in parallel, <code>false</code> if they must be executed
+   *         in sequence.
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
 }
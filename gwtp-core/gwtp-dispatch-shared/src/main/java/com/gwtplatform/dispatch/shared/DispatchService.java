@@ -16,6 +16,8 @@
 
 package com.gwtplatform.dispatch.shared;
 
+import java.util.ArrayList;
+
 import com.google.gwt.user.client.rpc.RemoteService;
 
 /**
@@ -57,6 +59,24 @@ public interface DispatchService extends RemoteService {
   Result execute(String cookieSentByRPC, Action<?> action)
       throws ActionException, ServiceException;
 
+  /**
+   * This method is called server-side whenever the client sends several
+   * actions in a single request. Each action is executed on its own, as if it
+   * had been sent through {@link #execute(String, Action)}.
+   *
+   * @see DispatchServiceAsync#executeMultiplexed
+   *
+   * @param cookieSentByRPC This is the content of the security cookie accessed
+   *          on the client (in javascript), its goal is to prevent XSRF
+   *          attacks. See {@link SecurityCookieAccessor} for more details.
+   * @param actions The {@link Action}s to execute, in order.
+   * @return The {@link MultiplexedResult} holding the outcome of each action.
+   * @throws ServiceException Thrown if the request could not be processed at
+   *           all.
+   */
+  MultiplexedResult executeMultiplexed(String cookieSentByRPC,
+      ArrayList<Action<?>> actions) throws ServiceException;
+
   /**
    * This method is called server-side whenever a previously executed action
    * needs to be undone.
@@ -16,6 +16,8 @@
 
 package com.gwtplatform.dispatch.shared;
 
+import java.util.ArrayList;
+
 import com.google.gwt.http.client.Request;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
@@ -46,6 +48,15 @@ public interface DispatchServiceAsync {
   Request execute(String cookieSentByRPC, Action<?> action,
       AsyncCallback<Result> callback);
 
+  /**
+   * This method is called client-side whenever several actions are sent in a
+   * single request.
+   *
+   * @see DispatchService#executeMultiplexed
+   */
+  Request executeMultiplexed(String cookieSentByRPC,
+      ArrayList<Action<?>> actions, AsyncCallback<MultiplexedResult> callback);
+
   /**
    * This method is called client-side whenever a previous executed action need
    * to be undone.
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.dispatch.shared;
+
+import java.util.ArrayList;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * Contains the outcome of each {@link Action} sent through
+ * {@link DispatchService#executeMultiplexed(String, ArrayList)}, in the order of the original actions. Unlike a
+ * {@link BatchAction}, every action succeeds or fails on its own: each position holds either a {@link Result} or the
+ * exception thrown by that action.
+ */
+public class MultiplexedResult implements IsSerializable {
+
+  private ArrayList<Result> results;
+  private ArrayList<ActionException> actionExceptions;
+  private ArrayList<ServiceException> serviceExceptions;
+
+  /**
+   * Creates an empty outcome for {@code size} actions.
+   *
+   * @param size The number of actions.
+   */
+  public MultiplexedResult(int size) {
+    results = new ArrayList<Result>(size);
+    actionExceptions = new ArrayList<ActionException>(size);
+    serviceExceptions = new ArrayList<ServiceException>(size);
+    for (int i = 0; i < size; i++) {
+      results.add(null);
+      actionExceptions.add(null);
+      serviceExceptions.add(null);
+    }
+  }
+
+  /**
+   * For serialization.
+   */
+  MultiplexedResult() {
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  public Result getResult(int index) {
+    return results.get(index);
+  }
+
+  public void setResult(int index, Result result) {
+    results.set(index, result);
+  }
+
+  public void setActionException(int index, ActionException exception) {
+    actionExceptions.set(index, exception);
+  }
+
+  public void setServiceException(int index, ServiceException exception) {
+    serviceExceptions.set(index, exception);
+  }
+
+  /**
+   * @param index The position of the action.
+   * @return The {@link ActionException} or {@link ServiceException} thrown by the action, or {@code null} if it
+   *         succeeded.
+   */
+  public Throwable getFailure(int index) {
+    if (actionExceptions.get(index) != null) {
+      return actionExceptions.get(index);
+    }
+    return serviceExceptions.get(index);
+  }
+}
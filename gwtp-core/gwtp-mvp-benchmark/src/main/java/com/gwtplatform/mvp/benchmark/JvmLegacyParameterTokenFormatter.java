@@ -0,0 +1,51 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+import com.gwtplatform.mvp.client.proxy.LegacyParameterTokenFormatter;
+
+/**
+ * The {@link LegacyParameterTokenFormatter} of the gwtp-mvp-client tests, used as a baseline.
+ * {@code URL} needs a browser, so the encoding and decoding are done with {@link URLEncoder} and
+ * {@link URLDecoder} instead.
+ */
+class JvmLegacyParameterTokenFormatter extends LegacyParameterTokenFormatter {
+
+  @Override
+  protected String encodeQueryString(String string) {
+    try {
+      // Leave the same characters as encodeURIComponent unescaped.
+      return URLEncoder.encode(string, "UTF-8").replace("%21", "!").replace("%27", "'")
+          .replace("%28", "(").replace("%29", ")").replace("%7E", "~");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  protected String decodeQueryString(String string) {
+    try {
+      return URLDecoder.decode(string, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gwtplatform.mvp.client.proxy.ParameterTokenFormatter;
+import com.gwtplatform.mvp.client.proxy.PlaceRequest;
+import com.gwtplatform.mvp.client.proxy.TokenFormatter;
+
+/**
+ * Measures the cost of parsing and writing history tokens with {@link ParameterTokenFormatter},
+ * compared to {@link JvmLegacyParameterTokenFormatter}. This runs on the JVM, so the URL encoding
+ * of the baseline is not the one of the browser: only the relative cost of the scanning and of
+ * the allocations is meaningful.
+ * <p />
+ * Run with {@code java -jar target/benchmarks.jar ParameterTokenFormatterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterTokenFormatterBenchmark {
+
+  /**
+   * Which formatter to measure.
+   */
+  @Param({"current", "legacy"})
+  public String formatter;
+
+  /**
+   * Number of place requests in the hierarchy.
+   */
+  @Param({"1", "3"})
+  public int depth;
+
+  /**
+   * Number of parameters in each place request.
+   */
+  @Param({"0", "4"})
+  public int parameters;
+
+  /**
+   * Whether names and values contain characters that must be escaped or encoded.
+   */
+  @Param({"false", "true"})
+  public boolean escaped;
+
+  private TokenFormatter tokenFormatter;
+  private List<PlaceRequest> hierarchy;
+  private String historyToken;
+
+  @Setup
+  public void setUp() {
+    tokenFormatter = "legacy".equals(formatter) ? new JvmLegacyParameterTokenFormatter()
+        : new ParameterTokenFormatter();
+
+    hierarchy = new ArrayList<PlaceRequest>();
+    for (int i = 0; i < depth; i++) {
+      PlaceRequest.Builder builder = new PlaceRequest.Builder().nameToken("place" + i);
+      for (int j = 0; j < parameters; j++) {
+        builder.with("key" + j, escaped ? "a value/with;some=symbols é" : "value" + j);
+      }
+      hierarchy.add(builder.build());
+    }
+    historyToken = tokenFormatter.toHistoryToken(hierarchy);
+  }
+
+  @Benchmark
+  public String toHistoryToken() {
+    return tokenFormatter.toHistoryToken(hierarchy);
+  }
+
+  @Benchmark
+  public List<PlaceRequest> toPlaceRequestHierarchy() {
+    return tokenFormatter.toPlaceRequestHierarchy(historyToken);
+  }
+}
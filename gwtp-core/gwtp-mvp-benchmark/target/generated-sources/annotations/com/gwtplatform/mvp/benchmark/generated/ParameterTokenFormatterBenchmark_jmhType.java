@@ -0,0 +1,4 @@
+package com.gwtplatform.mvp.benchmark.generated;
+public class ParameterTokenFormatterBenchmark_jmhType extends ParameterTokenFormatterBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Use this annotation with a {@link com.gwtplatform.mvp.client.proxy.ProxyPlace}
+ * to list the name tokens of the places that users are likely to visit next.
+ * Once this place has been navigated to, the
+ * {@link com.gwtplatform.mvp.client.proxy.PlacePrefetcher} downloads their code
+ * when the application is idle. This is only useful for places whose proxy is
+ * annotated with {@link ProxyCodeSplitBundle}: the code of a proxy annotated
+ * with {@link ProxyCodeSplit} is only downloaded when its presenter is
+ * instantiated.
+ * <p/>
+ * Here is an example use of {@link PrefetchPlaces}:
+ *
+ * <pre>
+ * &#064;ProxyCodeSplitBundle(bundleClass = MyBundle.class, id = MyBundle.ID_Inbox)
+ * &#064;NameToken(NameTokens.inbox)
+ * &#064;PrefetchPlaces({NameTokens.message, NameTokens.compose})
+ * public interface MyProxy extends ProxyPlace&lt;MyPresenter&gt; {
+ * }
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+public @interface PrefetchPlaces {
+  String[] value();
+}
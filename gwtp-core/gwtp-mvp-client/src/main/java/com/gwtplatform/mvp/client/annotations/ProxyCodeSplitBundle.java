@@ -33,6 +33,10 @@ import com.gwtplatform.common.client.ProviderBundle;
  * their code. You will also have to set up your own implementation of a
  * {@link ProviderBundle}.
  * <p/>
+ * Unlike {@link ProxyCodeSplit}, the code of the bundle can be downloaded
+ * without instantiating its presenters, so these places can be listed in
+ * {@link PrefetchPlaces}.
+ * <p/>
  * Here is an example use of {@link ProxyCodeSplitBundle}:
  *
  * <pre>
@@ -31,21 +31,30 @@ import com.gwtplatform.mvp.client.proxy.TokenFormatter;
  * Module with default GWTP bindings. You can
  * {@code install(new DefaultModule(MyPlaceManager.class))}
  * instead of manually binding the different classes to their default implementation.
+ * You can also specify the {@link TokenFormatter} to use, for example a
+ * {@link com.gwtplatform.mvp.client.proxy.CachingTokenFormatter CachingTokenFormatter}.
  *
  * @author Christian Goudreau
  */
 public class DefaultModule extends AbstractGinModule {
 
   private final Class<? extends PlaceManager> placeManagerClass;
+  private final Class<? extends TokenFormatter> tokenFormatterClass;
 
   public DefaultModule(Class<? extends PlaceManager> placeManagerClass) {
+    this(placeManagerClass, ParameterTokenFormatter.class);
+  }
+
+  public DefaultModule(Class<? extends PlaceManager> placeManagerClass,
+      Class<? extends TokenFormatter> tokenFormatterClass) {
     this.placeManagerClass = placeManagerClass;
+    this.tokenFormatterClass = tokenFormatterClass;
   }
 
   @Override
   protected void configure() {
     bind(EventBus.class).to(SimpleEventBus.class).in(Singleton.class);
-    bind(TokenFormatter.class).to(ParameterTokenFormatter.class).in(Singleton.class);
+    bind(TokenFormatter.class).to(tokenFormatterClass).in(Singleton.class);
     bind(RootPresenter.class).asEagerSingleton();
     bind(GoogleAnalytics.class).to(GoogleAnalyticsImpl.class).in(Singleton.class);
     bind(PlaceManager.class).to(placeManagerClass).in(Singleton.class);
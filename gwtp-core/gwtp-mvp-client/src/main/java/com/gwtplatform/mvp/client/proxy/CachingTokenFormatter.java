@@ -0,0 +1,157 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.inject.Inject;
+
+/**
+ * A {@link TokenFormatter} remembering the last history tokens it parsed and the last place request
+ * hierarchies it formatted, so that navigating back and forth between the same places, or
+ * building the same links again, doesn't parse or format the same tokens over and over. Place
+ * requests and single place tokens are not cached.
+ * <p />
+ * To use it, bind it in one of your gin modules in place of the {@link ParameterTokenFormatter}:
+ *
+ * <pre>
+ * bind(TokenFormatter.class).to(CachingTokenFormatter.class).in(Singleton.class);
+ * </pre>
+ * or install {@code new DefaultModule(MyPlaceManager.class, CachingTokenFormatter.class)}.
+ */
+public class CachingTokenFormatter implements TokenFormatter {
+
+  /**
+   * The default maximum number of tokens remembered in each direction.
+   */
+  public static final int DEFAULT_CAPACITY = 100;
+
+  /**
+   * A {@link LinkedHashMap} in access order, evicting its least recently used entry beyond a
+   * capacity.
+   */
+  private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    LruMap(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  private final TokenFormatter tokenFormatter;
+  private final LruMap<String, List<PlaceRequest>> hierarchies;
+  private final LruMap<List<PlaceRequest>, String> historyTokens;
+
+  private int hitCount;
+  private int missCount;
+
+  @Inject
+  public CachingTokenFormatter(ParameterTokenFormatter tokenFormatter) {
+    this(tokenFormatter, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param tokenFormatter The {@link TokenFormatter} doing the actual work.
+   * @param capacity The maximum number of tokens remembered in each direction.
+   */
+  public CachingTokenFormatter(TokenFormatter tokenFormatter, int capacity) {
+    this.tokenFormatter = tokenFormatter;
+    hierarchies = new LruMap<String, List<PlaceRequest>>(capacity);
+    historyTokens = new LruMap<List<PlaceRequest>, String>(capacity);
+  }
+
+  @Override
+  public String toHistoryToken(List<PlaceRequest> placeRequestHierarchy)
+      throws TokenFormatException {
+    // Place requests without a name token can't be hashed, let the formatter report them.
+    for (PlaceRequest placeRequest : placeRequestHierarchy) {
+      if (placeRequest.getNameToken() == null) {
+        return tokenFormatter.toHistoryToken(placeRequestHierarchy);
+      }
+    }
+
+    String historyToken = historyTokens.get(placeRequestHierarchy);
+    if (historyToken != null) {
+      hitCount++;
+      return historyToken;
+    }
+
+    missCount++;
+    historyToken = tokenFormatter.toHistoryToken(placeRequestHierarchy);
+    // The caller may modify its list afterwards.
+    historyTokens.put(new ArrayList<PlaceRequest>(placeRequestHierarchy), historyToken);
+    return historyToken;
+  }
+
+  @Override
+  public PlaceRequest toPlaceRequest(String placeToken) throws TokenFormatException {
+    return tokenFormatter.toPlaceRequest(placeToken);
+  }
+
+  @Override
+  public List<PlaceRequest> toPlaceRequestHierarchy(String historyToken)
+      throws TokenFormatException {
+    List<PlaceRequest> placeRequestHierarchy = hierarchies.get(historyToken);
+    if (placeRequestHierarchy != null) {
+      hitCount++;
+    } else {
+      missCount++;
+      placeRequestHierarchy = tokenFormatter.toPlaceRequestHierarchy(historyToken);
+      hierarchies.put(historyToken, placeRequestHierarchy);
+    }
+    // Place requests are immutable, but the place manager modifies the list it gets.
+    return new ArrayList<PlaceRequest>(placeRequestHierarchy);
+  }
+
+  @Override
+  public String toPlaceToken(PlaceRequest placeRequest) throws TokenFormatException {
+    return tokenFormatter.toPlaceToken(placeRequest);
+  }
+
+  /**
+   * Forgets all the cached tokens, without resetting the counters.
+   */
+  public void clear() {
+    hierarchies.clear();
+    historyTokens.clear();
+  }
+
+  /**
+   * @return The number of tokens parsed or formatted from the cache.
+   */
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of tokens that had to be parsed or formatted.
+   */
+  public int getMissCount() {
+    return missCount;
+  }
+}
@@ -16,6 +16,9 @@
 
 package com.gwtplatform.mvp.client.proxy;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HasHandlers;
 
@@ -32,6 +35,8 @@ import com.google.gwt.event.shared.HasHandlers;
 public class GetPlaceTitleEvent extends GwtEvent<GetPlaceTitleHandler> {
 
   private static Type<GetPlaceTitleHandler> TYPE;
+  private static final Map<String, Type<GetPlaceTitleHandler>> TYPES_BY_NAME_TOKEN =
+      new HashMap<String, Type<GetPlaceTitleHandler>>();
 
   /**
    * Fires a {@link GetPlaceTitleEvent}
@@ -57,6 +62,36 @@ public class GetPlaceTitleEvent extends GwtEvent<GetPlaceTitleHandler> {
     return TYPE;
   }
 
+  /**
+   * Gets the type of the events only handled by the places indexed by a name
+   * token, see {@link ProxyPlaceAbstract#isIndexedByNameToken()}. The type is
+   * created when the first place registers for that name token.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token.
+   */
+  static Type<GetPlaceTitleHandler> registerType(String nameToken) {
+    Type<GetPlaceTitleHandler> type = TYPES_BY_NAME_TOKEN.get(nameToken);
+    if (type == null) {
+      type = new Type<GetPlaceTitleHandler>();
+      TYPES_BY_NAME_TOKEN.put(nameToken, type);
+    }
+    return type;
+  }
+
+  /**
+   * Finds the type of the events only handled by the places indexed by a name
+   * token. No type is created for the name tokens of no place, such as the ones
+   * typed by hand.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token, or {@code null} if no
+   *         place is indexed by that name token.
+   */
+  static Type<GetPlaceTitleHandler> findType(String nameToken) {
+    return TYPES_BY_NAME_TOKEN.get(nameToken);
+  }
+
   /**
    * The handled flag can let others know when the event has been handled.
    * Handlers should call {@link #setHandled()} as soon as they figure they are
@@ -69,14 +104,22 @@ public class GetPlaceTitleEvent extends GwtEvent<GetPlaceTitleHandler> {
 
   private final PlaceRequest request;
 
+  private final Type<GetPlaceTitleHandler> type;
+
   public GetPlaceTitleEvent(PlaceRequest request, SetPlaceTitleHandler handler) {
+    this(request, handler, getType());
+  }
+
+  GetPlaceTitleEvent(PlaceRequest request, SetPlaceTitleHandler handler,
+      Type<GetPlaceTitleHandler> type) {
     this.request = request;
     this.handler = handler;
+    this.type = type;
   }
 
   @Override
   public Type<GetPlaceTitleHandler> getAssociatedType() {
-    return getType();
+    return type;
   }
 
   public SetPlaceTitleHandler getHandler() {
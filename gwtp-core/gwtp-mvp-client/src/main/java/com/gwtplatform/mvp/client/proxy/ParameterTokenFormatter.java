@@ -18,7 +18,6 @@ package com.gwtplatform.mvp.client.proxy;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import com.google.gwt.http.client.URL;
 import com.google.inject.Inject;
@@ -62,7 +61,11 @@ import com.google.inject.Inject;
  * </pre>
  *
  * If you want to use different symbols as separator, use the
- * {@link #ParameterTokenFormatter(String, String, String, String)} constructor.
+ * {@link #ParameterTokenFormatter(String, String, String)} constructor.
+ * <p />
+ * Tokens are parsed and written in a single scan of their characters. The URL
+ * encoding and decoding are done inline, and only fall back to {@link URL} for
+ * input that is not valid UTF-8.
  *
  * @author Philippe Beaudoin
  * @author Yannis Gonianakis
@@ -81,10 +84,21 @@ public class ParameterTokenFormatter implements TokenFormatter {
   protected static final String ESCAPED_VALUE_SEPARATOR = "\\2";
   protected static final String ESCAPED_ESCAPE_CHAR = "\\3";
 
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * Characters left as-is by {@link URL#encodeQueryString(String)}, besides letters and digits.
+   */
+  private static final String UNRESERVED_CHARACTERS = "-_.!~*'()";
+
   private final String hierarchySeparator;
   private final String paramSeparator;
   private final String valueSeparator;
 
+  private final char hierarchyChar;
+  private final char paramChar;
+  private final char valueChar;
+
   /**
    * Builds a {@link ParameterTokenFormatter} using the default separators and escape character.
    */
@@ -123,6 +137,10 @@ public class ParameterTokenFormatter implements TokenFormatter {
     this.hierarchySeparator = hierarchySeparator;
     this.paramSeparator = paramSeparator;
     this.valueSeparator = valueSeparator;
+
+    hierarchyChar = hierarchySeparator.charAt(0);
+    paramChar = paramSeparator.charAt(0);
+    valueChar = valueSeparator.charAt(0);
   }
 
   @Override
@@ -132,9 +150,9 @@ public class ParameterTokenFormatter implements TokenFormatter {
 
     for (int i = 0; i < placeRequestHierarchy.size(); ++i) {
       if (i != 0) {
-        out.append(hierarchySeparator);
+        out.append(hierarchyChar);
       }
-      out.append(placeTokenToUnescapedString(placeRequestHierarchy.get(i)));
+      appendPlaceToken(out, placeRequestHierarchy.get(i));
     }
 
     return out.toString();
@@ -142,189 +160,412 @@ public class ParameterTokenFormatter implements TokenFormatter {
 
   @Override
   public PlaceRequest toPlaceRequest(String placeToken) throws TokenFormatException {
-    return unescapedStringToPlaceRequest(URL.decodeQueryString(placeToken));
+    String unescapedPlaceToken = decodeQueryString(placeToken);
+    return unescapedStringToPlaceRequest(unescapedPlaceToken, 0, unescapedPlaceToken.length());
   }
 
   /**
-   * Converts an unescaped string to a place request. To unescape the hash fragment you must run it
-   * through {@link URL#decodeQueryString(String)}.
-   * @param unescapedPlaceToken The unescaped string to convert to a place request.
+   * Converts part of an unescaped string to a place request. To unescape the hash fragment you
+   * must run it through {@link #decodeQueryString(String)}.
+   *
+   * @param unescapedToken The unescaped string containing the place token.
+   * @param start The index of the first character of the place token.
+   * @param end The index after the last character of the place token.
    * @return The place request.
    * @throws TokenFormatException if there is an error converting.
    */
-  private PlaceRequest unescapedStringToPlaceRequest(String unescapedPlaceToken)
+  private PlaceRequest unescapedStringToPlaceRequest(String unescapedToken, int start, int end)
       throws TokenFormatException {
-    PlaceRequest req = null;
-
-    int split = unescapedPlaceToken.indexOf(paramSeparator);
-    if (split == 0) {
+    int split = indexOf(unescapedToken, paramChar, start, end);
+    if (split == start) {
       throw new TokenFormatException("Place history token is missing.");
     } else if (split == -1) {
       // No parameters.
-      req = new PlaceRequest(customUnescape(unescapedPlaceToken));
-    } else if (split >= 0) {
-      req = new PlaceRequest(customUnescape(unescapedPlaceToken.substring(0, split)));
-      String paramsChunk = unescapedPlaceToken.substring(split + 1);
-      String[] paramTokens = paramsChunk.split(paramSeparator);
-      for (String paramToken : paramTokens) {
-        if (paramToken.isEmpty()) {
-          throw new TokenFormatException("Bad parameter: Successive parameters require a single '" +
-              paramSeparator + "' between them.");
-        }
-        String[] param = paramToken.split(valueSeparator);
-        if (param.length == 1) {
-          // If there is only one parameter, then we need an '=' at the last position.
-          if (paramToken.charAt(paramToken.length() - 1) != valueSeparator.charAt(0)) {
-            throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
-          }
-        } else if (param.length == 2) {
-          // If there are two parameters, then there must not be a '=' at the last position.
-          if (paramToken.charAt(paramToken.length() - 1) == valueSeparator.charAt(0)) {
-            throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
-          }
-        } else {
-          throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
+      return new PlaceRequest(customUnescape(unescapedToken, start, end));
+    }
+
+    PlaceRequest.Builder builder = new PlaceRequest.Builder().nameToken(
+        customUnescape(unescapedToken, start, split));
+    int paramStart = split + 1;
+    if (paramStart == end) {
+      throw new TokenFormatException("Bad parameter: Successive parameters require a single '" +
+          paramSeparator + "' between them.");
+    }
+    while (paramStart < end) {
+      int paramEnd = indexOf(unescapedToken, paramChar, paramStart, end);
+      if (paramEnd == -1) {
+        paramEnd = end;
+      }
+      if (paramEnd == paramStart) {
+        // Trailing separators are ignored, other empty parameters are not.
+        if (containsOnly(unescapedToken, paramChar, paramStart, end)) {
+          break;
         }
-        String key = customUnescape(param[0]);
-        String value = param.length == 2 ? customUnescape(param[1]) : "";
-        req = req.with(key, value);
+        throw new TokenFormatException("Bad parameter: Successive parameters require a single '" +
+            paramSeparator + "' between them.");
+      }
+      addParameter(builder, unescapedToken, paramStart, paramEnd);
+      paramStart = paramEnd + 1;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Parses a {@code key=value} or {@code key=} parameter and adds it to the request. Trailing
+   * value separators are ignored when the parameter has no value.
+   */
+  private void addParameter(PlaceRequest.Builder builder, String unescapedToken, int start,
+      int end) throws TokenFormatException {
+    int trimmedEnd = end;
+    while (trimmedEnd > start && unescapedToken.charAt(trimmedEnd - 1) == valueChar) {
+      --trimmedEnd;
+    }
+    if (trimmedEnd == start) {
+      throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
+    }
+
+    int split = indexOf(unescapedToken, valueChar, start, trimmedEnd);
+    if (split == -1) {
+      // No value, then we need an '=' at the last position.
+      if (trimmedEnd == end) {
+        throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
+      }
+      builder.with(customUnescape(unescapedToken, start, trimmedEnd), "");
+    } else {
+      // A key and a value, then there must not be a '=' at the last position.
+      if (trimmedEnd != end || indexOf(unescapedToken, valueChar, split + 1, trimmedEnd) != -1) {
+        throw new TokenFormatException("Bad parameter: Need exactly one key and one value.");
       }
+      String key = customUnescape(unescapedToken, start, split);
+      builder.with(key, customUnescape(unescapedToken, split + 1, trimmedEnd));
     }
-    return req;
   }
 
   @Override
   public List<PlaceRequest> toPlaceRequestHierarchy(String historyToken) throws TokenFormatException {
-    String unescapedHistoryToken = URL.decodeQueryString(historyToken);
+    String unescapedHistoryToken = decodeQueryString(historyToken);
+    int end = unescapedHistoryToken.length();
 
-    int split = unescapedHistoryToken.indexOf(hierarchySeparator);
     List<PlaceRequest> result = new ArrayList<PlaceRequest>();
-    if (split == -1) {
+    if (indexOf(unescapedHistoryToken, hierarchyChar, 0, end) == -1) {
       // History token consists of a single place token.
-      result.add(unescapedStringToPlaceRequest(unescapedHistoryToken));
-    } else {
-      String[] unescapedPlaceTokens = unescapedHistoryToken.split(hierarchySeparator);
-      if (unescapedPlaceTokens.length == 0) {
-        throw new TokenFormatException("Bad parameter: nothing in the history token.");
+      result.add(unescapedStringToPlaceRequest(unescapedHistoryToken, 0, end));
+      return result;
+    }
+    if (containsOnly(unescapedHistoryToken, hierarchyChar, 0, end)) {
+      throw new TokenFormatException("Bad parameter: nothing in the history token.");
+    }
+
+    int placeStart = 0;
+    while (placeStart < end) {
+      int placeEnd = indexOf(unescapedHistoryToken, hierarchyChar, placeStart, end);
+      if (placeEnd == -1) {
+        placeEnd = end;
       }
-      for (String unescapedPlaceToken : unescapedPlaceTokens) {
-        if (unescapedPlaceToken.isEmpty()) {
-          throw new TokenFormatException("Bad parameter: Successive place tokens require a single '"
-              + hierarchySeparator + "' between them.");
+      if (placeEnd == placeStart) {
+        // Trailing separators are ignored, other empty place tokens are not.
+        if (containsOnly(unescapedHistoryToken, hierarchyChar, placeStart, end)) {
+          break;
         }
-        result.add(unescapedStringToPlaceRequest(unescapedPlaceToken));
+        throw new TokenFormatException("Bad parameter: Successive place tokens require a single '"
+            + hierarchySeparator + "' between them.");
       }
+      result.add(unescapedStringToPlaceRequest(unescapedHistoryToken, placeStart, placeEnd));
+      placeStart = placeEnd + 1;
     }
     return result;
   }
 
   @Override
   public String toPlaceToken(PlaceRequest placeRequest) throws TokenFormatException {
-    return placeTokenToUnescapedString(placeRequest);
+    StringBuilder out = new StringBuilder();
+    appendPlaceToken(out, placeRequest);
+    return out.toString();
   }
 
   /**
-   * Converts a place token to an unescaped string. If the name token or the parameters contain any
-   * of the separator symbols, they will be escaped with our custom escaping mechanism.
+   * Appends a place token. If the name token or the parameters contain any of the separator
+   * symbols, they will be escaped with our custom escaping mechanism.
+   *
+   * @param out The {@link StringBuilder} receiving the place token.
    * @param placeRequest The place request to convert.
-   * @return The unescaped string for the place token corresponding to that place request.
-   * @throws TokenFormatException if there is an error converting.
    */
-  private String placeTokenToUnescapedString(PlaceRequest placeRequest)
-      throws TokenFormatException {
-    StringBuilder out = new StringBuilder();
-    out.append(customEscape(placeRequest.getNameToken()));
-    Set<String> params = placeRequest.getParameterNames();
-    if (params != null) {
-      for (String name : params) {
-        out.append(paramSeparator).append(customEscape(name)).append(valueSeparator).append(
-            customEscape(placeRequest.getParameter(name, null)));
-      }
+  private void appendPlaceToken(StringBuilder out, PlaceRequest placeRequest) {
+    appendEscaped(out, placeRequest.getNameToken());
+    for (String name : placeRequest.getParameterNames()) {
+      out.append(paramChar);
+      appendEscaped(out, name);
+      out.append(valueChar);
+      appendEscaped(out, placeRequest.getParameter(name, null));
     }
-
-    return out.toString();
   }
 
   /**
    * Use our custom escaping mechanism to escape the provided string. This should be used on the
    * name token, and the parameter keys and values, before they are attached with the various
-   * separators. The string will also be passed through {@link URL#encodeQueryString}.
+   * separators. The string will also be encoded like {@link URL#encodeQueryString} does.
    * Visible for testing.
    * @param string The string to escape.
    * @return The escaped string.
    */
-   String customEscape(String string) {
-    StringBuffer sbuf = new StringBuffer();
+  String customEscape(String string) {
+    StringBuilder out = new StringBuilder(string.length());
+    appendEscaped(out, string);
+    return out.toString();
+  }
+
+  /**
+   * Appends the provided string escaped with our custom mechanism, then encoded the same way as
+   * {@link URL#encodeQueryString} would.
+   */
+  private void appendEscaped(StringBuilder out, String string) {
+    int mark = out.length();
     int len = string.length();
+    int i = 0;
+    while (i < len) {
+      char ch = string.charAt(i++);
+      if (ch == ESCAPE_CHARACTER) {
+        appendEncodedEscape(out, ESCAPED_ESCAPE_CHAR);
+      } else if (ch == hierarchyChar) {
+        appendEncodedEscape(out, ESCAPED_HIERARCHY_SEPARATOR);
+      } else if (ch == paramChar) {
+        appendEncodedEscape(out, ESCAPED_PARAM_SEPARATOR);
+      } else if (ch == valueChar) {
+        appendEncodedEscape(out, ESCAPED_VALUE_SEPARATOR);
+      } else if (isUnreserved(ch)) {
+        out.append(ch);
+      } else if (ch == ' ') {
+        out.append('+');
+      } else if (ch < 0x80) {
+        appendEncodedByte(out, ch);
+      } else if (ch < 0x800) {
+        appendEncodedByte(out, 0xC0 | (ch >> 6));
+        appendEncodedByte(out, 0x80 | (ch & 0x3F));
+      } else if (ch < 0xD800 || ch > 0xDFFF) {
+        appendEncodedByte(out, 0xE0 | (ch >> 12));
+        appendEncodedByte(out, 0x80 | ((ch >> 6) & 0x3F));
+        appendEncodedByte(out, 0x80 | (ch & 0x3F));
+      } else if (ch <= 0xDBFF && i < len && string.charAt(i) >= 0xDC00
+          && string.charAt(i) <= 0xDFFF) {
+        char low = string.charAt(i++);
+        int codePoint = 0x10000 + ((ch - 0xD800) << 10) + (low - 0xDC00);
+        appendEncodedByte(out, 0xF0 | (codePoint >> 18));
+        appendEncodedByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+        appendEncodedByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+        appendEncodedByte(out, 0x80 | (codePoint & 0x3F));
+      } else {
+        // Unpaired surrogate, let URL report the error like it always did.
+        out.setLength(mark);
+        out.append(URL.encodeQueryString(customEscapeSeparators(string)));
+        return;
+      }
+    }
+  }
+
+  private void appendEncodedEscape(StringBuilder out, String escapedSeparator) {
+    appendEncodedByte(out, ESCAPE_CHARACTER);
+    out.append(escapedSeparator.charAt(1));
+  }
 
-    char hierarchyChar = hierarchySeparator.charAt(0);
-    char paramChar = paramSeparator.charAt(0);
-    char valueChar = valueSeparator.charAt(0);
+  private static void appendEncodedByte(StringBuilder out, int b) {
+    out.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+  }
 
-    for (int i = 0; i < len; i++) {
+  private static boolean isUnreserved(char ch) {
+    return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+        || UNRESERVED_CHARACTERS.indexOf(ch) != -1;
+  }
+
+  private String customEscapeSeparators(String string) {
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < string.length(); i++) {
       char ch = string.charAt(i);
       if (ch == ESCAPE_CHARACTER) {
-        sbuf.append(ESCAPED_ESCAPE_CHAR);
+        out.append(ESCAPED_ESCAPE_CHAR);
       } else if (ch == hierarchyChar) {
-        sbuf.append(ESCAPED_HIERARCHY_SEPARATOR);
+        out.append(ESCAPED_HIERARCHY_SEPARATOR);
       } else if (ch == paramChar) {
-        sbuf.append(ESCAPED_PARAM_SEPARATOR);
+        out.append(ESCAPED_PARAM_SEPARATOR);
       } else if (ch == valueChar) {
-        sbuf.append(ESCAPED_VALUE_SEPARATOR);
+        out.append(ESCAPED_VALUE_SEPARATOR);
       } else {
-        sbuf.append(ch);
+        out.append(ch);
       }
     }
-
-    return URL.encodeQueryString(sbuf.toString());
+    return out.toString();
   }
 
   /**
-   * Use our custom escaping mechanism to unescape the provided string. This should be used on the
-   * name token, and the parameter keys and values, after they have been split using the various
-   * separators. The input string is expected to already be sent through
-   * {@link URL#decodeQueryString}.
-   * @param string The string to unescape, must have passed through {@link URL#decodeQueryString}.
+   * Use our custom escaping mechanism to unescape part of the provided string. This should be
+   * used on the name token, and the parameter keys and values, after they have been split using
+   * the various separators. Unknown escape sequences are dropped.
+   * @param string The string to unescape, must have passed through {@link #decodeQueryString}.
+   * @param start The index of the first character to unescape.
+   * @param end The index after the last character to unescape.
    * @return The unescaped string.
    * @throws TokenFormatException if there is an error converting.
    */
-  private String customUnescape(String string) throws TokenFormatException {
-    StringBuffer sbuf = new StringBuffer();
-    int len = string.length();
-
-    char hierarchyNum = ESCAPED_HIERARCHY_SEPARATOR.charAt(1);
-    char paramNum = ESCAPED_PARAM_SEPARATOR.charAt(1);
-    char valueNum = ESCAPED_VALUE_SEPARATOR.charAt(1);
-    char escapeNum = ESCAPED_ESCAPE_CHAR.charAt(1);
+  private String customUnescape(String string, int start, int end) throws TokenFormatException {
+    int escape = indexOf(string, ESCAPE_CHARACTER, start, end);
+    if (escape == -1) {
+      return string.substring(start, end);
+    }
+    if (escape == end - 1) {
+      throw new TokenFormatException("Last character of string being unescaped cannot be '" +
+          ESCAPE_CHARACTER + "'.");
+    }
 
-    int i = 0;
-    while (i < len - 1) {
+    StringBuilder out = new StringBuilder(end - start);
+    out.append(string, start, escape);
+    int i = escape;
+    while (i < end - 1) {
       char ch = string.charAt(i);
       if (ch == ESCAPE_CHARACTER) {
-        i++;
-        char ch2 = string.charAt(i);
-        if (ch2 == hierarchyNum) {
-          sbuf.append(hierarchySeparator);
-        } else if (ch2 == paramNum) {
-          sbuf.append(paramSeparator);
-        } else if (ch2 == valueNum) {
-          sbuf.append(valueSeparator);
-        } else if (ch2 == escapeNum) {
-          sbuf.append(ESCAPE_CHARACTER);
+        char ch2 = string.charAt(++i);
+        if (ch2 == ESCAPED_HIERARCHY_SEPARATOR.charAt(1)) {
+          out.append(hierarchyChar);
+        } else if (ch2 == ESCAPED_PARAM_SEPARATOR.charAt(1)) {
+          out.append(paramChar);
+        } else if (ch2 == ESCAPED_VALUE_SEPARATOR.charAt(1)) {
+          out.append(valueChar);
+        } else if (ch2 == ESCAPED_ESCAPE_CHAR.charAt(1)) {
+          out.append(ESCAPE_CHARACTER);
         }
       } else {
-        sbuf.append(ch);
+        out.append(ch);
       }
       i++;
     }
-    if (i == len - 1) {
+    if (i == end - 1) {
       char ch = string.charAt(i);
       if (ch == ESCAPE_CHARACTER) {
         throw new TokenFormatException("Last character of string being unescaped cannot be '" +
             ESCAPE_CHARACTER + "'.");
       }
-      sbuf.append(ch);
+      out.append(ch);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Decodes a URL fragment the same way {@link URL#decodeQueryString(String)} does, in case it was
+   * URL-encoded by some user agent. Returns the fragment itself when there is nothing to decode,
+   * and falls back to {@link URL} when it is not valid UTF-8.
+   *
+   * @param encoded The URL fragment.
+   * @return The decoded fragment.
+   */
+  private static String decodeQueryString(String encoded) {
+    int len = encoded.length();
+    int i = 0;
+    while (i < len && encoded.charAt(i) != '%' && encoded.charAt(i) != '+') {
+      i++;
+    }
+    if (i == len) {
+      return encoded;
+    }
+
+    StringBuilder out = new StringBuilder(len);
+    out.append(encoded, 0, i);
+    while (i < len) {
+      char ch = encoded.charAt(i);
+      if (ch == '+') {
+        out.append(' ');
+        i++;
+      } else if (ch != '%') {
+        out.append(ch);
+        i++;
+      } else {
+        int b = decodeByte(encoded, i);
+        i += 3;
+        int continuationBytes;
+        int codePoint;
+        int minCodePoint;
+        if (b < 0) {
+          return URL.decodeQueryString(encoded);
+        } else if (b < 0x80) {
+          out.append((char) b);
+          continue;
+        } else if ((b & 0xE0) == 0xC0) {
+          continuationBytes = 1;
+          codePoint = b & 0x1F;
+          minCodePoint = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+          continuationBytes = 2;
+          codePoint = b & 0x0F;
+          minCodePoint = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+          continuationBytes = 3;
+          codePoint = b & 0x07;
+          minCodePoint = 0x10000;
+        } else {
+          return URL.decodeQueryString(encoded);
+        }
+        for (int j = 0; j < continuationBytes; j++) {
+          int continuation = decodeByte(encoded, i);
+          if (continuation < 0 || (continuation & 0xC0) != 0x80) {
+            return URL.decodeQueryString(encoded);
+          }
+          codePoint = (codePoint << 6) | (continuation & 0x3F);
+          i += 3;
+        }
+        if (codePoint < minCodePoint || codePoint > 0x10FFFF
+            || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+          return URL.decodeQueryString(encoded);
+        }
+        if (codePoint >= 0x10000) {
+          codePoint -= 0x10000;
+          out.append((char) (0xD800 + (codePoint >> 10)));
+          out.append((char) (0xDC00 + (codePoint & 0x3FF)));
+        } else {
+          out.append((char) codePoint);
+        }
+      }
+    }
+    return out.toString();
+  }
+
+  /**
+   * @return The byte encoded as {@code %XX} at the given index, or {@code -1} if there is none.
+   */
+  private static int decodeByte(String encoded, int index) {
+    if (index + 2 >= encoded.length() || encoded.charAt(index) != '%') {
+      return -1;
+    }
+    int high = hexValue(encoded.charAt(index + 1));
+    int low = hexValue(encoded.charAt(index + 2));
+    if (high < 0 || low < 0) {
+      return -1;
+    }
+    return (high << 4) | low;
+  }
+
+  private static int hexValue(char ch) {
+    if (ch >= '0' && ch <= '9') {
+      return ch - '0';
+    } else if (ch >= 'a' && ch <= 'f') {
+      return ch - 'a' + 10;
+    } else if (ch >= 'A' && ch <= 'F') {
+      return ch - 'A' + 10;
+    }
+    return -1;
+  }
+
+  private static int indexOf(String string, char ch, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i) == ch) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean containsOnly(String string, char ch, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i) != ch) {
+        return false;
+      }
     }
-    return sbuf.toString();
+    return true;
   }
 }
@@ -116,9 +116,18 @@ public abstract class PlaceManagerImpl implements PlaceManager,
    *          otherwise.
    */
   protected void doRevealPlace(PlaceRequest request, boolean updateBrowserUrl) {
-    PlaceRequestInternalEvent requestEvent = new PlaceRequestInternalEvent(request,
-        updateBrowserUrl);
-    fireEvent(requestEvent);
+    // Try the place indexed by the name token first, see ProxyPlaceAbstract#isIndexedByNameToken()
+    PlaceRequestInternalEvent requestEvent = null;
+    GwtEvent.Type<PlaceRequestInternalHandler> indexedType = request.getNameToken() == null ? null
+        : PlaceRequestInternalEvent.findType(request.getNameToken());
+    if (indexedType != null) {
+      requestEvent = new PlaceRequestInternalEvent(request, updateBrowserUrl, indexedType);
+      fireEvent(requestEvent);
+    }
+    if (requestEvent == null || !requestEvent.isHandled()) {
+      requestEvent = new PlaceRequestInternalEvent(request, updateBrowserUrl);
+      fireEvent(requestEvent);
+    }
     if (!requestEvent.isHandled()) {
       unlock();
       error(tokenFormatter.toHistoryToken(placeHierarchy));
@@ -200,9 +209,18 @@ public abstract class PlaceManagerImpl implements PlaceManager,
   @Override
   public void getTitle(int index, SetPlaceTitleHandler handler)
       throws IndexOutOfBoundsException {
-    GetPlaceTitleEvent event = new GetPlaceTitleEvent(
-        placeHierarchy.get(index), handler);
-    fireEvent(event);
+    PlaceRequest request = placeHierarchy.get(index);
+    GetPlaceTitleEvent event = null;
+    GwtEvent.Type<GetPlaceTitleHandler> indexedType = request.getNameToken() == null ? null
+        : GetPlaceTitleEvent.findType(request.getNameToken());
+    if (indexedType != null) {
+      event = new GetPlaceTitleEvent(request, handler, indexedType);
+      fireEvent(event);
+    }
+    if (event == null || !event.isHandled()) {
+      event = new GetPlaceTitleEvent(request, handler);
+      fireEvent(event);
+    }
     // If nobody took care of the title, indicate it's null
     if (!event.isHandled()) {
       handler.onSetPlaceTitle(null);
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.event.shared.GwtEvent;
+import com.google.gwt.storage.client.Storage;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.inject.Inject;
+import com.google.web.bindery.event.shared.EventBus;
+
+/**
+ * Downloads the code of the places that are likely to be visited next while the application is
+ * idle, so that revealing a presenter sitting behind a split point doesn't have to wait for its
+ * code. The places to prefetch come from:
+ * <ul>
+ * <li>the application, calling {@link #prefetch(String)} for instance when it displays a link;</li>
+ * <li>the {@link com.gwtplatform.mvp.client.annotations.PrefetchPlaces} annotation of the place
+ * that has just been navigated to;</li>
+ * <li>the navigation history: the places most often visited after the current one are
+ * prefetched. The history is kept in the HTML5 local storage of the browser, if available, so that
+ * it is also used in later visits.</li>
+ * </ul>
+ * Places are prefetched one at a time, at most every {@link #PREFETCH_DELAY_MS} milliseconds, and
+ * only while the application is idle: no navigation is in progress and no presenter code is being
+ * loaded. Override {@link #isBusy()} to also hold off while your own RPCs are pending.
+ * <p />
+ * Prefetching a place only downloads its code if its proxy is annotated with
+ * {@link com.gwtplatform.mvp.client.annotations.ProxyCodeSplitBundle}, see
+ * {@link com.gwtplatform.common.client.Prefetchable}. The code of a proxy annotated with
+ * {@link com.gwtplatform.mvp.client.annotations.ProxyCodeSplit} can't be downloaded without
+ * instantiating its presenter, so such places are skipped. Places that can't be revealed are
+ * never prefetched.
+ * <p />
+ * To use it, bind it in one of your gin modules:
+ *
+ * <pre>
+ * bind(PlacePrefetcher.class).asEagerSingleton();
+ * </pre>
+ */
+public class PlacePrefetcher implements NavigationHandler, LockInteractionHandler,
+    AsyncCallStartHandler, AsyncCallSucceedHandler, AsyncCallFailHandler {
+
+  /**
+   * The minimum delay between two prefetches, in milliseconds.
+   */
+  public static final int PREFETCH_DELAY_MS = 500;
+
+  /**
+   * The maximum number of places prefetched after a navigation, based on the navigation history.
+   */
+  public static final int MAX_PREDICTIONS = 2;
+
+  private static final String STORAGE_KEY_PREFIX = "gwtp.prefetch.";
+
+  private final EventBus eventBus;
+  private final Scheduler scheduler;
+
+  private final Set<String> pendingNameTokens = new LinkedHashSet<String>();
+  private final Set<String> prefetchedNameTokens = new HashSet<String>();
+  private final Map<String, Map<String, Integer>> transitions =
+      new HashMap<String, Map<String, Integer>>();
+  private String currentNameToken;
+
+  private boolean scheduled;
+  private boolean prefetching;
+  private boolean locked;
+  private int pendingLoads;
+
+  private Storage storage;
+  private boolean storageChecked;
+
+  @Inject
+  public PlacePrefetcher(EventBus eventBus) {
+    this(eventBus, Scheduler.get());
+  }
+
+  PlacePrefetcher(EventBus eventBus, Scheduler scheduler) {
+    this.eventBus = eventBus;
+    this.scheduler = scheduler;
+    eventBus.addHandler(NavigationEvent.getType(), this);
+    eventBus.addHandler(LockInteractionEvent.getType(), this);
+    eventBus.addHandler(AsyncCallStartEvent.getType(), this);
+    eventBus.addHandler(AsyncCallSucceedEvent.getType(), this);
+    eventBus.addHandler(AsyncCallFailEvent.getType(), this);
+  }
+
+  /**
+   * Prefetches the code of a place when the application is idle. Does nothing if the place was
+   * already prefetched or navigated to.
+   *
+   * @param nameToken The name token of the place.
+   */
+  public void prefetch(String nameToken) {
+    if (nameToken == null || prefetchedNameTokens.contains(nameToken)) {
+      return;
+    }
+    pendingNameTokens.add(nameToken);
+    schedule();
+  }
+
+  /**
+   * Prefetches the code of the place matching a request, see {@link #prefetch(String)}.
+   *
+   * @param request The {@link PlaceRequest}.
+   */
+  public void prefetch(PlaceRequest request) {
+    prefetch(request.getNameToken());
+  }
+
+  @Override
+  public void onNavigation(NavigationEvent navigationEvent) {
+    String nameToken = navigationEvent.getRequest().getNameToken();
+    if (nameToken == null) {
+      return;
+    }
+    // The code of the place is loaded now.
+    prefetchedNameTokens.add(nameToken);
+    pendingNameTokens.remove(nameToken);
+
+    if (currentNameToken != null && !currentNameToken.equals(nameToken)) {
+      recordTransition(currentNameToken, nameToken);
+    }
+    currentNameToken = nameToken;
+
+    ProxyPlaceAbstract<?, ?> place = findPlace(nameToken);
+    if (place != null) {
+      for (String prefetchNameToken : place.getPrefetchNameTokens()) {
+        prefetch(prefetchNameToken);
+      }
+    }
+    for (String predictedNameToken : predictNextNameTokens(nameToken)) {
+      prefetch(predictedNameToken);
+    }
+  }
+
+  @Override
+  public void onLockInteraction(LockInteractionEvent event) {
+    locked = event.shouldLock();
+  }
+
+  @Override
+  public void onAsyncCallStart(AsyncCallStartEvent event) {
+    // Several split points can be loading at the same time, wait for all of them.
+    pendingLoads++;
+  }
+
+  @Override
+  public void onAsyncCallSucceed(AsyncCallSucceedEvent event) {
+    loadFinished();
+  }
+
+  @Override
+  public void onAsyncCallFail(AsyncCallFailEvent event) {
+    loadFinished();
+  }
+
+  private void loadFinished() {
+    if (pendingLoads > 0) {
+      pendingLoads--;
+    }
+  }
+
+  /**
+   * Checks whether the application is busy with something prefetching shouldn't compete with.
+   * Navigations and presenter code loads are always waited for, this method lets you hold off
+   * prefetching for other reasons, for example while RPCs are pending. By default, this returns
+   * {@code false}.
+   *
+   * @return {@code true} to delay prefetching, {@code false} otherwise.
+   */
+  protected boolean isBusy() {
+    return false;
+  }
+
+  private boolean isIdle() {
+    return !prefetching && !locked && pendingLoads == 0 && !isBusy();
+  }
+
+  private void schedule() {
+    if (scheduled || pendingNameTokens.isEmpty()) {
+      return;
+    }
+    scheduled = true;
+    scheduler.scheduleFixedDelay(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        if (pendingNameTokens.isEmpty()) {
+          scheduled = false;
+          return false;
+        }
+        if (isIdle()) {
+          Iterator<String> iterator = pendingNameTokens.iterator();
+          String nameToken = iterator.next();
+          iterator.remove();
+          prefetchNow(nameToken);
+        }
+        return true;
+      }
+    }, PREFETCH_DELAY_MS);
+  }
+
+  private void prefetchNow(final String nameToken) {
+    prefetchedNameTokens.add(nameToken);
+    ProxyPlaceAbstract<?, ?> place = findPlace(nameToken);
+    if (place == null) {
+      return;
+    }
+    prefetching = true;
+    place.prefetch(new AsyncCallback<Void>() {
+      @Override
+      public void onFailure(Throwable caught) {
+        // The code will be downloaded again when needed, allow another attempt.
+        prefetching = false;
+        prefetchedNameTokens.remove(nameToken);
+      }
+
+      @Override
+      public void onSuccess(Void result) {
+        prefetching = false;
+      }
+    });
+  }
+
+  private ProxyPlaceAbstract<?, ?> findPlace(String nameToken) {
+    // Try the place indexed by that name token first, then the places with a custom matching
+    GwtEvent.Type<PrefetchPlaceInternalHandler> indexedType =
+        PrefetchPlaceInternalEvent.findType(nameToken);
+    if (indexedType != null) {
+      PrefetchPlaceInternalEvent event = new PrefetchPlaceInternalEvent(nameToken, indexedType);
+      eventBus.fireEvent(event);
+      if (event.isHandled()) {
+        return event.getPlace();
+      }
+    }
+    PrefetchPlaceInternalEvent event = new PrefetchPlaceInternalEvent(nameToken);
+    eventBus.fireEvent(event);
+    return event.getPlace();
+  }
+
+  private void recordTransition(String fromNameToken, String toNameToken) {
+    Map<String, Integer> counts = getTransitionCounts(fromNameToken);
+    Integer count = counts.get(toNameToken);
+    counts.put(toNameToken, count == null ? 1 : count + 1);
+
+    StringBuilder item = new StringBuilder();
+    for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+      item.append(entry.getValue()).append(':').append(entry.getKey()).append('\n');
+    }
+    storeItem(STORAGE_KEY_PREFIX + fromNameToken, item.toString());
+  }
+
+  private Map<String, Integer> getTransitionCounts(String fromNameToken) {
+    Map<String, Integer> counts = transitions.get(fromNameToken);
+    if (counts == null) {
+      counts = new HashMap<String, Integer>();
+      String item = loadItem(STORAGE_KEY_PREFIX + fromNameToken);
+      if (item != null) {
+        // One "count:nameToken" line per place visited next.
+        for (String line : item.split("\n")) {
+          int separator = line.indexOf(':');
+          if (separator > 0) {
+            try {
+              counts.put(line.substring(separator + 1),
+                  Integer.valueOf(line.substring(0, separator)));
+            } catch (NumberFormatException e) {
+              // Ignore the corrupted line.
+            }
+          }
+        }
+      }
+      transitions.put(fromNameToken, counts);
+    }
+    return counts;
+  }
+
+  private List<String> predictNextNameTokens(String nameToken) {
+    List<String> predictions = new ArrayList<String>();
+    List<Integer> predictionCounts = new ArrayList<Integer>();
+    for (Map.Entry<String, Integer> entry : getTransitionCounts(nameToken).entrySet()) {
+      // Insertion in a list of at most MAX_PREDICTIONS elements, by decreasing count.
+      int index = predictions.size();
+      while (index > 0 && predictionCounts.get(index - 1) < entry.getValue()) {
+        index--;
+      }
+      if (index < MAX_PREDICTIONS) {
+        predictions.add(index, entry.getKey());
+        predictionCounts.add(index, entry.getValue());
+        if (predictions.size() > MAX_PREDICTIONS) {
+          predictions.remove(MAX_PREDICTIONS);
+          predictionCounts.remove(MAX_PREDICTIONS);
+        }
+      }
+    }
+    return predictions;
+  }
+
+  /**
+   * Reads an item of the navigation history from the local storage. Unit tests override this
+   * method, which doesn't work outside of a browser.
+   */
+  String loadItem(String key) {
+    Storage localStorage = getStorage();
+    return localStorage == null ? null : localStorage.getItem(key);
+  }
+
+  /**
+   * Writes an item of the navigation history to the local storage, see {@link #loadItem(String)}.
+   */
+  void storeItem(String key, String item) {
+    Storage localStorage = getStorage();
+    if (localStorage != null) {
+      try {
+        localStorage.setItem(key, item);
+      } catch (RuntimeException e) {
+        // The storage is full, the history will only be kept in memory.
+      }
+    }
+  }
+
+  private Storage getStorage() {
+    if (!storageChecked) {
+      storageChecked = true;
+      storage = Storage.getLocalStorageIfSupported();
+    }
+    return storage;
+  }
+}
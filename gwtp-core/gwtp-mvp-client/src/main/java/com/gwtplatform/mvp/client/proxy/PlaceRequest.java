@@ -17,6 +17,7 @@
 package com.gwtplatform.mvp.client.proxy;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,16 +42,127 @@ import java.util.Set;
  * </ul>
  * The separators (';' and '=') can be modified in
  * {@link ParameterTokenFormatter}.
+ * <p/>
+ * Place requests are immutable. To build a request with several parameters,
+ * prefer a {@link Builder} to successive calls to
+ * {@link #with(String, String)}, which copy all the parameters every time:
+ *
+ * <pre>
+ *   PlaceRequest request = new PlaceRequest.Builder().nameToken(nameToken)
+ *                                                    .with(key1, param1)
+ *                                                    .with(key2, param2)
+ *                                                    .build();
+ * </pre>
  *
  * @author David Peterson
  * @author Philippe Beaudoin
  */
 public class PlaceRequest {
 
+  /**
+   * A {@link PlaceRequest} builder. Parameters are collected in a single map,
+   * which the built request then uses without copying it.
+   */
+  public static class Builder {
+    private String nameToken;
+    private Map<String, String> params;
+    private boolean shared;
+
+    /**
+     * Constructs a {@link PlaceRequest} builder with no name token and no
+     * parameters.
+     */
+    public Builder() {
+    }
+
+    /**
+     * Constructs a {@link PlaceRequest} builder starting with the name token
+     * and the parameters of an existing request.
+     *
+     * @param request The {@link PlaceRequest} to start from.
+     */
+    public Builder(PlaceRequest request) {
+      nameToken = request.nameToken;
+      if (request.params != null) {
+        params = request.params;
+        shared = true;
+      }
+    }
+
+    /**
+     * Specify the name token of the request.
+     *
+     * @param nameToken The name token.
+     * @return a {@link Builder} object.
+     */
+    public Builder nameToken(String nameToken) {
+      this.nameToken = nameToken;
+      return this;
+    }
+
+    /**
+     * Add a parameter to the request. If a parameter with the same name was
+     * previously specified, the request contains the new value. A {@code null}
+     * value is ignored, like in {@link PlaceRequest#with(String, String)}.
+     *
+     * @param name The parameter name.
+     * @param value The parameter value.
+     * @return a {@link Builder} object.
+     */
+    public Builder with(String name, String value) {
+      if (value != null) {
+        ensureWritable();
+        params.put(name, value);
+      }
+      return this;
+    }
+
+    /**
+     * Add several parameters to the request, see {@link #with(String, String)}.
+     *
+     * @param params The parameters, by name.
+     * @return a {@link Builder} object.
+     */
+    public Builder with(Map<String, String> params) {
+      for (Map.Entry<String, String> param : params.entrySet()) {
+        with(param.getKey(), param.getValue());
+      }
+      return this;
+    }
+
+    /**
+     * Build the {@link PlaceRequest}. The builder can still be used afterwards,
+     * it won't affect the requests already built.
+     *
+     * @return The built {@link PlaceRequest}.
+     */
+    public PlaceRequest build() {
+      if (params == null || params.isEmpty()) {
+        return new PlaceRequest(nameToken);
+      }
+      shared = true;
+      return new PlaceRequest(nameToken, params);
+    }
+
+    private void ensureWritable() {
+      if (params == null) {
+        params = new HashMap<String, String>();
+      } else if (shared) {
+        params = new HashMap<String, String>(params);
+      }
+      shared = false;
+    }
+  }
+
   private final String nameToken;
 
   private final Map<String, String> params;
 
+  /**
+   * The cached hash code, {@code 0} until computed.
+   */
+  private int hashCode;
+
   /**
    * Builds a request without any name token and without parameters. You should
    * typically use {@link #PlaceRequest(String)} and specify the name token.
@@ -105,13 +217,25 @@ public class PlaceRequest {
    */
   private PlaceRequest(PlaceRequest req, String name, String value) {
     this.nameToken = req.nameToken;
-    this.params = new java.util.HashMap<String, String>();
+    Map<String, String> newParams = new HashMap<String, String>();
     if (req.params != null) {
-      this.params.putAll(req.params);
+      newParams.putAll(req.params);
     }
     if (value != null) {
-      this.params.put(name, value);
+      newParams.put(name, value);
     }
+    this.params = Collections.unmodifiableMap(newParams);
+  }
+
+  /**
+   * Builds a place request using the passed parameters, see {@link Builder}.
+   *
+   * @param nameToken The name token for the request.
+   * @param params The parameters, which must not be modified afterwards.
+   */
+  private PlaceRequest(String nameToken, Map<String, String> params) {
+    this.nameToken = nameToken;
+    this.params = Collections.unmodifiableMap(params);
   }
 
   @Override
@@ -125,8 +249,8 @@ public class PlaceRequest {
         return false;
       }
 
-      if (params == null) {
-        return req.params == null;
+      if (params == null || params.isEmpty()) {
+        return req.params == null || req.params.isEmpty();
       } else {
         return params.equals(req.params);
       }
@@ -162,7 +286,7 @@ public class PlaceRequest {
   /**
    * Retrieves all the parameters available with the request.
    *
-   * @return A {@link Set} containing all the parameter names.
+   * @return An unmodifiable {@link Set} containing all the parameter names.
    */
   public Set<String> getParameterNames() {
     if (params != null) {
@@ -178,7 +302,10 @@ public class PlaceRequest {
       throw new RuntimeException(
           "Cannot compute hashcode of PlaceRequest with a null nameToken");
     }
-    return 11 * (nameToken.hashCode() + (params == null ? 0 : params.hashCode()));
+    if (hashCode == 0) {
+      hashCode = 11 * (nameToken.hashCode() + (params == null ? 0 : params.hashCode()));
+    }
+    return hashCode;
   }
 
   /**
@@ -213,6 +340,9 @@ public class PlaceRequest {
    * Returns a new instance of the request with the specified parameter name and
    * value. If a parameter with the same name was previously specified, the new
    * request contains the new value.
+   * <p/>
+   * This copies all the parameters of this request, use a {@link Builder} to
+   * add several parameters.
    *
    * @param name The new parameter name.
    * @param value The new parameter value.
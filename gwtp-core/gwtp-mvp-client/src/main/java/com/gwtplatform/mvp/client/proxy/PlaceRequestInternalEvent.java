@@ -16,6 +16,9 @@
 
 package com.gwtplatform.mvp.client.proxy;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HasHandlers;
 
@@ -39,6 +42,8 @@ import com.google.gwt.event.shared.HasHandlers;
 class PlaceRequestInternalEvent extends GwtEvent<PlaceRequestInternalHandler> {
 
   private static Type<PlaceRequestInternalHandler> TYPE;
+  private static final Map<String, Type<PlaceRequestInternalHandler>> TYPES_BY_NAME_TOKEN =
+      new HashMap<String, Type<PlaceRequestInternalHandler>>();
 
   /**
    * Fires a {@link PlaceRequestInternalEvent}
@@ -63,6 +68,36 @@ class PlaceRequestInternalEvent extends GwtEvent<PlaceRequestInternalHandler> {
     return TYPE;
   }
 
+  /**
+   * Gets the type of the events only handled by the places indexed by a name
+   * token, see {@link ProxyPlaceAbstract#isIndexedByNameToken()}. The type is
+   * created when the first place registers for that name token.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token.
+   */
+  static Type<PlaceRequestInternalHandler> registerType(String nameToken) {
+    Type<PlaceRequestInternalHandler> type = TYPES_BY_NAME_TOKEN.get(nameToken);
+    if (type == null) {
+      type = new Type<PlaceRequestInternalHandler>();
+      TYPES_BY_NAME_TOKEN.put(nameToken, type);
+    }
+    return type;
+  }
+
+  /**
+   * Finds the type of the events only handled by the places indexed by a name
+   * token. No type is created for the name tokens of no place, such as the ones
+   * typed by hand.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token, or {@code null} if no
+   *         place is indexed by that name token.
+   */
+  static Type<PlaceRequestInternalHandler> findType(String nameToken) {
+    return TYPES_BY_NAME_TOKEN.get(nameToken);
+  }
+
   private boolean authorized = true;
 
   /**
@@ -75,15 +110,22 @@ class PlaceRequestInternalEvent extends GwtEvent<PlaceRequestInternalHandler> {
 
   private final PlaceRequest request;
   private final boolean updateBrowserHistory;
+  private final Type<PlaceRequestInternalHandler> type;
 
   public PlaceRequestInternalEvent(PlaceRequest request, boolean updateBrowserHistory) {
+    this(request, updateBrowserHistory, getType());
+  }
+
+  PlaceRequestInternalEvent(PlaceRequest request, boolean updateBrowserHistory,
+      Type<PlaceRequestInternalHandler> type) {
     this.request = request;
     this.updateBrowserHistory = updateBrowserHistory;
+    this.type = type;
   }
 
   @Override
   public Type<PlaceRequestInternalHandler> getAssociatedType() {
-    return getType();
+    return type;
   }
 
   public PlaceRequest getRequest() {
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.event.shared.GwtEvent;
+
+/**
+ * This event is fired by the {@link PlacePrefetcher} to find the place
+ * associated with a name token, so that its code can be prefetched.
+ * <p />
+ * <b>Important!</b> You should never fire that event directly, call
+ * {@link PlacePrefetcher#prefetch(String)} instead.
+ */
+class PrefetchPlaceInternalEvent extends GwtEvent<PrefetchPlaceInternalHandler> {
+
+  private static final Type<PrefetchPlaceInternalHandler> TYPE =
+      new Type<PrefetchPlaceInternalHandler>();
+  private static final Map<String, Type<PrefetchPlaceInternalHandler>> TYPES_BY_NAME_TOKEN =
+      new HashMap<String, Type<PrefetchPlaceInternalHandler>>();
+
+  public static Type<PrefetchPlaceInternalHandler> getType() {
+    return TYPE;
+  }
+
+  /**
+   * Gets the type of the events only handled by the places indexed by a name
+   * token, see {@link ProxyPlaceAbstract#isIndexedByNameToken()}. The type is
+   * created when the first place registers for that name token.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token.
+   */
+  static Type<PrefetchPlaceInternalHandler> registerType(String nameToken) {
+    Type<PrefetchPlaceInternalHandler> type = TYPES_BY_NAME_TOKEN.get(nameToken);
+    if (type == null) {
+      type = new Type<PrefetchPlaceInternalHandler>();
+      TYPES_BY_NAME_TOKEN.put(nameToken, type);
+    }
+    return type;
+  }
+
+  /**
+   * Finds the type of the events only handled by the places indexed by a name
+   * token. No type is created for the name tokens of no place.
+   *
+   * @param nameToken The name token.
+   * @return The type of the events for that name token, or {@code null} if no
+   *         place is indexed by that name token.
+   */
+  static Type<PrefetchPlaceInternalHandler> findType(String nameToken) {
+    return TYPES_BY_NAME_TOKEN.get(nameToken);
+  }
+
+  private final String nameToken;
+  private final Type<PrefetchPlaceInternalHandler> type;
+  private ProxyPlaceAbstract<?, ?> place;
+
+  public PrefetchPlaceInternalEvent(String nameToken) {
+    this(nameToken, getType());
+  }
+
+  PrefetchPlaceInternalEvent(String nameToken, Type<PrefetchPlaceInternalHandler> type) {
+    this.nameToken = nameToken;
+    this.type = type;
+  }
+
+  @Override
+  public Type<PrefetchPlaceInternalHandler> getAssociatedType() {
+    return type;
+  }
+
+  public String getNameToken() {
+    return nameToken;
+  }
+
+  /**
+   * Access the place that handled this event.
+   *
+   * @return The place matching the name token, or {@code null} if no
+   *         revealable place matches it.
+   */
+  public ProxyPlaceAbstract<?, ?> getPlace() {
+    return place;
+  }
+
+  /**
+   * Checks if the event was handled. If it was, then it should not be processed
+   * further.
+   *
+   * @return {@code true} if the event was handled. {@code false} otherwise.
+   */
+  public boolean isHandled() {
+    return place != null;
+  }
+
+  /**
+   * Indicates that the passed place matches the name token and that other
+   * handlers should not process the event.
+   *
+   * @param place The place matching the name token.
+   */
+  public void setHandled(ProxyPlaceAbstract<?, ?> place) {
+    this.place = place;
+  }
+
+  @Override
+  protected void dispatch(PrefetchPlaceInternalHandler handler) {
+    handler.onPrefetchPlace(this);
+  }
+}
@@ -22,6 +22,7 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.inject.Inject;
 
 import com.gwtplatform.common.client.IndirectProvider;
+import com.gwtplatform.common.client.Prefetchable;
 import com.gwtplatform.mvp.client.Presenter;
 
 /**
@@ -29,7 +30,7 @@ import com.gwtplatform.mvp.client.Presenter;
  *
  * @param <P> The presenter's type.
  */
-public class ProxyImpl<P extends Presenter<?, ?>> implements Proxy<P> {
+public class ProxyImpl<P extends Presenter<?, ?>> implements Proxy<P>, Prefetchable {
 
   protected IndirectProvider<P> presenter;
   protected EventBus eventBus;
@@ -55,6 +56,23 @@ public class ProxyImpl<P extends Presenter<?, ?>> implements Proxy<P> {
     callback.checkLoading();
   }
 
+  /**
+   * Downloads the code of the presenter if it sits behind the split point of a
+   * {@link com.gwtplatform.common.client.ProviderBundle}, see
+   * {@link Prefetchable}. Otherwise the callback is invoked immediately.
+   *
+   * @param callback The {@link AsyncCallback} to invoke once the download is
+   *          over.
+   */
+  @Override
+  public void prefetch(AsyncCallback<Void> callback) {
+    if (presenter instanceof Prefetchable) {
+      ((Prefetchable) presenter).prefetch(callback);
+    } else {
+      callback.onSuccess(null);
+    }
+  }
+
   /**
    * Injects the various resources and performs other bindings.
    * <p />
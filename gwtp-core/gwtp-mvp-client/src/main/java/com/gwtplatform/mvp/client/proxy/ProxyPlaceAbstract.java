@@ -20,7 +20,9 @@ import com.google.gwt.core.client.Scheduler;
 import com.google.web.bindery.event.shared.EventBus;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.inject.Inject;
+import com.gwtplatform.common.client.Prefetchable;
 import com.gwtplatform.mvp.client.Presenter;
 
 /**
@@ -36,7 +38,7 @@ import com.gwtplatform.mvp.client.Presenter;
  * @author Christian Goudreau
  */
 public class ProxyPlaceAbstract<P extends Presenter<?, ?>, Proxy_ extends Proxy<P>>
-    implements ProxyPlace<P> {
+    implements ProxyPlace<P>, Prefetchable {
 
   protected Place place;
   protected PlaceManager placeManager;
@@ -104,6 +106,15 @@ public class ProxyPlaceAbstract<P extends Presenter<?, ?>, Proxy_ extends Proxy<
     return place.matchesRequest(request);
   }
 
+  @Override
+  public void prefetch(AsyncCallback<Void> callback) {
+    if (proxy instanceof Prefetchable) {
+      ((Prefetchable) proxy).prefetch(callback);
+    } else {
+      callback.onSuccess(null);
+    }
+  }
+
   // /////////////////////
   // Protected methods that can be overridden
 
@@ -129,7 +140,7 @@ public class ProxyPlaceAbstract<P extends Presenter<?, ?>, Proxy_ extends Proxy<
   protected void bind(final PlaceManager placeManager, EventBus eventBus) {
     this.eventBus = eventBus;
     this.placeManager = placeManager;
-    eventBus.addHandler(PlaceRequestInternalEvent.getType(),
+    PlaceRequestInternalHandler placeRequestHandler =
         new PlaceRequestInternalHandler() {
           @Override
           public void onPlaceRequest(PlaceRequestInternalEvent event) {
@@ -146,8 +157,8 @@ public class ProxyPlaceAbstract<P extends Presenter<?, ?>, Proxy_ extends Proxy<
               }
             }
           }
-        });
-    eventBus.addHandler(GetPlaceTitleEvent.getType(),
+        };
+    GetPlaceTitleHandler placeTitleHandler =
         new GetPlaceTitleHandler() {
           @Override
           public void onGetPlaceTitle(GetPlaceTitleEvent event) {
@@ -162,7 +173,63 @@ public class ProxyPlaceAbstract<P extends Presenter<?, ?>, Proxy_ extends Proxy<
               }
             }
           }
-        });
+        };
+    PrefetchPlaceInternalHandler prefetchPlaceHandler =
+        new PrefetchPlaceInternalHandler() {
+          @Override
+          public void onPrefetchPlace(PrefetchPlaceInternalEvent event) {
+            if (event.isHandled()) {
+              return;
+            }
+            if (matchesRequest(new PlaceRequest(event.getNameToken())) && canReveal()) {
+              event.setHandled(ProxyPlaceAbstract.this);
+            }
+          }
+        };
+
+    if (isIndexedByNameToken()) {
+      String nameToken = getNameToken();
+      eventBus.addHandler(PlaceRequestInternalEvent.registerType(nameToken), placeRequestHandler);
+      eventBus.addHandler(GetPlaceTitleEvent.registerType(nameToken), placeTitleHandler);
+      eventBus.addHandler(PrefetchPlaceInternalEvent.registerType(nameToken), prefetchPlaceHandler);
+    } else {
+      eventBus.addHandler(PlaceRequestInternalEvent.getType(), placeRequestHandler);
+      eventBus.addHandler(GetPlaceTitleEvent.getType(), placeTitleHandler);
+      eventBus.addHandler(PrefetchPlaceInternalEvent.getType(), prefetchPlaceHandler);
+    }
+  }
+
+  /**
+   * Checks whether this place only matches requests having its name token. The
+   * {@link PlaceManagerImpl} first looks for a place matching a request among
+   * the places indexed by the name token of the request, and only asks the
+   * other places when none of them handles it. So an indexed place is found
+   * without checking every place.
+   * <p />
+   * Places are not indexed by default. Generated proxies, whose place is a
+   * {@link PlaceImpl} and which don't override
+   * {@link #matchesRequest(PlaceRequest)}, are. Only override this method to
+   * return {@code true} when neither this proxy nor its place match requests
+   * having another name token.
+   *
+   * @return {@code true} if this place only matches its name token,
+   *         {@code false} otherwise.
+   */
+  protected boolean isIndexedByNameToken() {
+    return false;
+  }
+
+  /**
+   * Lists the name tokens of the places that are likely to be visited after
+   * this one. The {@link PlacePrefetcher} downloads their code once this place
+   * has been navigated to. By default, no place is listed. Generated proxies
+   * override this method when annotated with
+   * {@link com.gwtplatform.mvp.client.annotations.PrefetchPlaces}.
+   *
+   * @return The name tokens of the places to prefetch, never {@code null}.
+   */
+  protected String[] getPrefetchNameTokens() {
+    return new String[0];
   }
 
   /**
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.inject.Inject;
+import com.google.web.bindery.event.shared.EventBus;
+
+/**
+ * Tells crawlers when the application is done rendering, so that they don't have to wait for a
+ * fixed delay before taking a snapshot of the page. The javascript variable
+ * {@code window.gwtpRenderComplete}, see {@link #FLAG_NAME}, is set to {@code true} once the
+ * application has been quiet for {@link #CHECK_INTERVAL_MS} milliseconds: no navigation in
+ * progress, no presenter code loading and no presenter reset. It is set back to {@code false} as
+ * soon as something happens again.
+ * <p />
+ * Presenters often fetch their data when revealed or reset. Override {@link #isBusy()} to also
+ * wait for your pending RPCs, for example by counting the calls made through your dispatcher.
+ * <p />
+ * To use it, bind it in one of your gin modules:
+ *
+ * <pre>
+ * bind(RenderCompleteSignal.class).asEagerSingleton();
+ * </pre>
+ */
+public class RenderCompleteSignal implements LockInteractionHandler, ResetPresentersHandler,
+    NavigationHandler, AsyncCallStartHandler, AsyncCallSucceedHandler, AsyncCallFailHandler {
+
+  /**
+   * The name of the javascript variable of the window indicating that rendering is complete.
+   */
+  public static final String FLAG_NAME = "gwtpRenderComplete";
+
+  /**
+   * How long the application must be quiet before rendering is considered complete, in
+   * milliseconds.
+   */
+  public static final int CHECK_INTERVAL_MS = 100;
+
+  private final Scheduler scheduler;
+
+  private boolean locked;
+  private int pendingLoads;
+  private boolean checking;
+  private boolean activitySinceCheck;
+  private boolean renderComplete;
+
+  @Inject
+  public RenderCompleteSignal(EventBus eventBus) {
+    this(eventBus, Scheduler.get());
+  }
+
+  RenderCompleteSignal(EventBus eventBus, Scheduler scheduler) {
+    this.scheduler = scheduler;
+    eventBus.addHandler(LockInteractionEvent.getType(), this);
+    eventBus.addHandler(ResetPresentersEvent.getType(), this);
+    eventBus.addHandler(NavigationEvent.getType(), this);
+    eventBus.addHandler(AsyncCallStartEvent.getType(), this);
+    eventBus.addHandler(AsyncCallSucceedEvent.getType(), this);
+    eventBus.addHandler(AsyncCallFailEvent.getType(), this);
+    scheduleCheck();
+  }
+
+  /**
+   * Checks whether rendering is complete, that is whether {@code window.gwtpRenderComplete} is
+   * {@code true}.
+   *
+   * @return {@code true} if rendering is complete, {@code false} otherwise.
+   */
+  public boolean isRenderComplete() {
+    return renderComplete;
+  }
+
+  @Override
+  public void onLockInteraction(LockInteractionEvent event) {
+    locked = event.shouldLock();
+    onActivity();
+  }
+
+  @Override
+  public void onResetPresenters(ResetPresentersEvent resetPresentersEvent) {
+    onActivity();
+  }
+
+  @Override
+  public void onNavigation(NavigationEvent navigationEvent) {
+    onActivity();
+  }
+
+  @Override
+  public void onAsyncCallStart(AsyncCallStartEvent event) {
+    // Several split points can be loading at the same time, wait for all of them.
+    pendingLoads++;
+    onActivity();
+  }
+
+  @Override
+  public void onAsyncCallSucceed(AsyncCallSucceedEvent event) {
+    loadFinished();
+  }
+
+  @Override
+  public void onAsyncCallFail(AsyncCallFailEvent event) {
+    loadFinished();
+  }
+
+  /**
+   * Indicates that the application did something that may change the page, for example when an
+   * RPC completes. Rendering will be considered complete once the application has been quiet
+   * again for {@link #CHECK_INTERVAL_MS} milliseconds.
+   */
+  public void onActivity() {
+    activitySinceCheck = true;
+    setRenderComplete(false);
+    scheduleCheck();
+  }
+
+  /**
+   * Checks whether the application is busy with something that will change the page. Navigations,
+   * presenter code loads and presenter resets are always waited for, this method lets you wait for
+   * other things, for example pending RPCs. Call {@link #onActivity()} when they are done. By
+   * default, this returns {@code false}.
+   *
+   * @return {@code true} if rendering is not complete, {@code false} otherwise.
+   */
+  protected boolean isBusy() {
+    return false;
+  }
+
+  private void loadFinished() {
+    if (pendingLoads > 0) {
+      pendingLoads--;
+    }
+    onActivity();
+  }
+
+  /**
+   * Sets the javascript variable, see {@link #FLAG_NAME}. Unit tests override this method, which
+   * doesn't work outside of a browser.
+   */
+  void writeFlag(boolean value) {
+    nativeWriteFlag(FLAG_NAME, value);
+  }
+
+  private void scheduleCheck() {
+    if (checking) {
+      return;
+    }
+    checking = true;
+    scheduler.scheduleFixedDelay(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        if (activitySinceCheck || locked || pendingLoads > 0 || isBusy()) {
+          activitySinceCheck = false;
+          return true;
+        }
+        checking = false;
+        setRenderComplete(true);
+        return false;
+      }
+    }, CHECK_INTERVAL_MS);
+  }
+
+  private void setRenderComplete(boolean renderComplete) {
+    if (this.renderComplete != renderComplete) {
+      this.renderComplete = renderComplete;
+      writeFlag(renderComplete);
+    }
+  }
+
+  private static native void nativeWriteFlag(String name, boolean value) /*-{
+    $wnd[name] = value;
+  }-*/;
+}
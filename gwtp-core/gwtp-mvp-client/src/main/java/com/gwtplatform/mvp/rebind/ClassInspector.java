@@ -17,6 +17,8 @@
 package com.gwtplatform.mvp.rebind;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.gwt.core.ext.TreeLogger;
@@ -37,12 +39,37 @@ public class ClassInspector {
 
   private final TreeLogger logger;
   private final JClassType inspectedClass;
+  private List<JMethod> methods;
 
   ClassInspector(TreeLogger logger, JClassType inspectedClass) {
     this.logger = logger;
     this.inspectedClass = inspectedClass;
   }
 
+  /**
+   * Creates an inspector reusing the methods of the inspected class collected by
+   * {@link #collectMethods(JClassType)}, so that they don't have to be collected again.
+   */
+  ClassInspector(TreeLogger logger, JClassType inspectedClass, List<JMethod> methods) {
+    this(logger, inspectedClass);
+    this.methods = methods;
+  }
+
+  /**
+   * Collects the methods of a class and of all its parent classes, in the order in which they are
+   * inspected.
+   *
+   * @param inspectedClass The class to inspect.
+   * @return The unmodifiable list of methods.
+   */
+  static List<JMethod> collectMethods(JClassType inspectedClass) {
+    List<JMethod> methods = new ArrayList<JMethod>();
+    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
+      Collections.addAll(methods, classType.getMethods());
+    }
+    return Collections.unmodifiableList(methods);
+  }
+
   /**
    * Inspects the methods to find one that return the specified type. The method can be either in
    * the inspected class or any of its parent classes. It can be static or not.
@@ -54,20 +81,18 @@ public class ClassInspector {
   public JMethod findMethodWithoutParamsReturning(JClassType returnType)
       throws UnableToCompleteException {
     JMethod result = null;
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        JClassType actualReturnType = method.getReturnType().isClassOrInterface();
-        if (method.getParameters().length == 0
-            && actualReturnType != null
-            && returnType.isAssignableFrom(actualReturnType)) {
-          if (result != null) {
-            logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
-                + "' has more than one method returning " + returnType.getName()
-                + " and taking no parameter. This is not allowed.", null);
-            throw new UnableToCompleteException();
-          }
-          result = method;
+    for (JMethod method : getMethods()) {
+      JClassType actualReturnType = method.getReturnType().isClassOrInterface();
+      if (method.getParameters().length == 0
+          && actualReturnType != null
+          && returnType.isAssignableFrom(actualReturnType)) {
+        if (result != null) {
+          logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
+              + "' has more than one method returning " + returnType.getName()
+              + " and taking no parameter. This is not allowed.", null);
+          throw new UnableToCompleteException();
         }
+        result = method;
       }
     }
     return result;
@@ -87,22 +112,20 @@ public class ClassInspector {
   public JMethod findMethodWithoutParamsReturning(JGenericType returnType,
       JClassType returnTypeParameter) throws UnableToCompleteException {
     JMethod result = null;
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        JParameterizedType actualReturnType = method.getReturnType().isParameterized();
-        if (method.getParameters().length == 0
-            && actualReturnType != null
-            && returnType.isAssignableFrom(actualReturnType)
-            && returnTypeParameter.isAssignableFrom(actualReturnType.getTypeArgs()[0])) {
-          if (result != null) {
-            logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
-                + "' has more than one method returning " + returnType.getName()
-                + "<" + returnTypeParameter.getName() + "> and taking no parameter. "
-                + "This is not allowed.", null);
-            throw new UnableToCompleteException();
-          }
-          result = method;
+    for (JMethod method : getMethods()) {
+      JParameterizedType actualReturnType = method.getReturnType().isParameterized();
+      if (method.getParameters().length == 0
+          && actualReturnType != null
+          && returnType.isAssignableFrom(actualReturnType)
+          && returnTypeParameter.isAssignableFrom(actualReturnType.getTypeArgs()[0])) {
+        if (result != null) {
+          logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
+              + "' has more than one method returning " + returnType.getName()
+              + "<" + returnTypeParameter.getName() + "> and taking no parameter. "
+              + "This is not allowed.", null);
+          throw new UnableToCompleteException();
         }
+        result = method;
       }
     }
     return result;
@@ -128,29 +151,27 @@ public class ClassInspector {
       Class<? extends Annotation> annotation,
       boolean failIfAnnotationIsFoundOnWrongMethod) throws UnableToCompleteException {
     JMethod result = null;
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        JClassType actualReturnType = method.getReturnType().isClassOrInterface();
-        if (method.getAnnotation(annotation) != null) {
-          if (method.getParameters().length == 0
-              && actualReturnType != null
-              && returnType.isAssignableFrom(actualReturnType)) {
-            if (result != null) {
-              logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
-                  + "' has more than one method returning " + returnType.getName()
-                  + " annotated with '" + annotation.getSimpleName() + "' "
-                  + " and taking no parameter. This is not allowed.", null);
-              throw new UnableToCompleteException();
-            }
-            result = method;
-          } else if (failIfAnnotationIsFoundOnWrongMethod) {
+    for (JMethod method : getMethods()) {
+      JClassType actualReturnType = method.getReturnType().isClassOrInterface();
+      if (method.getAnnotation(annotation) != null) {
+        if (method.getParameters().length == 0
+            && actualReturnType != null
+            && returnType.isAssignableFrom(actualReturnType)) {
+          if (result != null) {
             logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
-                + "' has method '" + method.getName() + "' annotated with '"
-                + annotation.getSimpleName() + "', but the method has the wrong "
-                + "signature. It must take 0 parameter and return '"
-                + returnType.getName() + "'.", null);
+                + "' has more than one method returning " + returnType.getName()
+                + " annotated with '" + annotation.getSimpleName() + "' "
+                + " and taking no parameter. This is not allowed.", null);
             throw new UnableToCompleteException();
           }
+          result = method;
+        } else if (failIfAnnotationIsFoundOnWrongMethod) {
+          logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
+              + "' has method '" + method.getName() + "' annotated with '"
+              + annotation.getSimpleName() + "', but the method has the wrong "
+              + "signature. It must take 0 parameter and return '"
+              + returnType.getName() + "'.", null);
+          throw new UnableToCompleteException();
         }
       }
     }
@@ -168,17 +189,15 @@ public class ClassInspector {
   public JMethod findAnnotatedMethod(Class<? extends Annotation> annotation)
       throws UnableToCompleteException {
     JMethod result = null;
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        if (method.getAnnotation(annotation) != null) {
-          if (result != null) {
-            logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
-                + "' has more than one method annotated with '"
-                + annotation.getSimpleName() + "'. This is not allowed.", null);
-            throw new UnableToCompleteException();
-          }
-          result = method;
+    for (JMethod method : getMethods()) {
+      if (method.getAnnotation(annotation) != null) {
+        if (result != null) {
+          logger.log(TreeLogger.ERROR, "The class '" + inspectedClass.getName()
+              + "' has more than one method annotated with '"
+              + annotation.getSimpleName() + "'. This is not allowed.", null);
+          throw new UnableToCompleteException();
         }
+        result = method;
       }
     }
     return result;
@@ -193,16 +212,14 @@ public class ClassInspector {
    * @return The method, or {@code null} if not found.
    */
   public JMethod findMethod(String methodName, JClassType parameterType) {
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        if (methodName.equals(method.getName())) {
-          JType[] parameterTypes = method.getParameterTypes();
-          if (parameterTypes.length == 1) {
-            JClassType actualParameterType = parameterTypes[0].isClassOrInterface();
-            if (actualParameterType != null &&
-                parameterType.isAssignableFrom(actualParameterType)) {
-              return method;
-            }
+    for (JMethod method : getMethods()) {
+      if (methodName.equals(method.getName())) {
+        JType[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 1) {
+          JClassType actualParameterType = parameterTypes[0].isClassOrInterface();
+          if (actualParameterType != null &&
+              parameterType.isAssignableFrom(actualParameterType)) {
+            return method;
           }
         }
       }
@@ -219,11 +236,9 @@ public class ClassInspector {
    */
   public void collectAnnotatedMethods(Class<? extends Annotation> annotation,
       List<JMethod> collection) {
-    for (JClassType classType : inspectedClass.getFlattenedSupertypeHierarchy()) {
-      for (JMethod method : classType.getMethods()) {
-        if (method.getAnnotation(annotation) != null) {
-          collection.add(method);
-        }
+    for (JMethod method : getMethods()) {
+      if (method.getAnnotation(annotation) != null) {
+        collection.add(method);
       }
     }
   }
@@ -263,4 +278,11 @@ public class ClassInspector {
       }
     }
   }
-}
\ No newline at end of file
+
+  private List<JMethod> getMethods() {
+    if (methods == null) {
+      methods = collectMethods(inspectedClass);
+    }
+    return methods;
+  }
+}
@@ -39,16 +39,18 @@ public class GinjectorInspector {
   private final ClassCollection classCollection;
   private final GeneratorContext generatorContext;
   private final TreeLogger logger;
+  private final InspectionCache inspectionCache;
 
   private String ginjectorClassName;
   private JClassType ginjectorClass;
   private ClassInspector classInspector;
 
   GinjectorInspector(ClassCollection classCollection, GeneratorContext generatorContext,
-      TreeLogger logger) {
+      TreeLogger logger, InspectionCache inspectionCache) {
     this.classCollection = classCollection;
     this.generatorContext = generatorContext;
     this.logger = logger;
+    this.inspectionCache = inspectionCache;
   }
 
   /**
@@ -71,15 +73,22 @@ public class GinjectorInspector {
 
   /**
    * Initializes the ginjector inspector. Finds the ginjector class given the value of the GWT configuration
-   * property {@code gin.ginjector}.
+   * property {@code gin.ginjector}, unless it was already found for another proxy.
    *
    * @throws UnableToCompleteException If the ginjector property or class cannot be found, an error is logged.
    */
   public void init()
       throws UnableToCompleteException {
-    findGinjectorClassName(logger, generatorContext.getPropertyOracle());
-    findGinjectorClass(logger, generatorContext.getTypeOracle());
-    classInspector = new ClassInspector(logger, ginjectorClass);
+    ginjectorClass = inspectionCache.getGinjectorClass();
+    if (ginjectorClass == null) {
+      findGinjectorClassName(logger, generatorContext.getPropertyOracle());
+      findGinjectorClass(logger, generatorContext.getTypeOracle());
+      inspectionCache.setGinjectorClass(ginjectorClassName, ginjectorClass);
+    } else {
+      ginjectorClassName = inspectionCache.getGinjectorClassName();
+    }
+    classInspector = new ClassInspector(logger, ginjectorClass,
+        inspectionCache.getGinjectorMethods());
   }
 
   /**
@@ -92,7 +101,14 @@ public class GinjectorInspector {
    */
   public String findGetMethod(JClassType returnType)
       throws UnableToCompleteException {
-    return methodNameOrNull(classInspector.findMethodWithoutParamsReturning(returnType));
+    String key = "get " + inspectionCache.getTypeKey(returnType);
+    if (inspectionCache.hasGinjectorLookup(key)) {
+      return inspectionCache.getGinjectorLookup(key);
+    }
+    long start = System.nanoTime();
+    String methodName = methodNameOrNull(classInspector.findMethodWithoutParamsReturning(returnType));
+    inspectionCache.putGinjectorLookup(key, methodName, System.nanoTime() - start);
+    return methodName;
   }
 
   /**
@@ -107,8 +123,16 @@ public class GinjectorInspector {
    */
   public String findGetMethod(JGenericType returnType,
       JClassType returnTypeParameter) throws UnableToCompleteException {
-    return methodNameOrNull(classInspector.findMethodWithoutParamsReturning(
+    String key = "get " + returnType.getQualifiedSourceName() + "<"
+        + inspectionCache.getTypeKey(returnTypeParameter) + ">";
+    if (inspectionCache.hasGinjectorLookup(key)) {
+      return inspectionCache.getGinjectorLookup(key);
+    }
+    long start = System.nanoTime();
+    String methodName = methodNameOrNull(classInspector.findMethodWithoutParamsReturning(
         returnType, returnTypeParameter));
+    inspectionCache.putGinjectorLookup(key, methodName, System.nanoTime() - start);
+    return methodName;
   }
 
   /**
@@ -126,8 +150,16 @@ public class GinjectorInspector {
   public String findAnnotatedGetMethod(JClassType returnType,
       Class<? extends Annotation> annotation,
       boolean failIfAnnotationIsFoundOnWrongMethod) throws UnableToCompleteException {
-    return methodNameOrNull(classInspector.findAnnotatedMethodWithoutParamsReturning(
+    String key = "get @" + annotation.getName() + " " + inspectionCache.getTypeKey(returnType)
+        + " " + failIfAnnotationIsFoundOnWrongMethod;
+    if (inspectionCache.hasGinjectorLookup(key)) {
+      return inspectionCache.getGinjectorLookup(key);
+    }
+    long start = System.nanoTime();
+    String methodName = methodNameOrNull(classInspector.findAnnotatedMethodWithoutParamsReturning(
         returnType, annotation, failIfAnnotationIsFoundOnWrongMethod));
+    inspectionCache.putGinjectorLookup(key, methodName, System.nanoTime() - start);
+    return methodName;
   }
 
   private void findGinjectorClassName(TreeLogger logger, PropertyOracle oracle)
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.rebind;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+import com.google.gwt.core.ext.typeinfo.JParameterizedType;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+
+/**
+ * Remembers the results of the inspections made by the {@link ProxyGenerator}, so that they are not
+ * repeated for every proxy:
+ * <ul>
+ * <li>The {@link ClassCollection}, the ginjector class and its methods are looked up once per
+ * {@link TypeOracle}, that is once per compile or dev mode refresh.</li>
+ * <li>The get methods found in the ginjector are remembered for as long as the signature of the
+ * ginjector doesn't change, including across dev mode refreshes. Only their names are kept.</li>
+ * <li>The class generated for a proxy is remembered for the whole compile, so that proxies
+ * requested again, for example by another permutation, are not inspected again.</li>
+ * </ul>
+ * There is one instance per {@link TypeOracle}, see {@link #get(GeneratorContext)}. It is not
+ * thread-safe, GWT runs generators one at a time.
+ */
+class InspectionCache {
+
+  /**
+   * The result of an inspection, with the time it took to compute it.
+   */
+  private static class Inspection {
+    private final String result;
+    private final long nanos;
+
+    Inspection(String result, long nanos) {
+      this.result = result;
+      this.nanos = nanos;
+    }
+  }
+
+  /**
+   * The maximum number of ginjector signatures whose lookups are remembered.
+   */
+  private static final int MAX_GINJECTOR_SIGNATURES = 4;
+
+  private static final Map<String, Map<String, Inspection>> LOOKUPS_BY_SIGNATURE =
+      new LinkedHashMap<String, Map<String, Inspection>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Inspection>> eldest) {
+          return size() > MAX_GINJECTOR_SIGNATURES;
+        }
+      };
+
+  /**
+   * An instance holds types, which hold their {@link TypeOracle}: it is only softly reachable, so
+   * that the {@link TypeOracle} of a finished compile can be collected.
+   */
+  private static final Map<TypeOracle, SoftReference<InspectionCache>> INSTANCES =
+      new WeakHashMap<TypeOracle, SoftReference<InspectionCache>>();
+
+  /**
+   * Access the cache of the {@link TypeOracle} of a {@link GeneratorContext}. The caches of other
+   * {@link TypeOracle}s are dropped, they belong to compiles or dev mode refreshes that are over.
+   *
+   * @param context The {@link GeneratorContext} of the current compile.
+   * @return The {@link InspectionCache}.
+   */
+  static InspectionCache get(GeneratorContext context) {
+    TypeOracle typeOracle = context.getTypeOracle();
+    SoftReference<InspectionCache> reference = INSTANCES.get(typeOracle);
+    InspectionCache instance = reference == null ? null : reference.get();
+    if (instance == null) {
+      INSTANCES.clear();
+      instance = new InspectionCache(typeOracle, LOOKUPS_BY_SIGNATURE);
+      INSTANCES.put(typeOracle, new SoftReference<InspectionCache>(instance));
+    }
+    return instance;
+  }
+
+  private final TypeOracle typeOracle;
+  private final Map<String, Map<String, Inspection>> lookupsBySignature;
+  private ClassCollection classCollection;
+  private final Map<String, Inspection> generatedClassNames = new HashMap<String, Inspection>();
+  private String ginjectorClassName;
+  private JClassType ginjectorClass;
+  private List<JMethod> ginjectorMethods;
+  private Map<String, Inspection> ginjectorLookups;
+
+  private int proxiesGenerated;
+  private int proxiesReused;
+  private int lookupsComputed;
+  private int lookupsReused;
+  private long nanosSaved;
+
+  InspectionCache(TypeOracle typeOracle,
+      Map<String, Map<String, Inspection>> lookupsBySignature) {
+    this.typeOracle = typeOracle;
+    this.lookupsBySignature = lookupsBySignature;
+  }
+
+  /**
+   * Creates a cache that doesn't share its ginjector lookups with other caches.
+   *
+   * @param typeOracle The {@link TypeOracle} of the compile.
+   */
+  InspectionCache(TypeOracle typeOracle) {
+    this(typeOracle, new HashMap<String, Map<String, Inspection>>());
+  }
+
+  /**
+   * Access the {@link ClassCollection} of the current compile.
+   *
+   * @return The {@link ClassCollection}.
+   */
+  ClassCollection getClassCollection() {
+    if (classCollection == null) {
+      classCollection = new ClassCollection(typeOracle);
+    }
+    return classCollection;
+  }
+
+  /**
+   * Checks if the class generated for a proxy is known.
+   *
+   * @param requestedClass The name of the proxy interface.
+   * @return {@code true} if {@link #getGeneratedClassName(String)} can be called.
+   */
+  boolean hasGeneratedClassName(String requestedClass) {
+    return generatedClassNames.containsKey(requestedClass);
+  }
+
+  /**
+   * Access the class generated for a proxy, counting it as a reused inspection.
+   *
+   * @param requestedClass The name of the proxy interface.
+   * @return The name of the generated class, {@code null} if no class was generated.
+   */
+  String getGeneratedClassName(String requestedClass) {
+    Inspection inspection = generatedClassNames.get(requestedClass);
+    proxiesReused++;
+    nanosSaved += inspection.nanos;
+    return inspection.result;
+  }
+
+  /**
+   * Remembers the class generated for a proxy.
+   *
+   * @param requestedClass The name of the proxy interface.
+   * @param generatedClassName The name of the generated class, {@code null} if no class was
+   *          generated.
+   * @param nanos The time spent inspecting the proxy, in nanoseconds.
+   */
+  void putGeneratedClassName(String requestedClass, String generatedClassName, long nanos) {
+    proxiesGenerated++;
+    generatedClassNames.put(requestedClass, new Inspection(generatedClassName, nanos));
+  }
+
+  /**
+   * Access the name of the ginjector class, as specified in the GWT configuration.
+   *
+   * @return The ginjector class name, or {@code null} if it wasn't looked up yet.
+   */
+  String getGinjectorClassName() {
+    return ginjectorClassName;
+  }
+
+  /**
+   * Access the ginjector class found for the current {@link GeneratorContext}.
+   *
+   * @return The ginjector class, or {@code null} if it wasn't looked up yet.
+   */
+  JClassType getGinjectorClass() {
+    return ginjectorClass;
+  }
+
+  /**
+   * Access the methods of the ginjector, see {@link ClassInspector#collectMethods(JClassType)}.
+   *
+   * @return The methods of the ginjector.
+   */
+  List<JMethod> getGinjectorMethods() {
+    return ginjectorMethods;
+  }
+
+  /**
+   * Remembers the ginjector class found for the current {@link GeneratorContext}, and finds the results of
+   * the lookups made in a ginjector having the same signature.
+   *
+   * @param ginjectorClassName The ginjector class name.
+   * @param ginjectorClass The ginjector class.
+   */
+  void setGinjectorClass(String ginjectorClassName, JClassType ginjectorClass) {
+    this.ginjectorClassName = ginjectorClassName;
+    this.ginjectorClass = ginjectorClass;
+    ginjectorMethods = ClassInspector.collectMethods(ginjectorClass);
+    String signature = computeSignature(ginjectorClass, ginjectorMethods);
+    ginjectorLookups = lookupsBySignature.get(signature);
+    if (ginjectorLookups == null) {
+      ginjectorLookups = new HashMap<String, Inspection>();
+      lookupsBySignature.put(signature, ginjectorLookups);
+    }
+  }
+
+  /**
+   * Checks if the result of a lookup in the ginjector is known.
+   *
+   * @param key The key identifying the lookup, see {@link #getTypeKey(JClassType)}.
+   * @return {@code true} if {@link #getGinjectorLookup(String)} can be called.
+   */
+  boolean hasGinjectorLookup(String key) {
+    return ginjectorLookups.containsKey(key);
+  }
+
+  /**
+   * Access the result of a lookup in the ginjector, counting it as a reused inspection.
+   *
+   * @param key The key identifying the lookup.
+   * @return The name of the method found, or {@code null} if none was found.
+   */
+  String getGinjectorLookup(String key) {
+    Inspection inspection = ginjectorLookups.get(key);
+    lookupsReused++;
+    nanosSaved += inspection.nanos;
+    return inspection.result;
+  }
+
+  /**
+   * Remembers the result of a lookup in the ginjector.
+   *
+   * @param key The key identifying the lookup.
+   * @param methodName The name of the method found, or {@code null} if none was found.
+   * @param nanos The time spent looking up the method, in nanoseconds.
+   */
+  void putGinjectorLookup(String key, String methodName, long nanos) {
+    lookupsComputed++;
+    ginjectorLookups.put(key, new Inspection(methodName, nanos));
+  }
+
+  /**
+   * Builds the part of a lookup key identifying a type. Since a lookup depends on the types the
+   * type is assignable to, these are part of the key.
+   *
+   * @param type The type.
+   * @return The key.
+   */
+  String getTypeKey(JClassType type) {
+    StringBuilder key = new StringBuilder(type.getQualifiedSourceName());
+    for (JClassType superType : type.getFlattenedSupertypeHierarchy()) {
+      key.append(',').append(superType.getQualifiedSourceName());
+    }
+    return key.toString();
+  }
+
+  /**
+   * Access the time the reused inspections took when they were computed, that is the time saved so
+   * far in the current compile.
+   *
+   * @return The time saved, in nanoseconds.
+   */
+  long getNanosSaved() {
+    return nanosSaved;
+  }
+
+  /**
+   * Logs what was reused so far in the current compile, and the time it saved.
+   *
+   * @param logger The {@link TreeLogger}.
+   */
+  void logStatistics(TreeLogger logger) {
+    if (logger.isLoggable(TreeLogger.DEBUG)) {
+      logger.log(TreeLogger.DEBUG, "Proxy inspections so far: " + proxiesGenerated
+          + " proxies inspected, " + proxiesReused + " reused; " + lookupsComputed
+          + " ginjector lookups computed, " + lookupsReused + " reused; "
+          + (nanosSaved / 1000000) + " ms of inspection saved.", null);
+    }
+  }
+
+  private String computeSignature(JClassType ginjectorClass, List<JMethod> methods) {
+    StringBuilder signature = new StringBuilder(getTypeKey(ginjectorClass));
+    for (JMethod method : methods) {
+      signature.append('\n').append(method.getReadableDeclaration());
+      for (Annotation annotation : method.getAnnotations()) {
+        signature.append(' ').append(annotation);
+      }
+      // Lookups also depend on the hierarchy of the returned types.
+      JClassType returnType = method.getReturnType().isClassOrInterface();
+      if (returnType != null) {
+        signature.append(' ').append(getTypeKey(returnType));
+      }
+      JParameterizedType parameterizedType = method.getReturnType().isParameterized();
+      if (parameterizedType != null) {
+        for (JClassType typeArg : parameterizedType.getTypeArgs()) {
+          signature.append(' ').append(getTypeKey(typeArg));
+        }
+      }
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(
+          signature.toString().getBytes("UTF-8"));
+      StringBuilder hash = new StringBuilder(ginjectorClass.getQualifiedSourceName()).append('@');
+      for (byte b : digest) {
+        hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+      }
+      return hash.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return signature.toString();
+    } catch (UnsupportedEncodingException e) {
+      return signature.toString();
+    }
+  }
+}
@@ -45,8 +45,14 @@ public class ProxyGenerator extends Generator {
 
     // Initialize dependencies
     TypeOracle oracle = ctx.getTypeOracle();
-    classCollection = new ClassCollection(oracle);
-    ginjectorInspector = new GinjectorInspector(classCollection, ctx, logger);
+    InspectionCache inspectionCache = InspectionCache.get(ctx);
+    if (inspectionCache.hasGeneratedClassName(requestedClass)) {
+      // Already inspected and generated during this compile
+      return inspectionCache.getGeneratedClassName(requestedClass);
+    }
+    long start = System.nanoTime();
+    classCollection = inspectionCache.getClassCollection();
+    ginjectorInspector = new GinjectorInspector(classCollection, ctx, logger, inspectionCache);
     presenterInspector = new PresenterInspector(oracle, logger, classCollection,
         ginjectorInspector);
     proxyOutputterFactory = new ProxyOutputterFactory(oracle, logger, classCollection,
@@ -64,11 +70,13 @@ public class ProxyGenerator extends Generator {
 
     // If it's not an interface it's a custom user-made proxy class. Don't use generator.
     if (proxyInterface.isInterface() == null) {
+      inspectionCache.putGeneratedClassName(requestedClass, null, System.nanoTime() - start);
       return null;
     }
 
     ginjectorInspector.init();
     if (!presenterInspector.init(proxyInterface)) {
+      inspectionCache.putGeneratedClassName(requestedClass, null, System.nanoTime() - start);
       return null;
     }
 
@@ -79,10 +87,14 @@ public class ProxyGenerator extends Generator {
         + proxyInterface.getSimpleSourceName() + "Impl";
     String generatedClassName = packageName + "." + implClassName;
 
+    // Writing the class is not part of the inspection, it is never repeated
+    long inspectionNanos = System.nanoTime() - start;
+
     // Create the printWriter
     PrintWriter printWriter = ctx.tryCreate(logger, packageName, implClassName);
     if (printWriter == null) {
       // We've already created it, so nothing to do
+      inspectionCache.putGeneratedClassName(requestedClass, generatedClassName, inspectionNanos);
       return generatedClassName;
     }
 
@@ -102,6 +114,8 @@ public class ProxyGenerator extends Generator {
     proxyOutputter.writeMethods(writer);
 
     writer.commit(logger);
+    inspectionCache.putGeneratedClassName(requestedClass, generatedClassName, inspectionNanos);
+    inspectionCache.logStatistics(logger);
 
     return generatedClassName;
   }
@@ -178,6 +178,7 @@ public abstract class ProxyOutputterBase implements ProxyOutputter {
     writer.println("public void delayedBind(Ginjector baseGinjector) {");
     writer.indent();
     writeGinjectorAssignation(writer, ginjectorInspector.getGinjectorClassName());
+    writeSubclassPreBind(writer);
     writer.println("bind(ginjector.getPlaceManager(),");
     writer.println("    ginjector.getEventBus());");
     writeSubclassDelayedBind(writer);
@@ -189,6 +190,14 @@ public abstract class ProxyOutputterBase implements ProxyOutputter {
     writeSubclassMethods(writer);
   }
 
+  /**
+   * Writes the part of {@code delayedBind} that must run before {@code bind} is called. Does nothing by default.
+   *
+   * @param writer The {@link SourceWriter}.
+   */
+  void writeSubclassPreBind(SourceWriter writer) {
+  }
+
   abstract void writeSubclassDelayedBind(SourceWriter writer);
 
   abstract void writeSubclassMethods(SourceWriter writer);
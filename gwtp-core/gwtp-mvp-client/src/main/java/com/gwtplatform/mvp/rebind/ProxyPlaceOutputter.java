@@ -16,6 +16,7 @@
 
 package com.gwtplatform.mvp.rebind;
 
+import com.google.gwt.core.ext.Generator;
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.core.ext.typeinfo.JClassType;
@@ -26,6 +27,7 @@ import com.google.gwt.user.rebind.SourceWriter;
 import com.gwtplatform.mvp.client.annotations.DefaultGatekeeper;
 import com.gwtplatform.mvp.client.annotations.NameToken;
 import com.gwtplatform.mvp.client.annotations.NoGatekeeper;
+import com.gwtplatform.mvp.client.annotations.PrefetchPlaces;
 import com.gwtplatform.mvp.client.annotations.Title;
 import com.gwtplatform.mvp.client.annotations.TitleFunction;
 import com.gwtplatform.mvp.client.annotations.UseGatekeeper;
@@ -46,6 +48,8 @@ public class ProxyPlaceOutputter extends ProxyOutputterBase {
   private String title;
   private PresenterTitleMethod presenterTitleMethod;
 
+  private String[] prefetchNameTokens;
+
   public ProxyPlaceOutputter(TypeOracle oracle,
       TreeLogger logger,
       ClassCollection classCollection,
@@ -95,6 +99,7 @@ public class ProxyPlaceOutputter extends ProxyOutputterBase {
     findNameToken(proxyInterface);
     findGatekeeperMethod(proxyInterface);
     findTitle(proxyInterface);
+    findPrefetchNameTokens(proxyInterface);
   }
 
   @Override
@@ -173,6 +178,13 @@ public class ProxyPlaceOutputter extends ProxyOutputterBase {
     }
   }
 
+  private void findPrefetchNameTokens(JClassType proxyInterface) {
+    PrefetchPlaces prefetchAnnotation = proxyInterface.getAnnotation(PrefetchPlaces.class);
+    if (prefetchAnnotation != null) {
+      prefetchNameTokens = prefetchAnnotation.value();
+    }
+  }
+
   private String getPlaceInstantiationString() {
     if (getGatekeeperMethod == null) {
       return "new " + ClassCollection.placeImplClassName + "( nameToken );";
@@ -206,18 +218,64 @@ public class ProxyPlaceOutputter extends ProxyOutputterBase {
     writer.println("}");
   }
 
+  /**
+   * Writes the method {@code protected String[] getPrefetchNameTokens()} if
+   * the proxy is annotated with {@link PrefetchPlaces}.
+   *
+   * @param writer The {@link SourceWriter}.
+   */
+  private void writeGetPrefetchNameTokensMethod(SourceWriter writer) {
+    if (prefetchNameTokens == null) {
+      return;
+    }
+    writer.println();
+    writer.println("protected String[] getPrefetchNameTokens() {");
+    writer.indent();
+    writer.print("return new String[] {");
+    for (int i = 0; i < prefetchNameTokens.length; i++) {
+      writer.print((i == 0 ? " \"" : ", \"") + Generator.escape(prefetchNameTokens[i]) + "\"");
+    }
+    writer.println(" };");
+    writer.outdent();
+    writer.println("}");
+  }
+
+  @Override
+  void writeSubclassPreBind(SourceWriter writer) {
+    // The place must be known when binding, so that the proxy can register for its name token.
+    writer.println("String nameToken = \"" + getNameToken() + "\"; ");
+    writer.println("place = " + getPlaceInstantiationString());
+  }
+
   @Override
   void writeSubclassDelayedBind(SourceWriter writer) {
     writer.println(WRAPPED_CLASS_NAME + " wrappedProxy = GWT.create(" + WRAPPED_CLASS_NAME
         + ".class);");
     writer.println("wrappedProxy.delayedBind( ginjector ); ");
     writer.println("proxy = wrappedProxy; ");
-    writer.println("String nameToken = \"" + getNameToken() + "\"; ");
-    writer.println("place = " + getPlaceInstantiationString());
+  }
+
+  /**
+   * Writes the method {@code protected boolean isIndexedByNameToken()}. The
+   * generated place is always a {@code PlaceImpl} and the generated proxy
+   * doesn't override {@code matchesRequest}, so it only matches its own name
+   * token.
+   *
+   * @param writer The {@link SourceWriter}.
+   */
+  private void writeIsIndexedByNameTokenMethod(SourceWriter writer) {
+    writer.println();
+    writer.println("protected boolean isIndexedByNameToken() {");
+    writer.indent();
+    writer.println("return true;");
+    writer.outdent();
+    writer.println("}");
   }
 
   @Override
   void writeSubclassMethods(SourceWriter writer) {
     writeGetPlaceTitleMethod(writer);
+    writeGetPrefetchNameTokensMethod(writer);
+    writeIsIndexedByNameTokenMethod(writer);
   }
 }
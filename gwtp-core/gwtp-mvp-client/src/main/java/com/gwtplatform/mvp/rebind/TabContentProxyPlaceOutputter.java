@@ -81,6 +81,11 @@ public class TabContentProxyPlaceOutputter extends ProxyOutputterBase {
     return ClassCollection.tabContentProxyPlaceImplClassName;
   }
 
+  @Override
+  void writeSubclassPreBind(SourceWriter writer) {
+    proxyPlaceOutputter.writeSubclassPreBind(writer);
+  }
+
   @Override
   void writeSubclassDelayedBind(SourceWriter writer) {
     proxyPlaceOutputter.writeSubclassDelayedBind(writer);
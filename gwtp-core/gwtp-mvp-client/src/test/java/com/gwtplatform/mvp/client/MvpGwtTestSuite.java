@@ -21,6 +21,7 @@ import junit.framework.TestCase;
 
 import com.google.gwt.junit.tools.GWTTestSuite;
 import com.gwtplatform.mvp.client.gwt.mvp.MvpGwtTestInSuite;
+import com.gwtplatform.mvp.client.proxy.ParameterTokenFormatterFuzzGwtTestInSuite;
 import com.gwtplatform.mvp.client.proxy.ParameterTokenFormatterGwtTestInSuite;
 
 /**
@@ -33,6 +34,7 @@ public class MvpGwtTestSuite extends TestCase {
   public static Test suite() {
     GWTTestSuite suite = new GWTTestSuite("All the GWT test cases of gwtp-mvp-client.");
     suite.addTestSuite(ParameterTokenFormatterGwtTestInSuite.class);
+    suite.addTestSuite(ParameterTokenFormatterFuzzGwtTestInSuite.class);
     suite.addTestSuite(MvpGwtTestInSuite.class);
     return suite;
   }
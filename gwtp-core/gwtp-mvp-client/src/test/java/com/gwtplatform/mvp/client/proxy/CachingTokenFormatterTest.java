@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachingTokenFormatter}.
+ */
+public class CachingTokenFormatterTest {
+
+  private TokenFormatter delegate;
+  private CachingTokenFormatter tokenFormatter;
+
+  @Before
+  public void setUp() {
+    delegate = mock(TokenFormatter.class);
+    tokenFormatter = new CachingTokenFormatter(delegate, 2);
+  }
+
+  @Test
+  public void shouldParseEachHistoryTokenOnce() {
+    // Given
+    List<PlaceRequest> hierarchy = Arrays.asList(new PlaceRequest("a"), new PlaceRequest("b"));
+    when(delegate.toPlaceRequestHierarchy("a/b")).thenReturn(hierarchy);
+
+    // When
+    List<PlaceRequest> first = tokenFormatter.toPlaceRequestHierarchy("a/b");
+    first.add(new PlaceRequest("c"));
+    List<PlaceRequest> second = tokenFormatter.toPlaceRequestHierarchy("a/b");
+
+    // Then
+    verify(delegate).toPlaceRequestHierarchy("a/b");
+    assertEquals(hierarchy, second);
+    assertEquals(1, tokenFormatter.getHitCount());
+    assertEquals(1, tokenFormatter.getMissCount());
+  }
+
+  @Test
+  public void shouldFormatEachHierarchyOnce() {
+    // Given
+    List<PlaceRequest> hierarchy = new ArrayList<PlaceRequest>();
+    hierarchy.add(new PlaceRequest("a").with("key", "value"));
+    when(delegate.toHistoryToken(hierarchy)).thenReturn("a;key=value");
+
+    // When
+    String first = tokenFormatter.toHistoryToken(hierarchy);
+    String second = tokenFormatter.toHistoryToken(
+        Arrays.asList(new PlaceRequest("a").with("key", "value")));
+    hierarchy.add(new PlaceRequest("b"));
+    tokenFormatter.toHistoryToken(hierarchy);
+
+    // Then
+    assertEquals("a;key=value", first);
+    assertEquals("a;key=value", second);
+    verify(delegate, times(2)).toHistoryToken(hierarchy);
+    assertEquals(1, tokenFormatter.getHitCount());
+    assertEquals(2, tokenFormatter.getMissCount());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedToken() {
+    // Given
+    when(delegate.toPlaceRequestHierarchy("a")).thenReturn(Arrays.asList(new PlaceRequest("a")));
+    when(delegate.toPlaceRequestHierarchy("b")).thenReturn(Arrays.asList(new PlaceRequest("b")));
+    when(delegate.toPlaceRequestHierarchy("c")).thenReturn(Arrays.asList(new PlaceRequest("c")));
+
+    // When
+    tokenFormatter.toPlaceRequestHierarchy("a");
+    tokenFormatter.toPlaceRequestHierarchy("b");
+    tokenFormatter.toPlaceRequestHierarchy("a");
+    tokenFormatter.toPlaceRequestHierarchy("c");
+    tokenFormatter.toPlaceRequestHierarchy("a");
+    tokenFormatter.toPlaceRequestHierarchy("b");
+
+    // Then
+    verify(delegate).toPlaceRequestHierarchy("a");
+    verify(delegate, times(2)).toPlaceRequestHierarchy("b");
+    assertEquals(2, tokenFormatter.getHitCount());
+    assertEquals(4, tokenFormatter.getMissCount());
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * Differential tests checking that {@link ParameterTokenFormatter} parses and writes the same
+ * tokens as {@link LegacyParameterTokenFormatter}, including the errors, on pseudo-random input.
+ */
+public class ParameterTokenFormatterFuzzGwtTestInSuite extends GWTTestCase {
+
+  private static final int ITERATIONS = 500;
+
+  /**
+   * Pieces of history tokens: separators, escapes, URL-encoded characters, valid or not.
+   */
+  private static final String[] TOKEN_PIECES = {
+    "a", "b", "key", "value", "/", ";", "=", "\\", "\\0", "\\1", "\\2", "\\3", "\\9", "+", " ",
+    "%2F", "%3B", "%3D", "%5C", "%5C0", "%20", "%2b", "%C3%A9", "%E2%82%AC", "%F0%9F%98%80",
+    "é", "%", "%4", "%ZZ", "%C3", "%FF", "%C0%80", "%ED%A0%80"
+  };
+
+  /**
+   * Pieces of history tokens for the custom separators {@code @}, {@code &} and {@code :}. The
+   * legacy formatter splits on separators as regular expressions, so they must not be special
+   * characters.
+   */
+  private static final String[] CUSTOM_TOKEN_PIECES = {
+    "a", "key", "value", "@", "&", ":", "/", ";", "=", "\\", "\\0", "\\1", "\\2", "\\3",
+    "%40", "%26", "%3A", "%5C", "%20", "é", "%", "%ZZ"
+  };
+
+  /**
+   * Pieces of place request name tokens, parameter names and values.
+   */
+  private static final String[] VALUE_PIECES = {
+    "a", "Z", "9", "-_.!~*'()", "/", ";", "=", "\\", "%", "+", " ", "&", "?", "#", "@", ":",
+    "é", "€", "😀"
+  };
+
+  private ParameterTokenFormatter tokenFormatter;
+  private LegacyParameterTokenFormatter legacyTokenFormatter;
+  private int seed;
+
+  @Override
+  public String getModuleName() {
+    return "com.gwtplatform.mvp.MvpTest";
+  }
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    tokenFormatter = new ParameterTokenFormatter();
+    legacyTokenFormatter = new LegacyParameterTokenFormatter();
+    seed = 0x2545F491;
+  }
+
+  public void testToPlaceRequestHierarchyMatchesLegacy() {
+    assertToPlaceRequestHierarchyMatches(tokenFormatter, legacyTokenFormatter, TOKEN_PIECES);
+  }
+
+  public void testToPlaceRequestMatchesLegacy() {
+    assertToPlaceRequestMatches(tokenFormatter, legacyTokenFormatter, TOKEN_PIECES);
+  }
+
+  public void testToHistoryTokenMatchesLegacy() {
+    assertToHistoryTokenMatches(tokenFormatter, legacyTokenFormatter);
+  }
+
+  public void testCustomSeparatorsMatchLegacy() {
+    ParameterTokenFormatter customTokenFormatter = new ParameterTokenFormatter("@", "&", ":");
+    LegacyParameterTokenFormatter customLegacyTokenFormatter =
+        new LegacyParameterTokenFormatter("@", "&", ":");
+
+    assertToPlaceRequestHierarchyMatches(customTokenFormatter, customLegacyTokenFormatter,
+        CUSTOM_TOKEN_PIECES);
+    assertToPlaceRequestMatches(customTokenFormatter, customLegacyTokenFormatter,
+        CUSTOM_TOKEN_PIECES);
+    assertToHistoryTokenMatches(customTokenFormatter, customLegacyTokenFormatter);
+  }
+
+  private void assertToPlaceRequestHierarchyMatches(TokenFormatter formatter,
+      TokenFormatter legacyFormatter, String[] tokenPieces) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      String historyToken = randomString(tokenPieces, 12);
+      assertEquals(historyToken, parseHierarchy(legacyFormatter, historyToken),
+          parseHierarchy(formatter, historyToken));
+    }
+  }
+
+  private void assertToPlaceRequestMatches(TokenFormatter formatter,
+      TokenFormatter legacyFormatter, String[] tokenPieces) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      String placeToken = randomString(tokenPieces, 8);
+      assertEquals(placeToken, parse(legacyFormatter, placeToken),
+          parse(formatter, placeToken));
+    }
+  }
+
+  private void assertToHistoryTokenMatches(TokenFormatter formatter,
+      TokenFormatter legacyFormatter) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      List<PlaceRequest> hierarchy = new ArrayList<PlaceRequest>();
+      int size = 1 + nextInt(3);
+      for (int j = 0; j < size; j++) {
+        hierarchy.add(randomPlaceRequest());
+      }
+
+      String historyToken = legacyFormatter.toHistoryToken(hierarchy);
+      assertEquals(historyToken, formatter.toHistoryToken(hierarchy));
+      assertEquals(legacyFormatter.toPlaceToken(hierarchy.get(0)),
+          formatter.toPlaceToken(hierarchy.get(0)));
+      assertEquals(historyToken, parseHierarchy(legacyFormatter, historyToken),
+          parseHierarchy(formatter, historyToken));
+    }
+  }
+
+  private PlaceRequest randomPlaceRequest() {
+    PlaceRequest.Builder builder = new PlaceRequest.Builder().nameToken(
+        randomString(VALUE_PIECES, 4) + "n");
+    int params = nextInt(4);
+    for (int i = 0; i < params; i++) {
+      builder.with(randomString(VALUE_PIECES, 4), randomString(VALUE_PIECES, 4));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return The parsed hierarchy, or a description of the error.
+   */
+  private Object parseHierarchy(TokenFormatter formatter, String historyToken) {
+    try {
+      return formatter.toPlaceRequestHierarchy(historyToken);
+    } catch (Exception e) {
+      return e.getClass().getName() + ": " + e.getMessage();
+    }
+  }
+
+  /**
+   * @return The parsed request, or a description of the error.
+   */
+  private Object parse(TokenFormatter formatter, String placeToken) {
+    try {
+      return formatter.toPlaceRequest(placeToken);
+    } catch (Exception e) {
+      return e.getClass().getName() + ": " + e.getMessage();
+    }
+  }
+
+  private String randomString(String[] pieces, int maxPieces) {
+    StringBuilder out = new StringBuilder();
+    int count = nextInt(maxPieces + 1);
+    for (int i = 0; i < count; i++) {
+      out.append(pieces[nextInt(pieces.length)]);
+    }
+    return out.toString();
+  }
+
+  /**
+   * A xorshift generator, so that failures can be reproduced.
+   */
+  private int nextInt(int bound) {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    return (seed >>> 1) % bound;
+  }
+}
@@ -28,6 +28,9 @@ import com.gwtplatform.mvp.client.View;
 import com.gwtplatform.tester.DeferredCommandManager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -42,6 +45,8 @@ import org.jukito.TestSingleton;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 /**
  * Unit tests for {@link PlaceManagerImpl}.
@@ -64,6 +69,7 @@ public class PlaceManagerImplTest {
       bind(DummyPresenterRedirectNoHistory.class);
       bind(DummyProxyBasic.class);
       bind(DummyProxyPlaceBasic.class);
+      bind(DummyProxyPlaceLegacy.class);
       bind(DummyProxyRedirect.class);
       bind(DummyProxyPlaceRedirect.class);
       bind(DummyProxyRedirectNoHistory.class);
@@ -116,6 +122,37 @@ public class PlaceManagerImplTest {
         DeferredCommandManager deferredCommandManager) {
         super(new PlaceImpl("dummyNameTokenBasic"), proxy, deferredCommandManager);
     }
+
+    @Override
+    protected boolean isIndexedByNameToken() {
+      return true;
+    }
+  }
+
+  /**
+   * This place also matches an older name token, so it must not be indexed by its own name token.
+   */
+  @TestEagerSingleton
+  static class DummyProxyPlaceLegacy extends ProxyPlaceBase<DummyPresenterBasic> {
+    @Inject
+    public DummyProxyPlaceLegacy(DummyProxyBasic proxy,
+        DeferredCommandManager deferredCommandManager) {
+        super(new PlaceImpl("dummyNameTokenNew"), proxy, deferredCommandManager);
+    }
+
+    @Override
+    public boolean matchesRequest(PlaceRequest request) {
+      return super.matchesRequest(request) || "dummyNameTokenLegacy".equals(request.getNameToken());
+    }
+  }
+
+  static class PlaceRequestSpy implements PlaceRequestInternalHandler {
+    final List<Object> sources = new ArrayList<Object>();
+
+    @Override
+    public void onPlaceRequest(PlaceRequestInternalEvent event) {
+      sources.add(event.getSource());
+    }
   }
 
   /**
@@ -265,6 +302,55 @@ public class PlaceManagerImplTest {
     assertEquals("dummyValue", placeRequest.getParameter("dummyParam", null));
   }
 
+  @Test
+  public void placeManagerRevealPlaceIndexedByNameTokenWithoutAskingOtherPlaces(
+      DummyPresenterBasic presenter) {
+    // Given
+    PlaceRequestSpy spy = new PlaceRequestSpy();
+    eventBus.addHandler(PlaceRequestInternalEvent.getType(), spy);
+
+    // When
+    placeManager.revealPlace(new PlaceRequest("dummyNameTokenBasic"));
+    deferredCommandManager.pump();
+
+    // Then
+    verify(presenter).forceReveal();
+    assertTrue(spy.sources.isEmpty());
+  }
+
+  @Test
+  public void placeManagerRevealPlaceNotIndexedByNameTokenRegistersNoType(
+      DummyPresenterBasic presenter) {
+    // When
+    placeManager.revealPlace(new PlaceRequest("dummyNameTokenLegacy"));
+    deferredCommandManager.pump();
+    placeManager.getTitle(0, mock(SetPlaceTitleHandler.class));
+
+    // Then
+    verify(presenter).forceReveal();
+    assertNull(PlaceRequestInternalEvent.findType("dummyNameTokenLegacy"));
+    assertNull(GetPlaceTitleEvent.findType("dummyNameTokenLegacy"));
+    assertNotNull(PlaceRequestInternalEvent.findType("dummyNameTokenBasic"));
+  }
+
+  @Test
+  public void placeManagerRevealPlaceWithCustomMatching(
+      DummyPresenterBasic presenter) {
+    // Given
+    PlaceRequestSpy spy = new PlaceRequestSpy();
+    eventBus.addHandler(PlaceRequestInternalEvent.getType(), spy);
+
+    // When
+    placeManager.revealPlace(new PlaceRequest("dummyNameTokenLegacy"));
+    deferredCommandManager.pump();
+
+    // Then
+    assertEquals("dummyNameTokenLegacy", placeManager.getCurrentPlaceRequest().getNameToken());
+    verify(presenter).prepareFromRequest(placeManager.getCurrentPlaceRequest());
+    verify(presenter).forceReveal();
+    assertEquals(Arrays.<Object>asList(placeManager), spy.sources);
+  }
+
   /**
    * DummyPresenterRedirectNoHistory makes a call to revealPlace in prepareFromRequest. This call
    * is deferred but useBrowserUrl must be preserved and the history token must be set only once.
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.web.bindery.event.shared.EventBus;
+import com.google.web.bindery.event.shared.SimpleEventBus;
+import com.gwtplatform.mvp.client.Presenter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link PlacePrefetcher}.
+ */
+public class PlacePrefetcherTest {
+
+  /**
+   * A place whose proxy is a mock.
+   */
+  private static class TestPlace
+      extends ProxyPlaceAbstract<Presenter<?, ?>, ProxyImpl<Presenter<?, ?>>> {
+    private final String[] prefetchNameTokens;
+
+    @SuppressWarnings("unchecked")
+    TestPlace(EventBus eventBus, String nameToken, String... prefetchNameTokens) {
+      this.prefetchNameTokens = prefetchNameTokens;
+      place = new PlaceImpl(nameToken);
+      proxy = mock(ProxyImpl.class);
+      bind(mock(PlaceManager.class), eventBus);
+    }
+
+    @Override
+    protected String[] getPrefetchNameTokens() {
+      return prefetchNameTokens;
+    }
+  }
+
+  /**
+   * A prefetcher keeping its navigation history in a map.
+   */
+  private static class TestPlacePrefetcher extends PlacePrefetcher {
+    private final Map<String, String> items;
+
+    TestPlacePrefetcher(EventBus eventBus, Scheduler scheduler, Map<String, String> items) {
+      super(eventBus, scheduler);
+      this.items = items;
+    }
+
+    @Override
+    String loadItem(String key) {
+      return items.get(key);
+    }
+
+    @Override
+    void storeItem(String key, String item) {
+      items.put(key, item);
+    }
+  }
+
+  private EventBus eventBus;
+  private Scheduler scheduler;
+  private Map<String, String> items;
+
+  @Before
+  public void setUp() {
+    eventBus = new SimpleEventBus();
+    scheduler = mock(Scheduler.class);
+    items = new HashMap<String, String>();
+  }
+
+  @Test
+  public void shouldPrefetchDeclaredPlacesOneAtATime() {
+    // Given
+    new TestPlacePrefetcher(eventBus, scheduler, items);
+    new TestPlace(eventBus, "a", "b", "c");
+    TestPlace b = new TestPlace(eventBus, "b");
+    TestPlace c = new TestPlace(eventBus, "c");
+
+    // When
+    eventBus.fireEvent(new NavigationEvent(new PlaceRequest("a")));
+    RepeatingCommand command = captureScheduledCommand();
+    assertTrue(command.execute());
+    assertTrue(command.execute());
+
+    // Then
+    ArgumentCaptor<AsyncCallback> callback = ArgumentCaptor.forClass(AsyncCallback.class);
+    verify(b.proxy).prefetch(callback.capture());
+    verify(c.proxy, never()).prefetch(any(AsyncCallback.class));
+
+    callback.getValue().onSuccess(null);
+    assertTrue(command.execute());
+    verify(c.proxy).prefetch(any(AsyncCallback.class));
+    assertFalse(command.execute());
+  }
+
+  @Test
+  public void shouldWaitForNavigationAndCodeLoads() {
+    // Given
+    PlacePrefetcher prefetcher = new TestPlacePrefetcher(eventBus, scheduler, items);
+    TestPlace b = new TestPlace(eventBus, "b");
+
+    // When
+    prefetcher.prefetch("b");
+    RepeatingCommand command = captureScheduledCommand();
+    eventBus.fireEvent(new LockInteractionEvent(true));
+    command.execute();
+    eventBus.fireEvent(new LockInteractionEvent(false));
+    eventBus.fireEvent(new AsyncCallStartEvent());
+    command.execute();
+
+    // Then
+    verify(b.proxy, never()).prefetch(any(AsyncCallback.class));
+    eventBus.fireEvent(new AsyncCallSucceedEvent());
+    command.execute();
+    verify(b.proxy).prefetch(any(AsyncCallback.class));
+  }
+
+  @Test
+  public void shouldWaitForAllOverlappingCodeLoads() {
+    // Given
+    PlacePrefetcher prefetcher = new TestPlacePrefetcher(eventBus, scheduler, items);
+    TestPlace b = new TestPlace(eventBus, "b");
+
+    // When
+    prefetcher.prefetch("b");
+    RepeatingCommand command = captureScheduledCommand();
+    eventBus.fireEvent(new AsyncCallStartEvent());
+    eventBus.fireEvent(new AsyncCallStartEvent());
+    eventBus.fireEvent(new AsyncCallSucceedEvent());
+    command.execute();
+
+    // Then
+    verify(b.proxy, never()).prefetch(any(AsyncCallback.class));
+    eventBus.fireEvent(new AsyncCallFailEvent(new RuntimeException()));
+    command.execute();
+    verify(b.proxy).prefetch(any(AsyncCallback.class));
+  }
+
+  @Test
+  public void shouldPrefetchPlacesVisitedNextInPreviousVisits() {
+    // Given
+    PlacePrefetcher previousVisit = new TestPlacePrefetcher(eventBus, scheduler, items);
+    previousVisit.onNavigation(new NavigationEvent(new PlaceRequest("a")));
+    previousVisit.onNavigation(new NavigationEvent(new PlaceRequest("b")));
+
+    EventBus newEventBus = new SimpleEventBus();
+    Scheduler newScheduler = mock(Scheduler.class);
+    new TestPlacePrefetcher(newEventBus, newScheduler, items);
+    new TestPlace(newEventBus, "a");
+    TestPlace b = new TestPlace(newEventBus, "b");
+
+    // When
+    newEventBus.fireEvent(new NavigationEvent(new PlaceRequest("a")));
+    ArgumentCaptor<RepeatingCommand> command = ArgumentCaptor.forClass(RepeatingCommand.class);
+    verify(newScheduler).scheduleFixedDelay(command.capture(), anyInt());
+    command.getValue().execute();
+
+    // Then
+    verify(b.proxy).prefetch(any(AsyncCallback.class));
+  }
+
+  private RepeatingCommand captureScheduledCommand() {
+    ArgumentCaptor<RepeatingCommand> command = ArgumentCaptor.forClass(RepeatingCommand.class);
+    verify(scheduler).scheduleFixedDelay(command.capture(), anyInt());
+    return command.getValue();
+  }
+}
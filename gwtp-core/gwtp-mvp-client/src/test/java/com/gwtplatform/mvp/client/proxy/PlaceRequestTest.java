@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PlaceRequest}.
+ */
+public class PlaceRequestTest {
+
+  @Test
+  public void builtRequestShouldEqualRequestBuiltWithWith() {
+    // When
+    PlaceRequest built = new PlaceRequest.Builder().nameToken("token")
+        .with("a", "1").with("b", "2").build();
+    PlaceRequest chained = new PlaceRequest("token").with("a", "1").with("b", "2");
+
+    // Then
+    assertEquals(chained, built);
+    assertEquals(chained.hashCode(), built.hashCode());
+    assertEquals("2", built.getParameter("b", null));
+  }
+
+  @Test
+  public void requestWithoutParametersShouldEqualRequestWithIgnoredParameter() {
+    // When
+    PlaceRequest built = new PlaceRequest.Builder().nameToken("token").with("a", null).build();
+
+    // Then
+    assertEquals(new PlaceRequest("token"), built);
+    assertEquals(new PlaceRequest("token").with("a", null), built);
+    assertTrue(built.getParameterNames().isEmpty());
+  }
+
+  @Test
+  public void reusingBuilderShouldNotModifyBuiltRequest() {
+    // Given
+    PlaceRequest.Builder builder = new PlaceRequest.Builder().nameToken("token").with("a", "1");
+    PlaceRequest first = builder.build();
+
+    // When
+    PlaceRequest second = builder.with("a", "2").with("b", "3").build();
+    PlaceRequest third = new PlaceRequest.Builder(first).with("c", "4").build();
+
+    // Then
+    assertEquals("1", first.getParameter("a", null));
+    assertEquals(1, first.getParameterNames().size());
+    assertEquals("2", second.getParameter("a", null));
+    assertEquals(2, third.getParameterNames().size());
+    assertFalse(first.equals(second));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void parameterNamesShouldBeUnmodifiable() {
+    // Given
+    PlaceRequest request = new PlaceRequest("token").with("a", "1");
+
+    // When
+    request.getParameterNames().remove("a");
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.client.proxy;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.web.bindery.event.shared.EventBus;
+import com.google.web.bindery.event.shared.SimpleEventBus;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link RenderCompleteSignal}.
+ */
+public class RenderCompleteSignalTest {
+
+  /**
+   * A signal that doesn't write the javascript variable.
+   */
+  private static class TestRenderCompleteSignal extends RenderCompleteSignal {
+    private boolean busy;
+
+    TestRenderCompleteSignal(EventBus eventBus, Scheduler scheduler) {
+      super(eventBus, scheduler);
+    }
+
+    @Override
+    protected boolean isBusy() {
+      return busy;
+    }
+
+    @Override
+    void writeFlag(boolean value) {
+    }
+  }
+
+  private EventBus eventBus;
+  private Scheduler scheduler;
+  private TestRenderCompleteSignal signal;
+
+  @Before
+  public void setUp() {
+    eventBus = new SimpleEventBus();
+    scheduler = mock(Scheduler.class);
+    signal = new TestRenderCompleteSignal(eventBus, scheduler);
+  }
+
+  @Test
+  public void shouldCompleteOnceNavigationIsOverAndQuiet() {
+    // Given
+    RepeatingCommand check = captureScheduledCheck(1);
+
+    // When
+    eventBus.fireEvent(new LockInteractionEvent(true));
+    assertTrue(check.execute());
+    eventBus.fireEvent(new LockInteractionEvent(false));
+    assertTrue(check.execute());
+    assertFalse(signal.isRenderComplete());
+
+    // Then
+    assertFalse(check.execute());
+    assertTrue(signal.isRenderComplete());
+
+    eventBus.fireEvent(new ResetPresentersEvent());
+    assertFalse(signal.isRenderComplete());
+    captureScheduledCheck(2);
+  }
+
+  @Test
+  public void shouldWaitWhileBusy() {
+    // Given
+    RepeatingCommand check = captureScheduledCheck(1);
+    signal.busy = true;
+
+    // When
+    assertTrue(check.execute());
+    signal.busy = false;
+    signal.onActivity();
+
+    // Then
+    assertTrue(check.execute());
+    assertFalse(check.execute());
+    assertTrue(signal.isRenderComplete());
+  }
+
+  @Test
+  public void shouldWaitForAllOverlappingCodeLoads() {
+    // Given
+    RepeatingCommand check = captureScheduledCheck(1);
+    AsyncCallStartEvent.fire(eventBus);
+    AsyncCallStartEvent.fire(eventBus);
+
+    // When
+    AsyncCallSucceedEvent.fire(eventBus);
+    assertTrue(check.execute());
+    assertTrue(check.execute());
+    assertFalse(signal.isRenderComplete());
+    AsyncCallFailEvent.fire(eventBus, new RuntimeException());
+
+    // Then
+    assertTrue(check.execute());
+    assertFalse(check.execute());
+    assertTrue(signal.isRenderComplete());
+  }
+
+  private RepeatingCommand captureScheduledCheck(int count) {
+    ArgumentCaptor<RepeatingCommand> check = ArgumentCaptor.forClass(RepeatingCommand.class);
+    verify(scheduler, times(count)).scheduleFixedDelay(check.capture(), anyInt());
+    return check.getValue();
+  }
+}
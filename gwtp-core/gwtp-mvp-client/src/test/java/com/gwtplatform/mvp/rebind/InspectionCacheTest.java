@@ -0,0 +1,200 @@
+/**
+ * Copyright 2011 ArcBees Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.gwtplatform.mvp.rebind;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.google.gwt.core.ext.ConfigurationProperty;
+import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+import com.google.gwt.core.ext.typeinfo.JParameter;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link InspectionCache}.
+ */
+public class InspectionCacheTest {
+
+  private static final String GINJECTOR_CLASS_NAME = "com.example.client.MyGinjector";
+
+  private final TreeLogger logger = TreeLogger.NULL;
+
+  private JClassType ginjector;
+  private JClassType presenterA;
+  private JClassType presenterB;
+  private JClassType presenterC;
+  private JClassType presenterSubA;
+
+  @Before
+  public void setUp() {
+    presenterA = mockType("com.example.client.PresenterA");
+    presenterB = mockType("com.example.client.PresenterB");
+    presenterC = mockType("com.example.client.PresenterC");
+    presenterSubA = mockType("com.example.client.PresenterSubA", presenterA);
+    ginjector = mockType(GINJECTOR_CLASS_NAME);
+    when(ginjector.isAssignableTo(any(JClassType.class))).thenReturn(true);
+    JMethod[] ginjectorMethods = {
+        mockGetMethod("getPresenterSubA", presenterSubA),
+        mockGetMethod("getPresenterB", presenterB) };
+    when(ginjector.getMethods()).thenReturn(ginjectorMethods);
+  }
+
+  @Test
+  public void cachedLookupsGiveTheSameResultsAsUncachedOnes() throws Exception {
+    // Given
+    GeneratorContext context = mockContext(mockTypeOracle());
+    InspectionCache cache = new InspectionCache(context.getTypeOracle());
+    JClassType[] lookups = {
+        presenterA, presenterB, presenterC, presenterSubA, presenterA, presenterB, presenterC };
+
+    for (JClassType lookup : lookups) {
+      // When
+      String uncached = createInspector(context, new InspectionCache(context.getTypeOracle()))
+          .findGetMethod(lookup);
+      String cached = createInspector(context, cache).findGetMethod(lookup);
+
+      // Then
+      assertEquals(uncached, cached);
+    }
+    assertEquals("getPresenterSubA", createInspector(context, cache).findGetMethod(presenterA));
+    assertEquals(null, createInspector(context, cache).findGetMethod(presenterC));
+  }
+
+  @Test
+  public void reusedLookupsCountAsSavedTime() throws Exception {
+    // Given
+    GeneratorContext context = mockContext(mockTypeOracle());
+    InspectionCache cache = new InspectionCache(context.getTypeOracle());
+    createInspector(context, cache).findGetMethod(presenterA);
+
+    // When
+    cache.putGinjectorLookup("get lookup", "getSomething", 5000000L);
+    cache.getGinjectorLookup("get lookup");
+    cache.getGinjectorLookup("get lookup");
+
+    // Then
+    assertTrue(cache.getNanosSaved() >= 10000000L);
+  }
+
+  @Test
+  public void cacheIsKeptPerTypeOracle() {
+    // Given
+    GeneratorContext context = mockContext(mockTypeOracle());
+    GeneratorContext otherPermutationContext = mockContext(context.getTypeOracle());
+    GeneratorContext refreshedContext = mockContext(mockTypeOracle());
+
+    // When
+    InspectionCache cache = InspectionCache.get(context);
+
+    // Then
+    assertSame(cache, InspectionCache.get(otherPermutationContext));
+    assertNotSame(cache, InspectionCache.get(refreshedContext));
+  }
+
+  @Test
+  public void lookupsAreReusedAfterARefreshIfTheGinjectorIsUnchanged() throws Exception {
+    // Given
+    GeneratorContext context = mockContext(mockTypeOracle());
+    createInspector(context, InspectionCache.get(context)).findGetMethod(presenterA);
+    GeneratorContext refreshedContext = mockContext(mockTypeOracle());
+    InspectionCache refreshedCache = InspectionCache.get(refreshedContext);
+
+    // When
+    String methodName = createInspector(refreshedContext, refreshedCache)
+        .findGetMethod(presenterA);
+
+    // Then
+    assertEquals("getPresenterSubA", methodName);
+    assertTrue(refreshedCache.hasGinjectorLookup("get " + refreshedCache.getTypeKey(presenterA)));
+  }
+
+  private GinjectorInspector createInspector(GeneratorContext context, InspectionCache cache)
+      throws Exception {
+    GinjectorInspector inspector = new GinjectorInspector(cache.getClassCollection(), context,
+        logger, cache);
+    inspector.init();
+    return inspector;
+  }
+
+  private TypeOracle mockTypeOracle() {
+    TypeOracle typeOracle = mock(TypeOracle.class, RETURNS_MOCKS);
+    when(typeOracle.findType(GINJECTOR_CLASS_NAME)).thenReturn(ginjector);
+    return typeOracle;
+  }
+
+  private GeneratorContext mockContext(TypeOracle typeOracle) {
+    ConfigurationProperty property = mock(ConfigurationProperty.class);
+    when(property.getValues()).thenReturn(Arrays.asList(GINJECTOR_CLASS_NAME));
+    PropertyOracle propertyOracle = mock(PropertyOracle.class);
+    try {
+      when(propertyOracle.getConfigurationProperty("gin.ginjector")).thenReturn(property);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+    GeneratorContext context = mock(GeneratorContext.class);
+    when(context.getTypeOracle()).thenReturn(typeOracle);
+    when(context.getPropertyOracle()).thenReturn(propertyOracle);
+    return context;
+  }
+
+  private JClassType mockType(String name, JClassType... superTypes) {
+    JClassType type = mock(JClassType.class);
+    Set<JClassType> hierarchy = new LinkedHashSet<JClassType>();
+    hierarchy.add(type);
+    Collections.addAll(hierarchy, superTypes);
+    when(type.getQualifiedSourceName()).thenReturn(name);
+    when(type.getName()).thenReturn(name);
+    doReturn(hierarchy).when(type).getFlattenedSupertypeHierarchy();
+    when(type.getMethods()).thenReturn(new JMethod[0]);
+    when(type.isClassOrInterface()).thenReturn(type);
+    for (JClassType assignableType : hierarchy) {
+      when(assignableType.isAssignableFrom(type)).thenReturn(true);
+    }
+    return type;
+  }
+
+  private JMethod mockGetMethod(String name, JClassType returnType) {
+    JMethod method = mock(JMethod.class);
+    when(method.getName()).thenReturn(name);
+    String declaration = returnType.getName() + " " + name + "()";
+    when(method.getReadableDeclaration()).thenReturn(declaration);
+    when(method.getReturnType()).thenReturn(returnType);
+    when(method.getParameters()).thenReturn(new JParameter[0]);
+    when(method.getAnnotations()).thenReturn(new Annotation[0]);
+    return method;
+  }
+}
@@ -16,11 +16,14 @@
 
 package com.gwtplatform.tester;
 
+import java.util.ArrayList;
+
 import com.google.inject.Inject;
 import com.gwtplatform.dispatch.server.Dispatch;
 import com.gwtplatform.dispatch.shared.Action;
 import com.gwtplatform.dispatch.shared.ActionException;
 import com.gwtplatform.dispatch.shared.DispatchService;
+import com.gwtplatform.dispatch.shared.MultiplexedResult;
 import com.gwtplatform.dispatch.shared.Result;
 import com.gwtplatform.dispatch.shared.ServiceException;
 
@@ -45,6 +48,22 @@ public class TestDispatchService implements DispatchService {
     return dispatch.execute(action);
   }
 
+  @Override
+  public MultiplexedResult executeMultiplexed(String cookieSentByRPC,
+      ArrayList<Action<?>> actions) throws ServiceException {
+    MultiplexedResult multiplexedResult = new MultiplexedResult(actions.size());
+    for (int i = 0; i < actions.size(); i++) {
+      try {
+        multiplexedResult.setResult(i, dispatch.execute(actions.get(i)));
+      } catch (ActionException e) {
+        multiplexedResult.setActionException(i, e);
+      } catch (ServiceException e) {
+        multiplexedResult.setServiceException(i, e);
+      }
+    }
+    return multiplexedResult;
+  }
+
   @Override
   public void undo(String cookieSentByRPC, Action<Result> action, Result result)
       throws ActionException, ServiceException {